@@ -26,9 +26,13 @@ import typetodo.exception.InvalidDateRangeException;
 import typetodo.exception.MissingFieldException;
 import typetodo.model.DeadlineTask;
 import typetodo.model.FloatingTask;
+import typetodo.model.PendingChange;
+import typetodo.model.SyncMetrics;
 import typetodo.model.Task;
+import typetodo.model.TaskChange;
 import typetodo.model.TaskType;
 import typetodo.model.TimedTask;
+import typetodo.model.TypeOfOperation;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -38,9 +42,13 @@ import com.google.gson.reflect.TypeToken;
 public class DbController {
 
 	// Constants
-	private static final String DIRECTORY_NAME = "savedfiles";
+	// Also holds the files of the local servers, so a constant that clients can read without loading the database
+	public static final String DIRECTORY_NAME = "savedfiles";
 	private static final String FILENAME_TASK = "tasks.txt";
 	private static final String FILENAME_PROPERTIES = "properties.txt";
+	private static final String FILENAME_OUTBOX = "outbox.txt";
+	private static final String FILENAME_SYNC_HISTORY = "synchistory.txt";
+	private static final int MAX_SYNC_HISTORY = 50;
 	private static final String EXCEPTION_MSG_DUPLICATE_ID = "Task with the same id already exist.";
 	private static final String EXCEPTION_MSG_INVALID_DATE_RANGE = "End time is earlier than start time.";
 	private static final String EXCEPTION_MSG_MISSING_ID = "The task did not contain a taskId.";
@@ -49,23 +57,52 @@ public class DbController {
 	private HashMap<String, File> allFiles;
 	private HashMap<String, String> properties;
 	private TreeMap<Integer, Task> tasksCache;
+	private TreeMap<Long, PendingChange> outbox;
+	// Sequence number of the latest change of each task in the outbox
+	private HashMap<Integer, Long> sequenceNumbersByTaskId;
+	private long lastSequenceNumber;
+	private ArrayList<SyncMetrics> syncHistory;
+	private ArrayList<PendingChangeListener> pendingChangeListeners;
+	private TaskChangePublisher taskChangePublisher;
+	// Copies of the tasks as last published, kept only while there are
+	// subscribers, as the tasks in the cache are changed in place before they
+	// are updated
+	private HashMap<Integer, Task> publishedTasks;
+	// Number of changes made to the tasks, see getVersion()
+	private long version;
 
 	// Controllers and external libraries
 	private static DbController mainDbHandler;
 	private final Gson gson;
+	// The outbox is written after every change, so it is written without the
+	// indentation of the other files
+	private final Gson compactGson;
 	private static Logger logger;
 	private static FileHandler logFileHandler;
 
+	/**
+	 * Listens for changes added to the outbox, such as to sync them soon after.
+	 */
+	public interface PendingChangeListener {
+		public void pendingChangeAdded(PendingChange pendingChange);
+	}
+
 	private DbController() throws IOException, JsonSyntaxException {
 		initializeLogger();
 		gson = initializeGson();
+		compactGson = initializeCompactGson();
 		tasksCache = new TreeMap<Integer, Task>();
 		properties = new HashMap<String, String>();
+		outbox = new TreeMap<Long, PendingChange>();
+		sequenceNumbersByTaskId = new HashMap<Integer, Long>();
+		syncHistory = new ArrayList<SyncMetrics>();
+		pendingChangeListeners = new ArrayList<PendingChangeListener>();
+		taskChangePublisher = new TaskChangePublisher();
 		initializeFiles();
 		reloadAllFiles();
 	}
 
-	public static DbController getInstance() throws IOException,
+	public static synchronized DbController getInstance() throws IOException,
 			JsonSyntaxException {
 		if (mainDbHandler == null) {
 			mainDbHandler = new DbController();
@@ -94,22 +131,56 @@ public class DbController {
 		return gsonBuilder.setPrettyPrinting().create();
 	}
 
-	public void reloadAllFiles() throws JsonSyntaxException, IOException {
+	private Gson initializeCompactGson() {
+		GsonBuilder gsonBuilder = new GsonBuilder();
+		gsonBuilder.registerTypeAdapter(Task.class, new TaskAdapter());
+		gsonBuilder.registerTypeHierarchyAdapter(DateTime.class,
+				new DateTimeTypeAdapter());
+		return gsonBuilder.create();
+	}
+
+	public synchronized void reloadAllFiles() throws JsonSyntaxException, IOException {
 		for (String fileName : allFiles.keySet()) {
 			this.loadFile(fileName);
 		}
+		version++;
+		if (taskChangePublisher.hasSubscribers()) {
+			publishedTasks = this.copyAllTasks();
+			taskChangePublisher.publish(TaskChange.reloaded(version));
+		} else {
+			publishedTasks = null;
+		}
+	}
+
+	/**
+	 * The version changes whenever a task is added, deleted or updated, or the
+	 * files are reloaded, so that a list of tasks retrieved earlier can be known
+	 * to be unchanged. A list retrieved after calling this method is at least as
+	 * new as the version returned.
+	 * 
+	 * @return number of changes made to the tasks since the database was created
+	 */
+	public synchronized long getVersion() {
+		return version;
 	}
 
 	private void initializeFiles() throws IOException {
-		allFiles = new HashMap<String, File>(3);
+		allFiles = new HashMap<String, File>(4);
 		final File subdirectory = new File(DIRECTORY_NAME);
 		File FILE_TASKS = new File(subdirectory, FILENAME_TASK);
 		File FILE_PROPERTIES = new File(subdirectory, FILENAME_PROPERTIES);
+		File FILE_OUTBOX = new File(subdirectory, FILENAME_OUTBOX);
+		File FILE_SYNC_HISTORY = new File(subdirectory, FILENAME_SYNC_HISTORY);
 		allFiles.put(FILENAME_TASK, FILE_TASKS);
 		allFiles.put(FILENAME_PROPERTIES, FILE_PROPERTIES);
+		allFiles.put(FILENAME_OUTBOX, FILE_OUTBOX);
+		allFiles.put(FILENAME_SYNC_HISTORY, FILE_SYNC_HISTORY);
 		if (!subdirectory.exists()) {
 			subdirectory.mkdir();
-			for (File file : allFiles.values()) {
+		}
+		// Files added in later versions may be missing from an existing directory
+		for (File file : allFiles.values()) {
+			if (!file.exists()) {
 				file.createNewFile();
 			}
 		}
@@ -149,6 +220,16 @@ public class DbController {
 					}.getType();
 					properties = gson.fromJson(fileToTextBuffer.toString(),
 							collectionType);
+				} else if (fileName.equals(FILENAME_OUTBOX)) {
+					Type collectionType = new TypeToken<TreeMap<Long, PendingChange>>() {
+					}.getType();
+					outbox = gson.fromJson(fileToTextBuffer.toString(), collectionType);
+					this.indexOutbox();
+				} else if (fileName.equals(FILENAME_SYNC_HISTORY)) {
+					Type collectionType = new TypeToken<ArrayList<SyncMetrics>>() {
+					}.getType();
+					syncHistory = gson.fromJson(fileToTextBuffer.toString(),
+							collectionType);
 				}
 			} catch (JsonSyntaxException e) {
 				logger.log(Level.SEVERE, e.toString());
@@ -157,6 +238,14 @@ public class DbController {
 		}
 	}
 
+	/**
+	 * Saves the tasks after a change to them, counting it in the version.
+	 */
+	private void saveTasks() {
+		version++;
+		this.writeChangesToFile(FILENAME_TASK);
+	}
+
 	private void writeChangesToFile(String fileName) {
 		BufferedWriter writer;
 		try {
@@ -170,6 +259,14 @@ public class DbController {
 				Type collectionType = new TypeToken<HashMap<String, Object>>() {
 				}.getType();
 				writer.write(gson.toJson(properties, collectionType));
+			} else if (fileName.equals(FILENAME_OUTBOX)) {
+				Type collectionType = new TypeToken<TreeMap<Long, PendingChange>>() {
+				}.getType();
+				writer.write(compactGson.toJson(outbox, collectionType));
+			} else if (fileName.equals(FILENAME_SYNC_HISTORY)) {
+				Type collectionType = new TypeToken<ArrayList<SyncMetrics>>() {
+				}.getType();
+				writer.write(gson.toJson(syncHistory, collectionType));
 			}
 			writer.close();
 		} catch (IOException e) {
@@ -183,7 +280,7 @@ public class DbController {
 	 * @return A string of property matched by the propertyName, or null if the
 	 *         property doesn't exist
 	 */
-	public String getProperty(String propertyName) {
+	public synchronized String getProperty(String propertyName) {
 		return properties.get(propertyName);
 	}
 
@@ -193,11 +290,258 @@ public class DbController {
 	 * @param property
 	 *          A string to be saved as a property.
 	 */
-	public void setProperty(String propertyName, String property) {
+	public synchronized void setProperty(String propertyName, String property) {
 		properties.put(propertyName, property);
 		this.writeChangesToFile(FILENAME_PROPERTIES);
 	}
 
+	/**
+	 * Adds the change to the outbox, collapsed with the change of the same task
+	 * that is already in it, see collapsePendingChange.
+	 * 
+	 * @param pendingChange
+	 *          change to be sent to the Google Schedule on the next sync
+	 * @return sequence number given to the change, which is larger than that of
+	 *         every change before it
+	 */
+	public synchronized long addPendingChange(PendingChange pendingChange) {
+		long sequenceNumber = this.collapsePendingChange(pendingChange,
+				this.getNextSequenceNumber());
+		this.writeChangesToFile(FILENAME_OUTBOX);
+		for (PendingChangeListener listener : pendingChangeListeners) {
+			listener.pendingChangeAdded(pendingChange);
+		}
+		return sequenceNumber;
+	}
+
+	/**
+	 * Adds every change to the outbox, writing the outbox file once rather than
+	 * once for every change.
+	 * 
+	 * @param pendingChanges
+	 *          changes to be sent to the Google Schedule on the next sync, which
+	 *          are given sequence numbers in the order of the list
+	 */
+	public synchronized void addPendingChanges(List<PendingChange> pendingChanges) {
+		long sequenceNumber = this.getNextSequenceNumber();
+		for (PendingChange pendingChange : pendingChanges) {
+			this.collapsePendingChange(pendingChange, sequenceNumber);
+			sequenceNumber++;
+		}
+		this.writeChangesToFile(FILENAME_OUTBOX);
+		for (PendingChange pendingChange : pendingChanges) {
+			for (PendingChangeListener listener : pendingChangeListeners) {
+				listener.pendingChangeAdded(pendingChange);
+			}
+		}
+	}
+
+	/**
+	 * Sequence numbers keep growing after changes leave the outbox, whether
+	 * acknowledged or collapsed, so that a change is never given the sequence
+	 * number of one that a sync is sending.
+	 */
+	private long getNextSequenceNumber() {
+		if (!outbox.isEmpty()) {
+			lastSequenceNumber = Math.max(lastSequenceNumber, outbox.lastKey());
+		}
+		return lastSequenceNumber + 1;
+	}
+
+	/**
+	 * Keeps a single change of each task in the outbox, as a sync only sends
+	 * the latest state of a task. The change already in the outbox is replaced
+	 * by one at the given sequence number, so that a sync that is sending the
+	 * former does not acknowledge the latter: an ADD followed by an EDIT stays
+	 * an ADD, and an ADD followed by the DELETE of a task that never reached
+	 * the Google Schedule leaves nothing to send. A change that follows a
+	 * DELETE is kept apart from it.
+	 * 
+	 * @return sequence number given to the change
+	 */
+	private long collapsePendingChange(PendingChange pendingChange,
+			long sequenceNumber) {
+		pendingChange.setSequenceNumber(sequenceNumber);
+		Long previousSequenceNumber = sequenceNumbersByTaskId.get(pendingChange.getTaskId());
+		PendingChange previousChange = (previousSequenceNumber == null) ? null
+				: outbox.get(previousSequenceNumber);
+		PendingChange changeToKeep = pendingChange;
+		if (previousChange != null
+				&& previousChange.getType() != TypeOfOperation.DELETE) {
+			outbox.remove(previousSequenceNumber);
+			sequenceNumbersByTaskId.remove(pendingChange.getTaskId());
+			if (previousChange.getType() == TypeOfOperation.ADD) {
+				if (pendingChange.getType() == TypeOfOperation.DELETE
+						&& pendingChange.getGoogleId() == null) {
+					changeToKeep = null;
+				} else if (pendingChange.getType() != TypeOfOperation.DELETE) {
+					changeToKeep = new PendingChange(TypeOfOperation.ADD, pendingChange);
+					changeToKeep.setSequenceNumber(sequenceNumber);
+				}
+			}
+		}
+
+		if (changeToKeep != null) {
+			outbox.put(sequenceNumber, changeToKeep);
+			sequenceNumbersByTaskId.put(changeToKeep.getTaskId(), sequenceNumber);
+		}
+		lastSequenceNumber = sequenceNumber;
+		return sequenceNumber;
+	}
+
+	private void indexOutbox() {
+		sequenceNumbersByTaskId = new HashMap<Integer, Long>();
+		for (PendingChange pendingChange : outbox.values()) {
+			sequenceNumbersByTaskId.put(pendingChange.getTaskId(),
+					pendingChange.getSequenceNumber());
+		}
+	}
+
+	/**
+	 * @param listener
+	 *          notified of every change added to the outbox, while the
+	 *          DbController is locked
+	 */
+	public synchronized void addPendingChangeListener(
+			PendingChangeListener listener) {
+		pendingChangeListeners.add(listener);
+	}
+
+	public synchronized void removePendingChangeListener(
+			PendingChangeListener listener) {
+		pendingChangeListeners.remove(listener);
+	}
+
+	/**
+	 * Subscribes to the tasks added, deleted and updated from now on, including
+	 * those changed by a sync, so that the subscriber can keep up with them
+	 * without retrieving all the tasks after every change. The changes are
+	 * delivered on a background thread once requested, see TaskChangePublisher.
+	 * 
+	 * @param subscriber
+	 *          given the changes in the order they were made, each with copies
+	 *          of the task before and after it
+	 */
+	public synchronized void subscribe(TaskChangePublisher.Subscriber subscriber) {
+		if (publishedTasks == null) {
+			publishedTasks = this.copyAllTasks();
+		}
+		taskChangePublisher.subscribe(subscriber);
+	}
+
+	/**
+	 * Publishes the change made to the task since it was last published, once
+	 * it has been saved.
+	 */
+	private void publishChange(int taskId) {
+		if (!taskChangePublisher.hasSubscribers()) {
+			publishedTasks = null;
+			return;
+		}
+
+		Task taskBefore = publishedTasks.remove(taskId);
+		Task taskAfter = tasksCache.containsKey(taskId) ? this.copyTask(tasksCache.get(taskId)) : null;
+		if (taskAfter != null) {
+			publishedTasks.put(taskId, taskAfter);
+		}
+		if (taskBefore != null || taskAfter != null) {
+			taskChangePublisher.publish(TaskChange.between(taskBefore, taskAfter, version));
+		}
+	}
+
+	private HashMap<Integer, Task> copyAllTasks() {
+		HashMap<Integer, Task> copies = new HashMap<Integer, Task>(tasksCache.size() * 2);
+		for (Task task : tasksCache.values()) {
+			copies.put(task.getTaskId(), this.copyTask(task));
+		}
+		return copies;
+	}
+
+	private Task copyTask(Task task) {
+		Task copy = task.makeCopy();
+		copy.setGoogleId(task.getGoogleId());
+		return copy;
+	}
+
+	/**
+	 * @return An arraylist of the changes not sent to the Google Schedule yet, in
+	 *         the order they were made. An empty arraylist will be returned if
+	 *         there are none.
+	 */
+	public synchronized ArrayList<PendingChange> retrievePendingChanges() {
+		return new ArrayList<PendingChange>(outbox.values());
+	}
+
+	/**
+	 * Removes changes that have been sent to the Google Schedule from the outbox.
+	 * 
+	 * @param sequenceNumbers
+	 *          sequence numbers of the changes sent
+	 */
+	public synchronized void acknowledgePendingChanges(List<Long> sequenceNumbers) {
+		if (sequenceNumbers.isEmpty()) {
+			return;
+		}
+		for (Long sequenceNumber : sequenceNumbers) {
+			PendingChange pendingChange = outbox.remove(sequenceNumber);
+			if (pendingChange != null
+					&& sequenceNumber.equals(sequenceNumbersByTaskId.get(pendingChange.getTaskId()))) {
+				sequenceNumbersByTaskId.remove(pendingChange.getTaskId());
+			}
+		}
+		this.writeChangesToFile(FILENAME_OUTBOX);
+	}
+
+	/**
+	 * Keeps changes that the Google Schedule rejected in the outbox together
+	 * with the reason, so that later syncs skip them. A change that was
+	 * replaced by a later change of its task while it was being sent is left
+	 * alone, and a change without a sequence number, such as the first ADD of
+	 * a task that is not in the outbox, is added unless the task has a change
+	 * in the outbox by now.
+	 * 
+	 * @param rejectedChanges
+	 *          changes rejected, with the reason as their failure
+	 */
+	public synchronized void parkPendingChanges(List<PendingChange> rejectedChanges) {
+		if (rejectedChanges.isEmpty()) {
+			return;
+		}
+		for (PendingChange rejectedChange : rejectedChanges) {
+			PendingChange pendingChange = outbox.get(rejectedChange.getSequenceNumber());
+			if (pendingChange != null) {
+				pendingChange.setFailure(rejectedChange.getFailure());
+			} else if (rejectedChange.getSequenceNumber() == 0
+					&& !sequenceNumbersByTaskId.containsKey(rejectedChange.getTaskId())) {
+				this.collapsePendingChange(rejectedChange, this.getNextSequenceNumber());
+			}
+		}
+		this.writeChangesToFile(FILENAME_OUTBOX);
+	}
+
+	/**
+	 * Adds the metrics of a sync to the sync history, which keeps only the
+	 * latest MAX_SYNC_HISTORY syncs.
+	 * 
+	 * @param syncMetrics
+	 *          metrics of a sync that has finished
+	 */
+	public synchronized void addSyncMetrics(SyncMetrics syncMetrics) {
+		syncHistory.add(syncMetrics);
+		while (syncHistory.size() > MAX_SYNC_HISTORY) {
+			syncHistory.remove(0);
+		}
+		this.writeChangesToFile(FILENAME_SYNC_HISTORY);
+	}
+
+	/**
+	 * @return An arraylist of the metrics of the latest syncs, oldest first. An
+	 *         empty arraylist will be returned if there are none.
+	 */
+	public synchronized ArrayList<SyncMetrics> retrieveSyncHistory() {
+		return new ArrayList<SyncMetrics>(syncHistory);
+	}
+
 	/**
 	 * 
 	 * @param task
@@ -205,14 +549,44 @@ public class DbController {
 	 * @throws DuplicateKeyException
 	 *           task with same id is in the database
 	 */
-	public int addTask(Task newTask) throws DuplicateKeyException {
+	public synchronized int addTask(Task newTask) throws DuplicateKeyException {
+		int taskId = this.putNewTask(newTask);
+		this.saveTasks();
+		this.publishChange(taskId);
+		return taskId;
+	}
+
+	/**
+	 * Adds every task, writing the tasks file once rather than once for every
+	 * task.
+	 * 
+	 * @param newTasks
+	 *          tasks to be added
+	 * @throws DuplicateKeyException
+	 *           a task with the same id is in the database, the tasks before it
+	 *           are still added
+	 */
+	public synchronized void addTasks(List<Task> newTasks) throws DuplicateKeyException {
+		ArrayList<Integer> taskIdsAdded = new ArrayList<Integer>(newTasks.size());
+		try {
+			for (Task newTask : newTasks) {
+				taskIdsAdded.add(this.putNewTask(newTask));
+			}
+		} finally {
+			this.saveTasks();
+			for (Integer taskId : taskIdsAdded) {
+				this.publishChange(taskId);
+			}
+		}
+	}
+
+	private int putNewTask(Task newTask) throws DuplicateKeyException {
 		// Supports for undoing deleted task
 		if (newTask.getTaskId() != 0) {
 			if (tasksCache.containsKey(newTask.getTaskId())) {
 				throw new DuplicateKeyException(EXCEPTION_MSG_DUPLICATE_ID);
 			}
 			tasksCache.put(newTask.getTaskId(), newTask);
-			this.writeChangesToFile(FILENAME_TASK);
 			return newTask.getTaskId();
 		}
 
@@ -225,7 +599,6 @@ public class DbController {
 		}
 		newTask.setTaskId(newTaskIdGenerated);
 		tasksCache.put(newTaskIdGenerated, newTask);
-		this.writeChangesToFile(FILENAME_TASK);
 		return newTaskIdGenerated;
 	}
 
@@ -235,22 +608,47 @@ public class DbController {
 	 *          taskId of the task to be deleted from the database
 	 * @return true when deleted, or false if not found
 	 */
-	public boolean deleteTask(int taskId) {
+	public synchronized boolean deleteTask(int taskId) {
 		if (tasksCache.containsKey(taskId)) {
 			tasksCache.remove(taskId);
-			this.writeChangesToFile(FILENAME_TASK);
+			this.saveTasks();
+			this.publishChange(taskId);
 			return true;
 		} else {
 			return false;
 		}
 	}
 
+	/**
+	 * Deletes every task, writing the tasks file once rather than once for every
+	 * task.
+	 * 
+	 * @param taskIds
+	 *          taskIds of the tasks to be deleted from the database
+	 * @return number of tasks deleted, leaving out those not found
+	 */
+	public synchronized int deleteTasks(List<Integer> taskIds) {
+		ArrayList<Integer> taskIdsDeleted = new ArrayList<Integer>(taskIds.size());
+		for (Integer taskId : taskIds) {
+			if (tasksCache.remove(taskId) != null) {
+				taskIdsDeleted.add(taskId);
+			}
+		}
+		if (!taskIdsDeleted.isEmpty()) {
+			this.saveTasks();
+			for (Integer taskId : taskIdsDeleted) {
+				this.publishChange(taskId);
+			}
+		}
+		return taskIdsDeleted.size();
+	}
+
 	/**
 	 * @param taskId
 	 *          taskId of the task to check for existent in the database.
 	 * @return returns true if the taskId is found, or false if not found
 	 */
-	public boolean containsTask(int taskId) {
+	public synchronized boolean containsTask(int taskId) {
 		return tasksCache.containsKey(taskId);
 	}
 
@@ -259,7 +657,7 @@ public class DbController {
 	 *          taskId of the task that exist in the database.
 	 * @return returns the task if the taskId is valid, or null if invalid
 	 */
-	public Task getTask(int taskId) {
+	public synchronized Task getTask(int taskId) {
 		return tasksCache.get(taskId);
 	}
 
@@ -271,18 +669,52 @@ public class DbController {
 	 * @throws MissingFieldException
 	 *           task identifier missing
 	 */
-	public boolean updateTask(Task taskToUpdate) throws Exception {
+	public synchronized boolean updateTask(Task taskToUpdate) throws Exception {
 		int taskIdToUpdate = taskToUpdate.getTaskId();
 		if (taskIdToUpdate == 0) {
 			throw new MissingFieldException(EXCEPTION_MSG_MISSING_ID);
 		}
 		if (tasksCache.put(taskIdToUpdate, taskToUpdate) != null) {
-			this.writeChangesToFile(FILENAME_TASK);
+			this.saveTasks();
+			this.publishChange(taskIdToUpdate);
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Writes every task over the task of the same taskId, writing the tasks file
+	 * once rather than once for every task.
+	 * 
+	 * @param tasksToUpdate
+	 *          The updated tasks to be written over the tasks in database
+	 * @return number of tasks updated, leaving out those not found
+	 * @throws MissingFieldException
+	 *           task identifier missing, no task is updated
+	 */
+	public synchronized int updateTasks(List<Task> tasksToUpdate) throws MissingFieldException {
+		for (Task taskToUpdate : tasksToUpdate) {
+			if (taskToUpdate.getTaskId() == 0) {
+				throw new MissingFieldException(EXCEPTION_MSG_MISSING_ID);
+			}
+		}
+
+		ArrayList<Integer> taskIdsUpdated = new ArrayList<Integer>(tasksToUpdate.size());
+		for (Task taskToUpdate : tasksToUpdate) {
+			if (tasksCache.containsKey(taskToUpdate.getTaskId())) {
+				tasksCache.put(taskToUpdate.getTaskId(), taskToUpdate);
+				taskIdsUpdated.add(taskToUpdate.getTaskId());
+			}
+		}
+		if (!taskIdsUpdated.isEmpty()) {
+			this.saveTasks();
+			for (Integer taskId : taskIdsUpdated) {
+				this.publishChange(taskId);
+			}
+		}
+		return taskIdsUpdated.size();
+	}
+
 	/**
 	 * @param startDay
 	 *          Start of the time range of the tasks you want
@@ -293,7 +725,7 @@ public class DbController {
 	 * @throws InvalidDateRangeException
 	 *           endDay cannot be strictly earlier than startDay
 	 */
-	public ArrayList<Task> retrieveTasks(DateTime startDay, DateTime endDay)
+	public synchronized ArrayList<Task> retrieveTasks(DateTime startDay, DateTime endDay)
 			throws InvalidDateRangeException {
 		List<DeadlineTask> deadlineTasks = new ArrayList<DeadlineTask>();
 		List<TimedTask> timedTasks = new ArrayList<TimedTask>();
@@ -341,7 +773,7 @@ public class DbController {
 	 * @throws InvalidDateRangeException
 	 *           endDay cannot be strictly earlier than startDay
 	 */
-	public ArrayList<Task> retrieveTasks(DateTime startDay, DateTime endDay,
+	public synchronized ArrayList<Task> retrieveTasks(DateTime startDay, DateTime endDay,
 			TaskType taskType) throws InvalidDateRangeException {
 		ArrayList<Task> selectedTasks = new ArrayList<Task>();
 		LocalDate rangeStart = startDay.toLocalDate();
@@ -388,7 +820,7 @@ public class DbController {
 	 * @return An arraylist of all the tasks in the system. An empty arraylist
 	 *         will be returned if nothing is found.
 	 */
-	public ArrayList<Task> retrieveAll() {
+	public synchronized ArrayList<Task> retrieveAll() {
 		List<DeadlineTask> deadlineTasks = new ArrayList<DeadlineTask>();
 		List<TimedTask> timedTasks = new ArrayList<TimedTask>();
 		List<FloatingTask> floatingTasks = new ArrayList<FloatingTask>();
@@ -412,7 +844,7 @@ public class DbController {
 	 *         empty arraylist will be returned if nothing is found or if type of
 	 *         task is incorrect.
 	 */
-	public ArrayList<Task> retrieveAll(TaskType taskType) {
+	public synchronized ArrayList<Task> retrieveAll(TaskType taskType) {
 		ArrayList<Task> selectedTasks = new ArrayList<Task>();
 		for (Task taskInCache : tasksCache.values()) {
 			switch (taskType) {
@@ -445,7 +877,7 @@ public class DbController {
 	 * @throws NullPointerException
 	 *           searchCriteria is null
 	 */
-	public ArrayList<Task> retrieveContaining(String searchCriteria)
+	public synchronized ArrayList<Task> retrieveContaining(String searchCriteria)
 			throws NullPointerException {
 		List<DeadlineTask> deadlineTasks = new ArrayList<DeadlineTask>();
 		List<TimedTask> timedTasks = new ArrayList<TimedTask>();
@@ -478,7 +910,7 @@ public class DbController {
 	 * @throws NullPointerException
 	 *           searchCriteria is null
 	 */
-	public ArrayList<Task> retrieveContaining(String searchCriteria,
+	public synchronized ArrayList<Task> retrieveContaining(String searchCriteria,
 			TaskType taskType) throws NullPointerException {
 		ArrayList<Task> selectedTasks = new ArrayList<Task>();
 		for (Task taskInCache : tasksCache.values()) {
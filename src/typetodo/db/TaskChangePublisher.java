@@ -0,0 +1,193 @@
+package typetodo.db;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import typetodo.model.TaskChange;
+
+/**
+ * The TaskChangePublisher delivers the changes made to the tasks to its subscribers, in the order they were
+ * made, on background threads. A subscriber is only given as many changes as it has requested, and the rest
+ * wait in a buffer of its own, so that a slow subscriber neither holds up the database nor the other
+ * subscribers. Publishing never blocks: when the buffer of a subscriber is full, the changes in it are
+ * replaced by a single RELOADED change, after which the subscriber has to retrieve the tasks again, as it
+ * would after the files were reloaded. Changes that come after a RELOADED change in the buffer are taken
+ * into it, as retrieving the tasks again shows them too.
+ * @author A0091024U
+ *
+ */
+public class TaskChangePublisher {
+	static final int DEFAULT_BUFFER_CAPACITY = 1024;
+	private static final String THREAD_NAME = "TypeToDo-TaskChangePublisher";
+
+	/**
+	 * Receives the changes made to the tasks. A change that arrives after the tasks were retrieved again
+	 * may already be shown by them, so changes are best applied by taskId, replacing what is there.
+	 */
+	public interface Subscriber {
+		/**
+		 * Called once, before the subscriber is given any change. No change is given until requested.
+		 */
+		public void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called on a background thread, never for two changes at once. The subscription is cancelled if
+		 * this throws.
+		 */
+		public void onNext(TaskChange change);
+	}
+
+	/**
+	 * The link between the publisher and one subscriber.
+	 */
+	public interface Subscription {
+		/**
+		 * Allows the publisher to give the subscriber n more changes.
+		 * @param n positive number of changes
+		 */
+		public void request(long n);
+
+		/**
+		 * Stops giving changes to the subscriber, dropping those in its buffer.
+		 */
+		public void cancel();
+	}
+
+	private final Executor executor;
+	private final int bufferCapacity;
+	private final CopyOnWriteArrayList<BufferedSubscription> subscriptions;
+
+	public TaskChangePublisher() {
+		this(Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		}), DEFAULT_BUFFER_CAPACITY);
+	}
+
+	/**
+	 * @param executor runs the delivery of changes to each subscriber
+	 * @param bufferCapacity largest number of changes waiting for a subscriber before they are replaced by a
+	 *          RELOADED change
+	 */
+	TaskChangePublisher(Executor executor, int bufferCapacity) {
+		this.executor = executor;
+		this.bufferCapacity = bufferCapacity;
+		this.subscriptions = new CopyOnWriteArrayList<BufferedSubscription>();
+	}
+
+	/**
+	 * Subscribes to the changes published from now on. onSubscribe is called before this method returns.
+	 */
+	public void subscribe(Subscriber subscriber) {
+		BufferedSubscription subscription = new BufferedSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		subscriptions.add(subscription);
+	}
+
+	/**
+	 * @return false if there is no subscriber, in which case changes need not be published
+	 */
+	public boolean hasSubscribers() {
+		return !subscriptions.isEmpty();
+	}
+
+	/**
+	 * Adds the change to the buffer of every subscriber. This method returns immediately.
+	 */
+	public void publish(TaskChange change) {
+		for (BufferedSubscription subscription : subscriptions) {
+			subscription.offer(change);
+		}
+	}
+
+	private class BufferedSubscription implements Subscription, Runnable {
+		private final Subscriber subscriber;
+		private final ArrayDeque<TaskChange> buffer;
+		private long demand;
+		private boolean isDelivering;
+		private boolean isCancelled;
+
+		private BufferedSubscription(Subscriber subscriber) {
+			this.subscriber = subscriber;
+			this.buffer = new ArrayDeque<TaskChange>();
+		}
+
+		private synchronized void offer(TaskChange change) {
+			if (isCancelled) {
+				return;
+			}
+
+			boolean isReloadNeeded = change.getType() == TaskChange.Type.RELOADED
+					|| buffer.size() >= bufferCapacity
+					|| (!buffer.isEmpty() && buffer.peekLast().getType() == TaskChange.Type.RELOADED);
+			if (isReloadNeeded) {
+				buffer.clear();
+				buffer.add(TaskChange.reloaded(change.getVersion()));
+			} else {
+				buffer.add(change);
+			}
+			this.startDelivering();
+		}
+
+		@Override
+		public synchronized void request(long n) {
+			if (n <= 0) {
+				throw new IllegalArgumentException("The number of changes requested must be positive");
+			}
+			demand = (demand > Long.MAX_VALUE - n) ? Long.MAX_VALUE : demand + n;
+			this.startDelivering();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				isCancelled = true;
+				buffer.clear();
+			}
+			subscriptions.remove(this);
+		}
+
+		/**
+		 * Delivers the changes in the buffer for as long as they are requested, outside the lock so that the
+		 * subscriber may request more or cancel from onNext.
+		 */
+		@Override
+		public void run() {
+			while (true) {
+				TaskChange change;
+				synchronized (this) {
+					if (isCancelled || demand == 0 || buffer.isEmpty()) {
+						isDelivering = false;
+						return;
+					}
+					change = buffer.poll();
+					if (demand != Long.MAX_VALUE) {
+						demand--;
+					}
+				}
+
+				try {
+					subscriber.onNext(change);
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+					this.cancel();
+				}
+			}
+		}
+
+		// Only called while holding the lock
+		private void startDelivering() {
+			if (!isDelivering && !isCancelled && demand > 0 && !buffer.isEmpty()) {
+				isDelivering = true;
+				executor.execute(this);
+			}
+		}
+	}
+}
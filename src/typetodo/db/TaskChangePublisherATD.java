@@ -0,0 +1,109 @@
+package typetodo.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+import typetodo.model.TaskChange;
+
+/**
+ * Tests the TaskChangePublisher with changes delivered on the thread that publishes them or requests more.
+ * @author A0091024U
+ *
+ */
+public class TaskChangePublisherATD {
+	private static final Executor SAME_THREAD = new Executor() {
+		@Override
+		public void execute(Runnable runnable) {
+			runnable.run();
+		}
+	};
+
+	private static class CollectingSubscriber implements TaskChangePublisher.Subscriber {
+		private final ArrayList<TaskChange> changes = new ArrayList<TaskChange>();
+		private TaskChangePublisher.Subscription subscription;
+
+		@Override
+		public void onSubscribe(TaskChangePublisher.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(TaskChange change) {
+			changes.add(change);
+		}
+	}
+
+	@Test
+	public void givesOnlyTheChangesRequestedInOrder() {
+		TaskChangePublisher publisher = new TaskChangePublisher(SAME_THREAD, 10);
+		CollectingSubscriber subscriber = new CollectingSubscriber();
+		publisher.subscribe(subscriber);
+
+		for (int taskId = 1; taskId <= 3; taskId++) {
+			publisher.publish(TaskChange.between(null, createTask(taskId, Status.INCOMPLETE), taskId));
+		}
+		assertEquals(0, subscriber.changes.size());
+
+		subscriber.subscription.request(2);
+		assertEquals(2, subscriber.changes.size());
+		assertEquals(1, subscriber.changes.get(0).getTaskId());
+		assertEquals(2, subscriber.changes.get(1).getTaskId());
+
+		subscriber.subscription.request(5);
+		assertEquals(3, subscriber.changes.size());
+		assertEquals(TaskChange.Type.ADDED, subscriber.changes.get(2).getType());
+	}
+
+	@Test
+	public void replacesTheChangesOfAFullBufferWithReloaded() {
+		TaskChangePublisher publisher = new TaskChangePublisher(SAME_THREAD, 2);
+		CollectingSubscriber subscriber = new CollectingSubscriber();
+		publisher.subscribe(subscriber);
+
+		Task taskBefore = createTask(1, Status.INCOMPLETE);
+		Task taskAfter = createTask(1, Status.COMPLETED);
+		publisher.publish(TaskChange.between(taskBefore, taskAfter, 1));
+		publisher.publish(TaskChange.between(taskAfter, null, 2));
+		publisher.publish(TaskChange.between(null, taskBefore, 3));
+		publisher.publish(TaskChange.between(taskBefore, taskAfter, 4));
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertEquals(1, subscriber.changes.size());
+		assertEquals(TaskChange.Type.RELOADED, subscriber.changes.get(0).getType());
+		assertEquals(4, subscriber.changes.get(0).getVersion());
+
+		publisher.publish(TaskChange.between(taskBefore, taskAfter, 5));
+		assertEquals(TaskChange.Type.STATUS_CHANGED, subscriber.changes.get(1).getType());
+	}
+
+	@Test
+	public void stopsGivingChangesOnceCancelled() {
+		TaskChangePublisher publisher = new TaskChangePublisher(SAME_THREAD, 10);
+		CollectingSubscriber subscriber = new CollectingSubscriber();
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		assertTrue(publisher.hasSubscribers());
+
+		publisher.publish(TaskChange.between(null, createTask(1, Status.INCOMPLETE), 1));
+		subscriber.subscription.cancel();
+		publisher.publish(TaskChange.between(null, createTask(2, Status.INCOMPLETE), 2));
+
+		assertEquals(1, subscriber.changes.size());
+		assertFalse(publisher.hasSubscribers());
+	}
+
+	private static Task createTask(int taskId, Status status) {
+		Task task = new FloatingTask(taskId, "task " + taskId, "");
+		task.setStatus(status);
+		return task;
+	}
+}
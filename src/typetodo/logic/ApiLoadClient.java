@@ -0,0 +1,196 @@
+package typetodo.logic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Loads the ApiServer with several clients at once, each of which adds a task, lists the tasks several times
+ * sending back the ETag it was given, searches, queries a week, replaces the task and deletes it again, so the
+ * schedule is left as it was. The throughput, the median and 99th percentile time of each kind of request, and
+ * how many lists were answered 304 are shown.
+ * It loads the TypeToDo running from the working directory, or an ApiServer of its own over the saved files
+ * of the working directory if none is running. Run it with:
+ * java typetodo.logic.ApiLoadClient [number of clients] [number of rounds of each client]
+ * @author A0091024U
+ *
+ */
+public class ApiLoadClient {
+	private static final int DEFAULT_NUMBER_OF_CLIENTS = 8;
+	private static final int DEFAULT_NUMBER_OF_ROUNDS = 200;
+	private static final int NUMBER_OF_LISTS_IN_ROUND = 5;
+	private static final String CHARSET = "UTF-8";
+	private static final String[] KINDS_OF_REQUEST = { "add", "list", "search", "week", "replace", "delete" };
+
+	private final String baseUrl;
+	private final String key;
+
+	/**
+	 * Times of the requests of one client, by kind, with the number of lists that were not modified.
+	 */
+	private static class Times {
+		private final Map<String, List<Long>> nanosByKind = new LinkedHashMap<String, List<Long>>();
+		private int numberOfNotModified;
+
+		private Times() {
+			for (String kind : KINDS_OF_REQUEST) {
+				nanosByKind.put(kind, new ArrayList<Long>());
+			}
+		}
+
+		private void add(Times times) {
+			for (String kind : KINDS_OF_REQUEST) {
+				nanosByKind.get(kind).addAll(times.nanosByKind.get(kind));
+			}
+			numberOfNotModified += times.numberOfNotModified;
+		}
+	}
+
+	private ApiLoadClient(int port, String key) {
+		this.baseUrl = "http://127.0.0.1:" + port;
+		this.key = key;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int numberOfClients = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_CLIENTS;
+		int numberOfRounds = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_ROUNDS;
+
+		ApiServer apiServer = null;
+		File file = ServerFile.inSavedFiles(ApiServer.FILENAME_SERVER);
+		if (!file.exists()) {
+			System.out.println("No TypeToDo is running, so an ApiServer over the saved files is started");
+			apiServer = new ApiServer(new Schedule());
+			apiServer.start();
+		}
+		try {
+			String[] portAndKey = ServerFile.read(file);
+			ApiLoadClient client = new ApiLoadClient(Integer.parseInt(portAndKey[0]), portAndKey[1]);
+			client.run(numberOfClients, numberOfRounds / 10); //warms up
+			client.run(numberOfClients, numberOfRounds);
+		} finally {
+			if (apiServer != null) {
+				apiServer.stop();
+			}
+		}
+	}
+
+	private void run(int numberOfClients, final int numberOfRounds) throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(numberOfClients);
+		Times times = new Times();
+		long timeBefore = System.nanoTime();
+		try {
+			List<Future<Times>> timesOfClients = new ArrayList<Future<Times>>();
+			for (int client = 0; client < numberOfClients; client++) {
+				final int clientNumber = client;
+				timesOfClients.add(clients.submit(new Callable<Times>() {
+					@Override
+					public Times call() throws Exception {
+						return runClient(clientNumber, numberOfRounds);
+					}
+				}));
+			}
+			for (Future<Times> timesOfClient : timesOfClients) {
+				times.add(timesOfClient.get());
+			}
+		} finally {
+			clients.shutdown();
+		}
+		long nanos = System.nanoTime() - timeBefore;
+
+		int numberOfRequests = 0;
+		for (List<Long> nanosOfKind : times.nanosByKind.values()) {
+			numberOfRequests += nanosOfKind.size();
+		}
+		System.out.println(String.format("%d clients, %,d requests in %,d ms, %,.0f requests a second",
+				numberOfClients, numberOfRequests, nanos / 1000000, numberOfRequests / (nanos / 1e9)));
+		for (Map.Entry<String, List<Long>> nanosOfKind : times.nanosByKind.entrySet()) {
+			List<Long> sortedNanos = nanosOfKind.getValue();
+			Collections.sort(sortedNanos);
+			System.out.println(String.format("%-8s median %6.2f ms, 99th percentile %6.2f ms", nanosOfKind.getKey(),
+					sortedNanos.get(sortedNanos.size() / 2) / 1e6, sortedNanos.get(sortedNanos.size() * 99 / 100) / 1e6));
+		}
+		System.out.println(String.format("%,d of %,d lists were not modified", times.numberOfNotModified,
+				times.nanosByKind.get("list").size()));
+	}
+
+	private Times runClient(int clientNumber, int numberOfRounds) throws IOException {
+		Times times = new Times();
+		String eTag = null;
+		for (int round = 0; round < numberOfRounds; round++) {
+			String title = "load test task " + clientNumber + "-" + round;
+			HttpURLConnection added = this.request(times, "add", "POST", "/api/tasks", "{\"title\":\"" + title
+					+ "\",\"deadline\":\"2014-11-05T17:00\"}", null);
+			String path = added.getHeaderField("Location");
+
+			for (int list = 0; list < NUMBER_OF_LISTS_IN_ROUND; list++) {
+				HttpURLConnection listed = this.request(times, "list", "GET", "/api/tasks", null, eTag);
+				if (listed.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+					times.numberOfNotModified++;
+				}
+				eTag = listed.getHeaderField("ETag");
+			}
+			this.request(times, "search", "GET", "/api/tasks?q=" + title.replace(' ', '+'), null, null);
+			this.request(times, "week", "GET", "/api/tasks?from=2014-11-03&to=2014-11-10", null, null);
+			this.request(times, "replace", "PUT", path, "{\"title\":\"" + title + "\",\"status\":\"completed\"}",
+					null);
+			this.request(times, "delete", "DELETE", path, null, null);
+		}
+		return times;
+	}
+
+	/**
+	 * Sends the request and reads the whole response, so that the connection is kept for the next request.
+	 * @throws IOException the request failed
+	 */
+	private HttpURLConnection request(Times times, String kind, String method, String path, String body,
+			String eTag) throws IOException {
+		long timeBefore = System.nanoTime();
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		connection.setRequestProperty("Authorization", "Bearer " + key);
+		if (eTag != null) {
+			connection.setRequestProperty("If-None-Match", eTag);
+		}
+		if (body != null) {
+			connection.setDoOutput(true);
+			OutputStream output = connection.getOutputStream();
+			output.write(body.getBytes(CHARSET));
+			output.close();
+		}
+
+		int status = connection.getResponseCode();
+		InputStream input = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+		if (input != null) {
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = input.read(buffer)) != -1) {
+				response.write(buffer, 0, length);
+			}
+			input.close();
+		}
+		times.nanosByKind.get(kind).add(System.nanoTime() - timeBefore);
+
+		if (status >= 400) {
+			JsonObject error = new JsonParser().parse(response.toString(CHARSET)).getAsJsonObject();
+			throw new IOException(method + " " + path + ": " + status + " " + error.get("error").getAsString());
+		}
+		return connection;
+	}
+}
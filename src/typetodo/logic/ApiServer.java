@@ -0,0 +1,520 @@
+package typetodo.logic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import typetodo.db.DbController;
+import typetodo.exception.InvalidFormatException;
+import typetodo.exception.InvalidIdException;
+import typetodo.model.DeadlineTask;
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+import typetodo.model.TimedTask;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The ApiServer lets other local tools read and change the schedule as JSON over HTTP:
+ * GET /api/tasks lists the tasks, filtered by ?status=completed|incomplete, and by either ?q=keyword or
+ * ?from=2014-11-03&to=2014-11-10. POST /api/tasks adds a task, and GET, PUT and DELETE /api/tasks/{id} read,
+ * replace and delete one. A task with a start and an end is timed, one with a deadline only is a deadline
+ * task and one with neither is floating. Times are ISO 8601.
+ * Every GET is answered with an ETag made of the version of the schedule, so a client that sends it back in
+ * If-None-Match is answered 304 without the tasks until a task changes.
+ * Like the CommandServer, it listens on the loopback address only and writes its port and key to a
+ * ServerFile, and every request must carry the key as "Authorization: Bearer key". Requests are handled by a
+ * bounded pool of threads, and once its queue is full the server stops accepting until a thread is free.
+ * As any process of the user could change the tasks through it, the ApiServer is only started when the
+ * property apiServerEnabled is set to true in the saved properties.
+ * @author A0091024U
+ *
+ */
+public class ApiServer {
+	public static final String PROPERTY_NAME_ENABLED = "apiServerEnabled";
+	static final String FILENAME_SERVER = "apiserver.txt";
+	static final String PATH_TASKS = "/api/tasks";
+	private static final String CHARSET = ServerFile.CHARSET;
+	private static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
+	private static final String AUTHORIZATION_PREFIX = "Bearer ";
+	private static final String PROPERTY_NO_DELAY = "sun.net.httpserver.nodelay";
+	private static final String THREAD_NAME = "TypeToDo-ApiServer-";
+	private static final int NUMBER_OF_THREADS = 4;
+	private static final int MAX_QUEUED_REQUESTS = 64;
+	private static final int MAX_WAITING_CONNECTIONS = 64;
+	private static final int STATUS_OK = 200;
+	private static final int STATUS_CREATED = 201;
+	private static final int STATUS_NO_CONTENT = 204;
+	private static final int STATUS_NOT_MODIFIED = 304;
+	private static final int STATUS_BAD_REQUEST = 400;
+	private static final int STATUS_UNAUTHORIZED = 401;
+	private static final int STATUS_NOT_FOUND = 404;
+	private static final int STATUS_METHOD_NOT_ALLOWED = 405;
+	private static final int STATUS_INTERNAL_ERROR = 500;
+	private static final String MESSAGE_UNAUTHORIZED = "The request does not carry the key of this TypeToDo";
+	private static final String MESSAGE_NOT_FOUND = "There is no such resource";
+	private static final String MESSAGE_METHOD_NOT_ALLOWED = "The method is not allowed on this resource";
+	private static final String MESSAGE_INVALID_JSON = "The body is not a JSON object";
+	private static final String MESSAGE_INVALID_DATE_TIME = "%s '%s' is not an ISO 8601 time such as 2014-11-03T09:00";
+	private static final String MESSAGE_INVALID_STATUS = "status '%s' is not completed or incomplete";
+	private static final String MESSAGE_START_WITHOUT_END = "A task with a start needs an end";
+	private static final String MESSAGE_FLOATING_CHANGED = "A floating task cannot be given dates, nor can a task "
+			+ "with dates become floating, as they are synced to different Google lists";
+	private static final String MESSAGE_INCOMPLETE_RANGE = "Both from and to are needed for a range";
+	private static final DateTimeFormatter DATE_TIME_PRINTER = ISODateTimeFormat.dateTime();
+	private static final DateTimeFormatter DATE_TIME_PARSER = ISODateTimeFormat.dateTimeParser();
+
+	private final Schedule schedule;
+	private final File file;
+	private HttpServer server;
+	private ThreadPoolExecutor executor;
+	private String key;
+	// Part of every ETag, so that the tags given before TypeToDo was restarted never match
+	private String idOfStart;
+
+	/**
+	 * @return true if the user has turned the ApiServer on in the saved properties
+	 * @throws IOException the properties could not be loaded
+	 */
+	public static boolean isEnabled() throws IOException {
+		return Boolean.parseBoolean(DbController.getInstance().getProperty(PROPERTY_NAME_ENABLED));
+	}
+
+	/**
+	 * The changes made by requests are published by the schedule, see Schedule.subscribe.
+	 */
+	public ApiServer(Schedule schedule) {
+		this(schedule, ServerFile.inSavedFiles(FILENAME_SERVER));
+	}
+
+	/**
+	 * @param file file the port and the key are written to
+	 */
+	ApiServer(Schedule schedule, File file) {
+		this.schedule = schedule;
+		this.file = file;
+	}
+
+	/**
+	 * Starts serving requests, and writes the port and the key to the file.
+	 * @throws IOException the server could not be started or the file could not be written
+	 */
+	public synchronized void start() throws IOException {
+		key = ServerFile.createKey();
+		idOfStart = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+		// The headers and the body of a response are written apart, and without this Nagle's algorithm
+		// holds the body until the client acknowledges the headers, which it delays by about 40 ms
+		if (System.getProperty(PROPERTY_NO_DELAY) == null) {
+			System.setProperty(PROPERTY_NO_DELAY, "true");
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+				MAX_WAITING_CONNECTIONS);
+		server.createContext(PATH_TASKS, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				ApiServer.this.handle(exchange);
+			}
+		});
+
+		final AtomicInteger numberOfThreads = new AtomicInteger(0);
+		// The server thread runs the requests the pool has no room for, so it accepts no more until then
+		executor = new ThreadPoolExecutor(NUMBER_OF_THREADS, NUMBER_OF_THREADS, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(MAX_QUEUED_REQUESTS), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, THREAD_NAME + numberOfThreads.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		server.setExecutor(executor);
+		server.start();
+
+		try {
+			ServerFile.write(file, server.getAddress().getPort(), key);
+		} catch (IOException e) {
+			server.stop(0);
+			executor.shutdown();
+			server = null;
+			throw e;
+		}
+	}
+
+	/**
+	 * Stops serving requests and deletes the file.
+	 */
+	public synchronized void stop() {
+		if (server == null) {
+			return;
+		}
+
+		server.stop(0);
+		executor.shutdown();
+		server = null;
+		file.delete();
+	}
+
+	/**
+	 * @return port listened on, or -1 if the server is not started
+	 */
+	public synchronized int getPort() {
+		return (server == null) ? -1 : server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!ServerFile.isKey(key, getBearerKey(exchange))) {
+				sendError(exchange, STATUS_UNAUTHORIZED, MESSAGE_UNAUTHORIZED);
+				return;
+			}
+
+			String method = exchange.getRequestMethod();
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals(PATH_TASKS) || path.equals(PATH_TASKS + "/")) {
+				if (method.equals("GET")) {
+					this.listTasks(exchange);
+				} else if (method.equals("POST")) {
+					this.addTask(exchange);
+				} else {
+					sendError(exchange, STATUS_METHOD_NOT_ALLOWED, MESSAGE_METHOD_NOT_ALLOWED);
+				}
+				return;
+			}
+
+			int taskId;
+			try {
+				taskId = Integer.parseInt(path.substring(PATH_TASKS.length() + 1));
+			} catch (NumberFormatException e) {
+				sendError(exchange, STATUS_NOT_FOUND, MESSAGE_NOT_FOUND);
+				return;
+			}
+			if (method.equals("GET")) {
+				this.getTask(exchange, taskId);
+			} else if (method.equals("PUT")) {
+				this.updateTask(exchange, taskId);
+			} else if (method.equals("DELETE")) {
+				this.deleteTask(exchange, taskId);
+			} else {
+				sendError(exchange, STATUS_METHOD_NOT_ALLOWED, MESSAGE_METHOD_NOT_ALLOWED);
+			}
+		} catch (InvalidIdException e) {
+			sendError(exchange, STATUS_NOT_FOUND, e.getMessage());
+		} catch (IOException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			sendError(exchange, STATUS_INTERNAL_ERROR, String.valueOf(e));
+		} catch (Exception e) {
+			sendError(exchange, STATUS_BAD_REQUEST, e.getMessage());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void listTasks(HttpExchange exchange) throws Exception {
+		HashMap<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+		Status status = parseStatus(query.get("status"));
+		DateTime from = parseDateTime("from", query.get("from"));
+		DateTime to = parseDateTime("to", query.get("to"));
+		if ((from == null) != (to == null)) {
+			throw new InvalidFormatException(MESSAGE_INCOMPLETE_RANGE);
+		}
+
+		// Taken before the tasks, so that a change made meanwhile gives a new tag rather than an old body
+		String eTag = this.getETag();
+		if (isNotModified(exchange, eTag)) {
+			return;
+		}
+
+		ArrayList<Task> tasks;
+		if (query.containsKey("q")) {
+			tasks = new ArrayList<Task>();
+			for (Task task : schedule.search(query.get("q"))) {
+				if (status == null || task.getStatus() == status) {
+					tasks.add(task);
+				}
+			}
+		} else if (from != null) {
+			tasks = schedule.getTasksByDateRange(from, to, status);
+		} else {
+			tasks = schedule.getAllTasks(status);
+		}
+
+		JsonArray tasksJson = new JsonArray();
+		for (Task task : tasks) {
+			tasksJson.add(toJson(task));
+		}
+		JsonObject body = new JsonObject();
+		body.add("tasks", tasksJson);
+		exchange.getResponseHeaders().set("ETag", eTag);
+		send(exchange, STATUS_OK, body);
+	}
+
+	private void getTask(HttpExchange exchange, int taskId) throws Exception {
+		String eTag = this.getETag();
+		if (isNotModified(exchange, eTag)) {
+			return;
+		}
+
+		Task task = schedule.getTask(taskId);
+		exchange.getResponseHeaders().set("ETag", eTag);
+		send(exchange, STATUS_OK, toJson(task));
+	}
+
+	private void addTask(HttpExchange exchange) throws Exception {
+		Task task = toTask(readBody(exchange));
+		int taskId = schedule.addTask(task);
+
+		exchange.getResponseHeaders().set("Location", PATH_TASKS + "/" + taskId);
+		send(exchange, STATUS_CREATED, toJson(schedule.getTask(taskId)));
+	}
+
+	private void updateTask(HttpExchange exchange, int taskId) throws Exception {
+		Task task = toTask(readBody(exchange));
+		Task taskToReplace = schedule.getTask(taskId);
+		if ((task instanceof FloatingTask) != (taskToReplace instanceof FloatingTask)) {
+			throw new InvalidFormatException(MESSAGE_FLOATING_CHANGED);
+		}
+		task.setTaskId(taskId);
+		task.setDateCreated(taskToReplace.getDateCreated());
+		task.setDateModified(new DateTime());
+		// The next sync updates the Google event or task of the replaced task rather than adding another
+		task.setGoogleId(taskToReplace.getGoogleId());
+		task.setSyncedVersion(taskToReplace.getSyncedVersion());
+		schedule.updateTask(task);
+
+		send(exchange, STATUS_OK, toJson(task));
+	}
+
+	private void deleteTask(HttpExchange exchange, int taskId) throws Exception {
+		schedule.deleteTaskById(taskId);
+
+		exchange.sendResponseHeaders(STATUS_NO_CONTENT, -1);
+	}
+
+	private String getETag() {
+		return "\"" + idOfStart + "-" + schedule.getVersion() + "\"";
+	}
+
+	/**
+	 * Answers 304 if the request's If-None-Match holds the tag, or *.
+	 * @return true if answered
+	 */
+	private static boolean isNotModified(HttpExchange exchange, String eTag) throws IOException {
+		String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+		if (ifNoneMatch == null) {
+			return false;
+		}
+
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(eTag)) {
+				exchange.getResponseHeaders().set("ETag", eTag);
+				exchange.sendResponseHeaders(STATUS_NOT_MODIFIED, -1);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String getBearerKey(HttpExchange exchange) {
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if (authorization == null || !authorization.startsWith(AUTHORIZATION_PREFIX)) {
+			return null;
+		}
+		return authorization.substring(AUTHORIZATION_PREFIX.length());
+	}
+
+	private static HashMap<String, String> parseQuery(String rawQuery) throws IOException {
+		HashMap<String, String> query = new HashMap<String, String>();
+		if (rawQuery == null) {
+			return query;
+		}
+
+		for (String parameter : rawQuery.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals == -1) {
+				query.put(URLDecoder.decode(parameter, CHARSET), "");
+			} else {
+				query.put(URLDecoder.decode(parameter.substring(0, equals), CHARSET),
+						URLDecoder.decode(parameter.substring(equals + 1), CHARSET));
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * @return body of the request as a JSON object
+	 * @throws InvalidFormatException the body is not a JSON object
+	 */
+	private static JsonObject readBody(HttpExchange exchange) throws IOException, InvalidFormatException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		InputStream input = exchange.getRequestBody();
+		byte[] buffer = new byte[4096];
+		int length;
+		while ((length = input.read(buffer)) != -1) {
+			body.write(buffer, 0, length);
+		}
+
+		try {
+			JsonElement json = new JsonParser().parse(body.toString(CHARSET));
+			if (!json.isJsonObject()) {
+				throw new InvalidFormatException(MESSAGE_INVALID_JSON);
+			}
+			return json.getAsJsonObject();
+		} catch (JsonParseException e) {
+			throw new InvalidFormatException(MESSAGE_INVALID_JSON);
+		}
+	}
+
+	/**
+	 * @return new task of the fields of the JSON object
+	 * @throws InvalidFormatException a time or the status cannot be read, or there is a start without an end
+	 */
+	private static Task toTask(JsonObject json) throws InvalidFormatException {
+		String title = getString(json, "title");
+		String description = getString(json, "description");
+		if (description == null) {
+			description = ""; //as a search reads the description of every task
+		}
+		DateTime start = parseDateTime("start", getString(json, "start"));
+		DateTime end = parseDateTime("end", getString(json, "end"));
+		DateTime deadline = parseDateTime("deadline", getString(json, "deadline"));
+
+		Task task;
+		if (start != null || end != null) {
+			if (start == null || end == null) {
+				throw new InvalidFormatException(MESSAGE_START_WITHOUT_END);
+			}
+			task = new TimedTask(title, description, start, end);
+		} else if (deadline != null) {
+			task = new DeadlineTask(title, description, deadline);
+		} else {
+			task = new FloatingTask(title, description);
+		}
+
+		Status status = parseStatus(getString(json, "status"));
+		task.setStatus((status == null) ? Status.INCOMPLETE : status);
+		return task;
+	}
+
+	/**
+	 * @return string of the field, or null if it is missing
+	 */
+	private static String getString(JsonObject json, String field) throws InvalidFormatException {
+		JsonElement value = json.get(field);
+		if (value == null || value.isJsonNull()) {
+			return null;
+		}
+		if (!value.isJsonPrimitive()) {
+			throw new InvalidFormatException(MESSAGE_INVALID_JSON);
+		}
+		return value.getAsString();
+	}
+
+	private static JsonObject toJson(Task task) {
+		JsonObject json = new JsonObject();
+		json.addProperty("id", task.getTaskId());
+		if (task instanceof TimedTask) {
+			json.addProperty("type", "timed");
+		} else if (task instanceof DeadlineTask) {
+			json.addProperty("type", "deadline");
+		} else {
+			json.addProperty("type", "floating");
+		}
+		json.addProperty("title", task.getTitle());
+		json.addProperty("description", (task.getDescription() == null) ? "" : task.getDescription());
+		Status status = (task.getStatus() == null) ? Status.INCOMPLETE : task.getStatus();
+		json.addProperty("status", status.toString().toLowerCase());
+
+		if (task instanceof TimedTask) {
+			addDateTime(json, "start", ((TimedTask) task).getStart());
+			addDateTime(json, "end", ((TimedTask) task).getEnd());
+		} else if (task instanceof DeadlineTask) {
+			addDateTime(json, "deadline", ((DeadlineTask) task).getDeadline());
+		}
+		addDateTime(json, "created", task.getDateCreated());
+		addDateTime(json, "modified", task.getDateModified());
+		return json;
+	}
+
+	private static void addDateTime(JsonObject json, String field, DateTime dateTime) {
+		if (dateTime != null) {
+			json.addProperty(field, DATE_TIME_PRINTER.print(dateTime));
+		}
+	}
+
+	/**
+	 * @return time, or null if there is none
+	 * @throws InvalidFormatException the time is not ISO 8601
+	 */
+	private static DateTime parseDateTime(String name, String value) throws InvalidFormatException {
+		if (value == null || value.isEmpty()) {
+			return null;
+		}
+
+		try {
+			return DATE_TIME_PARSER.parseDateTime(value);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidFormatException(String.format(MESSAGE_INVALID_DATE_TIME, name, value));
+		}
+	}
+
+	/**
+	 * @return status, or null if there is none
+	 * @throws InvalidFormatException the status is neither completed nor incomplete
+	 */
+	private static Status parseStatus(String value) throws InvalidFormatException {
+		if (value == null || value.isEmpty()) {
+			return null;
+		}
+
+		for (Status status : Status.values()) {
+			if (status.toString().equalsIgnoreCase(value)) {
+				return status;
+			}
+		}
+		throw new InvalidFormatException(String.format(MESSAGE_INVALID_STATUS, value));
+	}
+
+	private static void sendError(HttpExchange exchange, int statusCode, String message) throws IOException {
+		JsonObject body = new JsonObject();
+		body.addProperty("error", message);
+		send(exchange, statusCode, body);
+	}
+
+	private static void send(HttpExchange exchange, int statusCode, JsonElement body) throws IOException {
+		byte[] bytes = body.toString().getBytes(CHARSET);
+		exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE_JSON);
+		exchange.sendResponseHeaders(statusCode, bytes.length);
+		OutputStream output = exchange.getResponseBody();
+		output.write(bytes);
+		output.close();
+	}
+}
@@ -0,0 +1,196 @@
+package typetodo.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import typetodo.model.Task;
+import typetodo.sync.GoogleStandInServer;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Tests the tasks added, read, replaced, searched and deleted through the ApiServer, that lists are answered
+ * 304 until a task changes when their ETag is sent back, and that requests without the key or with invalid
+ * tasks are refused.
+ * @author A0091024U
+ *
+ */
+public class ApiServerATD {
+	private static final String TITLE = "task sent to the api server";
+	private Schedule schedule;
+	private ApiServer apiServer;
+	private File file;
+	private String key;
+	private long versionBefore;
+
+	/**
+	 * Response to a request, with its status, ETag and body.
+	 */
+	private static class Response {
+		private int status;
+		private String eTag;
+		private String location;
+		private JsonObject body;
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		schedule = new Schedule();
+		file = File.createTempFile("apiserver", ".txt");
+		versionBefore = schedule.getVersion();
+		apiServer = new ApiServer(schedule, file);
+		apiServer.start();
+		key = ServerFile.read(file)[1];
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		apiServer.stop();
+		for (Task task : schedule.getAllTasks(null)) {
+			if (task.getTitle().startsWith(TITLE)) {
+				schedule.deleteTaskById(task.getTaskId());
+			}
+		}
+	}
+
+	@Test
+	public void TasksAreAddedReadReplacedSearchedAndDeleted() throws IOException {
+		Response added = request("POST", "/api/tasks", key, "{\"title\":\"" + TITLE + "\","
+				+ "\"start\":\"2014-11-03T09:00:00.000+08:00\",\"end\":\"2014-11-03T11:00:00.000+08:00\"}", null);
+		assertEquals(201, added.status);
+		assertEquals("timed", added.body.get("type").getAsString());
+		String path = added.location;
+		assertEquals("/api/tasks/" + added.body.get("id").getAsInt(), path);
+
+		Response replaced = request("PUT", path, key, "{\"title\":\"" + TITLE + " renamed\","
+				+ "\"deadline\":\"2014-11-04\",\"status\":\"completed\"}", null);
+		assertEquals(200, replaced.status);
+		Response read = request("GET", path, key, null, null);
+		assertEquals(TITLE + " renamed", read.body.get("title").getAsString());
+		assertEquals("deadline", read.body.get("type").getAsString());
+		assertEquals("completed", read.body.get("status").getAsString());
+
+		Response found = request("GET", "/api/tasks?q=" + (TITLE + " renamed").replace(" ", "+")
+				+ "&status=completed", key, null, null);
+		assertEquals(1, found.body.getAsJsonArray("tasks").size());
+
+		assertEquals(204, request("DELETE", path, key, null, null).status);
+		assertEquals(404, request("GET", path, key, null, null).status);
+		assertEquals(404, request("DELETE", path, key, null, null).status);
+		assertEquals(3, schedule.getVersion() - versionBefore);
+	}
+
+	@Test
+	public void ListsAreNotModifiedUntilATaskChanges() throws IOException {
+		Response list = request("GET", "/api/tasks", key, null, null);
+		assertEquals(200, list.status);
+		assertNotNull(list.eTag);
+
+		Response notModified = request("GET", "/api/tasks", key, null, list.eTag);
+		assertEquals(304, notModified.status);
+		assertEquals(list.eTag, notModified.eTag);
+
+		request("POST", "/api/tasks", key, "{\"title\":\"" + TITLE + "\"}", null);
+		Response modified = request("GET", "/api/tasks", key, null, list.eTag);
+		assertEquals(200, modified.status);
+		assertTrue(!list.eTag.equals(modified.eTag));
+		assertEquals(list.body.getAsJsonArray("tasks").size() + 1, modified.body.getAsJsonArray("tasks").size());
+	}
+
+	@Test
+	public void RequestsWithoutTheKeyOrWithInvalidTasksAreRefused() throws IOException {
+		assertEquals(401, request("GET", "/api/tasks", null, null, null).status);
+		assertEquals(401, request("GET", "/api/tasks", "0123456789abcdef0123456789abcdef", null, null).status);
+		assertEquals(400, request("POST", "/api/tasks", key, "not json", null).status);
+		assertEquals(400, request("POST", "/api/tasks", key, "{\"description\":\"no title\"}", null).status);
+		assertEquals(400, request("POST", "/api/tasks", key, "{\"title\":\"" + TITLE + "\","
+				+ "\"start\":\"2014-11-03T09:00\"}", null).status);
+		assertEquals(400, request("GET", "/api/tasks?from=2014-11-03", key, null, null).status);
+		assertEquals(405, request("DELETE", "/api/tasks", key, null, null).status);
+		assertEquals(0, schedule.getVersion() - versionBefore);
+	}
+
+	@Test
+	public void ReplacedTasksAreSyncedToTheirGoogleEvent() throws Exception {
+		GoogleStandInServer server = new GoogleStandInServer();
+		try {
+			Response added = request("POST", "/api/tasks", key, "{\"title\":\"" + TITLE + "\","
+					+ "\"start\":\"2014-11-03T09:00:00.000+08:00\",\"end\":\"2014-11-03T11:00:00.000+08:00\"}", null);
+			server.syncLocalSchedule();
+			assertEquals(1, server.getNumberOfEvents(TITLE));
+
+			assertEquals(200, request("PUT", added.location, key, "{\"title\":\"" + TITLE + " replaced\","
+					+ "\"deadline\":\"2014-11-04\"}", null).status);
+			server.syncLocalSchedule();
+			server.expireSyncTokens();
+			server.syncLocalSchedule();
+
+			assertEquals(0, server.getNumberOfEvents(TITLE));
+			assertEquals(1, server.getNumberOfEvents(TITLE + " replaced"));
+			int numberOfLocalTasks = 0;
+			for (Task task : schedule.getAllTasks(null)) {
+				numberOfLocalTasks += task.getTitle().startsWith(TITLE) ? 1 : 0;
+			}
+			assertEquals(1, numberOfLocalTasks);
+
+			// A floating task is a Google task rather than an event, so it cannot replace one
+			assertEquals(400, request("PUT", added.location, key, "{\"title\":\"" + TITLE + "\"}", null).status);
+		} finally {
+			server.stop();
+		}
+	}
+
+	private Response request(String method, String path, String keyOfRequest, String body, String ifNoneMatch)
+			throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + apiServer.getPort()
+				+ path).openConnection();
+		connection.setRequestMethod(method);
+		if (keyOfRequest != null) {
+			connection.setRequestProperty("Authorization", "Bearer " + keyOfRequest);
+		}
+		if (ifNoneMatch != null) {
+			connection.setRequestProperty("If-None-Match", ifNoneMatch);
+		}
+		if (body != null) {
+			connection.setDoOutput(true);
+			OutputStream output = connection.getOutputStream();
+			output.write(body.getBytes("UTF-8"));
+			output.close();
+		}
+
+		Response response = new Response();
+		response.status = connection.getResponseCode();
+		response.eTag = connection.getHeaderField("ETag");
+		response.location = connection.getHeaderField("Location");
+		InputStream input = (response.status < 400) ? connection.getInputStream() : connection.getErrorStream();
+		if (input != null) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int length;
+			while ((length = input.read(buffer)) != -1) {
+				bytes.write(buffer, 0, length);
+			}
+			input.close();
+			if (bytes.size() > 0) {
+				JsonElement json = new JsonParser().parse(bytes.toString("UTF-8"));
+				response.body = json.getAsJsonObject();
+			}
+		}
+		return response;
+	}
+}
@@ -0,0 +1,133 @@
+package typetodo.logic;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * The CommandClient sends a command line to the TypeToDo that is running, through its CommandServer, and
+ * returns the feedback. It loads neither the window, the schedule nor any library, so a script can add a task
+ * quickly, such as with:
+ * java typetodo.logic.CommandClient add buy milk; tmr 4pm
+ * which prints the feedback and exits with 0 if the command succeeded, 1 if it failed and 2 if TypeToDo is
+ * not running.
+ * @author A0091024U
+ *
+ */
+public class CommandClient {
+	private static final String MESSAGE_NOT_RUNNING = "TypeToDo is not running";
+	private static final int TIMEOUT_OF_CONNECTION_IN_MILLIS = 1000;
+	private static final int EXIT_STATUS_FAILED = 1;
+	private static final int EXIT_STATUS_NOT_RUNNING = 2;
+
+	/**
+	 * Reply of the running TypeToDo to a command.
+	 */
+	public static class Reply {
+		private final boolean isSuccessful;
+		private final String feedback;
+
+		private Reply(boolean isSuccessful, String feedback) {
+			this.isSuccessful = isSuccessful;
+			this.feedback = feedback;
+		}
+
+		/**
+		 * @return false if the command could not be parsed or executed
+		 */
+		public boolean isSuccessful() {
+			return isSuccessful;
+		}
+
+		/**
+		 * @return feedback of the command, or the message of its error
+		 */
+		public String getFeedback() {
+			return feedback;
+		}
+	}
+
+	public static void main(String[] args) {
+		StringBuilder userInput = new StringBuilder();
+		for (String arg : args) {
+			userInput.append((userInput.length() == 0) ? "" : " ").append(arg);
+		}
+
+		try {
+			Reply reply = send(userInput.toString());
+			System.out.println(reply.getFeedback());
+			if (!reply.isSuccessful()) {
+				System.exit(EXIT_STATUS_FAILED);
+			}
+		} catch (IOException e) {
+			if (isNotRunning(e)) {
+				System.err.println(MESSAGE_NOT_RUNNING);
+				System.exit(EXIT_STATUS_NOT_RUNNING);
+			}
+			System.err.println(e.getMessage());
+			System.exit(EXIT_STATUS_FAILED);
+		}
+	}
+
+	/**
+	 * Tells a TypeToDo that is not running from a failure after the command was sent, in which case the command
+	 * may have been executed and must not be sent again.
+	 * @param e exception thrown by send
+	 * @return true if there is no server file or nothing listens on its port, so the command was not sent
+	 */
+	public static boolean isNotRunning(IOException e) {
+		return e instanceof FileNotFoundException || e instanceof ConnectException;
+	}
+
+	/**
+	 * Sends the command to the TypeToDo whose saved files are in the working directory, and waits for it to be
+	 * executed.
+	 * @param userInput raw user input, on one line
+	 * @throws IOException TypeToDo is not running, or the connection to it failed
+	 */
+	public static Reply send(String userInput) throws IOException {
+		return send(ServerFile.inSavedFiles(CommandServer.FILENAME_SERVER), userInput);
+	}
+
+	/**
+	 * @param file file the CommandServer wrote its port and key to
+	 */
+	static Reply send(File file, String userInput) throws IOException {
+		String[] portAndKey = ServerFile.read(file);
+		int port = Integer.parseInt(portAndKey[0]);
+
+		Socket socket = new Socket();
+		try {
+			socket.setTcpNoDelay(true);
+			socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+					TIMEOUT_OF_CONNECTION_IN_MILLIS);
+			Writer writer = new OutputStreamWriter(socket.getOutputStream(), CommandServer.CHARSET);
+			writer.write(portAndKey[1] + "\n" + userInput.replace('\r', ' ').replace('\n', ' ') + "\n");
+			writer.flush();
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+					CommandServer.CHARSET));
+			String status = reader.readLine();
+			if (status == null) {
+				throw new IOException("TypeToDo closed the connection without a reply");
+			}
+			StringBuilder feedback = new StringBuilder();
+			char[] buffer = new char[1024];
+			int length;
+			while ((length = reader.read(buffer)) != -1) {
+				feedback.append(buffer, 0, length);
+			}
+			return new Reply(status.equals(CommandServer.REPLY_OK), feedback.toString());
+		} finally {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package typetodo.logic;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import typetodo.db.TaskChangePublisher;
+import typetodo.model.TaskChange;
+
+/**
+ * The CommandExecutor runs the user's commands on a single background thread so that parsing, saving
+ * and formatting of tasks never block the Swing event dispatch thread. Commands are executed one at a
+ * time, in the order they were submitted. If more commands are already waiting in the queue, the
+ * current command skips refreshing the task list since the next command will refresh it anyway.
+ * The task list is also refreshed by itself when a highlight expires or a task becomes overdue, or when the
+ * tasks are changed other than by a command.
+ * @author A0091024U
+ *
+ */
+public class CommandExecutor {
+	private static final String THREAD_NAME = "TypeToDo-CommandExecutor";
+
+	private final MainController mainController;
+	private final ScheduledExecutorService executor;
+	private final AtomicInteger numberOfPendingCommands;
+	private final AtomicBoolean isRefreshQueued;
+	// Only accessed from the executor thread
+	private ScheduledFuture<?> scheduledRefresh;
+
+	public CommandExecutor(MainController mainController) {
+		this.mainController = mainController;
+		this.numberOfPendingCommands = new AtomicInteger(0);
+		this.isRefreshQueued = new AtomicBoolean(false);
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				scheduleNextRefresh();
+			}
+		});
+	}
+
+	/**
+	 * Queues the given user input for execution. This method returns immediately.
+	 * @param userInput raw user input
+	 * @return feedback of the command once it has been executed, or the exception of a command that failed.
+	 *         It is given before the task list is refreshed, so that a command sent by the CommandClient is
+	 *         answered without waiting for the display.
+	 */
+	public Future<String> submit(final String userInput) {
+		numberOfPendingCommands.incrementAndGet();
+		final FutureTask<String> command = new FutureTask<String>(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return mainController.parseAndExecute(userInput, false);
+			}
+		});
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				boolean isLastPendingCommand = (numberOfPendingCommands.decrementAndGet() == 0);
+				command.run();
+				if (isLastPendingCommand) {
+					mainController.refreshDisplay();
+					scheduleNextRefresh();
+				}
+			}
+		});
+		return command;
+	}
+
+	/**
+	 * Refreshes the task list whenever the schedule publishes a change, so that tasks changed through the
+	 * ApiServer or by a sync are displayed without waiting for the next command.
+	 */
+	public void refreshOnChanges(Schedule schedule) {
+		schedule.subscribe(new TaskChangePublisher.Subscriber() {
+			private TaskChangePublisher.Subscription subscription;
+
+			@Override
+			public void onSubscribe(TaskChangePublisher.Subscription subscription) {
+				this.subscription = subscription;
+				subscription.request(1);
+			}
+
+			@Override
+			public void onNext(TaskChange change) {
+				refreshDisplay();
+				subscription.request(1);
+			}
+		});
+	}
+
+	/**
+	 * Queues a refresh of the task list, such as after tasks were changed through the ApiServer rather than by
+	 * a command. Refreshes asked for while one is queued are done by that one, and the refresh is skipped if
+	 * commands are waiting, since the last of them refreshes the task list anyway, or if the tasks displayed
+	 * are already up to date.
+	 */
+	public void refreshDisplay() {
+		if (!isRefreshQueued.compareAndSet(false, true)) {
+			return;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				isRefreshQueued.set(false);
+				if (numberOfPendingCommands.get() == 0 && mainController.isDisplayOutdated()) {
+					mainController.refreshDisplay();
+					scheduleNextRefresh();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Schedules the task list to be refreshed when the next highlight expires or the next task becomes
+	 * overdue, replacing the refresh that was scheduled before.
+	 */
+	private void scheduleNextRefresh() {
+		if (scheduledRefresh != null) {
+			scheduledRefresh.cancel(false);
+			scheduledRefresh = null;
+		}
+
+		long delay = TasksFormatter.getMillisUntilNextRefresh();
+		if (delay == TasksFormatter.NO_REFRESH || executor.isShutdown()) {
+			return;
+		}
+
+		scheduledRefresh = executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (numberOfPendingCommands.get() == 0) {
+					mainController.refreshDisplay();
+				}
+				scheduleNextRefresh();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops accepting new commands. Commands that are already queued will still be executed.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,114 @@
+package typetodo.logic;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTimeUtils.MillisProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import typetodo.model.Task;
+import typetodo.ui.View;
+
+/**
+ * Tests that the CommandExecutor refreshes the task list by itself when a highlight expires. The clock of the
+ * TasksFormatter is set ahead of the system clock, so that a task added now has almost used up its highlight
+ * and the refresh is scheduled well before the highlight would expire by the system clock.
+ * @author A0091024U
+ *
+ */
+public class CommandExecutorATD {
+	private static final String TITLE = "task highlighted by the command executor";
+	private static final long MILLIS_AHEAD = TasksFormatter.HIGHLIGHT_DURATION.getMillis() - 500;
+	private static final long MILLIS_TO_WAIT = 3000;
+	private Schedule schedule;
+	private CommandExecutor commandExecutor;
+	private LinkedBlockingQueue<List<String>> displayedRows;
+
+	@Before
+	public void setUp() throws IOException {
+		TasksFormatter.setClock(new MillisProvider() {
+			@Override
+			public long getMillis() {
+				return System.currentTimeMillis() + MILLIS_AHEAD;
+			}
+		});
+		displayedRows = new LinkedBlockingQueue<List<String>>();
+		schedule = new Schedule();
+		commandExecutor = new CommandExecutor(new MainController(new View() {
+			@Override
+			public boolean disableInput() {
+				return true;
+			}
+
+			@Override
+			public boolean enableInput() {
+				return true;
+			}
+
+			@Override
+			public void displayFeedBack(String feedBack) {
+			}
+
+			@Override
+			public void displayErrorMessage(String errorMessage) {
+			}
+
+			@Override
+			public void displayTasks(List<String> taskRows) {
+				displayedRows.add(taskRows);
+			}
+
+			@Override
+			public void displayHelp(String helpMessage) {
+			}
+		}, schedule));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		commandExecutor.shutdown();
+		TasksFormatter.setClock(null);
+		for (Task task : schedule.getAllTasks(null)) {
+			if (task.getTitle().equals(TITLE)) {
+				schedule.deleteTaskById(task.getTaskId());
+			}
+		}
+	}
+
+	@Test
+	public void TaskListIsRefreshedWhenTheHighlightExpires() throws Exception {
+		commandExecutor.submit("add " + TITLE + "; tmr 4pm").get();
+		long millisAdded = System.currentTimeMillis();
+
+		while (true) {
+			List<String> rows = displayedRows.poll(MILLIS_TO_WAIT, TimeUnit.MILLISECONDS);
+			if (rows == null) {
+				fail("The task list was not refreshed when the highlight expired");
+			}
+
+			String row = getRowOfTask(rows);
+			if (row != null && !row.contains(TasksFormatter.ROW_MARKER)) {
+				break;
+			}
+		}
+		// The refresh followed the clock of the formatter rather than the system clock
+		long millisUntilRefresh = System.currentTimeMillis() - millisAdded;
+		assertTrue(millisUntilRefresh < TasksFormatter.HIGHLIGHT_DURATION.getMillis());
+	}
+
+	private static String getRowOfTask(List<String> rows) {
+		for (String row : rows) {
+			if (row.contains(TITLE)) {
+				return row;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,38 @@
+package typetodo.logic;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+
+import typetodo.model.Task;
+
+/**
+ * Concrete command class for exporting every task to a CSV file, which is written one task at a time.
+ * @author A0091024U
+ *
+ */
+public class CommandExportCsv implements Command {
+	private static final String MESSAGE_EXPORTED = "%,d tasks have been exported to %s";
+	private static final String CHARSET = "UTF-8";
+	private Schedule schedule;
+	private File file;
+	
+	public CommandExportCsv(Schedule schedule, String filePath) {
+		this.schedule = schedule;
+		this.file = new File(filePath);
+	}
+	
+	@Override
+	public String execute() throws Exception {
+		CsvWriter writer = new CsvWriter(new OutputStreamWriter(new FileOutputStream(file), CHARSET));
+		try {
+			for (Task task : schedule.getAllTasks(null)) {
+				writer.writeTask(task);
+			}
+		} finally {
+			writer.close();
+		}
+		
+		return String.format(MESSAGE_EXPORTED, writer.getNumberOfTasks(), file.getName());
+	}
+}
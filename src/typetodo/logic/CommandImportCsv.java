@@ -0,0 +1,71 @@
+package typetodo.logic;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Concrete command class for importing the records of a CSV file as tasks. The records are parsed in
+ * parallel by the CsvReader, and the tasks read are added to the schedule together, so that it is saved once.
+ * Records that cannot be read are left out and reported by line.
+ * @author A0091024U
+ *
+ */
+public class CommandImportCsv implements Command {
+	private static final String MESSAGE_IMPORTED = "%,d tasks have been imported from %s";
+	private static final String MESSAGE_IMPORTED_WITH_ERRORS = "%,d tasks have been imported from %s, "
+			+ "%,d records were left out:";
+	private static final String MESSAGE_MORE_ERRORS = "...and %,d more";
+	private static final String CHARSET = "UTF-8";
+	private static final int MAX_ERRORS_SHOWN = 10;
+	private Schedule schedule;
+	private File file;
+	
+	public CommandImportCsv(Schedule schedule, String filePath) {
+		this.schedule = schedule;
+		this.file = new File(filePath);
+	}
+	
+	@Override
+	public String execute() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool();
+		Reader reader = new InputStreamReader(new FileInputStream(file), CHARSET);
+		CsvReader.Result result;
+		try {
+			result = new CsvReader(pool).read(reader);
+		} finally {
+			pool.shutdown();
+			close(reader);
+		}
+		
+		if (!result.getTasks().isEmpty()) {
+			schedule.addTasks(result.getTasks());
+		}
+		
+		List<String> errors = result.getErrors();
+		if (errors.isEmpty()) {
+			return String.format(MESSAGE_IMPORTED, result.getTasks().size(), file.getName());
+		}
+		StringBuilder feedback = new StringBuilder(String.format(MESSAGE_IMPORTED_WITH_ERRORS, 
+				result.getTasks().size(), file.getName(), errors.size()));
+		for (String error : errors.subList(0, Math.min(errors.size(), MAX_ERRORS_SHOWN))) {
+			feedback.append("\n").append(error);
+		}
+		if (errors.size() > MAX_ERRORS_SHOWN) {
+			feedback.append("\n").append(String.format(MESSAGE_MORE_ERRORS, errors.size() - MAX_ERRORS_SHOWN));
+		}
+		return feedback.toString();
+	}
+	
+	private static void close(Reader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			//nothing was written to the file
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package typetodo.logic;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+import typetodo.model.Task;
+
+/**
+ * Concrete command class for importing the events and to-dos of an iCalendar (.ics) file as tasks. The file
+ * is read one record at a time, and the tasks are added to the schedule in batches, so that the schedule is
+ * saved once for every batch rather than once for every task. Every save writes the whole schedule, so the
+ * batches are large.
+ * @author A0091024U
+ *
+ */
+public class CommandImportIcs implements Command {
+	private static final String MESSAGE_IMPORTED = "%,d tasks have been imported from %s";
+	private static final String MESSAGE_IMPORTED_WITH_SKIPPED = "%,d tasks have been imported from %s, "
+			+ "%,d records without a title or valid times were skipped";
+	private static final String CHARSET = "UTF-8";
+	private static final int BATCH_SIZE = 50000;
+	private Schedule schedule;
+	private File file;
+	
+	public CommandImportIcs(Schedule schedule, String filePath) {
+		this.schedule = schedule;
+		this.file = new File(filePath);
+	}
+	
+	@Override
+	public String execute() throws Exception {
+		int numberOfTasks = 0;
+		IcsReader reader = new IcsReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+		try {
+			ArrayList<Task> batch = new ArrayList<Task>();
+			Task task;
+			while ((task = reader.readTask()) != null) {
+				batch.add(task);
+				if (batch.size() == BATCH_SIZE) {
+					numberOfTasks += this.addBatch(batch);
+				}
+			}
+			numberOfTasks += this.addBatch(batch);
+		} finally {
+			close(reader);
+		}
+		
+		if (reader.getNumberOfSkippedRecords() > 0) {
+			return String.format(MESSAGE_IMPORTED_WITH_SKIPPED, numberOfTasks, file.getName(), 
+					reader.getNumberOfSkippedRecords());
+		}
+		return String.format(MESSAGE_IMPORTED, numberOfTasks, file.getName());
+	}
+	
+	/**
+	 * Adds the tasks of the batch to the schedule and empties the batch.
+	 * @return number of tasks added
+	 */
+	private int addBatch(ArrayList<Task> batch) throws Exception {
+		int numberOfTasks = batch.size();
+		if (numberOfTasks > 0) {
+			schedule.addTasks(batch);
+			batch.clear();
+		}
+		return numberOfTasks;
+	}
+	
+	private static void close(IcsReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			//nothing was written to the file
+		}
+	}
+}
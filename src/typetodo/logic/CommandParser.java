@@ -21,12 +21,12 @@ import typetodo.exception.MissingFieldException;
 import typetodo.exception.ReservedCharacterException;
 import typetodo.model.FieldName;
 import typetodo.model.TaskType;
-import typetodo.sync.SyncController;
+import typetodo.sync.SyncFacade;
 
 public class CommandParser {
 	private Schedule schedule;
 	private MainController sc;
-	private SyncController syncController;
+	private SyncFacade syncFacade;
 	private HelpController helpController;
 	private CurrentTaskListManager taskListManager;
 
@@ -47,14 +47,20 @@ public class CommandParser {
 	private static final String MESSAGE_EXCEPTION_INVALID_SEARCH = "INVALID FORMAT. Please refer to catalog by entering 'help search'";
 	private static final String MESSAGE_EXCEPTION_INVALID_DISPLAY = "INVALID FORMAT. Please refer to catalog by entering 'help display'";
 	private static final String MESSAGE_EXCEPTION_INVALID_DONE = "INVALID FORMAT. Please refer to catalog by entering 'help done'";
+	private static final String MESSAGE_EXCEPTION_INVALID_SYNC = "INVALID FORMAT. Please refer to catalog by entering 'help sync'";
+	private static final String MESSAGE_EXCEPTION_INVALID_IMPORT = "INVALID FORMAT. Please refer to catalog by entering 'help import'";
+	private static final String MESSAGE_EXCEPTION_INVALID_EXPORT = "INVALID FORMAT. Please refer to catalog by entering 'help export'";
+	private static final int DEFAULT_NUMBER_OF_SYNCS_IN_HISTORY = 5;
+	private static final String FILE_FORMAT_ICS = "ics";
+	private static final String FILE_FORMAT_CSV = "csv";
 
 	public CommandParser(MainController sc, Schedule schedule,
 			CurrentTaskListManager taskListManager,
-			SyncController syncController, HelpController helpController) {
+			SyncFacade syncFacade, HelpController helpController) {
 		this.sc = sc;
 		this.schedule = schedule;
 		this.taskListManager = taskListManager;
-		this.syncController = syncController;
+		this.syncFacade = syncFacade;
 		this.helpController = helpController;
 	}
 
@@ -94,6 +100,8 @@ public class CommandParser {
 		commandSynonyms.put(CommandType.UNDO, Arrays.asList("undo"));
 		commandSynonyms.put(CommandType.EXIT, Arrays.asList("exit"));
 		commandSynonyms.put(CommandType.SYNC, Arrays.asList("sync"));
+		commandSynonyms.put(CommandType.IMPORT, Arrays.asList("import"));
+		commandSynonyms.put(CommandType.EXPORT, Arrays.asList("export"));
 
 		for (CommandType commandType : commandSynonyms.keySet()) {
 			if (commandSynonyms.get(commandType).contains(command)) {
@@ -364,6 +372,93 @@ public class CommandParser {
 		return helpType;
 	}
 
+	/**
+	 * @return minutes between automatic syncs given after 'sync auto', or 0 if
+	 *         it is 'off'
+	 * @throws InvalidFormatException
+	 *           the interval is missing or not a whole number of minutes
+	 */
+	private long getSyncInterval(String userInput) throws InvalidFormatException {
+		Scanner scanner = new Scanner(userInput);
+		scanner.next();// throw away command
+		scanner.next();// throw away sync type
+		String interval = scanner.hasNext() ? scanner.next() : "";
+		scanner.close();
+
+		if (interval.equalsIgnoreCase("off")) {
+			return 0;
+		}
+		try {
+			long intervalMinutes = Long.parseLong(interval);
+			if (intervalMinutes < 0) {
+				throw new InvalidFormatException(MESSAGE_EXCEPTION_INVALID_SYNC);
+			}
+			return intervalMinutes;
+		} catch (NumberFormatException e) {
+			throw new InvalidFormatException(MESSAGE_EXCEPTION_INVALID_SYNC);
+		}
+	}
+
+	/**
+	 * @return format of the file given after 'import' or 'export', ics or csv
+	 * @throws InvalidFormatException
+	 *           the format is neither ics nor csv, or the file is missing
+	 */
+	private String getFileFormat(String userInput, String messageOfInvalidFormat)
+			throws InvalidFormatException {
+		String[] words = userInput.trim().split("\\s+", 3);
+		if (words.length < 3
+				|| !(words[1].equalsIgnoreCase(FILE_FORMAT_ICS) || words[1].equalsIgnoreCase(FILE_FORMAT_CSV))) {
+			throw new InvalidFormatException(messageOfInvalidFormat);
+		}
+		return words[1].toLowerCase();
+	}
+
+	/**
+	 * @return path of the file given after the format, such as in 'import ics
+	 *         <file>', without the quotes around it if any
+	 * @throws InvalidFormatException
+	 *           the format is neither ics nor csv, or the file is missing
+	 */
+	private String getFilePath(String userInput, String messageOfInvalidFormat)
+			throws InvalidFormatException {
+		getFileFormat(userInput, messageOfInvalidFormat);
+		String[] words = userInput.trim().split("\\s+", 3);
+
+		String filePath = words[2].trim();
+		if (filePath.length() > 2 && filePath.startsWith("\"") && filePath.endsWith("\"")) {
+			filePath = filePath.substring(1, filePath.length() - 1);
+		}
+		return filePath;
+	}
+
+	/**
+	 * @return number of syncs given after 'sync history', or the default if none
+	 *         is given
+	 * @throws InvalidFormatException
+	 *           the number is not a positive whole number
+	 */
+	private int getNumberOfSyncs(String userInput) throws InvalidFormatException {
+		Scanner scanner = new Scanner(userInput);
+		scanner.next();// throw away command
+		scanner.next();// throw away sync type
+		String numberOfSyncs = scanner.hasNext() ? scanner.next() : null;
+		scanner.close();
+
+		if (numberOfSyncs == null) {
+			return DEFAULT_NUMBER_OF_SYNCS_IN_HISTORY;
+		}
+		try {
+			int number = Integer.parseInt(numberOfSyncs);
+			if (number <= 0) {
+				throw new InvalidFormatException(MESSAGE_EXCEPTION_INVALID_SYNC);
+			}
+			return number;
+		} catch (NumberFormatException e) {
+			throw new InvalidFormatException(MESSAGE_EXCEPTION_INVALID_SYNC);
+		}
+	}
+
 	/**
 	 * convert from string to FieldName and return FieldName.
 	 * 
@@ -543,7 +638,32 @@ public class CommandParser {
 			break;
 
 		case SYNC:
-			command = new CommandSync(syncController);
+			String syncType = getHelpType(userInput);
+			if (syncType.equals("status")) {
+				command = new CommandSyncStatus(syncFacade);
+			} else if (syncType.equals("history")) {
+				command = new CommandSyncHistory(syncFacade, getNumberOfSyncs(userInput));
+			} else if (syncType.equals("auto")) {
+				command = new CommandSyncAuto(syncFacade, getSyncInterval(userInput));
+			} else {
+				command = new CommandSync(syncFacade, syncType.equals("plan") || syncType.equals("preview"));
+			}
+			break;
+
+		case IMPORT:
+			if (getFileFormat(userInput, MESSAGE_EXCEPTION_INVALID_IMPORT).equals(FILE_FORMAT_CSV)) {
+				command = new CommandImportCsv(schedule, getFilePath(userInput, MESSAGE_EXCEPTION_INVALID_IMPORT));
+			} else {
+				command = new CommandImportIcs(schedule, getFilePath(userInput, MESSAGE_EXCEPTION_INVALID_IMPORT));
+			}
+			break;
+
+		case EXPORT:
+			if (getFileFormat(userInput, MESSAGE_EXCEPTION_INVALID_EXPORT).equals(FILE_FORMAT_CSV)) {
+				command = new CommandExportCsv(schedule, getFilePath(userInput, MESSAGE_EXCEPTION_INVALID_EXPORT));
+			} else {
+				command = new CommandExportIcs(schedule, getFilePath(userInput, MESSAGE_EXCEPTION_INVALID_EXPORT));
+			}
 			break;
 
 		default:
@@ -0,0 +1,191 @@
+package typetodo.logic;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CommandServer lets a second launch of TypeToDo, or a script, send a command line to the instance that
+ * is already running, rather than waiting for another JVM to load the window and the schedule. It listens on
+ * the loopback address only, at a port chosen by the system, and writes the port to a file next to the saved
+ * tasks together with a random key, in a ServerFile. Only the user who can read the file can send commands,
+ * as every request must start with the key.
+ * Each connection carries one request, the key and the command line on a line each, and is answered with OK
+ * or ERROR on the first line followed by the feedback. Connections are handled by worker threads, so that a
+ * client waiting for a slow command does not hold up the others. The commands are queued on the
+ * CommandExecutor like those typed in the window, so they are executed one at a time, in the order they
+ * arrive.
+ * @author A0091024U
+ *
+ */
+public class CommandServer {
+	static final String FILENAME_SERVER = "commandserver.txt";
+	static final String CHARSET = ServerFile.CHARSET;
+	static final String REPLY_OK = "OK";
+	static final String REPLY_ERROR = "ERROR";
+	private static final String MESSAGE_INVALID_KEY = "The key of the request is not the key of this TypeToDo";
+	private static final String THREAD_NAME = "TypeToDo-CommandServer";
+	private static final String WORKER_THREAD_NAME = "TypeToDo-CommandServerWorker";
+	private static final int MAX_WAITING_CONNECTIONS = 16;
+	private static final int MAX_WORKERS = 4;
+	private static final int IDLE_SECONDS_OF_WORKERS = 30;
+	// A client that stops sending its request does not hold up the others for longer than this
+	private static final int TIMEOUT_OF_REQUEST_IN_MILLIS = 5000;
+
+	private final CommandExecutor commandExecutor;
+	private final File file;
+	private ServerSocket serverSocket;
+	private ThreadPoolExecutor workers;
+	private String key;
+
+	public CommandServer(CommandExecutor commandExecutor) {
+		this(commandExecutor, ServerFile.inSavedFiles(FILENAME_SERVER));
+	}
+
+	/**
+	 * @param file file the port and the key are written to
+	 */
+	CommandServer(CommandExecutor commandExecutor, File file) {
+		this.commandExecutor = commandExecutor;
+		this.file = file;
+	}
+
+	/**
+	 * Starts listening for commands on a background thread, and writes the port and the key to the file.
+	 * @throws IOException the socket could not be opened or the file could not be written
+	 */
+	public synchronized void start() throws IOException {
+		key = ServerFile.createKey();
+		serverSocket = new ServerSocket(0, MAX_WAITING_CONNECTIONS, InetAddress.getLoopbackAddress());
+		try {
+			ServerFile.write(file, serverSocket.getLocalPort(), key);
+		} catch (IOException e) {
+			serverSocket.close();
+			throw e;
+		}
+
+		workers = new ThreadPoolExecutor(MAX_WORKERS, MAX_WORKERS, IDLE_SECONDS_OF_WORKERS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, WORKER_THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		workers.allowCoreThreadTimeOut(true); //no threads are kept while no command is sent
+
+		final ServerSocket listeningSocket = serverSocket;
+		final ThreadPoolExecutor listeningWorkers = workers;
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				serve(listeningSocket, listeningWorkers);
+			}
+		}, THREAD_NAME);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops listening for commands and deletes the file. Connections that are already accepted are still
+	 * answered, and commands that are already queued will still be executed.
+	 */
+	public synchronized void stop() {
+		if (serverSocket == null) {
+			return;
+		}
+
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			//the socket is closed anyway
+		}
+		serverSocket = null;
+		workers.shutdown();
+		workers = null;
+		file.delete();
+	}
+
+	/**
+	 * @return port of the socket listened on, or -1 if the server is not started
+	 */
+	public synchronized int getPort() {
+		return (serverSocket == null) ? -1 : serverSocket.getLocalPort();
+	}
+
+	private void serve(ServerSocket listeningSocket, ThreadPoolExecutor listeningWorkers) {
+		while (!listeningSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = listeningSocket.accept();
+			} catch (IOException e) {
+				continue; //the socket was closed by stop(), or the connection failed
+			}
+			try {
+				listeningWorkers.execute(new Runnable() {
+					@Override
+					public void run() {
+						handle(socket);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				close(socket); //the server was stopped after the connection was accepted
+			}
+		}
+	}
+
+	/**
+	 * Reads the request of the connection, and replies with the feedback of its command once executed.
+	 */
+	private void handle(Socket socket) {
+		try {
+			socket.setSoTimeout(TIMEOUT_OF_REQUEST_IN_MILLIS);
+			socket.setTcpNoDelay(true);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), CHARSET));
+			String keyOfRequest = reader.readLine();
+			String userInput = reader.readLine();
+
+			String reply;
+			if (!ServerFile.isKey(key, keyOfRequest) || userInput == null) {
+				reply = REPLY_ERROR + "\n" + MESSAGE_INVALID_KEY;
+			} else {
+				try {
+					reply = REPLY_OK + "\n" + commandExecutor.submit(userInput).get();
+				} catch (ExecutionException e) {
+					reply = REPLY_ERROR + "\n" + e.getCause().getMessage();
+				}
+			}
+
+			Writer writer = new OutputStreamWriter(socket.getOutputStream(), CHARSET);
+			writer.write(reply);
+			writer.flush();
+		} catch (IOException e) {
+			//the client has gone away, and the command, if any, has been executed for the window
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			close(socket);
+		}
+	}
+
+	private static void close(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			//the socket is closed anyway
+		}
+	}
+}
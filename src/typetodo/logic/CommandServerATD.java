@@ -0,0 +1,179 @@
+package typetodo.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import typetodo.model.Task;
+import typetodo.ui.View;
+
+/**
+ * Tests that commands sent by the CommandClient are executed by the running instance through its
+ * CommandServer, that failed commands and requests without the key are answered as errors, that a client
+ * that sends nothing does not hold up the others, and that nothing is answered once the server has stopped.
+ * @author A0091024U
+ *
+ */
+public class CommandServerATD {
+	private static final String TITLE = "task sent by the command client";
+	private static final long MILLIS_OF_SLOW_REPLY = 2000;
+	private static final String KEY_OF_OTHER_SERVER = "0123456789abcdef0123456789abcdef";
+	private Schedule schedule;
+	private CommandExecutor commandExecutor;
+	private CommandServer commandServer;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		schedule = new Schedule();
+		commandExecutor = new CommandExecutor(new MainController(new View() {
+			@Override
+			public boolean disableInput() {
+				return true;
+			}
+
+			@Override
+			public boolean enableInput() {
+				return true;
+			}
+
+			@Override
+			public void displayFeedBack(String feedBack) {
+			}
+
+			@Override
+			public void displayErrorMessage(String errorMessage) {
+			}
+
+			@Override
+			public void displayTasks(List<String> taskRows) {
+			}
+
+			@Override
+			public void displayHelp(String helpMessage) {
+			}
+		}, schedule));
+		file = File.createTempFile("commandserver", ".txt");
+		commandServer = new CommandServer(commandExecutor, file);
+		commandServer.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		commandServer.stop();
+		commandExecutor.shutdown();
+		for (Task task : schedule.getAllTasks(null)) {
+			if (task.getTitle().equals(TITLE)) {
+				schedule.deleteTaskById(task.getTaskId());
+			}
+		}
+	}
+
+	@Test
+	public void CommandsSentAreExecutedByTheRunningInstance() throws Exception {
+		CommandClient.Reply reply = CommandClient.send(file, "add " + TITLE + "; tmr 4pm");
+
+		assertTrue(reply.getFeedback(), reply.isSuccessful());
+		int numberOfTasksAdded = 0;
+		for (Task task : schedule.getAllTasks(null)) {
+			if (task.getTitle().equals(TITLE)) {
+				numberOfTasksAdded++;
+			}
+		}
+		assertEquals(1, numberOfTasksAdded);
+	}
+
+	@Test
+	public void FailedCommandsAndRequestsWithoutTheKeyAreErrors() throws IOException {
+		assertFalse(CommandClient.send(file, "frobnicate").isSuccessful());
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), CommandServer.CHARSET);
+		writer.write(commandServer.getPort() + " " + KEY_OF_OTHER_SERVER);
+		writer.close();
+		CommandClient.Reply reply = CommandClient.send(file, "add " + TITLE + "; tmr 4pm");
+		assertFalse(reply.isSuccessful());
+		assertEquals("The key of the request is not the key of this TypeToDo", reply.getFeedback());
+	}
+
+	@Test
+	public void ClientThatSendsNothingDoesNotHoldUpOthers() throws IOException {
+		Socket stalledSocket = new Socket(InetAddress.getLoopbackAddress(), commandServer.getPort());
+		try {
+			long startMillis = System.currentTimeMillis();
+			assertTrue(CommandClient.send(file, "add " + TITLE + "; tmr 4pm").isSuccessful());
+			// The stalled connection is only given up after a few seconds without a request
+			assertTrue(System.currentTimeMillis() - startMillis < MILLIS_OF_SLOW_REPLY);
+		} finally {
+			stalledSocket.close();
+		}
+	}
+
+	@Test
+	public void NothingIsAnsweredOnceStopped() throws IOException {
+		int portOfStoppedServer = commandServer.getPort();
+		commandServer.stop();
+
+		assertFalse(file.exists());
+		try {
+			CommandClient.send(file, "add " + TITLE + "; tmr 4pm");
+			fail();
+		} catch (IOException e) {
+			assertTrue(CommandClient.isNotRunning(e));
+		}
+
+		// The file left by a TypeToDo that did not stop cleanly
+		ServerFile.write(file, portOfStoppedServer, KEY_OF_OTHER_SERVER);
+		try {
+			CommandClient.send(file, "add " + TITLE + "; tmr 4pm");
+			fail();
+		} catch (IOException e) {
+			assertTrue(CommandClient.isNotRunning(e));
+		}
+	}
+
+	@Test
+	public void ReplyLostAfterTheCommandWasSentIsNotTakenForNotRunning() throws IOException {
+		final ServerSocket closingServer = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Socket socket = closingServer.accept();
+					new BufferedReader(new InputStreamReader(socket.getInputStream(), CommandServer.CHARSET))
+							.readLine();
+					socket.close(); //as the running instance does when it executes exit
+				} catch (IOException e) {
+					//the test fails on the client side
+				}
+			}
+		});
+		thread.start();
+
+		try {
+			ServerFile.write(file, closingServer.getLocalPort(), KEY_OF_OTHER_SERVER);
+			CommandClient.send(file, "exit");
+			fail();
+		} catch (IOException e) {
+			assertFalse(CommandClient.isNotRunning(e));
+		} finally {
+			closingServer.close();
+		}
+	}
+}
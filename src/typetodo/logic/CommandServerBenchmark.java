@@ -0,0 +1,111 @@
+package typetodo.logic;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import typetodo.db.DbController;
+import typetodo.model.PendingChange;
+import typetodo.model.Task;
+import typetodo.ui.View;
+
+/**
+ * Measures the round trip of commands sent by the CommandClient to a running instance through its
+ * CommandServer, from connecting until the feedback is read, for tasks added with a time to parse and commands
+ * that only search. The median and the 99th percentile are shown after warming up. It uses the saved files of
+ * the working directory, so run it from an empty directory with:
+ * java typetodo.logic.CommandServerBenchmark [number of commands]
+ * @author A0091024U
+ *
+ */
+public class CommandServerBenchmark {
+	private static final int DEFAULT_NUMBER_OF_COMMANDS = 500;
+	private static final int NUMBER_OF_WARM_UP_COMMANDS = 200;
+
+	public static void main(String[] args) throws Exception {
+		int numberOfCommands = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_COMMANDS;
+		DbController dataBase = DbController.getInstance();
+		if (!dataBase.retrieveAll().isEmpty() || !dataBase.retrievePendingChanges().isEmpty()) {
+			System.out.println("The saved files already hold tasks, run the benchmark from an empty directory");
+			return;
+		}
+
+		CommandExecutor commandExecutor = new CommandExecutor(new MainController(new View() {
+			@Override
+			public boolean disableInput() {
+				return true;
+			}
+
+			@Override
+			public boolean enableInput() {
+				return true;
+			}
+
+			@Override
+			public void displayFeedBack(String feedBack) {
+			}
+
+			@Override
+			public void displayErrorMessage(String errorMessage) {
+			}
+
+			@Override
+			public void displayTasks(List<String> taskRows) {
+			}
+
+			@Override
+			public void displayHelp(String helpMessage) {
+			}
+		}, new Schedule()));
+		File file = File.createTempFile("commandserver", ".txt");
+		CommandServer commandServer = new CommandServer(commandExecutor, file);
+		commandServer.start();
+		try {
+			measure(file, "search milk", NUMBER_OF_WARM_UP_COMMANDS);
+			measure(file, "add buy milk; tmr 4pm", NUMBER_OF_WARM_UP_COMMANDS);
+			clearDataBase(dataBase);
+			report("add", measure(file, "add buy milk; tmr 4pm", numberOfCommands));
+			report("search", measure(file, "search milk", numberOfCommands));
+		} finally {
+			commandServer.stop();
+			commandExecutor.shutdown();
+			clearDataBase(dataBase);
+		}
+	}
+
+	/**
+	 * @return round trip of each command in nanoseconds, sorted
+	 */
+	private static long[] measure(File file, String userInput, int numberOfCommands) throws Exception {
+		long[] nanos = new long[numberOfCommands];
+		for (int i = 0; i < numberOfCommands; i++) {
+			long timeBefore = System.nanoTime();
+			CommandClient.Reply reply = CommandClient.send(file, userInput);
+			nanos[i] = System.nanoTime() - timeBefore;
+			if (!reply.isSuccessful()) {
+				throw new Exception(reply.getFeedback());
+			}
+		}
+		Arrays.sort(nanos);
+		return nanos;
+	}
+
+	private static void report(String name, long[] nanos) {
+		System.out.println(String.format("%-7s %,5d commands, median %5.2f ms, 99th percentile %5.2f ms", name,
+				nanos.length, nanos[nanos.length / 2] / 1e6, nanos[nanos.length * 99 / 100] / 1e6));
+	}
+
+	private static void clearDataBase(DbController dataBase) {
+		ArrayList<Integer> taskIds = new ArrayList<Integer>();
+		for (Task task : dataBase.retrieveAll()) {
+			taskIds.add(task.getTaskId());
+		}
+		dataBase.deleteTasks(taskIds);
+		ArrayList<Long> sequenceNumbers = new ArrayList<Long>();
+		for (PendingChange pendingChange : dataBase.retrievePendingChanges()) {
+			sequenceNumbers.add(pendingChange.getSequenceNumber());
+		}
+		dataBase.acknowledgePendingChanges(sequenceNumbers);
+	}
+}
@@ -1,17 +1,30 @@
 package typetodo.logic;
 
-import typetodo.sync.SyncController;
+import typetodo.sync.SyncFacade;
 
 public class CommandSync implements Command{
-	private SyncController syncController;
+	private SyncFacade syncFacade;
+	private boolean isPreview;
 	
-	public CommandSync (SyncController syncController) {
-		this.syncController = syncController;
+	public CommandSync (SyncFacade syncFacade) {
+		this(syncFacade, false);
+	}
+	
+	/**
+	 * @param isPreview true to only show what the sync would change
+	 */
+	public CommandSync (SyncFacade syncFacade, boolean isPreview) {
+		this.syncFacade = syncFacade;
+		this.isPreview = isPreview;
 	}
 	
 	@Override
 	public String execute() throws Exception {
-		syncController.twoWaySync();
+		if (isPreview) {
+			syncFacade.previewSync();
+		} else {
+			syncFacade.twoWaySync();
+		}
 		return "null";
 	}
 }
@@ -0,0 +1,29 @@
+package typetodo.logic;
+
+import typetodo.sync.SyncFacade;
+
+/**
+ * Turns automatic sync on at the given interval in minutes, or off.
+ * @author A0091024U
+ *
+ */
+public class CommandSyncAuto implements Command {
+	private static final String MESSAGE_AUTO_SYNC_ON = "Syncing automatically every %d min, and soon after changes";
+	private static final String MESSAGE_AUTO_SYNC_OFF = "Automatic sync is off";
+	private SyncFacade syncFacade;
+	private long intervalMinutes;
+	
+	/**
+	 * @param intervalMinutes minutes between syncs, or 0 to turn automatic sync off
+	 */
+	public CommandSyncAuto(SyncFacade syncFacade, long intervalMinutes) {
+		this.syncFacade = syncFacade;
+		this.intervalMinutes = intervalMinutes;
+	}
+	
+	@Override
+	public String execute() throws Exception {
+		syncFacade.setAutomaticSyncInterval(intervalMinutes);
+		return (intervalMinutes > 0) ? String.format(MESSAGE_AUTO_SYNC_ON, intervalMinutes) : MESSAGE_AUTO_SYNC_OFF;
+	}
+}
@@ -0,0 +1,23 @@
+package typetodo.logic;
+
+import typetodo.sync.SyncFacade;
+
+/**
+ * Shows the wall time, requests, retries and items touched of each phase of the latest syncs.
+ * @author A0091024U
+ *
+ */
+public class CommandSyncHistory implements Command {
+	private SyncFacade syncFacade;
+	private int numberOfSyncs;
+	
+	public CommandSyncHistory(SyncFacade syncFacade, int numberOfSyncs) {
+		this.syncFacade = syncFacade;
+		this.numberOfSyncs = numberOfSyncs;
+	}
+	
+	@Override
+	public String execute() throws Exception {
+		return syncFacade.getHistory(numberOfSyncs);
+	}
+}
@@ -0,0 +1,21 @@
+package typetodo.logic;
+
+import typetodo.sync.SyncFacade;
+
+/**
+ * Shows whether automatic sync is on, and the time taken and outcome of the last sync.
+ * @author A0091024U
+ *
+ */
+public class CommandSyncStatus implements Command {
+	private SyncFacade syncFacade;
+	
+	public CommandSyncStatus(SyncFacade syncFacade) {
+		this.syncFacade = syncFacade;
+	}
+	
+	@Override
+	public String execute() throws Exception {
+		return syncFacade.getStatus();
+	}
+}
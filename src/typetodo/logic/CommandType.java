@@ -1,5 +1,5 @@
 package typetodo.logic;
 
 public enum CommandType {
-	ADD, DELETE, DISPLAY, UPDATE, SEARCH, DONE, HOME, UNDO, HELP, INVALID, SYNC, VIEW, HOTKEY, EXIT
+	ADD, DELETE, DISPLAY, UPDATE, SEARCH, DONE, HOME, UNDO, HELP, INVALID, SYNC, VIEW, HOTKEY, EXIT, IMPORT, EXPORT
 }
@@ -0,0 +1,119 @@
+package typetodo.logic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import typetodo.exception.InvalidFormatException;
+import typetodo.model.DeadlineTask;
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+import typetodo.model.TimedTask;
+
+/**
+ * Tests that tasks written by the CsvWriter are read back the same by the CsvReader, and that records which
+ * cannot be read are reported by the line they start on while the others are read in the order of the file.
+ * @author A0091024U
+ *
+ */
+public class CsvATD {
+	private static final DateTime START = new DateTime(2014, 11, 3, 9, 0);
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void TasksWrittenAreReadBackAsTheSameTypes() throws IOException, InvalidFormatException {
+		FloatingTask floatingTask = new FloatingTask(" buy milk, eggs ", "say \"hi\"\nto the cashier");
+		floatingTask.setStatus(Status.COMPLETED);
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		tasks.add(new TimedTask("meeting", "", START, START.plusHours(2)));
+		tasks.add(new DeadlineTask("report", "\u65e5\u672c\u8a9e", START.plusDays(1)));
+		tasks.add(floatingTask);
+
+		StringWriter file = new StringWriter();
+		CsvWriter writer = new CsvWriter(file);
+		for (Task task : tasks) {
+			writer.writeTask(task);
+		}
+		writer.close();
+
+		CsvReader.Result result = new CsvReader(pool).read(new StringReader(file.toString()));
+		assertEquals(new ArrayList<String>(), result.getErrors());
+		assertEquals(3, result.getTasks().size());
+		TimedTask timedTask = (TimedTask) result.getTasks().get(0);
+		assertEquals("meeting", timedTask.getTitle());
+		assertEquals(START, timedTask.getStart());
+		assertEquals(START.plusHours(2), timedTask.getEnd());
+		DeadlineTask deadlineTask = (DeadlineTask) result.getTasks().get(1);
+		assertEquals("\u65e5\u672c\u8a9e", deadlineTask.getDescription());
+		assertEquals(START.plusDays(1), deadlineTask.getDeadline());
+		FloatingTask readFloatingTask = (FloatingTask) result.getTasks().get(2);
+		assertEquals(" buy milk, eggs ", readFloatingTask.getTitle());
+		assertEquals("say \"hi\"\nto the cashier", readFloatingTask.getDescription());
+		assertEquals(Status.COMPLETED, readFloatingTask.getStatus());
+	}
+
+	@Test
+	public void InvalidRecordsAreReportedByLineWithoutStoppingTheOthers() throws IOException,
+			InvalidFormatException {
+		StringBuilder file = new StringBuilder("\ufeffStatus, End, Title, Notes\r\n");
+		file.append("done, 2014-11-03, \"two\nlines\"\r\n"); //lines 2 and 3
+		file.append("\r\n");
+		file.append(", 3 November, bad date\r\n"); //line 5
+		file.append("incomplete, , \r\n"); //line 6
+		file.append("maybe, , bad status\r\n"); //line 7
+		file.append(", , \"not closed\" yet\r\n"); //line 8
+		int numberOfTasks = 10000; //several chunks
+		for (int i = 0; i < numberOfTasks; i++) {
+			file.append(", , task ").append(i).append("\r\n");
+		}
+		file.append(", , \"never closed\r\n");
+
+		CsvReader.Result result = new CsvReader(pool).read(new StringReader(file.toString()));
+		assertEquals(Arrays.asList("line 2: status 'done' is not completed or incomplete",
+				"line 5: end '3 November' is not a date such as 2014-11-03 09:00",
+				"line 6: the title is missing",
+				"line 7: status 'maybe' is not completed or incomplete",
+				"line 8: there is text after the closing quote",
+				"line " + (numberOfTasks + 9) + ": the quotes are not closed"), result.getErrors());
+		assertEquals(numberOfTasks, result.getTasks().size());
+		for (int i = 0; i < numberOfTasks; i++) {
+			assertEquals("task " + i, result.getTasks().get(i).getTitle());
+			assertEquals(FloatingTask.class, result.getTasks().get(i).getClass());
+		}
+	}
+
+	@Test
+	public void DatesWithoutATimeAreTheStartOfTheDay() throws IOException, InvalidFormatException {
+		String file = "title,start,end\nholiday,2014-11-03,2014-11-05\n";
+
+		TimedTask task = (TimedTask) new CsvReader(pool).read(new StringReader(file)).getTasks().get(0);
+		assertEquals(new DateTime(2014, 11, 3, 0, 0), task.getStart());
+		assertEquals(new DateTime(2014, 11, 5, 0, 0), task.getEnd());
+	}
+
+	@Test(expected = InvalidFormatException.class)
+	public void AFileWithoutATitleColumnIsNotRead() throws IOException, InvalidFormatException {
+		new CsvReader(pool).read(new StringReader("name,start\nmeeting,\n"));
+	}
+}
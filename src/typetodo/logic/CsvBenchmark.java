@@ -0,0 +1,135 @@
+package typetodo.logic;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.joda.time.DateTime;
+
+import typetodo.db.DbController;
+import typetodo.model.DeadlineTask;
+import typetodo.model.FloatingTask;
+import typetodo.model.PendingChange;
+import typetodo.model.Task;
+import typetodo.model.TimedTask;
+
+/**
+ * Measures the reading of many tasks from a CSV file with one thread and with a thread for every processor,
+ * showing the median of several runs after warming up, and then importing the file through the Schedule and
+ * exporting it again. It uses the saved files of the working directory, so run it from an empty directory with:
+ * java typetodo.logic.CsvBenchmark [number of tasks]
+ * @author A0091024U
+ *
+ */
+public class CsvBenchmark {
+	private static final int DEFAULT_NUMBER_OF_TASKS = 100000;
+	private static final int NUMBER_OF_WARM_UP_RUNS = 3;
+	private static final int NUMBER_OF_RUNS = 5;
+	private static final String CHARSET = "UTF-8";
+
+	public static void main(String[] args) throws Exception {
+		int numberOfTasks = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_TASKS;
+		DbController dataBase = DbController.getInstance();
+		if (!dataBase.retrieveAll().isEmpty() || !dataBase.retrievePendingChanges().isEmpty()) {
+			System.out.println("The saved files already hold tasks, run the benchmark from an empty directory");
+			return;
+		}
+
+		File file = File.createTempFile("typetodo", ".csv");
+		File exportedFile = File.createTempFile("typetodo-exported", ".csv");
+		try {
+			long timeBefore = System.nanoTime();
+			writeTasks(file, numberOfTasks);
+			report("write", timeBefore, String.format("%,d KB", file.length() / 1024));
+
+			int[] numbersOfThreads = { 1, Runtime.getRuntime().availableProcessors() };
+			for (int numberOfThreads : numbersOfThreads) {
+				ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+				try {
+					long[] nanos = new long[NUMBER_OF_RUNS];
+					for (int run = -NUMBER_OF_WARM_UP_RUNS; run < NUMBER_OF_RUNS; run++) {
+						timeBefore = System.nanoTime();
+						readTasks(file, pool);
+						if (run >= 0) {
+							nanos[run] = System.nanoTime() - timeBefore;
+						}
+					}
+					Arrays.sort(nanos);
+					System.out.println(String.format("%-10s %,8d ms, median of %d runs with %d threads", "read",
+							nanos[NUMBER_OF_RUNS / 2] / 1000000, NUMBER_OF_RUNS, numberOfThreads));
+				} finally {
+					pool.shutdown();
+				}
+			}
+
+			Schedule schedule = new Schedule();
+			timeBefore = System.nanoTime();
+			String feedback = new CommandImportCsv(schedule, file.getPath()).execute();
+			report("import", timeBefore, feedback);
+
+			timeBefore = System.nanoTime();
+			feedback = new CommandExportCsv(schedule, exportedFile.getPath()).execute();
+			report("export", timeBefore, feedback);
+		} finally {
+			file.delete();
+			exportedFile.delete();
+			clearDataBase(dataBase);
+		}
+	}
+
+	private static void report(String name, long timeBefore, String details) {
+		System.out.println(String.format("%-10s %,8d ms, %s", name, (System.nanoTime() - timeBefore) / 1000000,
+				details));
+	}
+
+	/**
+	 * Writes timed, deadline and floating tasks in turn, with a comma in every other description.
+	 */
+	private static void writeTasks(File file, int numberOfTasks) throws Exception {
+		DateTime start = new DateTime(2014, 1, 1, 9, 0);
+		CsvWriter writer = new CsvWriter(new OutputStreamWriter(new FileOutputStream(file), CHARSET));
+		try {
+			for (int i = 0; i < numberOfTasks; i++) {
+				DateTime startOfTask = start.plusMinutes(37 * i);
+				String description = (i % 2 == 0) ? "description of task " + i : "first, second";
+				if (i % 3 == 0) {
+					writer.writeTask(new TimedTask("task " + i, description, startOfTask, startOfTask.plusHours(1)));
+				} else if (i % 3 == 1) {
+					writer.writeTask(new DeadlineTask("task " + i, description, startOfTask));
+				} else {
+					writer.writeTask(new FloatingTask("task " + i, description));
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void readTasks(File file, ForkJoinPool pool) throws Exception {
+		Reader reader = new InputStreamReader(new FileInputStream(file), CHARSET);
+		try {
+			new CsvReader(pool).read(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void clearDataBase(DbController dataBase) {
+		ArrayList<Integer> taskIds = new ArrayList<Integer>();
+		for (Task task : dataBase.retrieveAll()) {
+			taskIds.add(task.getTaskId());
+		}
+		dataBase.deleteTasks(taskIds);
+		ArrayList<Long> sequenceNumbers = new ArrayList<Long>();
+		for (PendingChange pendingChange : dataBase.retrievePendingChanges()) {
+			sequenceNumbers.add(pendingChange.getSequenceNumber());
+		}
+		dataBase.acknowledgePendingChanges(sequenceNumbers);
+	}
+}
@@ -0,0 +1,356 @@
+package typetodo.logic;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.DateTimeFormatterBuilder;
+import org.joda.time.format.DateTimeParser;
+
+import typetodo.exception.InvalidFormatException;
+import typetodo.model.DeadlineTask;
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+import typetodo.model.TimedTask;
+
+/**
+ * The CsvReader reads the records of a CSV file as tasks. The columns are named by the header, in any order,
+ * and only the title is required. A record with a start and an end is read as a TimedTask, one with an end
+ * only as a DeadlineTask and one with neither as a FloatingTask.
+ * The file is split into records in one pass, as a quoted field may hold new lines, and the records are then
+ * parsed in chunks by a ForkJoinPool. A record that cannot be read does not stop the others: it is reported
+ * with the line it starts on, and the tasks are given in the order of the file.
+ * @author A0091024U
+ *
+ */
+public class CsvReader {
+	private static final int RECORDS_OF_CHUNK = 2000;
+	private static final int SIZE_OF_BUFFER = 8192;
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+	private static final char BYTE_ORDER_MARK = '\uFEFF';
+	private static final String STATUS_COMPLETED = "completed";
+	private static final String STATUS_INCOMPLETE = "incomplete";
+	private static final String ERROR_OF_LINE = "line %d: %s";
+	private static final String ERROR_MISSING_TITLE_COLUMN = "The header of the CSV file has no title column";
+	private static final String ERROR_MISSING_TITLE = "the title is missing";
+	private static final String ERROR_INVALID_DATE_TIME = "%s '%s' is not a date such as 2014-11-03 09:00";
+	private static final String ERROR_START_WITHOUT_END = "the start has no end";
+	private static final String ERROR_START_AFTER_END = "the start is after the end";
+	private static final String ERROR_INVALID_STATUS = "status '%s' is not completed or incomplete";
+	private static final String ERROR_UNCLOSED_QUOTE = "the quotes are not closed";
+	private static final String ERROR_TEXT_AFTER_QUOTE = "there is text after the closing quote";
+
+	/**
+	 * Parses the times written by the CsvWriter, and dates without a time as the start of the day. Joda
+	 * formatters are immutable, so the one formatter is shared by every thread.
+	 */
+	private static final DateTimeFormatter DATE_TIME_PARSER = new DateTimeFormatterBuilder().append(
+			CsvWriter.DATE_TIME.getPrinter(),
+			new DateTimeParser[] { CsvWriter.DATE_TIME.getParser(), DateTimeFormat.forPattern("yyyy-MM-dd").getParser() })
+			.toFormatter();
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Tasks read from a file or a chunk of it, with the errors of the records that could not be read.
+	 */
+	public static class Result {
+		private final ArrayList<Task> tasks = new ArrayList<Task>();
+		private final ArrayList<String> errors = new ArrayList<String>();
+
+		public List<Task> getTasks() {
+			return tasks;
+		}
+
+		/**
+		 * @return errors such as "line 3: the title is missing", in the order of the file
+		 */
+		public List<String> getErrors() {
+			return errors;
+		}
+
+		private void append(Result result) {
+			tasks.addAll(result.tasks);
+			errors.addAll(result.errors);
+		}
+	}
+
+	/**
+	 * @param pool parses the chunks of records
+	 */
+	public CsvReader(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Reads every record of the file, without closing it.
+	 * @throws InvalidFormatException the header cannot be read or has no title column
+	 * @throws IOException
+	 */
+	public Result read(Reader reader) throws InvalidFormatException, IOException {
+		ArrayList<String> records = new ArrayList<String>();
+		ArrayList<Integer> lineNumbers = new ArrayList<Integer>();
+		splitRecords(reader, records, lineNumbers);
+		if (records.isEmpty()) {
+			return new Result();
+		}
+
+		ArrayList<String> header;
+		try {
+			header = splitFields(records.get(0));
+		} catch (InvalidFormatException e) {
+			throw new InvalidFormatException(String.format(ERROR_OF_LINE, lineNumbers.get(0), e.getMessage()));
+		}
+		int[] columnIndexes = getColumnIndexes(header);
+		return pool.invoke(new ParseRecords(records, lineNumbers, columnIndexes, 1, records.size()));
+	}
+
+	/**
+	 * Parses the records from start up to end, splitting them in halves that are parsed in parallel until
+	 * they are no larger than a chunk.
+	 */
+	@SuppressWarnings("serial")
+	private static class ParseRecords extends RecursiveTask<Result> {
+		private final List<String> records;
+		private final List<Integer> lineNumbers;
+		private final int[] columnIndexes;
+		private final int start;
+		private final int end;
+
+		private ParseRecords(List<String> records, List<Integer> lineNumbers, int[] columnIndexes, int start,
+				int end) {
+			this.records = records;
+			this.lineNumbers = lineNumbers;
+			this.columnIndexes = columnIndexes;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected Result compute() {
+			if (end - start <= RECORDS_OF_CHUNK) {
+				Result result = new Result();
+				for (int index = start; index < end; index++) {
+					try {
+						result.tasks.add(toTask(splitFields(records.get(index)), columnIndexes));
+					} catch (InvalidFormatException e) {
+						result.errors.add(String.format(ERROR_OF_LINE, lineNumbers.get(index), e.getMessage()));
+					}
+				}
+				return result;
+			}
+
+			int middle = (start + end) >>> 1;
+			ParseRecords firstHalf = new ParseRecords(records, lineNumbers, columnIndexes, start, middle);
+			firstHalf.fork();
+			Result secondHalf = new ParseRecords(records, lineNumbers, columnIndexes, middle, end).compute();
+			Result result = firstHalf.join();
+			result.append(secondHalf);
+			return result;
+		}
+	}
+
+	/**
+	 * Splits the file into records at the new lines that are not quoted, skipping blank lines.
+	 * @param lineNumbers line on which each record starts, from 1
+	 */
+	private static void splitRecords(Reader reader, List<String> records, List<Integer> lineNumbers)
+			throws IOException {
+		char[] buffer = new char[SIZE_OF_BUFFER];
+		StringBuilder record = new StringBuilder();
+		boolean isQuoted = false;
+		boolean isFirstCharacter = true;
+		int lineNumber = 1;
+		int lineNumberOfRecord = 1;
+		int length;
+		while ((length = reader.read(buffer)) != -1) {
+			for (int index = 0; index < length; index++) {
+				char character = buffer[index];
+				if (isFirstCharacter) {
+					isFirstCharacter = false;
+					if (character == BYTE_ORDER_MARK) {
+						continue;
+					}
+				}
+
+				if (character == QUOTE) {
+					isQuoted = !isQuoted; //a doubled quote leaves the field quoted
+				} else if (character == '\n') {
+					lineNumber++;
+					if (!isQuoted) {
+						addRecord(record, lineNumberOfRecord, records, lineNumbers);
+						lineNumberOfRecord = lineNumber;
+						continue;
+					}
+				}
+				record.append(character);
+			}
+		}
+		addRecord(record, lineNumberOfRecord, records, lineNumbers);
+	}
+
+	private static void addRecord(StringBuilder record, int lineNumber, List<String> records,
+			List<Integer> lineNumbers) {
+		int length = record.length();
+		if (length > 0 && record.charAt(length - 1) == '\r') {
+			length--;
+		}
+		String text = record.substring(0, length);
+		record.setLength(0);
+		if (!text.trim().isEmpty()) {
+			records.add(text);
+			lineNumbers.add(lineNumber);
+		}
+	}
+
+	/**
+	 * @return fields of the record, with the quotes of quoted fields removed and unquoted fields trimmed
+	 * @throws InvalidFormatException a quote is not closed or is followed by text
+	 */
+	private static ArrayList<String> splitFields(String record) throws InvalidFormatException {
+		ArrayList<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		int index = 0;
+		while (true) {
+			while (index < record.length() && record.charAt(index) == ' ') {
+				index++;
+			}
+
+			if (index < record.length() && record.charAt(index) == QUOTE) {
+				index++;
+				while (true) {
+					if (index >= record.length()) {
+						throw new InvalidFormatException(ERROR_UNCLOSED_QUOTE);
+					}
+					char character = record.charAt(index++);
+					if (character == QUOTE) {
+						if (index < record.length() && record.charAt(index) == QUOTE) {
+							index++;
+						} else {
+							break;
+						}
+					}
+					field.append(character);
+				}
+				while (index < record.length() && record.charAt(index) == ' ') {
+					index++;
+				}
+				if (index < record.length() && record.charAt(index) != SEPARATOR) {
+					throw new InvalidFormatException(ERROR_TEXT_AFTER_QUOTE);
+				}
+				fields.add(field.toString());
+			} else {
+				int separator = record.indexOf(SEPARATOR, index);
+				int endOfField = (separator == -1) ? record.length() : separator;
+				fields.add(record.substring(index, endOfField).trim());
+				index = endOfField;
+			}
+			field.setLength(0);
+
+			if (index >= record.length()) {
+				return fields;
+			}
+			index++; //the separator
+		}
+	}
+
+	/**
+	 * @return index of each of CsvWriter.COLUMNS in the header, or -1 for a column that is missing
+	 * @throws InvalidFormatException the title column is missing
+	 */
+	private static int[] getColumnIndexes(List<String> header) throws InvalidFormatException {
+		int[] columnIndexes = new int[CsvWriter.COLUMNS.length];
+		for (int column = 0; column < CsvWriter.COLUMNS.length; column++) {
+			columnIndexes[column] = -1;
+			for (int index = 0; index < header.size(); index++) {
+				if (header.get(index).equalsIgnoreCase(CsvWriter.COLUMNS[column])) {
+					columnIndexes[column] = index;
+					break;
+				}
+			}
+		}
+
+		if (columnIndexes[0] == -1) {
+			throw new InvalidFormatException(ERROR_MISSING_TITLE_COLUMN);
+		}
+		return columnIndexes;
+	}
+
+	/**
+	 * @throws InvalidFormatException the title is missing, or a time or the status cannot be read
+	 */
+	private static Task toTask(List<String> fields, int[] columnIndexes) throws InvalidFormatException {
+		String title = getField(fields, columnIndexes, CsvWriter.COLUMN_TITLE);
+		if (title.isEmpty()) {
+			throw new InvalidFormatException(ERROR_MISSING_TITLE);
+		}
+		String description = getField(fields, columnIndexes, CsvWriter.COLUMN_DESCRIPTION);
+		DateTime start = parseDateTime(fields, columnIndexes, CsvWriter.COLUMN_START);
+		DateTime end = parseDateTime(fields, columnIndexes, CsvWriter.COLUMN_END);
+
+		Task task;
+		if (start != null && end == null) {
+			throw new InvalidFormatException(ERROR_START_WITHOUT_END);
+		} else if (start != null) {
+			if (start.isAfter(end)) {
+				throw new InvalidFormatException(ERROR_START_AFTER_END);
+			}
+			task = new TimedTask(title, description, start, end);
+		} else if (end != null) {
+			task = new DeadlineTask(title, description, end);
+		} else {
+			task = new FloatingTask(title, description);
+		}
+
+		String status = getField(fields, columnIndexes, CsvWriter.COLUMN_STATUS);
+		if (status.equalsIgnoreCase(STATUS_COMPLETED)) {
+			task.setStatus(Status.COMPLETED);
+		} else if (!status.isEmpty() && !status.equalsIgnoreCase(STATUS_INCOMPLETE)) {
+			throw new InvalidFormatException(String.format(ERROR_INVALID_STATUS, status));
+		}
+		return task;
+	}
+
+	/**
+	 * @return time of the column, or null if it is empty or missing
+	 * @throws InvalidFormatException the time cannot be read
+	 */
+	private static DateTime parseDateTime(List<String> fields, int[] columnIndexes, String column)
+			throws InvalidFormatException {
+		String field = getField(fields, columnIndexes, column);
+		if (field.isEmpty()) {
+			return null;
+		}
+
+		try {
+			return DATE_TIME_PARSER.parseDateTime(field);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidFormatException(String.format(ERROR_INVALID_DATE_TIME, column, field));
+		}
+	}
+
+	/**
+	 * @return field of the column, or an empty string if the column or the field is missing
+	 */
+	private static String getField(List<String> fields, int[] columnIndexes, String column) {
+		int columnIndex = columnIndexes[indexOfColumn(column)];
+		return (columnIndex == -1 || columnIndex >= fields.size()) ? "" : fields.get(columnIndex);
+	}
+
+	private static int indexOfColumn(String column) {
+		for (int index = 0; index < CsvWriter.COLUMNS.length; index++) {
+			if (CsvWriter.COLUMNS[index].equals(column)) {
+				return index;
+			}
+		}
+		throw new IllegalArgumentException(column);
+	}
+}
@@ -0,0 +1,120 @@
+package typetodo.logic;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import typetodo.model.DeadlineTask;
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+import typetodo.model.TimedTask;
+
+/**
+ * The CsvWriter writes tasks to a CSV file one at a time, after a header that names the columns read by the
+ * CsvReader. A TimedTask has both a start and an end, a DeadlineTask an end only and a FloatingTask neither.
+ * Times are written in the local time zone, and fields holding commas, quotes or new lines are quoted.
+ * @author A0091024U
+ *
+ */
+public class CsvWriter implements Closeable {
+	static final String COLUMN_TITLE = "title";
+	static final String COLUMN_DESCRIPTION = "description";
+	static final String COLUMN_START = "start";
+	static final String COLUMN_END = "end";
+	static final String COLUMN_STATUS = "status";
+	static final String[] COLUMNS = { COLUMN_TITLE, COLUMN_DESCRIPTION, COLUMN_START, COLUMN_END, COLUMN_STATUS };
+	static final DateTimeFormatter DATE_TIME = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm");
+	private static final String LINE_SEPARATOR = "\r\n";
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+
+	private final BufferedWriter writer;
+	private int numberOfTasks;
+
+	/**
+	 * Writes the header of the file.
+	 * @throws IOException
+	 */
+	public CsvWriter(Writer writer) throws IOException {
+		this.writer = (writer instanceof BufferedWriter) ? (BufferedWriter) writer : new BufferedWriter(writer);
+		this.writeRecord(COLUMNS);
+	}
+
+	/**
+	 * @param task TimedTask, DeadlineTask or FloatingTask
+	 * @throws IOException
+	 */
+	public void writeTask(Task task) throws IOException {
+		String start = "";
+		String end = "";
+		if (task instanceof TimedTask) {
+			start = format(((TimedTask) task).getStart());
+			end = format(((TimedTask) task).getEnd());
+		} else if (task instanceof DeadlineTask) {
+			end = format(((DeadlineTask) task).getDeadline());
+		}
+		Status status = (task.getStatus() == null) ? Status.INCOMPLETE : task.getStatus();
+
+		this.writeRecord(new String[] { task.getTitle(), task.getDescription(), start, end,
+				status.toString().toLowerCase() });
+		numberOfTasks++;
+	}
+
+	/**
+	 * @return number of tasks written so far
+	 */
+	public int getNumberOfTasks() {
+		return numberOfTasks;
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+
+	private void writeRecord(String[] fields) throws IOException {
+		for (int index = 0; index < fields.length; index++) {
+			if (index > 0) {
+				writer.write(SEPARATOR);
+			}
+			this.writeField((fields[index] == null) ? "" : fields[index]);
+		}
+		writer.write(LINE_SEPARATOR);
+	}
+
+	/**
+	 * Writes the field, quoted with its quotes doubled if it holds a separator, quote or new line, or starts
+	 * or ends with a space that would otherwise be trimmed.
+	 */
+	private void writeField(String field) throws IOException {
+		boolean isQuoted = !field.isEmpty() && (field.charAt(0) == ' ' || field.charAt(field.length() - 1) == ' ');
+		for (int index = 0; index < field.length() && !isQuoted; index++) {
+			char character = field.charAt(index);
+			isQuoted = character == SEPARATOR || character == QUOTE || character == '\n' || character == '\r';
+		}
+		if (!isQuoted) {
+			writer.write(field);
+			return;
+		}
+
+		writer.write(QUOTE);
+		for (int index = 0; index < field.length(); index++) {
+			char character = field.charAt(index);
+			if (character == QUOTE) {
+				writer.write(QUOTE);
+			}
+			writer.write(character);
+		}
+		writer.write(QUOTE);
+	}
+
+	private static String format(DateTime dateTime) {
+		return (dateTime == null) ? "" : DATE_TIME.print(dateTime.withZone(DateTimeZone.getDefault()));
+	}
+}
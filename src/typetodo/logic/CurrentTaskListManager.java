@@ -3,6 +3,7 @@ package typetodo.logic;
 import java.util.ArrayList;
 
 import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
 
 import typetodo.model.Task;
 import typetodo.model.Task.Status;
@@ -56,6 +57,30 @@ public class CurrentTaskListManager {
 		return currentTaskList;
 	}
 	
+	/**
+	 * @return first date of the current date range, or null if the current list is not a date range
+	 */
+	public LocalDate getFirstVisibleDate() {
+		if (!isDateRange()) {
+			return null;
+		}
+		return start.toLocalDate();
+	}
+	
+	/**
+	 * @return last date of the current date range, or null if the current list is not a date range
+	 */
+	public LocalDate getLastVisibleDate() {
+		if (!isDateRange()) {
+			return null;
+		}
+		return end.toLocalDate();
+	}
+	
+	private boolean isDateRange() {
+		return keyword == null && type == null && start != null && end != null;
+	}
+	
 	public void setCurrentTaskList(ArrayList<Task> currentListOfTasks) {
 		this.currentTaskList = currentListOfTasks;
 	}
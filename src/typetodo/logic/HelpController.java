@@ -40,6 +40,10 @@ public class HelpController {
 			return HELP_UNDO;
 		case UPDATE:
 			return HELP_UPDATE;
+		case IMPORT:
+			return HELP_IMPORT;
+		case EXPORT:
+			return HELP_EXPORT;
 		default:
 			return HELP_INSTRUCTION;
 		}
@@ -59,7 +63,7 @@ public class HelpController {
 
 	/** hard coded catalog*/
 	private static final String HELP_INSTRUCTION = "Please enter 'help <command>'\n"
-			+ "i.e.help hotkey, add, del, edit, undo, complete, search, sync, home, etc";
+			+ "i.e.help hotkey, add, del, edit, undo, complete, search, sync, import, export, home, etc";
 	private static final String HELP_ADD = "ADD:\n"
 			+ "add <task title>; (optional) <time and date>\n"
 			+ "*If you want to add description, you may type '+<description>' at the end of task";
@@ -77,7 +81,18 @@ public class HelpController {
 	private static final String HELP_SEARCH = "SEARCH:(find tasks that contain given keyword)\n"
 			+ "(SYNTAX) search <keyword>";
 	private static final String HELP_SYNC = "SYNC:(synchronize with google calendar. Either export typetodo tasks into GCal, or import editted GCal tasks)\n"
-			+ "(SYNTAX) sync";
+			+ "(SYNTAX) sync\n"
+			+ "(SYNTAX) sync plan (show what sync would change, without changing anything)\n"
+			+ "(SYNTAX) sync auto <minutes> (sync in the background every few minutes and soon after changes)\n"
+			+ "(SYNTAX) sync auto off\n"
+			+ "(SYNTAX) sync status (show whether sync runs automatically, and how the last sync went)\n"
+			+ "(SYNTAX) sync history [number of syncs] (show the time, requests and retries of each step of the latest syncs)";
+	private static final String HELP_IMPORT = "IMPORT:(add the events and to-dos of an iCalendar file, or the rows of a CSV file, as tasks)\n"
+			+ "(SYNTAX) import ics <file>\n"
+			+ "(SYNTAX) import csv <file> (columns named by the header: title, description, start, end, status, with times such as 2014-11-03 09:00)";
+	private static final String HELP_EXPORT = "EXPORT:(save every task to an iCalendar or CSV file)\n"
+			+ "(SYNTAX) export ics <file>\n"
+			+ "(SYNTAX) export csv <file>";
 	private static final String HELP_UPDATE = "UPDATE:(modify exist task from typetodo. Note field name must be in capital letters,i.e.TITLE,DESCRIPTION,DEADLINE,START,END)\n"
 			+ "(SYNTAX) edit <index of task on current list> <field name> <new value>";
 	private static final String HELP_UNDO = "UNDO:\n" + "(SYNTAX) undo\n"
@@ -0,0 +1,102 @@
+package typetodo.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import typetodo.model.DeadlineTask;
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+import typetodo.model.TimedTask;
+
+/**
+ * Tests that tasks written by the IcsWriter are read back the same by the IcsReader, and that the IcsReader
+ * reads the folded lines, time zones, dates and nested components of files written by other calendars.
+ * @author A0091024U
+ *
+ */
+public class IcsATD {
+	private static final DateTime START = new DateTime(2014, 11, 3, 9, 0);
+
+	@Test
+	public void TasksWrittenAreReadBackAsTheSameTypes() throws IOException {
+		FloatingTask floatingTask = new FloatingTask("buy milk, eggs; bread", "line one\nline two \\ end");
+		floatingTask.setStatus(Status.COMPLETED);
+		StringBuilder longTitle = new StringBuilder();
+		for (int i = 0; i < 40; i++) {
+			longTitle.append("\u65e5\u672c\u8a9e ");
+		}
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		tasks.add(new TimedTask("meeting", "", START, START.plusHours(2)));
+		tasks.add(new DeadlineTask(longTitle.toString(), "", START.plusDays(1)));
+		tasks.add(floatingTask);
+
+		StringWriter file = new StringWriter();
+		IcsWriter writer = new IcsWriter(file);
+		for (Task task : tasks) {
+			writer.writeTask(task);
+		}
+		writer.close();
+		for (String line : file.toString().split("\r\n")) {
+			assertTrue(line, line.getBytes("UTF-8").length <= 75);
+		}
+
+		IcsReader reader = new IcsReader(new StringReader(file.toString()));
+		TimedTask timedTask = (TimedTask) reader.readTask();
+		assertEquals("meeting", timedTask.getTitle());
+		assertEquals(START, timedTask.getStart());
+		assertEquals(START.plusHours(2), timedTask.getEnd());
+		DeadlineTask deadlineTask = (DeadlineTask) reader.readTask();
+		assertEquals(longTitle.toString(), deadlineTask.getTitle());
+		assertEquals(START.plusDays(1), deadlineTask.getDeadline());
+		Task readFloatingTask = reader.readTask();
+		assertTrue(readFloatingTask instanceof FloatingTask);
+		assertEquals(floatingTask.getTitle(), readFloatingTask.getTitle());
+		assertEquals(floatingTask.getDescription(), readFloatingTask.getDescription());
+		assertEquals(Status.COMPLETED, readFloatingTask.getStatus());
+		assertNull(reader.readTask());
+		reader.close();
+	}
+
+	@Test
+	public void RecordsOfOtherCalendarsAreReadAndInvalidRecordsSkipped() throws IOException {
+		String file = "BEGIN:VCALENDAR\r\n"
+				+ "BEGIN:VTIMEZONE\r\nTZID:America/New_York\r\nEND:VTIMEZONE\r\n"
+				+ "BEGIN:VEVENT\r\nSUMMARY:folded\r\n  title\r\n"
+				+ "DTSTART;TZID=\"America/New_York\":20141103T090000\r\nDURATION:PT1H30M\r\n"
+				+ "BEGIN:VALARM\r\nDESCRIPTION:reminder\r\nEND:VALARM\r\nEND:VEVENT\r\n"
+				+ "BEGIN:VEVENT\r\nSUMMARY:holiday\r\nDTSTART;VALUE=DATE:20141225\r\nEND:VEVENT\r\n"
+				+ "BEGIN:VEVENT\r\nDTSTART:20141103T090000Z\r\nEND:VEVENT\r\n"
+				+ "BEGIN:VEVENT\r\nSUMMARY:bad time\r\nDTSTART:2014-11-03\r\nEND:VEVENT\r\n"
+				+ "BEGIN:VTODO\r\nSUMMARY:report\r\nDUE:20141104T170000Z\r\nEND:VTODO\r\n"
+				+ "END:VCALENDAR\r\n";
+
+		IcsReader reader = new IcsReader(new StringReader(file));
+		TimedTask event = (TimedTask) reader.readTask();
+		assertEquals("folded title", event.getTitle());
+		assertEquals("", event.getDescription());
+		DateTime start = new DateTime(2014, 11, 3, 9, 0, DateTimeZone.forID("America/New_York"));
+		assertEquals(start.getMillis(), event.getStart().getMillis());
+		assertEquals(start.plusMinutes(90).getMillis(), event.getEnd().getMillis());
+
+		TimedTask holiday = (TimedTask) reader.readTask();
+		assertEquals(new DateTime(2014, 12, 25, 0, 0), holiday.getStart());
+		assertEquals(new DateTime(2014, 12, 26, 0, 0), holiday.getEnd());
+
+		DeadlineTask todo = (DeadlineTask) reader.readTask();
+		assertEquals(new DateTime(2014, 11, 4, 17, 0, DateTimeZone.UTC).getMillis(), todo.getDeadline().getMillis());
+		assertNull(reader.readTask());
+		assertEquals(2, reader.getNumberOfSkippedRecords());
+		reader.close();
+	}
+}
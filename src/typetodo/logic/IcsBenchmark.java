@@ -0,0 +1,121 @@
+package typetodo.logic;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+
+import org.joda.time.DateTime;
+
+import typetodo.db.DbController;
+import typetodo.model.PendingChange;
+import typetodo.model.Task;
+import typetodo.model.TimedTask;
+
+/**
+ * Measures the streaming of many events to and from an iCalendar (.ics) file: writing the file, reading it
+ * without keeping the tasks, while sampling the heap used to show that reading needs the same memory whatever
+ * the size of the file, and importing it through the Schedule and exporting it again.
+ * It uses the saved files of the working directory, so run it from an empty directory with:
+ * java typetodo.logic.IcsBenchmark [number of events]
+ * @author A0091024U
+ *
+ */
+public class IcsBenchmark {
+	private static final int DEFAULT_NUMBER_OF_EVENTS = 100000;
+	private static final int RECORDS_BETWEEN_SAMPLES = 10000;
+	private static final String CHARSET = "UTF-8";
+
+	public static void main(String[] args) throws Exception {
+		int numberOfEvents = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_EVENTS;
+		DbController dataBase = DbController.getInstance();
+		if (!dataBase.retrieveAll().isEmpty() || !dataBase.retrievePendingChanges().isEmpty()) {
+			System.out.println("The saved files already hold tasks, run the benchmark from an empty directory");
+			return;
+		}
+
+		File file = File.createTempFile("typetodo", ".ics");
+		File exportedFile = File.createTempFile("typetodo-exported", ".ics");
+		try {
+			long timeBefore = System.nanoTime();
+			writeEvents(file, numberOfEvents);
+			report("write", timeBefore, String.format("%,d KB", file.length() / 1024));
+
+			for (int run = 0; run < 2; run++) { //the first run warms up
+				timeBefore = System.nanoTime();
+				long maxBytesUsed = readEvents(file);
+				report("read only", timeBefore, String.format("%,d KB heap used at most", maxBytesUsed / 1024));
+			}
+
+			Schedule schedule = new Schedule();
+			timeBefore = System.nanoTime();
+			String feedback = new CommandImportIcs(schedule, file.getPath()).execute();
+			report("import", timeBefore, feedback);
+
+			timeBefore = System.nanoTime();
+			feedback = new CommandExportIcs(schedule, exportedFile.getPath()).execute();
+			report("export", timeBefore, feedback);
+		} finally {
+			file.delete();
+			exportedFile.delete();
+			clearDataBase(dataBase);
+		}
+	}
+
+	private static void report(String name, long timeBefore, String details) {
+		System.out.println(String.format("%-10s %,8d ms, %s", name, (System.nanoTime() - timeBefore) / 1000000,
+				details));
+	}
+
+	private static void writeEvents(File file, int numberOfEvents) throws IOException {
+		DateTime start = new DateTime(2014, 1, 1, 9, 0);
+		IcsWriter writer = new IcsWriter(new OutputStreamWriter(new FileOutputStream(file), CHARSET));
+		try {
+			for (int i = 0; i < numberOfEvents; i++) {
+				DateTime startOfEvent = start.plusMinutes(37 * i);
+				writer.writeTask(new TimedTask("event " + i, "description of event " + i, startOfEvent,
+						startOfEvent.plusHours(1 + i % 3)));
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return most heap used while reading, sampled after a collection every RECORDS_BETWEEN_SAMPLES records
+	 */
+	private static long readEvents(File file) throws IOException {
+		Runtime runtime = Runtime.getRuntime();
+		long maxBytesUsed = 0;
+		int numberOfTasks = 0;
+		IcsReader reader = new IcsReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+		try {
+			while (reader.readTask() != null) {
+				numberOfTasks++;
+				if (numberOfTasks % RECORDS_BETWEEN_SAMPLES == 0) {
+					System.gc();
+					maxBytesUsed = Math.max(maxBytesUsed, runtime.totalMemory() - runtime.freeMemory());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return maxBytesUsed;
+	}
+
+	private static void clearDataBase(DbController dataBase) {
+		ArrayList<Integer> taskIds = new ArrayList<Integer>();
+		for (Task task : dataBase.retrieveAll()) {
+			taskIds.add(task.getTaskId());
+		}
+		dataBase.deleteTasks(taskIds);
+		ArrayList<Long> sequenceNumbers = new ArrayList<Long>();
+		for (PendingChange pendingChange : dataBase.retrievePendingChanges()) {
+			sequenceNumbers.add(pendingChange.getSequenceNumber());
+		}
+		dataBase.acknowledgePendingChanges(sequenceNumbers);
+	}
+}
@@ -0,0 +1,369 @@
+package typetodo.logic;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.Period;
+import org.joda.time.format.ISOPeriodFormat;
+
+import typetodo.model.DeadlineTask;
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+import typetodo.model.TimedTask;
+
+/**
+ * The IcsReader reads the VEVENT and VTODO records of an iCalendar (.ics) file as tasks, one record at a time,
+ * so that only the record being read is held in memory whatever the size of the file. An event with a start
+ * and a later end is read as a TimedTask, and an event without a later end as a DeadlineTask. A to-do with a
+ * due date is read as a DeadlineTask, and one without as a FloatingTask. Properties of components nested in a
+ * record, such as alarms, are ignored, and records without a title or with times that cannot be read are
+ * skipped and counted.
+ * @author A0091024U
+ *
+ */
+public class IcsReader implements Closeable {
+	private static final String BEGIN = "BEGIN";
+	private static final String END = "END";
+	private static final String COMPONENT_EVENT = "VEVENT";
+	private static final String COMPONENT_TODO = "VTODO";
+	private static final String PROPERTY_SUMMARY = "SUMMARY";
+	private static final String PROPERTY_DESCRIPTION = "DESCRIPTION";
+	private static final String PROPERTY_START = "DTSTART";
+	private static final String PROPERTY_END = "DTEND";
+	private static final String PROPERTY_DUE = "DUE";
+	private static final String PROPERTY_DURATION = "DURATION";
+	private static final String PROPERTY_STATUS = "STATUS";
+	private static final String PROPERTY_COMPLETED = "COMPLETED";
+	private static final String PARAMETER_TIME_ZONE = "TZID";
+	private static final String STATUS_COMPLETED = "COMPLETED";
+	private static final char BYTE_ORDER_MARK = '\uFEFF';
+	private static final int LENGTH_OF_DATE = 8;
+	private static final int LENGTH_OF_DATE_TIME = 15;
+
+	private final BufferedReader reader;
+	// Line read after the last content line, to find out whether the content line was folded
+	private String nextLine;
+	private boolean isFirstLine;
+	private int numberOfSkippedRecords;
+
+	/**
+	 * Record being read, whose times are kept until the end of the record decides the type of task.
+	 */
+	private static class Record {
+		private final boolean isEvent;
+		private String summary;
+		private String description;
+		private DateTime start;
+		private boolean isStartADate;
+		private DateTime end;
+		private DateTime due;
+		private Period duration;
+		private boolean isCompleted;
+		private boolean isInvalid;
+
+		private Record(boolean isEvent) {
+			this.isEvent = isEvent;
+		}
+	}
+
+	public IcsReader(Reader reader) {
+		this.reader = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+		this.isFirstLine = true;
+	}
+
+	/**
+	 * @return the task of the next record, or null at the end of the file
+	 * @throws IOException
+	 */
+	public Task readTask() throws IOException {
+		String contentLine;
+		while ((contentLine = this.readContentLine()) != null) {
+			if (getName(contentLine).equals(BEGIN)) {
+				String component = getValue(contentLine);
+				if (component.equalsIgnoreCase(COMPONENT_EVENT) || component.equalsIgnoreCase(COMPONENT_TODO)) {
+					Task task = this.readRecord(new Record(component.equalsIgnoreCase(COMPONENT_EVENT)));
+					if (task != null) {
+						return task;
+					}
+					numberOfSkippedRecords++;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return number of records read so far that could not be made into tasks
+	 */
+	public int getNumberOfSkippedRecords() {
+		return numberOfSkippedRecords;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/**
+	 * Reads the properties of a record up to its end, leaving out those of the components nested in it.
+	 * @return task of the record, or null if it cannot be made into a task
+	 */
+	private Task readRecord(Record record) throws IOException {
+		int depthOfNestedComponents = 0;
+		String contentLine;
+		while ((contentLine = this.readContentLine()) != null) {
+			String name = getName(contentLine);
+			if (name.equals(BEGIN)) {
+				depthOfNestedComponents++;
+			} else if (name.equals(END)) {
+				if (depthOfNestedComponents == 0) {
+					return toTask(record);
+				}
+				depthOfNestedComponents--;
+			} else if (depthOfNestedComponents == 0) {
+				readProperty(record, name, contentLine);
+			}
+		}
+		return null; //the file ended in the middle of the record
+	}
+
+	private static void readProperty(Record record, String name, String contentLine) {
+		try {
+			if (name.equals(PROPERTY_SUMMARY)) {
+				record.summary = unescape(getValue(contentLine));
+			} else if (name.equals(PROPERTY_DESCRIPTION)) {
+				record.description = unescape(getValue(contentLine));
+			} else if (name.equals(PROPERTY_START)) {
+				record.start = parseDateTime(contentLine);
+				record.isStartADate = getValue(contentLine).length() == LENGTH_OF_DATE;
+			} else if (name.equals(PROPERTY_END)) {
+				record.end = parseDateTime(contentLine);
+			} else if (name.equals(PROPERTY_DUE)) {
+				record.due = parseDateTime(contentLine);
+			} else if (name.equals(PROPERTY_DURATION)) {
+				record.duration = ISOPeriodFormat.standard().parsePeriod(getValue(contentLine));
+			} else if (name.equals(PROPERTY_STATUS)) {
+				record.isCompleted = getValue(contentLine).equalsIgnoreCase(STATUS_COMPLETED);
+			} else if (name.equals(PROPERTY_COMPLETED)) {
+				record.isCompleted = true;
+			}
+		} catch (IllegalArgumentException e) {
+			record.isInvalid = true;
+		}
+	}
+
+	/**
+	 * @return task of the record, or null if it has no title or its times cannot be made into a task
+	 */
+	private static Task toTask(Record record) {
+		if (record.isInvalid || record.summary == null || record.summary.isEmpty()) {
+			return null;
+		}
+
+		String description = (record.description == null) ? "" : record.description;
+		Task task;
+		if (record.isEvent) {
+			if (record.start == null) {
+				return null;
+			}
+			DateTime end = record.end;
+			if (end == null && record.duration != null) {
+				end = record.start.plus(record.duration);
+			} else if (end == null && record.isStartADate) {
+				end = record.start.plusDays(1); //an event on a date lasts the whole day
+			}
+
+			if (end == null || end.isEqual(record.start)) {
+				task = new DeadlineTask(record.summary, description, record.start);
+			} else if (end.isAfter(record.start)) {
+				task = new TimedTask(record.summary, description, record.start, end);
+			} else {
+				return null;
+			}
+		} else if (record.due != null) {
+			task = new DeadlineTask(record.summary, description, record.due);
+		} else {
+			task = new FloatingTask(record.summary, description);
+		}
+
+		if (record.isCompleted) {
+			task.setStatus(Status.COMPLETED);
+		}
+		return task;
+	}
+
+	/**
+	 * Reads a line, joined with the lines folded after it.
+	 * @return the content line, or null at the end of the file
+	 */
+	private String readContentLine() throws IOException {
+		String line = (nextLine != null) ? nextLine : reader.readLine();
+		if (line == null) {
+			return null;
+		}
+		if (isFirstLine) {
+			isFirstLine = false;
+			if (!line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) {
+				line = line.substring(1);
+			}
+		}
+
+		nextLine = reader.readLine();
+		if (!isFolded(nextLine)) {
+			return line;
+		}
+
+		StringBuilder contentLine = new StringBuilder(line);
+		while (isFolded(nextLine)) {
+			contentLine.append(nextLine, 1, nextLine.length());
+			nextLine = reader.readLine();
+		}
+		return contentLine.toString();
+	}
+
+	private static boolean isFolded(String line) {
+		return line != null && !line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t');
+	}
+
+	/**
+	 * @return name of the property of a content line, such as "DTSTART", in upper case
+	 */
+	private static String getName(String contentLine) {
+		int index = 0;
+		while (index < contentLine.length() && contentLine.charAt(index) != ';' && contentLine.charAt(index) != ':') {
+			index++;
+		}
+		String name = contentLine.substring(0, index);
+		for (int i = 0; i < name.length(); i++) {
+			if (Character.isLowerCase(name.charAt(i))) {
+				return name.toUpperCase();
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * @return value of a content line, after the first colon that is not quoted in a parameter
+	 */
+	private static String getValue(String contentLine) {
+		return contentLine.substring(getIndexOfValue(contentLine));
+	}
+
+	private static int getIndexOfValue(String contentLine) {
+		boolean isQuoted = false;
+		for (int index = 0; index < contentLine.length(); index++) {
+			char character = contentLine.charAt(index);
+			if (character == '"') {
+				isQuoted = !isQuoted;
+			} else if (character == ':' && !isQuoted) {
+				return index + 1;
+			}
+		}
+		return contentLine.length();
+	}
+
+	/**
+	 * @return value of a parameter of a content line, such as the TZID of a DTSTART, or null if it is not given
+	 */
+	private static String getParameter(String contentLine, String parameterName) {
+		int endOfParameters = getIndexOfValue(contentLine) - 1;
+		int startOfParameters = contentLine.indexOf(';');
+		if (startOfParameters < 0 || startOfParameters >= endOfParameters) {
+			return null;
+		}
+
+		String prefix = ";" + parameterName + "=";
+		int index = contentLine.toUpperCase().indexOf(prefix);
+		if (index < 0 || index >= endOfParameters) {
+			return null;
+		}
+
+		int start = index + prefix.length();
+		int end = start;
+		while (end < endOfParameters && contentLine.charAt(end) != ';') {
+			end++;
+		}
+		String value = contentLine.substring(start, end);
+		if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+			value = value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	/**
+	 * Parses a date, which is the start of the day in the local time zone, or a date and time, which is in UTC if
+	 * it ends with Z, in the time zone given by TZID, or else in the local time zone.
+	 * @throws IllegalArgumentException if the value is neither
+	 */
+	private static DateTime parseDateTime(String contentLine) {
+		String value = getValue(contentLine);
+		if (value.length() == LENGTH_OF_DATE) {
+			return new LocalDate(parseDigits(value, 0, 4), parseDigits(value, 4, 6), parseDigits(value, 6, 8))
+					.toDateTimeAtStartOfDay();
+		}
+
+		boolean isUtc = value.length() == LENGTH_OF_DATE_TIME + 1 && value.charAt(LENGTH_OF_DATE_TIME) == 'Z';
+		if ((value.length() != LENGTH_OF_DATE_TIME && !isUtc) || value.charAt(LENGTH_OF_DATE) != 'T') {
+			throw new IllegalArgumentException(value);
+		}
+
+		DateTimeZone zone = isUtc ? DateTimeZone.UTC : getTimeZone(getParameter(contentLine, PARAMETER_TIME_ZONE));
+		return new DateTime(parseDigits(value, 0, 4), parseDigits(value, 4, 6), parseDigits(value, 6, 8),
+				parseDigits(value, 9, 11), parseDigits(value, 11, 13), parseDigits(value, 13, 15), zone)
+				.withZone(DateTimeZone.getDefault());
+	}
+
+	/**
+	 * @return the time zone of the given id, or the local time zone if there is no id or it is not known
+	 */
+	private static DateTimeZone getTimeZone(String timeZoneId) {
+		if (timeZoneId == null) {
+			return DateTimeZone.getDefault();
+		}
+		try {
+			return DateTimeZone.forID(timeZoneId);
+		} catch (IllegalArgumentException e) {
+			return DateTimeZone.getDefault();
+		}
+	}
+
+	private static int parseDigits(String value, int start, int end) {
+		int number = 0;
+		for (int index = start; index < end; index++) {
+			char digit = value.charAt(index);
+			if (digit < '0' || digit > '9') {
+				throw new IllegalArgumentException(value);
+			}
+			number = number * 10 + (digit - '0');
+		}
+		return number;
+	}
+
+	/**
+	 * @return text with the escaped backslashes, semicolons, commas and new lines of iCalendar turned back
+	 */
+	private static String unescape(String text) {
+		if (text.indexOf('\\') < 0) {
+			return text;
+		}
+
+		StringBuilder unescaped = new StringBuilder(text.length());
+		for (int index = 0; index < text.length(); index++) {
+			char character = text.charAt(index);
+			if (character == '\\' && index + 1 < text.length()) {
+				index++;
+				char escaped = text.charAt(index);
+				unescaped.append((escaped == 'n' || escaped == 'N') ? '\n' : escaped);
+			} else {
+				unescaped.append(character);
+			}
+		}
+		return unescaped.toString();
+	}
+}
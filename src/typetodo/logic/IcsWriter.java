@@ -0,0 +1,165 @@
+package typetodo.logic;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import typetodo.model.DeadlineTask;
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+import typetodo.model.TimedTask;
+
+/**
+ * The IcsWriter writes tasks to an iCalendar (.ics) file one at a time, so that nothing but the task being
+ * written is held in memory. A TimedTask is written as a VEVENT, a DeadlineTask as a VTODO that is due at its
+ * deadline and a FloatingTask as a VTODO without a due date, so that the IcsReader reads them back as the same
+ * types. Times are written in UTC, and lines longer than 75 bytes are folded as iCalendar requires.
+ * @author A0091024U
+ *
+ */
+public class IcsWriter implements Closeable {
+	private static final String LINE_SEPARATOR = "\r\n";
+	private static final String PRODUCT_ID = "-//TypeToDo//TypeToDo//EN";
+	private static final String UID_FORMAT = "typetodo-%d-%d";
+	private static final int MAX_BYTES_OF_LINE = 75;
+	private static final DateTimeFormatter UTC_DATE_TIME =
+			DateTimeFormat.forPattern("yyyyMMdd'T'HHmmss'Z'").withZone(DateTimeZone.UTC);
+
+	private final BufferedWriter writer;
+	private final String timeStamp;
+	private int numberOfTasks;
+
+	/**
+	 * Starts the calendar, which is ended by close().
+	 * @throws IOException
+	 */
+	public IcsWriter(Writer writer) throws IOException {
+		this.writer = (writer instanceof BufferedWriter) ? (BufferedWriter) writer : new BufferedWriter(writer);
+		this.timeStamp = UTC_DATE_TIME.print(new DateTime());
+		this.writeLine("BEGIN:VCALENDAR");
+		this.writeLine("VERSION:2.0");
+		this.writeLine("PRODID:" + PRODUCT_ID);
+	}
+
+	/**
+	 * @param task TimedTask, DeadlineTask or FloatingTask
+	 * @throws IOException
+	 */
+	public void writeTask(Task task) throws IOException {
+		String component = (task instanceof TimedTask) ? "VEVENT" : "VTODO";
+		long millisCreated = (task.getDateCreated() == null) ? 0 : task.getDateCreated().getMillis();
+		this.writeLine("BEGIN:" + component);
+		this.writeLine("UID:" + String.format(UID_FORMAT, task.getTaskId(), millisCreated));
+		this.writeLine("DTSTAMP:" + timeStamp);
+		this.writeLine("SUMMARY:" + escape(task.getTitle()));
+		if (task.getDescription() != null && !task.getDescription().isEmpty()) {
+			this.writeLine("DESCRIPTION:" + escape(task.getDescription()));
+		}
+
+		if (task instanceof TimedTask) {
+			this.writeLine("DTSTART:" + UTC_DATE_TIME.print(((TimedTask) task).getStart()));
+			this.writeLine("DTEND:" + UTC_DATE_TIME.print(((TimedTask) task).getEnd()));
+		} else if (task instanceof DeadlineTask) {
+			this.writeLine("DUE:" + UTC_DATE_TIME.print(((DeadlineTask) task).getDeadline()));
+		}
+		if (!(task instanceof TimedTask) && task.getStatus() == Status.COMPLETED) {
+			this.writeLine("STATUS:COMPLETED"); //events have no completed status in iCalendar
+		}
+		this.writeLine("END:" + component);
+		numberOfTasks++;
+	}
+
+	/**
+	 * @return number of tasks written so far
+	 */
+	public int getNumberOfTasks() {
+		return numberOfTasks;
+	}
+
+	/**
+	 * Ends the calendar and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this.writeLine("END:VCALENDAR");
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes a content line, folding it into lines of at most 75 bytes of UTF-8 without splitting a character.
+	 */
+	private void writeLine(String contentLine) throws IOException {
+		int bytesOfLine = 0;
+		int startOfLine = 0;
+		for (int index = 0; index < contentLine.length(); index++) {
+			char character = contentLine.charAt(index);
+			int bytesOfCharacter;
+			if (character < 0x80) {
+				bytesOfCharacter = 1;
+			} else if (character < 0x800) {
+				bytesOfCharacter = 2;
+			} else if (Character.isHighSurrogate(character)) {
+				bytesOfCharacter = 4; //counted with the low surrogate that follows
+			} else if (Character.isLowSurrogate(character)) {
+				bytesOfCharacter = 0;
+			} else {
+				bytesOfCharacter = 3;
+			}
+
+			if (bytesOfLine + bytesOfCharacter > MAX_BYTES_OF_LINE) {
+				writer.write(contentLine, startOfLine, index - startOfLine);
+				writer.write(LINE_SEPARATOR);
+				writer.write(' ');
+				startOfLine = index;
+				bytesOfLine = 1; //the space that starts a folded line
+			}
+			bytesOfLine += bytesOfCharacter;
+		}
+		writer.write(contentLine, startOfLine, contentLine.length() - startOfLine);
+		writer.write(LINE_SEPARATOR);
+	}
+
+	/**
+	 * @return text with its backslashes, semicolons, commas and new lines escaped as iCalendar requires
+	 */
+	private static String escape(String text) {
+		if (text == null) {
+			return "";
+		}
+
+		StringBuilder escaped = null;
+		for (int index = 0; index < text.length(); index++) {
+			char character = text.charAt(index);
+			String replacement = null;
+			if (character == '\\' || character == ';' || character == ',') {
+				replacement = "\\" + character;
+			} else if (character == '\n') {
+				replacement = "\\n";
+			} else if (character == '\r') {
+				replacement = "";
+			}
+
+			if (replacement != null && escaped == null) {
+				escaped = new StringBuilder(text.length() + 8);
+				escaped.append(text, 0, index);
+			}
+			if (escaped != null) {
+				if (replacement != null) {
+					escaped.append(replacement);
+				} else {
+					escaped.append(character);
+				}
+			}
+		}
+		return (escaped == null) ? text : escaped.toString();
+	}
+}
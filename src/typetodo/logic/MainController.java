@@ -1,9 +1,10 @@
 package typetodo.logic;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Stack;
 
-import typetodo.sync.SyncController;
+import typetodo.sync.SyncFacade;
 import typetodo.ui.View;
 
 /**
@@ -17,32 +18,38 @@ public class MainController {
 	private static final String ERROR_MESSAGE_NOTHING_TO_UNDO = "Nothing to undo";
 	
 	private View view;
+	private Schedule schedule;
+	// Version of the tasks last displayed, set by any thread that refreshes the display
+	private volatile long versionDisplayed = -1;
 	private Stack<Command> historyOfCommands;
 	private CommandParser commandParser;
 	private CurrentTaskListManager taskListManager;
-	private SyncController syncController;
+	private SyncFacade syncFacade;
 	private HelpController helpController;
 	
 	public MainController(View view, Schedule schedule) throws IOException {
 		this.view = view;
-		this.syncController = new SyncController(view);
+		this.schedule = schedule;
+		// The tasks changed by a background sync are displayed by CommandExecutor.refreshOnChanges, on the
+		// thread that executes the commands
+		this.syncFacade = new SyncFacade(view);
 		this.taskListManager = new CurrentTaskListManager(schedule);
-		this.commandParser = new CommandParser(this, schedule, taskListManager, syncController,helpController);
+		this.commandParser = new CommandParser(this, schedule, taskListManager, syncFacade, helpController);
 		this.historyOfCommands = new Stack<Command>();
 		
-		String htmlDisplayContent = "";
-		
-		try {
-			htmlDisplayContent = TasksFormatter.formatTasks(taskListManager.getCurrentTaskList());
-		} catch (Exception e) {
-			view.displayErrorMessage(e.getMessage());
-		}
-		
-		view.displayTasks(htmlDisplayContent);
+		refreshDisplay();
 		view.displayFeedBack(MESSAGE_WELCOME);
+		syncFacade.startAutomaticSync();
 	}
 
-	public void parseAndExecute(String userInput) {
+	/**
+	 * Parses and executes the given user input, then optionally refreshes the list of tasks displayed.
+	 * @param userInput raw user input
+	 * @param isRefreshingDisplay false if the display will be refreshed by a command queued after this one
+	 * @return feedback of the command, which has been displayed
+	 * @throws Exception the input could not be parsed or executed, and its message has been displayed
+	 */
+	public String parseAndExecute(String userInput, boolean isRefreshingDisplay) throws Exception {
 		Command command;
 		try {
 			command = commandParser.parse(userInput);
@@ -52,14 +59,28 @@ public class MainController {
 			if (command instanceof Undoable) {
 				historyOfCommands.add(command);
 			}
+			return feedback;
 
 		} catch (Exception e) {
 			view.displayErrorMessage(e.getMessage());
+			throw e;
+		} finally {
+			if (isRefreshingDisplay) {
+				refreshDisplay();
+			}
 		}
+	}
 
-		String htmlDisplayContent = "";
+	/**
+	 * Formats the current list of tasks again and displays it. Only tasks whose highlight or overdue
+	 * state has changed are formatted again, the rest are taken from the cache of the formatter.
+	 */
+	public void refreshDisplay() {
+		versionDisplayed = schedule.getVersion();
+		ArrayList<String> htmlDisplayContent = new ArrayList<String>();
 		try {
-			htmlDisplayContent = TasksFormatter.formatTasks(taskListManager.getCurrentTaskList());
+			htmlDisplayContent = TasksFormatter.formatTasks(taskListManager.getCurrentTaskList(), 
+					taskListManager.getFirstVisibleDate(), taskListManager.getLastVisibleDate());
 		} catch (Exception e) {
 			view.displayErrorMessage(e.getMessage());
 		}
@@ -67,6 +88,13 @@ public class MainController {
 		view.displayTasks(htmlDisplayContent);
 	}
 
+	/**
+	 * @return true if the tasks have changed since they were last displayed
+	 */
+	public boolean isDisplayOutdated() {
+		return schedule.getVersion() != versionDisplayed;
+	}
+
 	public void undo() throws Exception {
 		if (!historyOfCommands.isEmpty()) {
 			try {
@@ -2,10 +2,12 @@ package typetodo.logic;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.joda.time.DateTime;
 
 import typetodo.db.DbController;
+import typetodo.db.TaskChangePublisher;
 import typetodo.exception.InvalidAttributeException;
 import typetodo.exception.InvalidDateRangeException;
 import typetodo.exception.InvalidFieldNameException;
@@ -13,12 +15,16 @@ import typetodo.exception.InvalidIdException;
 import typetodo.exception.MissingFieldException;
 import typetodo.model.DeadlineTask;
 import typetodo.model.FieldName;
+import typetodo.model.PendingChange;
 import typetodo.model.Task;
 import typetodo.model.Task.Status;
 import typetodo.model.TaskType;
 import typetodo.model.TimedTask;
+import typetodo.model.TypeOfOperation;
 /**
  * The Schedule class provides the necessary API needed to manage (CRUD) the Tasks in the Schedule.
+ * Every change to the Schedule is also saved as a PendingChange, to be sent to the Google Schedule
+ * on the next sync.
  * @author A0091024U
  *
  */
@@ -54,19 +60,54 @@ public class Schedule {
 			this.checkForDeadline((DeadlineTask) task);
 		}
 		
-		int taskId = db.addTask(task);
+		int taskId;
+		synchronized (db) { //a sync in the background sees the task and its pending change together
+			taskId = db.addTask(task);
+			db.addPendingChange(new PendingChange(TypeOfOperation.ADD, task));
+		}
 
 		return taskId;
 	}
 
+	/**
+	 * Adds tasks into the Schedule together, so that the tasks and their pending changes are saved once 
+	 * rather than once for every task, such as for an import.
+	 * @param tasks Tasks to be added, which are given their IDs
+	 * @throws Exception if any of the tasks is invalid, in which case none of them is added
+	 */
+	public void addTasks(List<Task> tasks) throws Exception {
+		for (Task task : tasks) {
+			this.checkForTitle(task);
+			
+			if (task instanceof TimedTask) {
+				this.checkForValidDateRange((TimedTask) task);
+			} else if (task instanceof DeadlineTask) {
+				this.checkForDeadline((DeadlineTask) task);
+			}
+		}
+		
+		synchronized (db) {
+			db.addTasks(tasks);
+			ArrayList<PendingChange> pendingChanges = new ArrayList<PendingChange>(tasks.size());
+			for (Task task : tasks) {
+				pendingChanges.add(new PendingChange(TypeOfOperation.ADD, task));
+			}
+			db.addPendingChanges(pendingChanges);
+		}
+	}
+
 	/**
 	 * Deletes a task from the schedule.
 	 * @param taskId Task id of the task that is to be deleted
 	 * @throws Exception 
 	 */
 	public void deleteTaskById(int taskId) throws Exception {
-		if (!db.deleteTask(taskId)) {
-			throw new InvalidIdException(ERROR_MESSAGE_INVALID_ID);
+		synchronized (db) {
+			Task taskToBeDeleted = db.getTask(taskId);
+			if (!db.deleteTask(taskId)) {
+				throw new InvalidIdException(ERROR_MESSAGE_INVALID_ID);
+			}
+			db.addPendingChange(new PendingChange(TypeOfOperation.DELETE, taskToBeDeleted));
 		}
 	}
 
@@ -84,7 +125,10 @@ public class Schedule {
 			this.checkForDeadline((DeadlineTask) task);
 		}
 		
-		db.updateTask(task);
+		synchronized (db) {
+			db.updateTask(task);
+			db.addPendingChange(new PendingChange(TypeOfOperation.EDIT, task));
+		}
 	}
 
 	/**
@@ -96,11 +140,19 @@ public class Schedule {
 	 * particular type of task and if new value is invalid 
 	 */
 	public void updateTask(int taskId, FieldName fieldName, String newString) throws Exception {
-		Task taskToBeUpdated = db.getTask(taskId);
-		if (taskToBeUpdated == null) {
-			throw new InvalidIdException(ERROR_MESSAGE_INVALID_ID);
+		synchronized (db) { //the task in the database is replaced by an edited copy, never edited in place
+			Task taskToBeUpdated = this.copyTaskInDatabase(taskId);
+			if (taskToBeUpdated == null) {
+				throw new InvalidIdException(ERROR_MESSAGE_INVALID_ID);
+			}
+			this.updateField(taskToBeUpdated, fieldName, newString);
+			taskToBeUpdated.updateDateModified();
+			db.updateTask(taskToBeUpdated);
+			db.addPendingChange(new PendingChange(TypeOfOperation.EDIT, taskToBeUpdated));
 		}
+	}
 
+	private void updateField(Task taskToBeUpdated, FieldName fieldName, String newString) throws Exception {
 		switch (fieldName) {
 		case TITLE :
 			taskToBeUpdated.setTitle(newString);
@@ -112,9 +164,6 @@ public class Schedule {
 		default:
 			throw new InvalidFieldNameException(ERROR_MESSAGE_INVALID_FIELD);
 		}
-
-		taskToBeUpdated.updateDateModified();
-		db.updateTask(taskToBeUpdated);
 	}
 
 	/**
@@ -126,11 +175,19 @@ public class Schedule {
 	 * particular type of task and if new value is invalid
 	 */
 	public void updateTask(int taskId, FieldName fieldName, DateTime newDateTime) throws Exception {
-		Task taskToBeUpdated = db.getTask(taskId);
-		if (taskToBeUpdated == null) {
-			throw new InvalidAttributeException(ERROR_MESSAGE_INVALID_ID);
+		synchronized (db) {
+			Task taskToBeUpdated = this.copyTaskInDatabase(taskId);
+			if (taskToBeUpdated == null) {
+				throw new InvalidAttributeException(ERROR_MESSAGE_INVALID_ID);
+			}
+			this.updateField(taskToBeUpdated, fieldName, newDateTime);
+			taskToBeUpdated.updateDateModified();
+			db.updateTask(taskToBeUpdated);
+			db.addPendingChange(new PendingChange(TypeOfOperation.EDIT, taskToBeUpdated));
 		}
+	}
 
+	private void updateField(Task taskToBeUpdated, FieldName fieldName, DateTime newDateTime) throws Exception {
 		switch (fieldName) {
 		case DEADLINE :
 			if (taskToBeUpdated instanceof DeadlineTask) {
@@ -157,9 +214,6 @@ public class Schedule {
 		default :
 			throw new InvalidFieldNameException(ERROR_MESSAGE_INVALID_FIELD);
 		}
-
-		taskToBeUpdated.updateDateModified();
-		db.updateTask(taskToBeUpdated);
 	}
 
 	/**
@@ -169,14 +223,32 @@ public class Schedule {
 	 * @throws Exception if id is invalid
 	 */
 	public void updateTaskStatus(int taskId, Status status) throws Exception {
-		Task taskToBeMarked = db.getTask(taskId);
+		synchronized (db) {
+			Task taskToBeMarked = this.copyTaskInDatabase(taskId);
+			if (taskToBeMarked == null) {
+				throw new InvalidIdException(ERROR_MESSAGE_INVALID_ID);
+			}
+			taskToBeMarked.setStatus(status);
+			db.updateTask(taskToBeMarked);
+			db.addPendingChange(new PendingChange(TypeOfOperation.EDIT, taskToBeMarked));
+		}
+	}
 
-		if (taskToBeMarked == null) {
-			throw new InvalidIdException(ERROR_MESSAGE_INVALID_ID);
+	/**
+	 * Copies the task in the database to be edited, so that a sync or a request of the ApiServer reading the
+	 * task on another thread never sees it half edited. Only called while holding the lock of the database.
+	 * @return copy of the task, with the fields kept by the sync, or null if there is no task with the id
+	 */
+	private Task copyTaskInDatabase(int taskId) {
+		Task task = db.getTask(taskId);
+		if (task == null) {
+			return null;
 		}
 
-		taskToBeMarked.setStatus(status);
-		db.updateTask(taskToBeMarked);
+		Task copy = task.makeCopy();
+		copy.setGoogleId(task.getGoogleId());
+		copy.setSyncedVersion(task.getSyncedVersion());
+		return copy;
 	}
 
 	/**
@@ -327,6 +399,24 @@ public class Schedule {
 		}
 		return task;
 	}
+
+	/**
+	 * Returns the version of the tasks in the schedule, which changes whenever a task is added, deleted or
+	 * updated. Tasks retrieved after calling this method are at least as new as the version returned.
+	 * @return version of the tasks
+	 */
+	public long getVersion() {
+		return db.getVersion();
+	}
+
+	/**
+	 * Subscribes to the changes made to the tasks from now on, whether through this Schedule or by a sync, so
+	 * that what is built from the tasks can be updated without retrieving all of them after every change.
+	 * @param subscriber given each change with copies of the task before and after it, once requested
+	 */
+	public void subscribe(TaskChangePublisher.Subscriber subscriber) {
+		db.subscribe(subscriber);
+	}
 	
 	private void checkForTitle(Task task) throws MissingFieldException {
 		if (task.getTitle() == null || task.getTitle().equals("")) {
@@ -3,10 +3,18 @@ package typetodo.logic;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.joda.time.DateTime;
 import org.junit.Test;
 
+import typetodo.db.TaskChangePublisher;
+import typetodo.model.FieldName;
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+import typetodo.model.TaskChange;
 import typetodo.model.TimedTask;
 
 /**
@@ -113,4 +121,75 @@ public class ScheduleATD {
 			;
 		}
 	}
+
+	//An edit replaces the task with an edited copy, and an invalid edit changes nothing//
+	@Test
+	public void EditingACopyOfTheTask() throws Exception {
+		DateTime now = new DateTime();
+		Schedule schedule = new Schedule();
+		int taskId = schedule.addTask(new TimedTask("Copied task", "description", now, now.plusHours(1)));
+		try {
+			Task taskBeforeEdit = schedule.getTask(taskId);
+			schedule.updateTask(taskId, FieldName.TITLE, "Copied task renamed");
+			assertEquals("Copied task", taskBeforeEdit.getTitle());
+			assertEquals("Copied task renamed", schedule.getTask(taskId).getTitle());
+
+			try {
+				schedule.updateTask(taskId, FieldName.START, now.plusDays(1));
+			} catch (Exception expected) {
+				assertEquals(ERROR_MESSAGE_INVALID_DATE_START_AFTER_END, expected.getMessage());
+			}
+			assertEquals(now, ((TimedTask) schedule.getTask(taskId)).getStart());
+		} finally {
+			schedule.deleteTaskById(taskId);
+		}
+	}
+
+	//Every change is published with copies of the task before and after it, and the task is deleted again//
+	@Test
+	public void PublishingChangesOfATask() throws Exception {
+		Schedule schedule = new Schedule();
+		final LinkedBlockingQueue<TaskChange> changes = new LinkedBlockingQueue<TaskChange>();
+		final TaskChangePublisher.Subscription[] subscriptions = new TaskChangePublisher.Subscription[1];
+		schedule.subscribe(new TaskChangePublisher.Subscriber() {
+			@Override
+			public void onSubscribe(TaskChangePublisher.Subscription subscription) {
+				subscriptions[0] = subscription;
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(TaskChange change) {
+				changes.add(change);
+			}
+		});
+
+		try {
+			int taskId = schedule.addTask(new FloatingTask("Published task", "description"));
+			schedule.updateTask(taskId, FieldName.TITLE, "Published task renamed");
+			schedule.updateTaskStatus(taskId, Status.COMPLETED);
+			schedule.deleteTaskById(taskId);
+
+			TaskChange added = changes.poll(5, TimeUnit.SECONDS);
+			assertEquals(TaskChange.Type.ADDED, added.getType());
+			assertEquals(taskId, added.getTaskId());
+
+			TaskChange updated = changes.poll(5, TimeUnit.SECONDS);
+			assertEquals(TaskChange.Type.UPDATED, updated.getType());
+			assertEquals("Published task", updated.getTaskBefore().getTitle());
+			assertEquals("Published task renamed", updated.getTaskAfter().getTitle());
+
+			TaskChange statusChanged = changes.poll(5, TimeUnit.SECONDS);
+			assertEquals(TaskChange.Type.STATUS_CHANGED, statusChanged.getType());
+			assertEquals(Status.INCOMPLETE, statusChanged.getTaskBefore().getStatus());
+			assertEquals(Status.COMPLETED, statusChanged.getTaskAfter().getStatus());
+
+			TaskChange deleted = changes.poll(5, TimeUnit.SECONDS);
+			assertEquals(TaskChange.Type.DELETED, deleted.getType());
+			assertEquals(null, deleted.getTaskAfter());
+			assertEquals(schedule.getVersion(), deleted.getVersion());
+		} finally {
+			subscriptions[0].cancel();
+		}
+	}
 }
\ No newline at end of file
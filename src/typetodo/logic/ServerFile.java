@@ -0,0 +1,108 @@
+package typetodo.logic;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import typetodo.db.DbController;
+
+/**
+ * The file in which a local server of TypeToDo, such as the CommandServer or the ApiServer, writes the port it
+ * listens on and the random key its clients must send. Only the owner of the file may read it, so only the
+ * user running TypeToDo can use the server. The file is kept with the saved tasks, so that a client finds the
+ * instance that runs on the same tasks.
+ * @author A0091024U
+ *
+ */
+class ServerFile {
+	static final String CHARSET = "UTF-8";
+	private static final int NUMBER_OF_BYTES_OF_KEY = 16;
+
+	private ServerFile() {
+	}
+
+	/**
+	 * @return file of the given name in the directory of the saved tasks
+	 */
+	static File inSavedFiles(String filename) {
+		return new File(DbController.DIRECTORY_NAME, filename);
+	}
+
+	/**
+	 * @return new random key, in hexadecimal
+	 */
+	static String createKey() {
+		byte[] bytesOfKey = new byte[NUMBER_OF_BYTES_OF_KEY];
+		new SecureRandom().nextBytes(bytesOfKey);
+		StringBuilder hexOfKey = new StringBuilder();
+		for (byte byteOfKey : bytesOfKey) {
+			hexOfKey.append(String.format("%02x", byteOfKey));
+		}
+		return hexOfKey.toString();
+	}
+
+	/**
+	 * Writes the port and the key to the file, which only its owner may read.
+	 */
+	static void write(File file, int port, String key) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.exists()) {
+			directory.mkdirs();
+		}
+		file.delete();
+		if (!file.createNewFile()) {
+			throw new IOException("Could not create " + file.getPath());
+		}
+		file.setReadable(false, false);
+		file.setWritable(false, false);
+		file.setReadable(true, true);
+		file.setWritable(true, true);
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), CHARSET);
+		try {
+			writer.write(port + " " + key);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return port and key written to the file
+	 * @throws IOException the file is missing, as the server is not running, or cannot be read
+	 */
+	static String[] read(File file) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+		String[] portAndKey;
+		try {
+			String line = reader.readLine();
+			portAndKey = (line == null) ? new String[0] : line.trim().split(" ");
+		} finally {
+			reader.close();
+		}
+
+		if (portAndKey.length != 2) {
+			throw new IOException("Could not read " + file.getPath());
+		}
+		try {
+			Integer.parseInt(portAndKey[0]);
+		} catch (NumberFormatException e) {
+			throw new IOException("Could not read " + file.getPath());
+		}
+		return portAndKey;
+	}
+
+	/**
+	 * Compares the keys in a time that does not depend on where they differ.
+	 */
+	static boolean isKey(String key, String keyOfRequest) throws IOException {
+		return keyOfRequest != null
+				&& MessageDigest.isEqual(key.getBytes(CHARSET), keyOfRequest.trim().getBytes(CHARSET));
+	}
+}
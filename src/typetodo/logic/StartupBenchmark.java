@@ -0,0 +1,52 @@
+package typetodo.logic;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import typetodo.ui.View;
+
+/**
+ * Measures the startup of TypeToDo's logic, that is the wall time and the number of classes loaded until the
+ * MainController has been created and has displayed the tasks, with a View that shows nothing. Each run measures
+ * one startup, so start it several times, with -verbose:class to see which classes are loaded, using:
+ * java typetodo.logic.StartupBenchmark
+ * @author A0091024U
+ *
+ */
+public class StartupBenchmark {
+	public static void main(String[] args) throws Exception {
+		long timeBefore = System.nanoTime();
+		
+		new MainController(new View() {
+			@Override
+			public boolean disableInput() {
+				return true;
+			}
+
+			@Override
+			public boolean enableInput() {
+				return true;
+			}
+
+			@Override
+			public void displayFeedBack(String feedBack) {
+			}
+
+			@Override
+			public void displayErrorMessage(String errorMessage) {
+			}
+
+			@Override
+			public void displayTasks(List<String> taskRows) {
+			}
+
+			@Override
+			public void displayHelp(String helpMessage) {
+			}
+		}, new Schedule());
+		
+		long millis = (System.nanoTime() - timeBefore) / 1000000;
+		System.out.println(String.format("startup %,d ms, %,d classes loaded", millis, 
+				ManagementFactory.getClassLoadingMXBean().getLoadedClassCount()));
+	}
+}
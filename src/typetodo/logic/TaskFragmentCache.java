@@ -0,0 +1,206 @@
+package typetodo.logic;
+
+import java.util.HashMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+import typetodo.model.Task;
+import typetodo.model.Task.Status;
+
+/**
+ * The TaskFragmentCache keeps the formatted html of every task and date heading from the previous
+ * refresh, so that TasksFormatter only has to format the tasks that have changed since then.
+ * Fragments that are not used during a refresh are dropped at the end of it.
+ * The cache is not thread safe, TasksFormatter only uses it while holding its class lock.
+ * @author A0091024U
+ *
+ */
+public class TaskFragmentCache {
+	private HashMap<FragmentKey, String> taskFragments;
+	private HashMap<FragmentKey, String> previousTaskFragments;
+	private HashMap<LocalDate, String> dateHeadings;
+	private HashMap<LocalDate, String> previousDateHeadings;
+
+	private long numberOfFragmentsReused;
+	private long numberOfFragmentsRendered;
+
+	public TaskFragmentCache() {
+		taskFragments = new HashMap<FragmentKey, String>();
+		previousTaskFragments = new HashMap<FragmentKey, String>();
+		dateHeadings = new HashMap<LocalDate, String>();
+		previousDateHeadings = new HashMap<LocalDate, String>();
+	}
+
+	/**
+	 * Marks the start of a refresh. Fragments that were used in the previous refresh remain available
+	 * until the end of this refresh.
+	 */
+	public void startRefresh() {
+		previousTaskFragments = taskFragments;
+		taskFragments = new HashMap<FragmentKey, String>(previousTaskFragments.size());
+		previousDateHeadings = dateHeadings;
+		dateHeadings = new HashMap<LocalDate, String>(previousDateHeadings.size());
+	}
+
+	/**
+	 * Drops every fragment, including those of the previous refresh.
+	 */
+	public void clear() {
+		this.startRefresh();
+		this.startRefresh();
+	}
+
+	/**
+	 * @return the cached html of the task, or null if the task has to be formatted again
+	 */
+	public String getTaskFragment(FragmentKey key) {
+		String fragment = taskFragments.get(key);
+		if (fragment == null) {
+			fragment = previousTaskFragments.get(key);
+			if (fragment != null) {
+				taskFragments.put(key, fragment);
+			}
+		}
+
+		if (fragment != null) {
+			numberOfFragmentsReused++;
+		}
+		return fragment;
+	}
+
+	public void putTaskFragment(FragmentKey key, String fragment) {
+		numberOfFragmentsRendered++;
+		taskFragments.put(key, fragment);
+	}
+
+	/**
+	 * @return the cached html of the date heading, or null if the heading has to be formatted again
+	 */
+	public String getDateHeading(LocalDate date) {
+		String heading = dateHeadings.get(date);
+		if (heading == null) {
+			heading = previousDateHeadings.get(date);
+			if (heading != null) {
+				dateHeadings.put(date, heading);
+			}
+		}
+
+		if (heading != null) {
+			numberOfFragmentsReused++;
+		}
+		return heading;
+	}
+
+	public void putDateHeading(LocalDate date, String heading) {
+		numberOfFragmentsRendered++;
+		dateHeadings.put(date, heading);
+	}
+
+	/**
+	 * @return the counters of the cache as they are now
+	 */
+	public Statistics getStatistics() {
+		return new Statistics(numberOfFragmentsReused, numberOfFragmentsRendered);
+	}
+
+	/**
+	 * Counters of the fragments taken from the cache and formatted, since the application started.
+	 */
+	public static class Statistics {
+		private final long numberOfFragmentsReused;
+		private final long numberOfFragmentsRendered;
+
+		private Statistics(long numberOfFragmentsReused, long numberOfFragmentsRendered) {
+			this.numberOfFragmentsReused = numberOfFragmentsReused;
+			this.numberOfFragmentsRendered = numberOfFragmentsRendered;
+		}
+
+		/**
+		 * @return number of fragments taken from the cache
+		 */
+		public long getNumberOfFragmentsReused() {
+			return numberOfFragmentsReused;
+		}
+
+		/**
+		 * @return number of fragments that had to be formatted
+		 */
+		public long getNumberOfFragmentsRendered() {
+			return numberOfFragmentsRendered;
+		}
+	}
+
+	/**
+	 * Identifies the formatted html of a task. Two tasks with equal keys are displayed identically.
+	 */
+	public static class FragmentKey {
+		private final int taskId;
+		private final long dateModified;
+		private final Status status;
+		private final boolean isHighlighted;
+		private final boolean isOverdue;
+		private final long start;
+		private final long end;
+		// Sync may replace the title/description without changing the date modified
+		private final String title;
+		private final String description;
+
+		/**
+		 * @param start displayed start of the task, null for a Floating Task
+		 * @param end displayed end of the task, null for a Floating Task
+		 */
+		public FragmentKey(Task task, DateTime start, DateTime end, boolean isHighlighted, boolean isOverdue) {
+			this.taskId = task.getTaskId();
+			this.dateModified = getMillis(task.getDateModified());
+			this.status = task.getStatus();
+			this.isHighlighted = isHighlighted;
+			this.isOverdue = isOverdue;
+			this.title = task.getTitle();
+			this.description = task.getDescription();
+			this.start = getMillis(start);
+			this.end = getMillis(end);
+		}
+
+		private static long getMillis(DateTime dateTime) {
+			return (dateTime == null) ? 0 : dateTime.getMillis();
+		}
+
+		@Override
+		public int hashCode() {
+			int result = taskId;
+			result = 31 * result + (int) (dateModified ^ (dateModified >>> 32));
+			result = 31 * result + (int) (start ^ (start >>> 32));
+			result = 31 * result + (int) (end ^ (end >>> 32));
+			result = 31 * result + (isHighlighted ? 1 : 0);
+			result = 31 * result + (isOverdue ? 1 : 0);
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other == this) {
+				return true;
+			}
+
+			if (!(other instanceof FragmentKey)) {
+				return false;
+			}
+
+			FragmentKey otherKey = (FragmentKey) other;
+			return taskId == otherKey.taskId
+					&& dateModified == otherKey.dateModified
+					&& start == otherKey.start
+					&& end == otherKey.end
+					&& isHighlighted == otherKey.isHighlighted
+					&& isOverdue == otherKey.isOverdue
+					&& status == otherKey.status
+					&& isEqual(title, otherKey.title)
+					&& isEqual(description, otherKey.description);
+		}
+
+		private static boolean isEqual(String first, String second) {
+			return (first == null) ? (second == null) : first.equals(second);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package typetodo.logic;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+
+import typetodo.model.Task;
+
+/**
+ * A TaskSegment is the part of a Deadline/Timed Task that is displayed under a single date. A Timed Task
+ * that spans several days is displayed as one segment per day, clipped to that day, without making a
+ * copy of the task itself.
+ * @author A0091024U
+ *
+ */
+public class TaskSegment {
+	private final Task task;
+	private final LocalDate date;
+	private final DateTime start;
+	private final DateTime end;
+	// Position of the task in the list given to the formatter, used to keep the order of the list
+	private final int order;
+
+	public TaskSegment(Task task, LocalDate date, DateTime start, DateTime end, int order) {
+		this.task = task;
+		this.date = date;
+		this.start = start;
+		this.end = end;
+		this.order = order;
+	}
+
+	public Task getTask() {
+		return task;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	/**
+	 * @return start of the segment, which is the deadline for a Deadline Task
+	 */
+	public DateTime getStart() {
+		return start;
+	}
+
+	/**
+	 * @return end of the segment, which is the deadline for a Deadline Task
+	 */
+	public DateTime getEnd() {
+		return end;
+	}
+
+	public int getOrder() {
+		return order;
+	}
+}
@@ -1,14 +1,18 @@
 package typetodo.logic;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Set;
+import java.util.TreeSet;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeUtils.MillisProvider;
+import org.joda.time.Duration;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalTime;
-import org.joda.time.Seconds;
-import org.ocpsoft.prettytime.shade.edu.emory.mathcs.backport.java.util.Collections;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
 import typetodo.model.DeadlineTask;
 import typetodo.model.FloatingTask;
@@ -22,282 +26,470 @@ import typetodo.model.TimedTask;
  *
  */
 public class TasksFormatter {
+	public static final String ROW_SEPARATOR = "<hr>";
+	public static final String ROW_MARKER = "<marker>";
+	public static final long NO_REFRESH = -1;
+	public static final Duration HIGHLIGHT_DURATION = Duration.standardSeconds(5);
+	private static final LocalTime START_OF_DAY = LocalTime.MIDNIGHT;
+	private static final LocalTime END_OF_DAY = new LocalTime(23, 59);
+	private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormat.forPattern("HH:mm");
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("EEE, dd MMM yyyy");
+	
+	private static final String FONT_TASK = "<font face=\"century gothic\">";
+	private static final String FONT_OVERDUE_TASK = "<font face=\"century gothic\" color=\"#B6B6B4\">";
+	private static final String FONT_TIME = "<font face=\"century gothic\" color=\"red\">";
+	private static final String FONT_HEADING = "<font face=\"century gothic\" size=\"6\" color=\"#4863A0\">";
+	private static final String END_FONT = "</font>";
+	private static final String BOLD = "<b>";
+	private static final String END_BOLD = "</b>";
+	private static final String HIGHLIGHT = "<span style=\"background-color: #FFFF00\">";
+	private static final String END_HIGHLIGHT = "</span>";
+	private static final String STRIKE = "<strike>";
+	private static final String END_STRIKE = "</strike>";
+	private static final String ID_PREFIX = "[Id: ";
+	private static final String ID_SUFFIX = "] ";
+	private static final String DESCRIPTION_PREFIX = "\n<br><i> - ";
+	private static final String DESCRIPTION_SUFFIX = "</i>";
+	private static final String DUE_AT = "due at ";
+	private static final String FROM = "from ";
+	private static final String TO = " to ";
+	private static final String FLOATING_TASK_HEADING = FONT_HEADING + "Floating Task" + END_FONT;
+	
+	// Every fragment is written into this builder, which is only used while holding the class lock
+	private static final StringBuilder sink = new StringBuilder(256);
+	
+	// Only used while holding the class lock, as the cache is not thread safe
+	private static final TaskFragmentCache fragmentCache = new TaskFragmentCache();
+	private static final MillisProvider SYSTEM_CLOCK = new MillisProvider() {
+		@Override
+		public long getMillis() {
+			return DateTimeUtils.currentTimeMillis();
+		}
+	};
+	private static MillisProvider clock = SYSTEM_CLOCK;
+	// Time of the next highlight expiry or overdue deadline among the tasks last formatted
+	private static long nextRefreshMillis = NO_REFRESH;
 	
 	/**
-	 * Takes in a list of tasks and format them for display with the use of html tags
+	 * Takes in a list of tasks and format them for display with the use of html tags. Every date heading,
+	 * task and separator is formatted as a row of its own, so that the view only has to lay out the rows
+	 * that are visible. Tasks and date headings that have not changed since the previous call are taken 
+	 * from the fragment cache.
 	 * @param tasks
-	 * @return returns a String of the formated tasks, ready for display
+	 * @return returns a list of the formated rows, ready for display
 	 */
-	public static String formatTasks(ArrayList<Task> tasks) {
-		StringBuilder sb = new StringBuilder();
+	public static ArrayList<String> formatTasks(ArrayList<Task> tasks) {
+		return formatTasks(tasks, null, null);
+	}
+
+	/**
+	 * Takes in a list of tasks and format them for display with the use of html tags. A Timed Task that
+	 * spans several days is only displayed on the days that are between firstVisibleDate and 
+	 * lastVisibleDate.
+	 * @param tasks
+	 * @param firstVisibleDate first date that is displayed, or null if there is no such limit
+	 * @param lastVisibleDate last date that is displayed, or null if there is no such limit
+	 * @return returns a list of the formated rows, ready for display
+	 */
+	public static synchronized ArrayList<String> formatTasks(ArrayList<Task> tasks, 
+			LocalDate firstVisibleDate, LocalDate lastVisibleDate) {
+		fragmentCache.startRefresh();
+		nextRefreshMillis = NO_REFRESH;
+		DateTime now = new DateTime(clock.getMillis());
+		ArrayList<String> rows = new ArrayList<String>();
 		ArrayList<Task> floatingTasks = new ArrayList<Task>();
-		HashMap<LocalDate, ArrayList<Task>> timedAndDeadlineTasks = new HashMap<LocalDate, ArrayList<Task>>();
+		HashMap<LocalDate, ArrayList<TaskSegment>> singleDaySegments = new HashMap<LocalDate, ArrayList<TaskSegment>>();
+		ArrayList<TaskSegment> multiDayTasks = new ArrayList<TaskSegment>();
+		TreeSet<LocalDate> datesToDisplay = new TreeSet<LocalDate>(new LocalDateComparator());
 	
-		groupTasksByDates(tasks, timedAndDeadlineTasks, floatingTasks);
-		ArrayList<LocalDate> sortedKeysInAscendingDate = sortKeySetByAscendingDate(timedAndDeadlineTasks.keySet());
+		groupTasksByDates(tasks, singleDaySegments, multiDayTasks, floatingTasks);
+		datesToDisplay.addAll(singleDaySegments.keySet());
+		addDatesOfMultiDayTasks(multiDayTasks, firstVisibleDate, lastVisibleDate, datesToDisplay);
 		
-		for (LocalDate date : sortedKeysInAscendingDate) {
-			printDateHeading(date, sb);
+		for (LocalDate date : datesToDisplay) {
+			rows.add(getDateHeading(date));
 			
-			for (Task task : timedAndDeadlineTasks.get(date)) {
-				if (isNewlyCreated(task) || isRecentlyModified(task)) {
-					highlightTask(task, sb);
-				} else if (task.getStatus().equals(Status.COMPLETED)) {
-					strikeOutTask(task, sb);
-				} else {
-					sb.append(formatTask(task));
-				}
+			for (TaskSegment segment : getSegmentsOfDate(date, singleDaySegments.get(date), multiDayTasks)) {
+				rows.add(getTaskFragment(segment.getTask(), segment.getStart(), segment.getEnd(), now));
 			}
-			sb.append("<hr>");
+			rows.add(ROW_SEPARATOR);
 		}
 
 		if (!floatingTasks.isEmpty()) {
-			printFloatingTaskHeading(sb);
+			rows.add(FLOATING_TASK_HEADING);
 		}
 
 		for (Task task : floatingTasks) {
-			if (isNewlyCreated(task) || isRecentlyModified(task)) {
-				highlightTask(task, sb);
-			} else if (task.getStatus().equals(Status.COMPLETED)) {
-				strikeOutTask(task, sb);
-			} else { 
-				sb.append(formatTask(task));
+			rows.add(getTaskFragment(task, null, null, now));
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Drops every fragment from the cache, so that the next call formats every task again.
+	 */
+	public static synchronized void clearFragmentCache() {
+		fragmentCache.clear();
+	}
+
+	/**
+	 * @return the number of fragments reused and formatted by every call so far
+	 */
+	public static synchronized TaskFragmentCache.Statistics getFragmentCacheStatistics() {
+		return fragmentCache.getStatistics();
+	}
+
+	/**
+	 * Replaces the clock used to decide which tasks are highlighted or overdue.
+	 * @param newClock the clock to use, or null to use the system clock
+	 */
+	public static synchronized void setClock(MillisProvider newClock) {
+		clock = (newClock == null) ? SYSTEM_CLOCK : newClock;
+	}
+
+	/**
+	 * @return number of milliseconds until a highlight expires or a task becomes overdue among the
+	 * 			tasks last formatted, or NO_REFRESH if the display will not change by itself
+	 */
+	public static synchronized long getMillisUntilNextRefresh() {
+		if (nextRefreshMillis == NO_REFRESH) {
+			return NO_REFRESH;
+		}
+		return Math.max(0, nextRefreshMillis - clock.getMillis());
+	}
+
+	private static String getTaskFragment(Task task, DateTime start, DateTime end, DateTime now) {
+		boolean isHighlighted = isNewlyCreated(task, now) || isRecentlyModified(task, now);
+		boolean isOverdue = (end != null) && end.isBefore(now);
+		
+		if (isHighlighted) {
+			updateNextRefresh(task.getDateCreated().plus(HIGHLIGHT_DURATION), now);
+			updateNextRefresh(task.getDateModified().plus(HIGHLIGHT_DURATION), now);
+		}
+		if (end != null && !isOverdue) {
+			updateNextRefresh(end, now);
+		}
+		TaskFragmentCache.FragmentKey key = new TaskFragmentCache.FragmentKey(task, start, end, isHighlighted, isOverdue);
+
+		String fragment = fragmentCache.getTaskFragment(key);
+		if (fragment == null) {
+			sink.setLength(0);
+			try {
+				if (isHighlighted) {
+					highlightTask(task, start, end, isOverdue, sink);
+				} else if (task.getStatus().equals(Status.COMPLETED)) {
+					strikeOutTask(task, start, end, isOverdue, sink);
+				} else {
+					writeTask(task, start, end, isOverdue, sink);
+				}
+			} catch (IOException e) {
+				// Writing into a StringBuilder never fails
+				throw new IllegalStateException(e);
+			}
+			fragment = sink.toString();
+			fragmentCache.putTaskFragment(key, fragment);
+		}
+
+		return fragment;
+	}
+
+	private static String getDateHeading(LocalDate date) {
+		String heading = fragmentCache.getDateHeading(date);
+		if (heading == null) {
+			sink.setLength(0);
+			try {
+				writeDateHeading(date, sink);
+			} catch (IOException e) {
+				// Writing into a StringBuilder never fails
+				throw new IllegalStateException(e);
 			}
+			heading = sink.toString();
+			fragmentCache.putDateHeading(date, heading);
 		}
 
-		return sb.toString();
+		return heading;
 	}
 
+	/**
+	 * Deadline Tasks and Timed Tasks that start and end on the same day are grouped by their date. 
+	 * Timed Tasks that span several days are kept aside, their segments are only made when their dates 
+	 * are displayed.
+	 */
 	private static void groupTasksByDates(ArrayList<Task> tasksToBeGrouped, 
-			HashMap<LocalDate, ArrayList<Task>> timedAndDeadlineTasks, ArrayList<Task> floatingTasks) {
+			HashMap<LocalDate, ArrayList<TaskSegment>> singleDaySegments, ArrayList<TaskSegment> multiDayTasks, 
+			ArrayList<Task> floatingTasks) {
 
-		for (Task task : tasksToBeGrouped) {
-			LocalDate date = null;
+		for (int order = 0; order < tasksToBeGrouped.size(); order++) {
+			Task task = tasksToBeGrouped.get(order);
 
 			if (task instanceof DeadlineTask) {
-				date = ((DeadlineTask) task).getDeadline().toLocalDate();
-				addTaskToHashMap(timedAndDeadlineTasks, date, task);
+				DateTime deadline = ((DeadlineTask) task).getDeadline();
+				LocalDate date = deadline.toLocalDate();
+				addSegmentToHashMap(singleDaySegments, new TaskSegment(task, date, deadline, deadline, order));
 			} else if (task instanceof TimedTask) {
-				TimedTask taskToBeDisplayed = (TimedTask) task.makeCopy();
-				date = taskToBeDisplayed.getStart().toLocalDate();
-				LocalDate endDate = ((TimedTask)task).getEnd().toLocalDate();
+				DateTime start = ((TimedTask) task).getStart();
+				DateTime end = ((TimedTask) task).getEnd();
+				LocalDate date = start.toLocalDate();
 				
-				if (date.isEqual(endDate)){
-					addTaskToHashMap(timedAndDeadlineTasks, date, task);
+				if (date.isEqual(end.toLocalDate())){
+					addSegmentToHashMap(singleDaySegments, new TaskSegment(task, date, start, end, order));
 				} else {
-					LocalTime endTime = taskToBeDisplayed.getEnd().toLocalTime();
-					date = addTimedTaskToitsStartDate(timedAndDeadlineTasks, date, endDate, taskToBeDisplayed);
-					date = addTimedTaskToAllDatesBetweenItsStartAndEnd(timedAndDeadlineTasks, date, endDate, taskToBeDisplayed);
-					addTimedTaskToItsEndDate(timedAndDeadlineTasks, date, endDate, endTime, taskToBeDisplayed);
+					multiDayTasks.add(new TaskSegment(task, date, start, end, order));
 				}
 			} else if (task instanceof FloatingTask) {
 				floatingTasks.add(task);
 			}
 		}
 	}
-	
-	private static String formatTask(Task task) {
-		if (task instanceof FloatingTask) {
-			return formatFloatingTask((FloatingTask) task);
-		} else if (task instanceof DeadlineTask) {
-			return formatDeadlineTask((DeadlineTask) task);
-		} else if (task instanceof TimedTask) {
-			return formatTimedTask((TimedTask) task);
+
+	private static void addDatesOfMultiDayTasks(ArrayList<TaskSegment> multiDayTasks, LocalDate firstVisibleDate, 
+			LocalDate lastVisibleDate, TreeSet<LocalDate> dates) {
+		for (TaskSegment multiDayTask : multiDayTasks) {
+			LocalDate date = multiDayTask.getStart().toLocalDate();
+			LocalDate endDate = multiDayTask.getEnd().toLocalDate();
+
+			if (firstVisibleDate != null && date.isBefore(firstVisibleDate)) {
+				date = firstVisibleDate;
+			}
+			if (lastVisibleDate != null && endDate.isAfter(lastVisibleDate)) {
+				endDate = lastVisibleDate;
+			}
+
+			while (!date.isAfter(endDate)) {
+				dates.add(date);
+				date = date.plusDays(1);
+			}
 		}
-		
-		return "";
-	}
-	
-	private static ArrayList<LocalDate> sortKeySetByAscendingDate(Set<LocalDate> keySet) {
-		ArrayList<LocalDate> sortedDates = new ArrayList<LocalDate>(keySet);
-		Collections.sort(sortedDates, new LocalDateComparator());
-		
-		return sortedDates;
 	}
-	
-	private static boolean isNewlyCreated(Task task) {
-		DateTime dateCreated = task.getDateCreated();
-		DateTime currentDateTime = new DateTime();
 
-		return Seconds.secondsBetween(dateCreated, currentDateTime).isLessThan(Seconds.parseSeconds("PT5S"));
+	/**
+	 * Returns the segments to be displayed under the given date, in the order of the list of tasks given
+	 * to the formatter.
+	 */
+	private static ArrayList<TaskSegment> getSegmentsOfDate(LocalDate date, ArrayList<TaskSegment> singleDaySegmentsOfDate, 
+			ArrayList<TaskSegment> multiDayTasks) {
+		ArrayList<TaskSegment> segments = new ArrayList<TaskSegment>();
+		int indexOfSingleDaySegment = 0;
+		int numberOfSingleDaySegments = (singleDaySegmentsOfDate == null) ? 0 : singleDaySegmentsOfDate.size();
+
+		for (TaskSegment multiDayTask : multiDayTasks) {
+			if (date.isBefore(multiDayTask.getStart().toLocalDate()) || date.isAfter(multiDayTask.getEnd().toLocalDate())) {
+				continue;
+			}
+
+			while (indexOfSingleDaySegment < numberOfSingleDaySegments 
+					&& singleDaySegmentsOfDate.get(indexOfSingleDaySegment).getOrder() < multiDayTask.getOrder()) {
+				segments.add(singleDaySegmentsOfDate.get(indexOfSingleDaySegment));
+				indexOfSingleDaySegment++;
+			}
+			segments.add(clipToDate(multiDayTask, date));
+		}
+
+		while (indexOfSingleDaySegment < numberOfSingleDaySegments) {
+			segments.add(singleDaySegmentsOfDate.get(indexOfSingleDaySegment));
+			indexOfSingleDaySegment++;
+		}
+
+		return segments;
 	}
 
-	private static boolean isRecentlyModified(Task task) {
-		DateTime dateModified = task.getDateModified();
-		DateTime currentDateTime = new DateTime();
+	/**
+	 * Clips a Timed Task that spans several days to the given date. The task starts at its start time on
+	 * its first day, ends at its end time on its last day, and takes up the whole of every other day.
+	 */
+	private static TaskSegment clipToDate(TaskSegment multiDayTask, LocalDate date) {
+		DateTime start = multiDayTask.getStart();
+		DateTime end = multiDayTask.getEnd();
+		
+		if (date.isAfter(start.toLocalDate())) {
+			start = date.toDateTime(START_OF_DAY, null);
+		}
+		if (date.isBefore(end.toLocalDate())) {
+			end = date.toDateTime(END_OF_DAY, null);
+		} else {
+			end = date.toDateTime(end.toLocalTime());
+		}
 
-		return Seconds.secondsBetween(dateModified, currentDateTime).isLessThan(Seconds.parseSeconds("PT5S"));
+		return new TaskSegment(multiDayTask.getTask(), date, start, end, multiDayTask.getOrder());
+	}
+	
+	/**
+	 * Brings the next refresh forward to the given time if the time is still to come.
+	 */
+	private static void updateNextRefresh(DateTime time, DateTime now) {
+		// The refresh happens just after the time, so that the task is displayed differently by then
+		long refreshMillis = time.getMillis() + 1;
+		if (refreshMillis > now.getMillis() 
+				&& (nextRefreshMillis == NO_REFRESH || refreshMillis < nextRefreshMillis)) {
+			nextRefreshMillis = refreshMillis;
+		}
+	}
+	
+	private static boolean isNewlyCreated(Task task, DateTime now) {
+		return isWithinHighlightDuration(task.getDateCreated(), now);
 	}
 
-	private static void highlightTask(Task task, StringBuilder sb) {
-		sb.append("<span style=\"background-color: #FFFF00\">");
-		sb.append("<marker>");
-		sb.append(formatTask(task));
-		sb.append("</span>");
+	private static boolean isRecentlyModified(Task task, DateTime now) {
+		return isWithinHighlightDuration(task.getDateModified(), now);
 	}
 	
-	private static void printDateHeading(LocalDate date, StringBuilder sb) {
-		sb.append("<font face=\"century gothic\" size=\"6\" color=\"#4863A0\">");
-		sb.append(date.toString("EEE, dd MMM yyyy"));
-		sb.append("</font>");
-		sb.append("<br>");
+	private static boolean isWithinHighlightDuration(DateTime time, DateTime now) {
+		return time.plus(HIGHLIGHT_DURATION).isAfter(now);
+	}
+
+	private static void addSegmentToHashMap(HashMap<LocalDate, ArrayList<TaskSegment>> segmentsMap, TaskSegment segment) {
+		ArrayList<TaskSegment> segmentsOfDate = segmentsMap.get(segment.getDate());
+		if (segmentsOfDate == null) {
+			segmentsOfDate = new ArrayList<TaskSegment>();
+			segmentsMap.put(segment.getDate(), segmentsOfDate);
+		}
+		segmentsOfDate.add(segment);
 	}
 	
-	private static void printFloatingTaskHeading(StringBuilder sb) {
-		sb.append("<font face=\"century gothic\" size=\"6\" color=\"#4863A0\">");
-		sb.append("Floating Task");
-		sb.append("</font>");
-		sb.append("<br>");
+	private static void writeDateHeading(LocalDate date, Appendable out) throws IOException {
+		out.append(FONT_HEADING);
+		DATE_FORMATTER.printTo(out, date);
+		out.append(END_FONT);
 	}
 	
-	private static void strikeOutTask(Task task, StringBuilder sb) {
-		sb.append("<strike>");
-		sb.append(formatTask(task));
-		sb.append("</font>");
-		sb.append("</strike>");
+	private static void highlightTask(Task task, DateTime start, DateTime end, boolean isOverdue, 
+			Appendable out) throws IOException {
+		out.append(HIGHLIGHT);
+		out.append(ROW_MARKER);
+		writeTask(task, start, end, isOverdue, out);
+		out.append(END_HIGHLIGHT);
 	}
 	
-	private static LocalDate addTimedTaskToitsStartDate(HashMap<LocalDate, ArrayList<Task>> tasksMap, LocalDate date, LocalDate endDate, TimedTask task) {
-		if (date.isBefore(endDate)) {
-			task.setEnd(date.toDateTime(LocalTime.parse("23:59"), null));
-			addTaskToHashMap(tasksMap, date, task.makeCopy());
-			date = date.plusDays(1);
-		}
-		
-		return date;
+	private static void strikeOutTask(Task task, DateTime start, DateTime end, boolean isOverdue, 
+			Appendable out) throws IOException {
+		out.append(STRIKE);
+		writeTask(task, start, end, isOverdue, out);
+		out.append(END_FONT);
+		out.append(END_STRIKE);
 	}
 	
-	private static LocalDate addTimedTaskToAllDatesBetweenItsStartAndEnd(HashMap<LocalDate, ArrayList<Task>> tasksMap, LocalDate date, LocalDate endDate, TimedTask task) {
-		while (date.isBefore(endDate)) {
-			task.setStart(date.toDateTime(LocalTime.parse("00:00"), null));
-			addTaskToHashMap(tasksMap, date, task.makeCopy());
-
-			date = date.plusDays(1);
+	private static void writeTask(Task task, DateTime start, DateTime end, boolean isOverdue, 
+			Appendable out) throws IOException {
+		if (task instanceof FloatingTask) {
+			writeFloatingTask((FloatingTask) task, out);
+		} else if (task instanceof DeadlineTask) {
+			writeDeadlineTask((DeadlineTask) task, isOverdue, out);
+		} else if (task instanceof TimedTask) {
+			writeTimedTask((TimedTask) task, start, end, isOverdue, out);
 		}
-		return date;
 	}
 	
-	private static void addTimedTaskToItsEndDate(HashMap<LocalDate, ArrayList<Task>> tasksMap, LocalDate date, LocalDate endDate, LocalTime endTime, TimedTask task) {
-		task.setStart(date.toDateTime(LocalTime.parse("00:00"), null));
-		task.setEnd(date.toDateTime(endTime));
-		addTaskToHashMap(tasksMap, date, task.makeCopy());
+	private static void writeFloatingTask(FloatingTask floatingTask, Appendable out) throws IOException {
+		out.append(FONT_TASK);
+		writeIdAndTitle(floatingTask, out);
+		writeDescription(floatingTask, out);
+		out.append(END_FONT);
 	}
 	
-	private static void addTaskToHashMap(HashMap<LocalDate, ArrayList<Task>> tasksMap, LocalDate date, Task task) {
-		if (tasksMap.containsKey(date)) {
-			tasksMap.get(date).add(task);
+	private static void writeDeadlineTask(DeadlineTask deadlineTask, boolean isOverdue, Appendable out) 
+			throws IOException {
+		if (isOverdue) {
+			out.append(FONT_OVERDUE_TASK);
+			writeIdAndTitle(deadlineTask, out);
+			out.append(DUE_AT);
+			out.append(BOLD);
+			TIME_FORMATTER.printTo(out, deadlineTask.getDeadline());
+			out.append(END_BOLD);
 		} else {
-			tasksMap.put(date, new ArrayList<Task>());
-			tasksMap.get(date).add(task);
+			out.append(FONT_TASK);
+			writeIdAndTitle(deadlineTask, out);
+			out.append(DUE_AT);
+			out.append(FONT_TIME);
+			out.append(BOLD);
+			TIME_FORMATTER.printTo(out, deadlineTask.getDeadline());
+			out.append(END_BOLD);
+			out.append(END_FONT);
 		}
+		
+		writeDescription(deadlineTask, out);
+		out.append(END_FONT);
 	}
 	
-	private static String formatFloatingTask(FloatingTask floatingTask) {
-		StringBuilder sb = new StringBuilder();
-		sb.append("<font face=\"century gothic\">");
-		sb.append("[Id: " + floatingTask.getTaskId() + "] ");
-		sb.append("<b>");
-		sb.append(floatingTask.getTitle() + " ");
-		sb.append("</b>");
-		
-		if (floatingTask.getDescription() != null && !floatingTask.getDescription().equals("")) {
-			sb.append("\n");
-			sb.append("<br>");
-			sb.append("<i>");
-			sb.append(" - " + floatingTask.getDescription().trim());
-			sb.append("</i>");
+	private static void writeTimedTask(TimedTask timedTask, DateTime start, DateTime end, boolean isOverdue, 
+			Appendable out) throws IOException {
+		if (isOverdue) {
+			out.append(FONT_OVERDUE_TASK);
+			writeIdAndTitle(timedTask, out);
+			out.append(FROM);
+			out.append(BOLD);
+			writeTimeRange(start, end, out);
+			out.append(END_BOLD);
+		} else {
+			out.append(FONT_TASK);
+			writeIdAndTitle(timedTask, out);
+			out.append(FROM);
+			out.append(FONT_TIME);
+			out.append(BOLD);
+			writeTimeRange(start, end, out);
+			out.append(END_BOLD);
+			out.append(END_FONT);
 		}
-		sb.append("</font>");
-		sb.append("<br>");
 		
-		return sb.toString();
+		writeDescription(timedTask, out);
+		out.append(END_FONT);
+	}
+	
+	private static void writeTimeRange(DateTime start, DateTime end, Appendable out) throws IOException {
+		TIME_FORMATTER.printTo(out, start);
+		out.append(TO);
+		TIME_FORMATTER.printTo(out, end);
+	}
+	
+	private static void writeIdAndTitle(Task task, Appendable out) throws IOException {
+		out.append(ID_PREFIX);
+		writeNumber(task.getTaskId(), out);
+		out.append(ID_SUFFIX);
+		out.append(BOLD);
+		out.append(task.getTitle());
+		out.append(' ');
+		out.append(END_BOLD);
 	}
 	
-	private static String formatDeadlineTask(DeadlineTask deadlineTask) {
-		StringBuilder sb = new StringBuilder();
+	/**
+	 * Writes the description of the task without its leading and trailing whitespace, if it has one.
+	 */
+	private static void writeDescription(Task task, Appendable out) throws IOException {
+		String description = task.getDescription();
+		if (description == null || description.equals("")) {
+			return;
+		}
 		
-		if (deadlineTask.getDeadline().isBefore(new DateTime())) {
-			sb.append("<font face=\"century gothic\" color=\"#B6B6B4\">");
-			sb.append("[Id: " + deadlineTask.getTaskId() + "] ");
-			sb.append("<b>");
-			sb.append(deadlineTask.getTitle() + " ");
-			sb.append("</b>");
-			
-			sb.append("due at ");
-			sb.append("<b>");
-			sb.append(deadlineTask.getDeadline().toString("HH:mm"));
-			sb.append("</b>");
-		} else {
-			sb.append("<font face=\"century gothic\">");
-			sb.append("[Id: " + deadlineTask.getTaskId() + "] ");
-			sb.append("<b>");
-			sb.append(deadlineTask.getTitle() + " ");
-			sb.append("</b>");
-
-			sb.append("due at ");
-			sb.append("<font face=\"century gothic\" color=\"red\">");
-			sb.append("<b>");
-			sb.append(deadlineTask.getDeadline().toString("HH:mm"));
-			sb.append("</b>");
-			sb.append("</font>");
+		int start = 0;
+		int end = description.length();
+		while (start < end && description.charAt(start) <= ' ') {
+			start++;
 		}
-
-		if (deadlineTask.getDescription() != null && !deadlineTask.getDescription().equals("")) {
-			sb.append("\n");
-			sb.append("<br>");
-			sb.append("<i>");
-			sb.append(" - " + deadlineTask.getDescription().trim());
-			sb.append("</i>");
+		while (start < end && description.charAt(end - 1) <= ' ') {
+			end--;
 		}
-		sb.append("</font>");
-		sb.append("<br>");
 		
-		return sb.toString();
+		out.append(DESCRIPTION_PREFIX);
+		out.append(description, start, end);
+		out.append(DESCRIPTION_SUFFIX);
 	}
 	
-	private static String formatTimedTask(TimedTask timedTask) {
-		StringBuilder sb = new StringBuilder();
-
-		if (timedTask.getEnd().isBefore(new DateTime())) {
-			sb.append("<font face=\"century gothic\" color=\"#B6B6B4\">");
-			sb.append("[Id: " + timedTask.getTaskId() + "] ");
-			sb.append("<b>");
-			sb.append(timedTask.getTitle() + " ");
-			sb.append("</b>");
-
-			sb.append("from ");
-			sb.append("<b>");
-			sb.append(timedTask.getStart().toString("HH:mm"));
-			sb.append(" to ");
-			sb.append(timedTask.getEnd().toString("HH:mm"));
-			sb.append("</b>");
-		} else {
-			sb.append("<font face=\"century gothic\">");
-			sb.append("[Id: " + timedTask.getTaskId() + "] ");
-			sb.append("<b>");
-			sb.append(timedTask.getTitle() + " ");
-			sb.append("</b>");
-
-			sb.append("from ");
-			sb.append("<font face=\"century gothic\" color=\"red\">");
-			sb.append("<b>");
-			sb.append(timedTask.getStart().toString("HH:mm"));
-			sb.append(" to ");
-			sb.append(timedTask.getEnd().toString("HH:mm"));
-			sb.append("</b>");
-			sb.append("</font>");
-		}
-
-		if (timedTask.getDescription() != null && !timedTask.getDescription().equals("")) {
-			sb.append("\n");
-			sb.append("<br>");
-			sb.append("<i>");
-			sb.append(" - " + timedTask.getDescription().trim());
-			sb.append("</i>");
+	/**
+	 * Writes the number digit by digit, since Appendable has no method for numbers.
+	 */
+	private static void writeNumber(int number, Appendable out) throws IOException {
+		long remaining = number;
+		if (remaining < 0) {
+			out.append('-');
+			remaining = -remaining;
 		}
-		sb.append("</font>");
-		sb.append("<br>");
 		
-		return sb.toString();
+		long divisor = 1;
+		while (divisor * 10 <= remaining) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			out.append((char) ('0' + (remaining / divisor) % 10));
+		}
 	}
 }
@@ -0,0 +1,174 @@
+package typetodo.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils.MillisProvider;
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import typetodo.model.DeadlineTask;
+import typetodo.model.Task;
+import typetodo.model.TimedTask;
+
+/**
+ * Tests the rows formatted for a Timed Task that spans several days, the order of the rows under a date, and
+ * how the rows and the next refresh change as the clock of the formatter moves past a highlight or a deadline.
+ * The clock starts a week before the tasks, so that none of them is highlighted or overdue.
+ * @author A0091024U
+ *
+ */
+public class TasksFormatterATD {
+	private static final LocalDate FIRST_DAY = new LocalDate(2014, 11, 3);
+	private static final LocalDate MIDDLE_DAY = FIRST_DAY.plusDays(1);
+	private static final LocalDate LAST_DAY = FIRST_DAY.plusDays(2);
+	private static final String OVERDUE_COLOR = "#B6B6B4";
+
+	private TimedTask trip;
+	private DeadlineTask deadline;
+	private TimedTask meeting;
+	private long millisOfClock;
+
+	@Before
+	public void setUp() {
+		millisOfClock = FIRST_DAY.minusWeeks(1).toDateTimeAtStartOfDay().getMillis();
+		TasksFormatter.setClock(new MillisProvider() {
+			@Override
+			public long getMillis() {
+				return millisOfClock;
+			}
+		});
+
+		trip = new TimedTask(1, "trip", "", at(FIRST_DAY, 22), at(LAST_DAY, 8));
+		deadline = new DeadlineTask(2, "deadline", "", at(MIDDLE_DAY, 10));
+		meeting = new TimedTask(3, "meeting", "", at(MIDDLE_DAY, 12), at(MIDDLE_DAY, 13));
+		for (Task task : Arrays.asList(trip, deadline, meeting)) {
+			task.setDateCreated(new DateTime(millisOfClock).minusDays(1));
+			task.setDateModified(task.getDateCreated());
+		}
+	}
+
+	@After
+	public void tearDown() {
+		TasksFormatter.setClock(null);
+	}
+
+	@Test
+	public void MultiDayTaskIsClippedToEachDay() {
+		ArrayList<String> rows = TasksFormatter.formatTasks(new ArrayList<Task>(Arrays.asList(trip)));
+
+		assertEquals(Arrays.asList("22:00 to 23:59"), getTimesOfDate(rows, FIRST_DAY));
+		assertEquals(Arrays.asList("00:00 to 23:59"), getTimesOfDate(rows, MIDDLE_DAY));
+		assertEquals(Arrays.asList("00:00 to 08:00"), getTimesOfDate(rows, LAST_DAY));
+	}
+
+	@Test
+	public void SegmentsOfADateKeepTheOrderOfTheList() {
+		ArrayList<String> rows = TasksFormatter.formatTasks(new ArrayList<Task>(Arrays.asList(deadline, trip,
+				meeting)));
+
+		ArrayList<String> rowsOfMiddleDay = getRowsOfDate(rows, MIDDLE_DAY);
+		assertEquals(3, rowsOfMiddleDay.size());
+		assertTrue(rowsOfMiddleDay.get(0).contains("[Id: 2]"));
+		assertTrue(rowsOfMiddleDay.get(1).contains("[Id: 1]"));
+		assertTrue(rowsOfMiddleDay.get(2).contains("[Id: 3]"));
+	}
+
+	@Test
+	public void MultiDayTaskIsOnlyDisplayedOnVisibleDates() {
+		ArrayList<String> rows = TasksFormatter.formatTasks(new ArrayList<Task>(Arrays.asList(trip)), MIDDLE_DAY,
+				LAST_DAY);
+
+		assertNull(getRowsOfDate(rows, FIRST_DAY));
+		assertEquals(Arrays.asList("00:00 to 23:59"), getTimesOfDate(rows, MIDDLE_DAY));
+		assertEquals(Arrays.asList("00:00 to 08:00"), getTimesOfDate(rows, LAST_DAY));
+	}
+
+	@Test
+	public void VisibleDatesAreThoseOfTheDateRange() {
+		CurrentTaskListManager taskListManager = new CurrentTaskListManager(null);
+		taskListManager.setByDateRange(at(FIRST_DAY, 9), at(LAST_DAY, 9));
+		assertEquals(FIRST_DAY, taskListManager.getFirstVisibleDate());
+		assertEquals(LAST_DAY, taskListManager.getLastVisibleDate());
+
+		taskListManager.setBySearchResult("trip");
+		assertNull(taskListManager.getFirstVisibleDate());
+		assertNull(taskListManager.getLastVisibleDate());
+	}
+
+	@Test
+	public void DeadlineIsOverdueOnceTheClockHasPassedIt() {
+		ArrayList<Task> tasks = new ArrayList<Task>(Arrays.asList((Task) deadline));
+		millisOfClock = deadline.getDeadline().minusMinutes(1).getMillis();
+
+		String row = getRowsOfDate(TasksFormatter.formatTasks(tasks), MIDDLE_DAY).get(0);
+		assertFalse(row.contains(OVERDUE_COLOR));
+		assertEquals(60 * 1000 + 1, TasksFormatter.getMillisUntilNextRefresh());
+
+		millisOfClock += TasksFormatter.getMillisUntilNextRefresh();
+		row = getRowsOfDate(TasksFormatter.formatTasks(tasks), MIDDLE_DAY).get(0);
+		assertTrue(row.contains(OVERDUE_COLOR));
+		assertEquals(TasksFormatter.NO_REFRESH, TasksFormatter.getMillisUntilNextRefresh());
+	}
+
+	@Test
+	public void HighlightExpiresAfterItsDuration() {
+		ArrayList<Task> tasks = new ArrayList<Task>(Arrays.asList((Task) meeting));
+		meeting.setDateCreated(new DateTime(millisOfClock));
+		meeting.setDateModified(meeting.getDateCreated());
+
+		String row = getRowsOfDate(TasksFormatter.formatTasks(tasks), MIDDLE_DAY).get(0);
+		assertTrue(row.contains(TasksFormatter.ROW_MARKER));
+		assertEquals(TasksFormatter.HIGHLIGHT_DURATION.getMillis() + 1, TasksFormatter.getMillisUntilNextRefresh());
+
+		millisOfClock += TasksFormatter.HIGHLIGHT_DURATION.getMillis() - 1;
+		assertTrue(getRowsOfDate(TasksFormatter.formatTasks(tasks), MIDDLE_DAY).get(0)
+				.contains(TasksFormatter.ROW_MARKER));
+		assertEquals(2, TasksFormatter.getMillisUntilNextRefresh());
+
+		millisOfClock += TasksFormatter.getMillisUntilNextRefresh();
+		row = getRowsOfDate(TasksFormatter.formatTasks(tasks), MIDDLE_DAY).get(0);
+		assertFalse(row.contains(TasksFormatter.ROW_MARKER));
+		// The next refresh is now when the meeting ends, a week and a day later
+		assertEquals(meeting.getEnd().getMillis() + 1 - millisOfClock, TasksFormatter.getMillisUntilNextRefresh());
+	}
+
+	private static DateTime at(LocalDate date, int hour) {
+		return date.toDateTimeAtStartOfDay().withHourOfDay(hour);
+	}
+
+	/**
+	 * @return rows between the heading of the date and the next separator, or null if the date is not displayed
+	 */
+	private static ArrayList<String> getRowsOfDate(ArrayList<String> rows, LocalDate date) {
+		String dateOfHeading = DateTimeFormat.forPattern("EEE, dd MMM yyyy").print(date);
+		for (int index = 0; index < rows.size(); index++) {
+			if (rows.get(index).contains(dateOfHeading)) {
+				ArrayList<String> rowsOfDate = new ArrayList<String>();
+				for (index++; !rows.get(index).equals(TasksFormatter.ROW_SEPARATOR); index++) {
+					rowsOfDate.add(rows.get(index));
+				}
+				return rowsOfDate;
+			}
+		}
+		return null;
+	}
+
+	private static ArrayList<String> getTimesOfDate(ArrayList<String> rows, LocalDate date) {
+		ArrayList<String> times = new ArrayList<String>();
+		for (String row : getRowsOfDate(rows, date)) {
+			int indexOfTo = row.indexOf(" to ");
+			times.add(row.substring(indexOfTo - "00:00".length(), indexOfTo + " to 00:00".length()));
+		}
+		return times;
+	}
+}
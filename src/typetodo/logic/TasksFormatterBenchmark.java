@@ -0,0 +1,108 @@
+package typetodo.logic;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+
+import org.joda.time.DateTime;
+
+import typetodo.model.DeadlineTask;
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.TimedTask;
+
+/**
+ * Measures the number of bytes allocated by TasksFormatter for every 1,000 tasks rendered, both when
+ * every task has to be formatted and when every task is taken from the fragment cache, with the number of
+ * fragments reused and formatted in each render.
+ * Run it with: java typetodo.logic.TasksFormatterBenchmark [number of tasks]
+ * @author A0091024U
+ *
+ */
+public class TasksFormatterBenchmark {
+	private static final int DEFAULT_NUMBER_OF_TASKS = 1000;
+	private static final int NUMBER_OF_WARM_UP_RENDERS = 200;
+	private static final int NUMBER_OF_MEASURED_RENDERS = 200;
+
+	public static void main(String[] args) {
+		int numberOfTasks = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_TASKS;
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+			System.out.println("Allocation measurement is not supported by this JVM");
+			return;
+		}
+
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		ArrayList<Task> tasks = createTasks(numberOfTasks);
+
+		render(tasks, NUMBER_OF_WARM_UP_RENDERS, true);
+		render(tasks, NUMBER_OF_WARM_UP_RENDERS, false);
+
+		report("uncached", allocationBean, tasks, true);
+		report("cached", allocationBean, tasks, false);
+	}
+
+	private static void report(String name, com.sun.management.ThreadMXBean allocationBean,
+			ArrayList<Task> tasks, boolean isClearingCache) {
+		long threadId = Thread.currentThread().getId();
+		long bytesBefore = allocationBean.getThreadAllocatedBytes(threadId);
+		long timeBefore = System.nanoTime();
+		TaskFragmentCache.Statistics statisticsBefore = TasksFormatter.getFragmentCacheStatistics();
+
+		render(tasks, NUMBER_OF_MEASURED_RENDERS, isClearingCache);
+
+		long nanosPerRender = (System.nanoTime() - timeBefore) / NUMBER_OF_MEASURED_RENDERS;
+		long bytesPerRender = (allocationBean.getThreadAllocatedBytes(threadId) - bytesBefore) / NUMBER_OF_MEASURED_RENDERS;
+		long bytesPerThousandTasks = bytesPerRender * 1000 / tasks.size();
+		TaskFragmentCache.Statistics statisticsAfter = TasksFormatter.getFragmentCacheStatistics();
+		long reusedPerRender = (statisticsAfter.getNumberOfFragmentsReused()
+				- statisticsBefore.getNumberOfFragmentsReused()) / NUMBER_OF_MEASURED_RENDERS;
+		long renderedPerRender = (statisticsAfter.getNumberOfFragmentsRendered()
+				- statisticsBefore.getNumberOfFragmentsRendered()) / NUMBER_OF_MEASURED_RENDERS;
+
+		System.out.println(String.format("%-9s %,12d bytes per 1,000 tasks, %,8d us per render, "
+				+ "%,6d fragments reused and %,6d formatted per render",
+				name, bytesPerThousandTasks, nanosPerRender / 1000, reusedPerRender, renderedPerRender));
+	}
+
+	private static void render(ArrayList<Task> tasks, int numberOfRenders, boolean isClearingCache) {
+		for (int i = 0; i < numberOfRenders; i++) {
+			if (isClearingCache) {
+				TasksFormatter.clearFragmentCache();
+			}
+			TasksFormatter.formatTasks(tasks);
+		}
+	}
+
+	private static ArrayList<Task> createTasks(int numberOfTasks) {
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		DateTime start = new DateTime().withTimeAtStartOfDay().plusDays(1);
+		DateTime dateCreated = start.minusWeeks(1);
+
+		for (int id = 1; id <= numberOfTasks; id++) {
+			Task task;
+			switch (id % 3) {
+				case 0 :
+					task = new FloatingTask("Floating task " + id, "Description of task " + id);
+					break;
+				case 1 :
+					task = new DeadlineTask("Deadline task " + id, "Description of task " + id,
+							start.plusMinutes(id * 37));
+					break;
+				default :
+					task = new TimedTask("Timed task " + id, "", start.plusMinutes(id * 37),
+							start.plusMinutes(id * 37 + 90));
+					break;
+			}
+			task.setTaskId(id);
+			task.setDateCreated(dateCreated);
+			task.setDateModified(dateCreated);
+			if (id % 4 == 0) {
+				task.setStatus(Task.Status.COMPLETED);
+			}
+			tasks.add(task);
+		}
+
+		return tasks;
+	}
+}
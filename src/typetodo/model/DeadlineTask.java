@@ -33,8 +33,13 @@ public class DeadlineTask extends Task {
 	}
 
 	public Task makeCopy() {
-		return new DeadlineTask(this.getTaskId(), this.getTitle(),
+		DeadlineTask copy = new DeadlineTask(this.getTaskId(), this.getTitle(),
 				this.getDescription(), this.getDeadline());
+		copy.setStatus(this.getStatus());
+		copy.setDateCreated(this.getDateCreated());
+		copy.setDateModified(this.getDateModified());
+		
+		return copy;
 	}
 
 	public static final Comparator<DeadlineTask> COMPARE_BY_DATE = new Comparator<DeadlineTask>() {
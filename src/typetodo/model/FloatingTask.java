@@ -16,7 +16,12 @@ public class FloatingTask extends Task {
 	}
 	
 	public Task makeCopy() {
-		return new FloatingTask(this.getTaskId(), this.getTitle(), this.getDescription());
+		FloatingTask copy = new FloatingTask(this.getTaskId(), this.getTitle(), this.getDescription());
+		copy.setStatus(this.getStatus());
+		copy.setDateCreated(this.getDateCreated());
+		copy.setDateModified(this.getDateModified());
+		
+		return copy;
 	}
 	
 	@Override
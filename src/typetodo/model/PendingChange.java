@@ -0,0 +1,93 @@
+package typetodo.model;
+
+/**
+ * A PendingChange records a change made to a task in the Schedule that has not been sent to the Google
+ * Schedule yet. Only the id of the task is kept, the latest state of the task is sent when syncing.
+ * @author A0091024U
+ *
+ */
+public class PendingChange {
+	private long sequenceNumber;
+	private final TypeOfOperation type;
+	private final int taskId;
+	private final String googleId;
+	private final TaskType taskType;
+	private String failure;
+
+	/**
+	 * @param type ADD, EDIT or DELETE
+	 * @param task task that was changed
+	 */
+	public PendingChange(TypeOfOperation type, Task task) {
+		this.type = type;
+		this.taskId = task.getTaskId();
+		this.googleId = task.getGoogleId();
+		if (task instanceof DeadlineTask) {
+			this.taskType = TaskType.DEADLINE_TASK;
+		} else if (task instanceof TimedTask) {
+			this.taskType = TaskType.TIMED_TASK;
+		} else {
+			this.taskType = TaskType.FLOATING_TASK;
+		}
+	}
+
+	/**
+	 * Copies a change of the task under another type, such as when a later change of the task is collapsed into
+	 * it.
+	 * @param type ADD, EDIT or DELETE
+	 * @param pendingChange change whose task is copied
+	 */
+	public PendingChange(TypeOfOperation type, PendingChange pendingChange) {
+		this.type = type;
+		this.taskId = pendingChange.taskId;
+		this.googleId = pendingChange.googleId;
+		this.taskType = pendingChange.taskType;
+	}
+
+	/**
+	 * @return position of the change in the outbox, given when the change is saved
+	 */
+	public long getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	public void setSequenceNumber(long sequenceNumber) {
+		this.sequenceNumber = sequenceNumber;
+	}
+
+	public TypeOfOperation getType() {
+		return type;
+	}
+
+	public int getTaskId() {
+		return taskId;
+	}
+
+	/**
+	 * @return googleId of the task when it was changed, which is needed to delete it from the Google Schedule
+	 */
+	public String getGoogleId() {
+		return googleId;
+	}
+
+	public TaskType getTaskType() {
+		return taskType;
+	}
+
+	/**
+	 * @return reason the Google Schedule rejected the change, or null if it was not rejected. A rejected change
+	 * is kept in the outbox but not sent again, until a later change of the task replaces it.
+	 */
+	public String getFailure() {
+		return failure;
+	}
+
+	public void setFailure(String failure) {
+		this.failure = failure;
+	}
+
+	@Override
+	public String toString() {
+		return sequenceNumber + " " + type + " " + taskId;
+	}
+}
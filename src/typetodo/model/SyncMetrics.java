@@ -0,0 +1,211 @@
+package typetodo.model;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.joda.time.DateTime;
+
+/**
+ * SyncMetrics records how a sync went, phase by phase: the wall time, the items touched, the retries, and the
+ * HTTP calls, bytes sent and bytes received for each endpoint. Requests may be recorded from several threads at
+ * once, and are counted in the phase that is running. The metrics of recent syncs are kept in the sync history.
+ * @author A0091024U
+ *
+ */
+public class SyncMetrics {
+	private static final String PHASE_OUTSIDE_OF_PHASES = "other";
+	private static final String FORMAT_DATE = "EEE, dd MMM yyyy HH:mm";
+
+	private final DateTime started;
+	private long millis;
+	private String outcome;
+	private final ArrayList<Phase> phases;
+	private transient Phase currentPhase;
+	private transient long nanosStarted;
+	private transient long nanosOfPhaseStarted;
+
+	/**
+	 * Metrics of one phase of a sync.
+	 */
+	public static class Phase {
+		private final String name;
+		private long millis;
+		private int itemsTouched;
+		private int retries;
+		private final TreeMap<String, Endpoint> endpoints;
+
+		private Phase(String name) {
+			this.name = name;
+			this.endpoints = new TreeMap<String, Endpoint>();
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public int getItemsTouched() {
+			return itemsTouched;
+		}
+
+		public int getRetries() {
+			return retries;
+		}
+
+		/**
+		 * @return metrics of each endpoint called during the phase, by endpoint such as "GET calendar/events"
+		 */
+		public Map<String, Endpoint> getEndpoints() {
+			return endpoints;
+		}
+
+		@Override
+		public String toString() {
+			int calls = 0;
+			long bytesOut = 0;
+			long bytesIn = 0;
+			for (Endpoint endpoint : endpoints.values()) {
+				calls += endpoint.calls;
+				bytesOut += endpoint.bytesOut;
+				bytesIn += endpoint.bytesIn;
+			}
+			return String.format("%s %,d ms, %,d items, %,d calls, %,d B out, %,d B in, %,d retries", name, millis,
+					itemsTouched, calls, bytesOut, bytesIn, retries);
+		}
+	}
+
+	/**
+	 * HTTP calls made to one endpoint. Bytes in are only counted for responses that give their length.
+	 */
+	public static class Endpoint {
+		private int calls;
+		private long bytesOut;
+		private long bytesIn;
+
+		public int getCalls() {
+			return calls;
+		}
+
+		public long getBytesOut() {
+			return bytesOut;
+		}
+
+		public long getBytesIn() {
+			return bytesIn;
+		}
+	}
+
+	/**
+	 * Starts recording a sync that starts now.
+	 */
+	public SyncMetrics() {
+		this.started = new DateTime();
+		this.phases = new ArrayList<Phase>();
+		this.nanosStarted = System.nanoTime();
+	}
+
+	/**
+	 * Ends the phase that is running, if any, and starts the next one.
+	 * @param name name of the phase, such as "retrieve"
+	 */
+	public synchronized void startPhase(String name) {
+		this.endPhase();
+		currentPhase = new Phase(name);
+		phases.add(currentPhase);
+		nanosOfPhaseStarted = System.nanoTime();
+	}
+
+	/**
+	 * Ends the phase that is running, if any.
+	 */
+	public synchronized void endPhase() {
+		if (currentPhase != null) {
+			currentPhase.millis = (System.nanoTime() - nanosOfPhaseStarted) / 1000000;
+			currentPhase = null;
+		}
+	}
+
+	/**
+	 * @param itemsTouched number of tasks retrieved, compared or written during the phase that is running
+	 */
+	public synchronized void addItemsTouched(int itemsTouched) {
+		this.getCurrentPhase().itemsTouched += itemsTouched;
+	}
+
+	/**
+	 * Records a request that was sent again after it failed.
+	 */
+	public synchronized void recordRetry() {
+		this.getCurrentPhase().retries++;
+	}
+
+	/**
+	 * Records an HTTP call to an endpoint.
+	 * @param endpoint method and collection called, such as "GET calendar/events"
+	 * @param bytesOut length of the content sent, or 0 if there is none
+	 * @param bytesIn length of the content received, or 0 if it is not known
+	 */
+	public synchronized void recordRequest(String endpoint, long bytesOut, long bytesIn) {
+		Endpoint metrics = this.getCurrentPhase().endpoints.get(endpoint);
+		if (metrics == null) {
+			metrics = new Endpoint();
+			this.getCurrentPhase().endpoints.put(endpoint, metrics);
+		}
+		metrics.calls++;
+		metrics.bytesOut += Math.max(0, bytesOut);
+		metrics.bytesIn += Math.max(0, bytesIn);
+	}
+
+	/**
+	 * Ends the sync and records its wall time.
+	 * @param outcome such as "succeeded" or the reason of the failure
+	 */
+	public synchronized void finish(String outcome) {
+		this.endPhase();
+		this.millis = (System.nanoTime() - nanosStarted) / 1000000;
+		this.outcome = outcome;
+	}
+
+	/**
+	 * @return phase that is running, or a phase for the requests made outside of the phases
+	 */
+	private Phase getCurrentPhase() {
+		if (currentPhase == null) {
+			this.startPhase(PHASE_OUTSIDE_OF_PHASES);
+		}
+		return currentPhase;
+	}
+
+	public DateTime getStarted() {
+		return started;
+	}
+
+	public long getMillis() {
+		return millis;
+	}
+
+	public String getOutcome() {
+		return outcome;
+	}
+
+	public synchronized ArrayList<Phase> getPhases() {
+		return new ArrayList<Phase>(phases);
+	}
+
+	/**
+	 * @return one line for the sync, followed by one line for each phase
+	 */
+	@Override
+	public synchronized String toString() {
+		StringBuilder description = new StringBuilder(String.format("%s: %,d ms, %s",
+				started.toString(FORMAT_DATE), millis, outcome));
+		for (Phase phase : phases) {
+			description.append("\n  ").append(phase);
+		}
+		return description.toString();
+	}
+}
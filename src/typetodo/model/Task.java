@@ -21,6 +21,7 @@ public abstract class Task implements Comparable<Task> {
 	private Status status;
 	private DateTime dateCreated;
 	private DateTime dateModified;
+	private Task syncedVersion; // Synced fields as of the last sync, the base of a three-way merge
 
 	public Task(String name, String description) {
 		this.setTitle(name);
@@ -113,6 +114,18 @@ public abstract class Task implements Comparable<Task> {
 		this.googleId = googleId;
 	}
 
+	/**
+	 * @return task holding only the fields synced with the Google Schedule, as they were at the last
+	 *         successful sync of the task, or null if it was never synced
+	 */
+	public Task getSyncedVersion() {
+		return syncedVersion;
+	}
+
+	public void setSyncedVersion(Task syncedVersion) {
+		this.syncedVersion = syncedVersion;
+	}
+
 	public int compareTo(Task taskToCompare) {
 		int comparedId = taskToCompare.getTaskId();
 		// Sort tasks by taskId in ascending order
@@ -0,0 +1,87 @@
+package typetodo.model;
+
+/**
+ * A TaskChange records a change made to a task in the database, with copies of the task before and after the
+ * change, so that a consumer can update what it has built from the tasks without retrieving all of them again.
+ * A change of type RELOADED carries no task, and means that the changes cannot be told one by one, such as
+ * after the files were reloaded, so the tasks have to be retrieved again.
+ * @author A0091024U
+ *
+ */
+public class TaskChange {
+	public static enum Type {
+		ADDED, UPDATED, STATUS_CHANGED, DELETED, RELOADED
+	}
+
+	private final Type type;
+	private final Task taskBefore;
+	private final Task taskAfter;
+	private final long version;
+
+	/**
+	 * @param taskBefore copy of the task before the change, null if it was added
+	 * @param taskAfter copy of the task after the change, null if it was deleted
+	 * @param version version of the tasks once the change was made
+	 */
+	public TaskChange(Type type, Task taskBefore, Task taskAfter, long version) {
+		this.type = type;
+		this.taskBefore = taskBefore;
+		this.taskAfter = taskAfter;
+		this.version = version;
+	}
+
+	/**
+	 * @return a change that adds, deletes or updates the task, STATUS_CHANGED if its status is different
+	 */
+	public static TaskChange between(Task taskBefore, Task taskAfter, long version) {
+		Type type;
+		if (taskBefore == null) {
+			type = Type.ADDED;
+		} else if (taskAfter == null) {
+			type = Type.DELETED;
+		} else if (taskBefore.getStatus() != taskAfter.getStatus()) {
+			type = Type.STATUS_CHANGED;
+		} else {
+			type = Type.UPDATED;
+		}
+		return new TaskChange(type, taskBefore, taskAfter, version);
+	}
+
+	public static TaskChange reloaded(long version) {
+		return new TaskChange(Type.RELOADED, null, null, version);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return taskId of the task changed, or 0 if the tasks were reloaded
+	 */
+	public int getTaskId() {
+		if (taskAfter != null) {
+			return taskAfter.getTaskId();
+		}
+		return (taskBefore == null) ? 0 : taskBefore.getTaskId();
+	}
+
+	public Task getTaskBefore() {
+		return taskBefore;
+	}
+
+	public Task getTaskAfter() {
+		return taskAfter;
+	}
+
+	/**
+	 * @return version of the tasks once the change was made, see DbController.getVersion()
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + getTaskId() + " at version " + version;
+	}
+}
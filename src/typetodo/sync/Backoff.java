@@ -0,0 +1,65 @@
+package typetodo.sync;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Random;
+
+/**
+ * The Backoff gives the time to wait before a failed request is sent again. The delay doubles with every
+ * attempt up to a maximum, and a random half of it is added as jitter so that requests that failed
+ * together are not all sent again at the same moment.
+ * @author A0091024U
+ *
+ */
+public class Backoff {
+	private final long initialDelayMillis;
+	private final long maxDelayMillis;
+	private final Random random;
+
+	/**
+	 * @param initialDelayMillis delay before the second attempt, without jitter
+	 * @param maxDelayMillis maximum delay, without jitter
+	 */
+	public Backoff(long initialDelayMillis, long maxDelayMillis) {
+		this(initialDelayMillis, maxDelayMillis, new Random());
+	}
+
+	/**
+	 * @param random gives the fraction of the jitter
+	 */
+	Backoff(long initialDelayMillis, long maxDelayMillis, Random random) {
+		this.initialDelayMillis = initialDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+		this.random = random;
+	}
+
+	/**
+	 * @param attempt number of attempts that have failed so far, starting from 1
+	 * @return milliseconds to wait before the next attempt
+	 */
+	public long getDelayMillis(int attempt) {
+		long delay = initialDelayMillis;
+		for (int i = 1; i < attempt && delay < maxDelayMillis; i++) {
+			delay *= 2;
+		}
+		delay = Math.min(delay, maxDelayMillis);
+
+		synchronized (random) {
+			return delay + (long) (random.nextDouble() * delay / 2);
+		}
+	}
+
+	/**
+	 * Waits before the next attempt.
+	 * @param attempt number of attempts that have failed so far, starting from 1
+	 * @throws IOException if interrupted while waiting
+	 */
+	public void waitBeforeRetry(int attempt) throws IOException {
+		try {
+			Thread.sleep(this.getDelayMillis(attempt));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry");
+		}
+	}
+}
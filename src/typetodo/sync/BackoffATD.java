@@ -0,0 +1,60 @@
+package typetodo.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that the delays of the Backoff double up to the maximum, and that the jitter stays within half of the
+ * delay.
+ * @author A0091024U
+ *
+ */
+public class BackoffATD {
+	private static final long INITIAL_DELAY_MILLIS = 100;
+	private static final long MAX_DELAY_MILLIS = 1000;
+
+	private static class FixedRandom extends Random {
+		private static final long serialVersionUID = 1L;
+		private final double fraction;
+
+		private FixedRandom(double fraction) {
+			this.fraction = fraction;
+		}
+
+		@Override
+		public double nextDouble() {
+			return fraction;
+		}
+	}
+
+	@Test
+	public void DelayDoublesUpToTheMaximum() {
+		Backoff backoff = new Backoff(INITIAL_DELAY_MILLIS, MAX_DELAY_MILLIS, new FixedRandom(0));
+
+		assertEquals(100, backoff.getDelayMillis(1));
+		assertEquals(200, backoff.getDelayMillis(2));
+		assertEquals(400, backoff.getDelayMillis(3));
+		assertEquals(800, backoff.getDelayMillis(4));
+		assertEquals(MAX_DELAY_MILLIS, backoff.getDelayMillis(5));
+		assertEquals(MAX_DELAY_MILLIS, backoff.getDelayMillis(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void JitterAddsAtMostHalfOfTheDelay() {
+		Backoff backoff = new Backoff(INITIAL_DELAY_MILLIS, MAX_DELAY_MILLIS, new FixedRandom(0.5));
+		assertEquals(125, backoff.getDelayMillis(1));
+		assertEquals(MAX_DELAY_MILLIS + MAX_DELAY_MILLIS / 4, backoff.getDelayMillis(10));
+
+		backoff = new Backoff(INITIAL_DELAY_MILLIS, MAX_DELAY_MILLIS);
+		for (int attempt = 1; attempt <= 1000; attempt++) {
+			long delay = Math.min(INITIAL_DELAY_MILLIS << Math.min(attempt - 1, 10), MAX_DELAY_MILLIS);
+			long delayWithJitter = backoff.getDelayMillis(attempt);
+			assertTrue(delayWithJitter >= delay);
+			assertTrue(delayWithJitter < delay + delay / 2);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package typetodo.sync;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.security.GeneralSecurityException;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -25,6 +26,8 @@ import com.google.api.services.tasks.TasksScopes;
  * This class is used to gain access(via OAuth2) to the user's Google Calendar and Tasks. Upon completion
  * of OAuth2, it generates both Calendar and Task clients which can be used to access/manipulate protected data
  * in the user's Google	Schedule.
+ * The HTTP transport and the credential store are shared by every GCalAuthenticator, and getInstance builds
+ * the clients once, the first time they are needed.
  * @author A0091024U
  *
  */
@@ -34,6 +37,13 @@ public class GCalAuthenticator {
 	 * blank, the application will log a warning. Suggested format is "MyCompany-ProductName/1.0".
 	 */
 	private final String APPLICATION_NAME;
+	
+	private static final String MESSAGE_NOT_CONNECTED = "could not connect to google schedule";
+	private static final java.io.File SHARED_DATA_STORE_DIR =
+			new java.io.File(System.getProperty("user.home"), ".store/typetodo.credentials");
+	private static HttpTransport sharedHttpTransport;
+	private static FileDataStoreFactory sharedDataStoreFactory;
+	private static GCalAuthenticator instance;
 
 	/** Directory to store user credentials. */
 	private final java.io.File DATA_STORE_DIR;
@@ -60,26 +70,25 @@ public class GCalAuthenticator {
 	 */
 	public GCalAuthenticator (String applicationName) {
 		this.APPLICATION_NAME = applicationName;
-		this.DATA_STORE_DIR =
-				new java.io.File(System.getProperty("user.home"), ".store/typetodo.credentials");
+		this.DATA_STORE_DIR = SHARED_DATA_STORE_DIR;
 		this.JSON_FACTORY = JacksonFactory.getDefaultInstance();
 		
 		try {
-			// initialize the transport
-			httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-
-			// initialize the data store factory
-			dataStoreFactory = new FileDataStoreFactory(DATA_STORE_DIR);
+			// initialize the transport and the data store factory, once for every GCalAuthenticator
+			httpTransport = getSharedHttpTransport();
+			dataStoreFactory = getSharedDataStoreFactory(DATA_STORE_DIR);
 
 			// authorization
 			Credential credential = authorize();
+			// the requests of both clients are recorded in the metrics of the sync that is running
+			MeteredRequestInitializer requestInitializer = new MeteredRequestInitializer(credential);
 
 			// set up global Calendar instance
-			calendarClient = new Calendar.Builder(httpTransport, JSON_FACTORY, credential)
+			calendarClient = new Calendar.Builder(httpTransport, JSON_FACTORY, requestInitializer)
 			.setApplicationName(APPLICATION_NAME).build();
 			
 			// Tasks client
-		    setTasksClient(new com.google.api.services.tasks.Tasks.Builder(httpTransport, JSON_FACTORY, credential)
+		    setTasksClient(new com.google.api.services.tasks.Tasks.Builder(httpTransport, JSON_FACTORY, requestInitializer)
 			    .setApplicationName(APPLICATION_NAME).build());
 
 		} catch (IOException e) {
@@ -89,6 +98,40 @@ public class GCalAuthenticator {
 		}
 	}
 
+	/**
+	 * Returns the GCalAuthenticator built by the first successful call, authorizing the user then. Calls 
+	 * made while it is being built wait for it.
+	 * @param applicationName
+	 * @return GCalAuthenticator whose clients are built
+	 * @throws IOException if the clients could not be built, in which case the next call tries again
+	 */
+	public static synchronized GCalAuthenticator getInstance(String applicationName) throws IOException {
+		if (instance == null) {
+			GCalAuthenticator authenticator = new GCalAuthenticator(applicationName);
+			if (authenticator.getClient() == null || authenticator.getTasksClient() == null) {
+				throw new IOException(MESSAGE_NOT_CONNECTED);
+			}
+			instance = authenticator;
+		}
+		return instance;
+	}
+	
+	private static synchronized HttpTransport getSharedHttpTransport() 
+			throws GeneralSecurityException, IOException {
+		if (sharedHttpTransport == null) {
+			sharedHttpTransport = GoogleNetHttpTransport.newTrustedTransport();
+		}
+		return sharedHttpTransport;
+	}
+	
+	private static synchronized FileDataStoreFactory getSharedDataStoreFactory(java.io.File dataStoreDir) 
+			throws IOException {
+		if (sharedDataStoreFactory == null) {
+			sharedDataStoreFactory = new FileDataStoreFactory(dataStoreDir);
+		}
+		return sharedDataStoreFactory;
+	}
+
 	/**
 	 * Returns Google's Calendar client to access user's calendars and events
 	 * @return client of type Calendar
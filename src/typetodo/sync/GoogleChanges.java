@@ -0,0 +1,84 @@
+package typetodo.sync;
+
+import java.util.ArrayList;
+
+import typetodo.model.Task;
+
+/**
+ * The GoogleChanges class holds the tasks that were added, updated or deleted in the Google Schedule
+ * since the previous sync, together with the markers to be used to retrieve the changes of the next sync.
+ * The tasks are only kept if the GoogleChanges was also the consumer of the retrieval.
+ * @author A0091024U
+ *
+ */
+public class GoogleChanges implements GoogleItemConsumer {
+	private final ArrayList<Task> updatedTasks;
+	private final ArrayList<String> deletedGoogleIds;
+	private String calendarSyncToken;
+	private String tasksUpdatedMin;
+	private boolean isFullSync;
+
+	public GoogleChanges() {
+		this.updatedTasks = new ArrayList<Task>();
+		this.deletedGoogleIds = new ArrayList<String>();
+	}
+
+	/**
+	 * @return tasks that were added or updated in the Google Schedule, or every task in the Google
+	 * 			Schedule if this is a full sync
+	 */
+	public ArrayList<Task> getUpdatedTasks() {
+		return updatedTasks;
+	}
+
+	@Override
+	public void consumeUpdatedTask(Task task) {
+		updatedTasks.add(task);
+	}
+
+	@Override
+	public void consumeDeletedGoogleId(String googleId) {
+		deletedGoogleIds.add(googleId);
+	}
+
+	/**
+	 * @return googleIds of the tasks that were deleted from the Google Schedule. Always empty for a full
+	 * 			sync, since deleted tasks are simply missing from it.
+	 */
+	public ArrayList<String> getDeletedGoogleIds() {
+		return deletedGoogleIds;
+	}
+
+	/**
+	 * @return token to retrieve the next changes of Google Calendar, or null if Google did not return one
+	 */
+	public String getCalendarSyncToken() {
+		return calendarSyncToken;
+	}
+
+	public void setCalendarSyncToken(String calendarSyncToken) {
+		this.calendarSyncToken = calendarSyncToken;
+	}
+
+	/**
+	 * @return RFC 3339 time of the latest update of Google Tasks, or null if no task was retrieved
+	 */
+	public String getTasksUpdatedMin() {
+		return tasksUpdatedMin;
+	}
+
+	public void setTasksUpdatedMin(String tasksUpdatedMin) {
+		this.tasksUpdatedMin = tasksUpdatedMin;
+	}
+
+	/**
+	 * @return true if every task in the Google Schedule was retrieved, rather than only the changes
+	 */
+	public boolean isFullSync() {
+		return isFullSync;
+	}
+
+	public void setFullSync(boolean isFullSync) {
+		this.isFullSync = isFullSync;
+	}
+}
@@ -0,0 +1,22 @@
+package typetodo.sync;
+
+import typetodo.model.Task;
+
+/**
+ * A GoogleItemConsumer receives the events and Google Tasks retrieved from the Google Schedule one page at
+ * a time, so that the retrieved items need not be held in memory all at once. Items of Google Calendar
+ * and Google Tasks are retrieved at the same time, the methods are never called by two threads at once.
+ * @author A0091024U
+ *
+ */
+public interface GoogleItemConsumer {
+	/**
+	 * @param task task that was added or updated in the Google Schedule
+	 */
+	void consumeUpdatedTask(Task task);
+
+	/**
+	 * @param googleId googleId of a task that was deleted from the Google Schedule
+	 */
+	void consumeDeletedGoogleId(String googleId);
+}
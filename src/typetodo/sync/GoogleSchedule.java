@@ -1,276 +1,712 @@
 package typetodo.sync;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import typetodo.model.DeadlineTask;
 import typetodo.model.FloatingTask;
+import typetodo.model.SyncMetrics;
 import typetodo.model.Task;
 import typetodo.model.TimedTask;
+import typetodo.model.TypeOfOperation;
 
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClient;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.services.calendar.model.CalendarList;
 import com.google.api.services.calendar.model.CalendarListEntry;
 import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.Events;
+import com.google.api.services.tasks.model.TaskLists;
 
-public class GoogleSchedule {
+public class GoogleSchedule implements RemoteSchedule {
 	private static final String APPLICATION_NAME = "TypeToDo";
+	private static final String CALENDAR_NAME = "TypeToDo";
+	private static final String MESSAGE_NO_TASK_LIST = "The Google account has no task list";
+	private static final String STATUS_CANCELLED = "cancelled";
+	private static final String PARAMETER_SYNC_TOKEN = "syncToken";
+	private static final String PARAMETER_NEXT_SYNC_TOKEN = "nextSyncToken";
+	private static final String UPDATED_MIN_OF_FULL_SYNC = "1970-01-01T00:00:00.000Z";
+	private static final int STATUS_CODE_FORBIDDEN = 403;
+	private static final int STATUS_CODE_NOT_FOUND = 404;
+	private static final int STATUS_CODE_GONE = 410;
+	private static final int STATUS_CODE_TOO_MANY_REQUESTS = 429;
+	private static final int STATUS_CODE_SERVER_ERROR = 500;
+	private static final String REASON_RATE_LIMIT_EXCEEDED = "rateLimitExceeded";
+	private static final String REASON_USER_RATE_LIMIT_EXCEEDED = "userRateLimitExceeded";
+	private static final int MAX_ATTEMPTS = 5;
+	private static final long INITIAL_RETRY_DELAY_MILLIS = 250;
+	private static final long MAX_RETRY_DELAY_MILLIS = 8000;
+	// Google counts every request of a batch against the quota of the user
+	private static final double REQUESTS_PER_SECOND = 5;
+	private static final double BURST_OF_REQUESTS = 50;
+	private static final int MAX_PARALLEL_REQUESTS = 4;
+	private static final int IDLE_SECONDS_OF_REQUEST_THREADS = 30;
+	private static final String REQUEST_THREAD_NAME = "GoogleScheduleRequest";
+	// Google Calendar returns up to 2500 events a page, Google Tasks up to 100 tasks
+	private static final int DEFAULT_MAX_RESULTS = 250;
+	private static final int MAX_RESULTS_OF_TASKS = 100;
+	// Only the fields read by SyncHelper are retrieved
+	private static final String DEFAULT_EVENT_FIELDS = 
+			"items(id,status,summary,description,start,end,updated),nextPageToken,nextSyncToken";
+	private static final String DEFAULT_TASK_FIELDS = "items(id,title,notes,completed,deleted,updated),nextPageToken";
 	private GCalAuthenticator authenticator;
 	private final com.google.api.services.calendar.Calendar gCalendarClient;
 	private final com.google.api.services.tasks.Tasks gTasksClient;
-	private String gCalendarId;
-	private String gTaskListId;
+	private volatile String gCalendarId;
+	private volatile String gTaskListId;
+	// Ids given by the caller, which are looked up again if Google no longer has them
+	private volatile boolean isUsingGivenIds;
+	private final ExecutorService requestPool;
+	private final RateLimiter rateLimiter;
+	private final Backoff backoff;
+	private int maxResults = DEFAULT_MAX_RESULTS;
+	private String eventFields = DEFAULT_EVENT_FIELDS;
+	private String taskFields = DEFAULT_TASK_FIELDS;
+	private volatile SyncMetrics metrics;
 	
-	public GoogleSchedule() {
-		authenticator = new GCalAuthenticator(APPLICATION_NAME);
-		gCalendarClient = authenticator.getClient();
-		gTasksClient = authenticator.getTasksClient();
+	public GoogleSchedule() throws IOException {
+		this((String) null, (String) null);
+	}
+	
+	/**
+	 * Connects to the user's Google Schedule with the clients of the shared GCalAuthenticator, which are 
+	 * built the first time they are needed. The TypeToDo calendar and the task list are only looked up if 
+	 * their ids are not given.
+	 * @param calendarId id of the TypeToDo calendar, such as one saved by an earlier sync, or null
+	 * @param taskListId id of the task list, or null
+	 * @throws IOException if the user's Google Schedule could not be reached
+	 */
+	public GoogleSchedule(String calendarId, String taskListId) throws IOException {
+		this(GCalAuthenticator.getInstance(APPLICATION_NAME), calendarId, taskListId);
+	}
+	
+	private GoogleSchedule(GCalAuthenticator authenticator, String calendarId, String taskListId) 
+			throws IOException {
+		this(authenticator.getClient(), authenticator.getTasksClient(), calendarId, taskListId);
+		this.authenticator = authenticator;
+	}
+	
+	/**
+	 * Creates a GoogleSchedule that uses the given clients, such as clients of a stand-in server for testing.
+	 * @param gCalendarClient
+	 * @param gTasksClient
+	 * @throws IOException if the TypeToDo calendar or the task list could not be looked up
+	 */
+	GoogleSchedule(com.google.api.services.calendar.Calendar gCalendarClient, 
+			com.google.api.services.tasks.Tasks gTasksClient) throws IOException {
+		this(gCalendarClient, gTasksClient, null, null);
+	}
+	
+	GoogleSchedule(com.google.api.services.calendar.Calendar gCalendarClient, 
+			com.google.api.services.tasks.Tasks gTasksClient, String calendarId, String taskListId) 
+			throws IOException {
+		this.gCalendarClient = gCalendarClient;
+		this.gTasksClient = gTasksClient;
+		this.rateLimiter = new RateLimiter(REQUESTS_PER_SECOND, BURST_OF_REQUESTS);
+		this.backoff = new Backoff(INITIAL_RETRY_DELAY_MILLIS, MAX_RETRY_DELAY_MILLIS);
 		
-		if ((gCalendarId = getTypeToDoCalendarId()) == null) { //TypeToDo calendar does not exist
-			gCalendarId = addTypeToDoCalendar();
-		}
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_PARALLEL_REQUESTS, MAX_PARALLEL_REQUESTS, 
+				IDLE_SECONDS_OF_REQUEST_THREADS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+				new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, REQUEST_THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		pool.allowCoreThreadTimeOut(true); //no threads are kept while there is nothing to sync
+		this.requestPool = pool;
 		
-		gTaskListId = this.getTaskListId();
+		if (calendarId != null && taskListId != null) {
+			gCalendarId = calendarId;
+			gTaskListId = taskListId;
+			isUsingGivenIds = true;
+		} else {
+			this.lookUpIds();
+		}
 	}
 	
 	/**
-	 * Adds a task into the Google Schedule
-	 * @param taskToBeAdded Task to be added
-	 * @throws IOException 
+	 * @return id of the TypeToDo calendar, which may change if the calendar given was not found
 	 */
-	public void addTask(Task taskToBeAdded) throws IOException {
-		if (taskToBeAdded instanceof TimedTask) {
-//			System.out.println(taskToBeAdded);
-			Event event = SyncHelper.timedTaskToGoogleEvent((TimedTask) taskToBeAdded);
-			Event result = gCalendarClient.events().insert(gCalendarId, event).execute();
-			taskToBeAdded.setGoogleId(result.getId()); //append GCal's id to task
-		}
-		else if(taskToBeAdded instanceof DeadlineTask) {
-			Event event = SyncHelper.deadlineTaskToGoogleEvent((DeadlineTask) taskToBeAdded);
-			Event result = gCalendarClient.events().insert(gCalendarId, event).execute();
-			taskToBeAdded.setGoogleId(result.getId()); //append GCal's id to task
-		}
-		else if(taskToBeAdded instanceof FloatingTask) {
-			com.google.api.services.tasks.model.Task googleTask = 
-					SyncHelper.floatingTaskToGoogleTask((FloatingTask) taskToBeAdded);
-
-			com.google.api.services.tasks.model.Task result = 
-					gTasksClient.tasks().insert(gTaskListId, googleTask).execute();
-
-			taskToBeAdded.setGoogleId(result.getId());
-		}
+	public String getCalendarId() {
+		return gCalendarId;
 	}
-
+	
 	/**
-	 * Deletes a task from the Google Schedule.
-	 * @param taskToBeDeleted Task to be deleted
-	 * @throws IOException if task to be deleted does not exist in the Google System
+	 * @return id of the task list, which may change if the task list given was not found
 	 */
-	public void deleteTask(Task taskToBeDeleted) throws IOException {
-		String googleId = taskToBeDeleted.getGoogleId();
-
-		if (googleId == null) {
-			throw new NullPointerException("GoogleId is missing, task cannot be deleted.");
-		}
-
-		//Case 1: If deadline/timed task, delete from Google Calendar
-		if (taskToBeDeleted instanceof DeadlineTask || taskToBeDeleted instanceof TimedTask) { 
-
-			try {
-				gCalendarClient.events().delete(gCalendarId, googleId).execute();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-				throw new IOException("\"" + taskToBeDeleted.getTitle() + "\" does not exist in Google Calendar");
-			}
-		//Case 2: If floating task, delete from Google Tasks
-		} else if (taskToBeDeleted instanceof FloatingTask) { 
-
-			try {
-				gTasksClient.tasks().delete(gTaskListId, googleId).execute();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-				throw new IOException("\"" + taskToBeDeleted.getTitle() + "\" does not exist in Google Tasks");
-			}
-
+	public String getTaskListId() {
+		return gTaskListId;
+	}
+	
+	/**
+	 * Looks up the TypeToDo calendar, adding it only if the calendar list shows that it does not exist, and 
+	 * the task list. The ids are left as they were if either could not be looked up.
+	 * @throws IOException if the calendar list or the task lists could not be retrieved
+	 */
+	private void lookUpIds() throws IOException {
+		String calendarId = this.getTypeToDoCalendarId();
+		if (calendarId == null) { //TypeToDo calendar does not exist
+			calendarId = this.addTypeToDoCalendar();
 		}
+		String taskListId = this.findTaskListId();
+		
+		gCalendarId = calendarId;
+		gTaskListId = taskListId;
+		isUsingGivenIds = false;
 	}
-
+	
 	/**
 	 * Returns all Tasks found in the Google Schedule.
 	 * @return Returns an ArrayList of tasks found in the Google System
+	 * @throws IOException
 	 */
-	public ArrayList<Task> retrieveAllTasks() {
-		ArrayList<Task> tasks = new ArrayList<Task>();
-
-		//1. Extract Deadline/Timed Tasks from Google Calendar
-		Events feed = null;
-		try {
-			//Get all tasks in TypeToDo Calendar
-			feed = gCalendarClient.events().list(gCalendarId).execute();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-
-		for (Event event : feed.getItems()) {
-			if (!event.getStatus().equals("cancelled")) {
-				tasks.add(SyncHelper.googleEventToTask(event));
+	public ArrayList<Task> retrieveAllTasks() throws IOException {
+		final ArrayList<Task> tasks = new ArrayList<Task>();
+		this.retrieveAllTasks(new GoogleItemConsumer() {
+			@Override
+			public void consumeUpdatedTask(Task task) {
+				tasks.add(task);
 			}
-		}
+			
+			@Override
+			public void consumeDeletedGoogleId(String googleId) {
+			}
+		});
+		
+		return tasks;
+	}
+	
+	/**
+	 * Retrieves every Task in the Google Schedule, page by page.
+	 * @param consumer receives the tasks of each page as it arrives
+	 * @throws IOException
+	 */
+	public void retrieveAllTasks(GoogleItemConsumer consumer) throws IOException {
+		this.retrieveChanges(null, null, consumer);
+	}
 
-		//2. Extract floating tasks from Google Tasks
-		List<com.google.api.services.tasks.model.Task> taskList = null;
-		//TODO:
+	/**
+	 * Returns the tasks that were added, updated or deleted in the Google Schedule since the sync that 
+	 * returned the given markers. Every task is retrieved instead if there are no markers yet or if Google 
+	 * no longer accepts the sync token.
+	 * @param calendarSyncToken sync token returned by the previous sync, or null
+	 * @param tasksUpdatedMin latest update of Google Tasks returned by the previous sync, or null
+	 * @return changes in the Google Schedule, with the markers for the next sync
+	 * @throws IOException
+	 */
+	public GoogleChanges retrieveChanges(String calendarSyncToken, String tasksUpdatedMin) throws IOException {
+		GoogleChanges changes = new GoogleChanges();
+		GoogleChanges markers = this.retrieveChanges(calendarSyncToken, tasksUpdatedMin, changes);
+		changes.setCalendarSyncToken(markers.getCalendarSyncToken());
+		changes.setTasksUpdatedMin(markers.getTasksUpdatedMin());
+		changes.setFullSync(markers.isFullSync());
+		
+		return changes;
+	}
+	
+	/**
+	 * Retrieves the changes of the Google Schedule since the sync that returned the given markers, page by 
+	 * page, like retrieveChanges(String, String). Each page is given to the consumer as it arrives.
+	 * @param calendarSyncToken sync token returned by the previous sync, or null
+	 * @param tasksUpdatedMin latest update of Google Tasks returned by the previous sync, or null
+	 * @param consumer receives the changes of each page
+	 * @return markers for the next sync, without the changes
+	 * @throws IOException
+	 */
+	@Override
+	public GoogleChanges retrieveChanges(String calendarSyncToken, String tasksUpdatedMin, 
+			GoogleItemConsumer consumer) throws IOException {
 		try {
-			taskList = gTasksClient.tasks().list(gTaskListId).execute().getItems();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			GoogleChanges markers = this.retrieveChangesOfIds(calendarSyncToken, tasksUpdatedMin, consumer);
+			isUsingGivenIds = false;
+			return markers;
+		} catch (GoogleJsonResponseException e) {
+			if (!isUsingGivenIds || e.getStatusCode() != STATUS_CODE_NOT_FOUND) {
+				throw e;
+			}
 		}
-		if (taskList != null) {
-			for (com.google.api.services.tasks.model.Task googleTask : taskList) {
-				if ((googleTask.getDeleted() != null) && !googleTask.getDeleted()) {
-					tasks.add(SyncHelper.googleTaskToFloatingTask(googleTask));
-				}
-				if (googleTask.getDeleted() == null) {
-					tasks.add(SyncHelper.googleTaskToFloatingTask(googleTask));
+		
+		//the calendar or task list given is gone, so the markers of the previous sync no longer apply
+		this.lookUpIds();
+		GoogleChanges markers = this.streamChanges(null, null, consumer);
+		markers.setFullSync(true);
+		return markers;
+	}
+	
+	private GoogleChanges retrieveChangesOfIds(String calendarSyncToken, String tasksUpdatedMin, 
+			GoogleItemConsumer consumer) throws IOException {
+		if (calendarSyncToken != null && tasksUpdatedMin != null) {
+			try {
+				return this.streamChanges(calendarSyncToken, tasksUpdatedMin, consumer);
+			} catch (GoogleJsonResponseException e) {
+				//only the first page is refused when the sync token has expired, before anything is consumed
+				if (e.getStatusCode() != STATUS_CODE_GONE) { 
+					throw e;
 				}
 			}
 		}
-
-		return tasks;
+		
+		GoogleChanges markers = this.streamChanges(null, null, consumer);
+		markers.setFullSync(true);
+		return markers;
 	}
-
+	
 	/**
-	 * Retrieves and return equivalent Task from the Google Schedule.
-	 * @param task Local Task
-	 * @return Returns the equivalent Task from the Google Schedule
+	 * @param maxResults maximum number of items in a page, which Google may lower further
 	 */
-	public Task retrieveTask(Task task) {
-		if (task.getGoogleId() == null) {
-			return null;
+	@Override
+	public void setMaxResults(int maxResults) {
+		this.maxResults = maxResults;
+	}
+	
+	/**
+	 * Records the retries, and the requests of clients built with a MeteredRequestInitializer.
+	 */
+	@Override
+	public void setMetrics(SyncMetrics metrics) {
+		this.metrics = metrics;
+		for (HttpRequestInitializer initializer : new HttpRequestInitializer[] {
+				gCalendarClient.getRequestFactory().getInitializer(), gTasksClient.getRequestFactory().getInitializer()}) {
+			if (initializer instanceof MeteredRequestInitializer) {
+				((MeteredRequestInitializer) initializer).setMetrics(metrics);
+			}
 		}
-
-		if (task instanceof TimedTask || task instanceof DeadlineTask) { //check google calendar
-			try {
-				Event event = gCalendarClient.events().get(gCalendarId, task.getGoogleId()).execute();
-
-				if (event == null) {
-					return null;
-				} 
-				
-				if (event.getStatus().equals("cancelled")) {
-					return null;
+	}
+	
+	/**
+	 * Sets the fields returned for each page. Fields that are not used are left out to shrink the pages.
+	 * @param eventFields field mask of a page of events, or null for every field
+	 * @param taskFields field mask of a page of Google Tasks, or null for every field
+	 */
+	public void setFields(String eventFields, String taskFields) {
+		this.eventFields = eventFields;
+		this.taskFields = taskFields;
+	}
+	
+	/**
+	 * Streams the changes of Google Calendar on the current thread. The changes of Google Tasks are streamed 
+	 * on the request pool at the same time, once the first page of Google Calendar shows that the sync token 
+	 * is accepted.
+	 */
+	private GoogleChanges streamChanges(String calendarSyncToken, final String tasksUpdatedMin, 
+			GoogleItemConsumer consumer) throws IOException {
+		final GoogleItemConsumer synchronizedConsumer = synchronize(consumer);
+		GoogleChanges markers = new GoogleChanges();
+		Future<String> tasksRetrieval = null;
+		String pageToken = null;
+		try {
+			do {
+				com.google.api.services.calendar.Calendar.Events.List request = gCalendarClient.events()
+						.list(gCalendarId).setPageToken(pageToken).setMaxResults(maxResults).setFields(eventFields);
+				if (calendarSyncToken != null) {
+					request.set(PARAMETER_SYNC_TOKEN, calendarSyncToken);
+				}
+				Events feed;
+				try {
+					feed = this.executeWithBackoff(request);
+				} catch (GoogleJsonResponseException e) {
+					if (tasksRetrieval != null && e.getStatusCode() == STATUS_CODE_GONE) {
+						throw new IOException("Sync token expired while retrieving changes", e);
+					}
+					throw e;
 				}
 				
-				return SyncHelper.googleEventToTask(event);	
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-		} else if (task instanceof FloatingTask) { //Check google task
-			
-			try {
-				com.google.api.services.tasks.model.Task googleTask;
-				googleTask = gTasksClient.tasks().get(gTaskListId, task.getGoogleId()).execute();
+				if (tasksRetrieval == null) {
+					tasksRetrieval = requestPool.submit(new Callable<String>() {
+						@Override
+						public String call() throws IOException {
+							return streamTasksChanges(tasksUpdatedMin, synchronizedConsumer);
+						}
+					});
+				}
 				
-				if (googleTask == null) {
-					return null;
+				if (feed.getItems() != null) {
+					for (Event event : feed.getItems()) {
+						if (!STATUS_CANCELLED.equals(event.getStatus())) {
+							synchronizedConsumer.consumeUpdatedTask(SyncHelper.googleEventToTask(event));
+						} else if (calendarSyncToken != null) {
+							synchronizedConsumer.consumeDeletedGoogleId(event.getId());
+						}
+					}
 				}
 				
-				return SyncHelper.googleTaskToFloatingTask(googleTask);
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				pageToken = feed.getNextPageToken();
+				if (pageToken == null) { //the sync token is only given with the last page
+					markers.setCalendarSyncToken((String) feed.get(PARAMETER_NEXT_SYNC_TOKEN));
+				}
+			} while (pageToken != null);
+		} catch (IOException e) {
+			if (tasksRetrieval != null) {
+				tasksRetrieval.cancel(true);
 			}
+			throw e;
 		}
 		
-		return null;
+		markers.setTasksUpdatedMin(waitFor(tasksRetrieval));
+		return markers;
+	}
+	
+	/**
+	 * @return RFC 3339 time of the latest update of Google Tasks
+	 */
+	private String streamTasksChanges(String updatedMin, GoogleItemConsumer consumer) throws IOException {
+		com.google.api.client.util.DateTime latestUpdate = com.google.api.client.util.DateTime.parseRfc3339(
+				(updatedMin == null) ? UPDATED_MIN_OF_FULL_SYNC : updatedMin);
+		String pageToken = null;
+		do {
+			com.google.api.services.tasks.Tasks.TasksOperations.List request = gTasksClient.tasks()
+					.list(gTaskListId).setPageToken(pageToken)
+					.setMaxResults((long) Math.min(maxResults, MAX_RESULTS_OF_TASKS)).setFields(taskFields);
+			if (updatedMin != null) {
+				request.setUpdatedMin(updatedMin).setShowDeleted(true);
+			}
+			com.google.api.services.tasks.model.Tasks feed = this.executeWithBackoff(request);
+			
+			if (feed.getItems() != null) {
+				for (com.google.api.services.tasks.model.Task googleTask : feed.getItems()) {
+					if (!Boolean.TRUE.equals(googleTask.getDeleted())) {
+						consumer.consumeUpdatedTask(SyncHelper.googleTaskToFloatingTask(googleTask));
+					} else if (updatedMin != null) {
+						consumer.consumeDeletedGoogleId(googleTask.getId());
+					}
+					
+					if (googleTask.getUpdated() != null 
+							&& googleTask.getUpdated().getValue() > latestUpdate.getValue()) {
+						latestUpdate = googleTask.getUpdated();
+					}
+				}
+			}
+			
+			pageToken = feed.getNextPageToken();
+		} while (pageToken != null);
+		
+		return latestUpdate.toStringRfc3339();
+	}
+	
+	/**
+	 * @return consumer that is called by one thread at a time
+	 */
+	private static GoogleItemConsumer synchronize(final GoogleItemConsumer consumer) {
+		return new GoogleItemConsumer() {
+			@Override
+			public synchronized void consumeUpdatedTask(Task task) {
+				consumer.consumeUpdatedTask(task);
+			}
+			
+			@Override
+			public synchronized void consumeDeletedGoogleId(String googleId) {
+				consumer.consumeDeletedGoogleId(googleId);
+			}
+		};
 	}
 
 	/**
-	 * Updates a task in Google Schedule.
-	 * @param taskToBeUpdated
+	 * Sends the operations of a plan to the Google Schedule in batch requests of at most batchSize operations.
+	 * Up to MAX_PARALLEL_REQUESTS batch requests are sent at the same time, within the rate limit. 
+	 * The googleIds given to added tasks are set on the local tasks. Operations that fail because of a rate 
+	 * limit or a server error are sent again after a backoff, up to MAX_ATTEMPTS times. Operations that are 
+	 * still not done afterwards are returned by plan.getFailedOperations(), and those that failed with any other 
+	 * error by plan.getRejectedOperations().
+	 * @param plan operations to be sent
+	 * @param batchSize maximum number of operations in a batch request
+	 * @param listener receives the number of operations done after every batch request, or null
+	 * @throws IOException if interrupted
 	 */
-	public void updateTask(Task taskToBeUpdated) {
-		Event event;
-		String googleId = taskToBeUpdated.getGoogleId();
+	@Override
+	public void execute(SyncPlan plan, int batchSize, ProgressListener listener) throws IOException {
+		List<SyncOperation> pendingOperations = plan.getFailedOperations();
+		int numberOfOperations = plan.size();
+		int numberOfOperationsDone = numberOfOperations - pendingOperations.size();
 		
-		if (taskToBeUpdated instanceof TimedTask) {
-			event = SyncHelper.timedTaskToGoogleEvent((TimedTask) taskToBeUpdated);
-			try {
-				gCalendarClient.events().update(gCalendarId, googleId, event).execute();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS && !pendingOperations.isEmpty(); attempt++) {
+			if (attempt > 1) {
+				backoff.waitBeforeRetry(attempt - 1);
+				this.recordRetry();
 			}
+			
+			List<Future<List<SyncOperation>>> batches = new ArrayList<Future<List<SyncOperation>>>();
+			for (int start = 0; start < pendingOperations.size(); start += batchSize) {
+				final List<SyncOperation> operations = 
+						pendingOperations.subList(start, Math.min(start + batchSize, pendingOperations.size()));
+				batches.add(requestPool.submit(new Callable<List<SyncOperation>>() {
+					@Override
+					public List<SyncOperation> call() throws IOException {
+						return executeBatch(operations);
+					}
+				}));
+			}
+			
+			List<SyncOperation> retryableOperations = new ArrayList<SyncOperation>();
+			for (int index = 0; index < batches.size(); index++) {
+				int start = index * batchSize;
+				List<SyncOperation> operations = 
+						pendingOperations.subList(start, Math.min(start + batchSize, pendingOperations.size()));
+				retryableOperations.addAll(waitFor(batches.get(index)));
+				
+				for (SyncOperation operation : operations) {
+					if (operation.isDone()) {
+						numberOfOperationsDone++;
+					}
+				}
+				if (listener != null) {
+					listener.onProgress(numberOfOperationsDone, numberOfOperations);
+				}
+			}
+			pendingOperations = retryableOperations;
 		}
-		else if (taskToBeUpdated instanceof DeadlineTask) {
-			event = SyncHelper.deadlineTaskToGoogleEvent((DeadlineTask) taskToBeUpdated);
-			try {
-				gCalendarClient.events().update(gCalendarId, googleId, event).execute();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+	}
+	
+	/**
+	 * @return operations of the batch that should be sent again
+	 * @throws IOException if interrupted
+	 */
+	private List<SyncOperation> executeBatch(List<SyncOperation> operations) throws IOException {
+		List<SyncOperation> retryableOperations = new ArrayList<SyncOperation>();
+		BatchRequest calendarBatch = createBatch(gCalendarClient);
+		BatchRequest tasksBatch = createBatch(gTasksClient);
+		try {
+			for (SyncOperation operation : operations) {
+				this.queue(operation, operation.isEvent() ? calendarBatch : tasksBatch, retryableOperations);
+			}
+			if (calendarBatch.size() > 0) {
+				rateLimiter.acquire(calendarBatch.size());
+				calendarBatch.execute();
+			}
+			if (tasksBatch.size() > 0) {
+				rateLimiter.acquire(tasksBatch.size());
+				tasksBatch.execute();
+			}
+		} catch (InterruptedIOException e) {
+			throw e;
+		} catch (IOException e) {
+			//The batch request itself failed, so operations without a result are sent again
+			for (SyncOperation operation : operations) {
+				if (!operation.isDone() && operation.getFailure() == null) {
+					operation.setFailure(e.getMessage());
+					retryableOperations.add(operation);
+				}
 			}
 		}
-		else if (taskToBeUpdated instanceof FloatingTask) {
-			com.google.api.services.tasks.model.Task googleTask = 
-					SyncHelper.floatingTaskToGoogleTask((FloatingTask) taskToBeUpdated);
+		return retryableOperations;
+	}
+	
+	/**
+	 * @return batch of the client, whose response is recorded if the client is metered
+	 */
+	private static BatchRequest createBatch(AbstractGoogleClient client) {
+		HttpRequestInitializer initializer = client.getRequestFactory().getInitializer();
+		if (initializer instanceof MeteredRequestInitializer) {
+			return client.batch(((MeteredRequestInitializer) initializer).getBatchInitializer());
+		}
+		return client.batch();
+	}
+	
+	/**
+	 * Executes a request within the rate limit. The request is sent again after a backoff if it fails 
+	 * because of a rate limit or a server error.
+	 */
+	private <T> T executeWithBackoff(AbstractGoogleClientRequest<T> request) throws IOException {
+		for (int attempt = 1; ; attempt++) {
+			rateLimiter.acquire(1);
 			try {
-				gTasksClient.tasks().update(gTaskListId, googleId, googleTask).execute();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				return request.execute();
+			} catch (GoogleJsonResponseException e) {
+				if (attempt >= MAX_ATTEMPTS || !isRetryable(e.getStatusCode(), e.getDetails())) {
+					throw e;
+				}
 			}
+			backoff.waitBeforeRetry(attempt);
+			this.recordRetry();
 		}
 	}
 	
-	private String addTypeToDoCalendar() {
-		com.google.api.services.calendar.model.Calendar calendar = new com.google.api.services.calendar.model.Calendar();
-		calendar.setSummary("TypeToDo");
-		try {
-			calendar = gCalendarClient.calendars().insert(calendar).execute();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	private void recordRetry() {
+		SyncMetrics currentMetrics = metrics;
+		if (currentMetrics != null) {
+			currentMetrics.recordRetry();
 		}
-		
-		return calendar.getId();
 	}
 	
-	private String getTypeToDoCalendarId() {
+	private static <T> T waitFor(Future<T> future) throws IOException {
 		try {
-			CalendarList feed = gCalendarClient.calendarList().list().execute();
-			
-			if (feed.isEmpty()) {
-				return null;
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the google schedule");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
-			
-			for (CalendarListEntry entry : feed.getItems()) { //go through all calendars
-				if (entry.getSummary().equals("TypeToDo")) {
-					return entry.getId();
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Queues a request that writes only the changed fields of the operation, rather than the whole task.
+	 */
+	private void queuePatch(SyncOperation operation, BatchRequest batch, List<SyncOperation> retryableOperations) 
+			throws IOException {
+		Task task = operation.getTask();
+		if (operation.isEvent()) {
+			gCalendarClient.events().patch(gCalendarId, operation.getGoogleId(), 
+					SyncHelper.toGoogleEventPatch(task, operation.getChangedFields()))
+			.queue(batch, new OperationCallback<Event>(operation, retryableOperations));
+		} else {
+			gTasksClient.tasks().patch(gTaskListId, operation.getGoogleId(), 
+					SyncHelper.toGoogleTaskPatch((FloatingTask) task, operation.getChangedFields()))
+			.queue(batch, new OperationCallback<com.google.api.services.tasks.model.Task>(operation, retryableOperations));
+		}
+	}
+	
+	private void queue(SyncOperation operation, BatchRequest batch, List<SyncOperation> retryableOperations) 
+			throws IOException {
+		operation.setFailure(null);
+		Task task = operation.getTask();
+		String googleId = operation.getGoogleId();
+		
+		if (operation.getType() == TypeOfOperation.ADD && operation.isEvent()) {
+			gCalendarClient.events().insert(gCalendarId, toGoogleEvent(task))
+			.queue(batch, new OperationCallback<Event>(operation, retryableOperations));
+		} else if (operation.getType() == TypeOfOperation.ADD) {
+			gTasksClient.tasks().insert(gTaskListId, SyncHelper.floatingTaskToGoogleTask((FloatingTask) task))
+			.queue(batch, new OperationCallback<com.google.api.services.tasks.model.Task>(operation, retryableOperations));
+		} else if (operation.getType() == TypeOfOperation.EDIT && operation.getChangedFields() != null) {
+			this.queuePatch(operation, batch, retryableOperations);
+		} else if (operation.getType() == TypeOfOperation.EDIT && operation.isEvent()) {
+			gCalendarClient.events().update(gCalendarId, googleId, toGoogleEvent(task))
+			.queue(batch, new OperationCallback<Event>(operation, retryableOperations));
+		} else if (operation.getType() == TypeOfOperation.EDIT) {
+			gTasksClient.tasks().update(gTaskListId, googleId, SyncHelper.floatingTaskToGoogleTask((FloatingTask) task))
+			.queue(batch, new OperationCallback<com.google.api.services.tasks.model.Task>(operation, retryableOperations));
+		} else if (operation.isEvent()) {
+			gCalendarClient.events().delete(gCalendarId, googleId)
+			.queue(batch, new OperationCallback<Void>(operation, retryableOperations));
+		} else {
+			gTasksClient.tasks().delete(gTaskListId, googleId)
+			.queue(batch, new OperationCallback<Void>(operation, retryableOperations));
+		}
+	}
+	
+	private static Event toGoogleEvent(Task task) {
+		if (task instanceof TimedTask) {
+			return SyncHelper.timedTaskToGoogleEvent((TimedTask) task);
+		}
+		return SyncHelper.deadlineTaskToGoogleEvent((DeadlineTask) task);
+	}
+	
+	/**
+	 * @return true if the error may go away when the request is sent again later
+	 */
+	private static boolean isRetryable(int statusCode, GoogleJsonError error) {
+		if (statusCode >= STATUS_CODE_SERVER_ERROR || statusCode == STATUS_CODE_TOO_MANY_REQUESTS) {
+			return true;
+		}
+		if (statusCode == STATUS_CODE_FORBIDDEN && error != null && error.getErrors() != null) {
+			for (GoogleJsonError.ErrorInfo errorInfo : error.getErrors()) {
+				if (REASON_RATE_LIMIT_EXCEEDED.equals(errorInfo.getReason()) 
+						|| REASON_USER_RATE_LIMIT_EXCEEDED.equals(errorInfo.getReason())) {
+					return true;
 				}
 			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Records the result of an operation sent in a batch request.
+	 */
+	private static class OperationCallback<T> extends JsonBatchCallback<T> {
+		private final SyncOperation operation;
+		private final List<SyncOperation> retryableOperations;
+		
+		private OperationCallback(SyncOperation operation, List<SyncOperation> retryableOperations) {
+			this.operation = operation;
+			this.retryableOperations = retryableOperations;
+		}
+		
+		@Override
+		public void onSuccess(T result, HttpHeaders responseHeaders) {
+			if (result instanceof Event) {
+				operation.setDone(((Event) result).getId());
+			} else if (result instanceof com.google.api.services.tasks.model.Task) {
+				operation.setDone(((com.google.api.services.tasks.model.Task) result).getId());
+			} else {
+				operation.setDone(null);
+			}
+		}
+		
+		@Override
+		public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+			if (operation.getType() == TypeOfOperation.DELETE 
+					&& (error.getCode() == STATUS_CODE_NOT_FOUND || error.getCode() == STATUS_CODE_GONE)) {
+				operation.setDone(null); //already deleted from the Google Schedule
+				return;
+			}
 			
-		} catch (Exception e) {
-			//TODO:
+			String failure = error.getCode() + " " + error.getMessage();
+			if (isRetryable(error.getCode(), error)) {
+				operation.setFailure(failure);
+				retryableOperations.add(operation);
+			} else {
+				operation.setRejected(failure);
+			}
 		}
+	}
+	
+	private String addTypeToDoCalendar() throws IOException {
+		com.google.api.services.calendar.model.Calendar calendar = new com.google.api.services.calendar.model.Calendar();
+		calendar.setSummary(CALENDAR_NAME);
+		return gCalendarClient.calendars().insert(calendar).execute().getId();
+	}
+	
+	/**
+	 * @return id of the TypeToDo calendar, or null if none of the pages of the calendar list has it
+	 */
+	private String getTypeToDoCalendarId() throws IOException {
+		String pageToken = null;
+		do {
+			CalendarList feed = gCalendarClient.calendarList().list().setPageToken(pageToken).execute();
+			if (feed.getItems() != null) {
+				for (CalendarListEntry entry : feed.getItems()) { //go through all calendars
+					if (CALENDAR_NAME.equals(entry.getSummary())) {
+						return entry.getId();
+					}
+				}
+			}
+			pageToken = feed.getNextPageToken();
+		} while (pageToken != null);
+		
 		return null;
 	}
 
-	private String getTaskListId() {
-		String taskListId = null;
-		try {
-			taskListId = gTasksClient.tasklists().list().execute().getItems().get(0).getId();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	private String findTaskListId() throws IOException {
+		TaskLists taskLists = gTasksClient.tasklists().list().execute();
+		if (taskLists.getItems() == null || taskLists.getItems().isEmpty()) {
+			throw new IOException(MESSAGE_NO_TASK_LIST);
 		}
-		
-		return taskListId;
+		return taskLists.getItems().get(0).getId();
 	}
 }
 
@@ -0,0 +1,200 @@
+package typetodo.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import typetodo.model.Task;
+
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+
+/**
+ * Tests the retrieval of changes from the Google Schedule against a GoogleStandInServer.
+ * @author A0091024U
+ *
+ */
+public class GoogleScheduleATD {
+	private static final String EVENTS_PATH = "/calendar/v3/calendars/" + GoogleStandInServer.CALENDAR_ID + "/events";
+
+	private GoogleStandInServer server;
+	private GoogleSchedule googleSchedule;
+
+	@Before
+	public void startServer() throws IOException {
+		server = new GoogleStandInServer();
+		server.setPageSize(2);
+		googleSchedule = server.createGoogleSchedule();
+	}
+
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void FirstSyncRetrievesEveryPage() throws IOException {
+		for (int i = 0; i < 5; i++) {
+			server.putEvent(createEvent("event " + i));
+		}
+		server.putTask(createGoogleTask("floating"));
+
+		GoogleChanges changes = googleSchedule.retrieveChanges(null, null);
+
+		assertTrue(changes.isFullSync());
+		assertEquals(6, changes.getUpdatedTasks().size());
+		assertEquals(3, server.getNumberOfRequests("GET", EVENTS_PATH));
+		assertTrue(changes.getCalendarSyncToken() != null);
+		assertTrue(changes.getTasksUpdatedMin() != null);
+	}
+
+	@Test
+	public void NextSyncRetrievesOnlyChanges() throws IOException {
+		Event unchanged = server.putEvent(createEvent("unchanged"));
+		Event updated = server.putEvent(createEvent("to be updated"));
+		Event deleted = server.putEvent(createEvent("to be deleted"));
+		server.putTask(createGoogleTask("unchanged"));
+		com.google.api.services.tasks.model.Task deletedTask = server.putTask(createGoogleTask("to be deleted"));
+		GoogleChanges firstChanges = googleSchedule.retrieveChanges(null, null);
+
+		server.putEvent(updated.setSummary("updated"));
+		server.cancelEvent(deleted.getId());
+		server.deleteTask(deletedTask.getId());
+		com.google.api.services.tasks.model.Task addedTask = server.putTask(createGoogleTask("added"));
+		GoogleChanges changes = googleSchedule.retrieveChanges(firstChanges.getCalendarSyncToken(),
+				firstChanges.getTasksUpdatedMin());
+
+		assertFalse(changes.isFullSync());
+		HashSet<String> updatedIds = new HashSet<String>();
+		for (Task task : changes.getUpdatedTasks()) {
+			updatedIds.add(task.getGoogleId());
+		}
+		assertTrue(updatedIds.contains(updated.getId()));
+		assertTrue(updatedIds.contains(addedTask.getId()));
+		assertFalse(updatedIds.contains(unchanged.getId()));
+		assertEquals(2, changes.getUpdatedTasks().size());
+		assertEquals(2, changes.getDeletedGoogleIds().size());
+		assertTrue(changes.getDeletedGoogleIds().contains(deleted.getId()));
+		assertTrue(changes.getDeletedGoogleIds().contains(deletedTask.getId()));
+	}
+
+	@Test
+	public void ExpiredSyncTokenFallsBackToFullSync() throws IOException {
+		server.putEvent(createEvent("first"));
+		GoogleChanges firstChanges = googleSchedule.retrieveChanges(null, null);
+		server.putEvent(createEvent("second"));
+		server.expireSyncTokens();
+
+		GoogleChanges changes = googleSchedule.retrieveChanges(firstChanges.getCalendarSyncToken(),
+				firstChanges.getTasksUpdatedMin());
+
+		assertTrue(changes.isFullSync());
+		assertEquals(2, changes.getUpdatedTasks().size());
+		assertFalse(firstChanges.getCalendarSyncToken().equals(changes.getCalendarSyncToken()));
+	}
+
+	@Test
+	public void ChangesAreStreamedPageByPage() throws IOException {
+		server.setPageSize(100);
+		googleSchedule.setMaxResults(2);
+		for (int i = 0; i < 5; i++) {
+			server.putEvent(createEvent("event " + i));
+		}
+		final ArrayList<String> titles = new ArrayList<String>();
+
+		GoogleChanges markers = googleSchedule.retrieveChanges(null, null, new GoogleItemConsumer() {
+			@Override
+			public void consumeUpdatedTask(Task task) {
+				titles.add(task.getTitle());
+			}
+
+			@Override
+			public void consumeDeletedGoogleId(String googleId) {
+			}
+		});
+
+		assertEquals(5, titles.size());
+		assertEquals(0, markers.getUpdatedTasks().size());
+		assertTrue(markers.getCalendarSyncToken() != null);
+		assertEquals(3, server.getNumberOfRequests("GET", EVENTS_PATH));
+		assertEquals("2", server.getLastParameter("GET", EVENTS_PATH, "maxResults"));
+		assertTrue(server.getLastParameter("GET", EVENTS_PATH, "fields").startsWith("items("));
+
+		// every field that is read survives the field mask
+		Task task = googleSchedule.retrieveAllTasks().get(0);
+		assertEquals("event 0", task.getTitle());
+		assertTrue(task.getGoogleId() != null);
+		assertTrue(task.getDateModified() != null);
+	}
+
+	@Test
+	public void FailedListRequestsAreRetried() throws IOException {
+		server.putEvent(createEvent("event"));
+		server.putTask(createGoogleTask("floating"));
+		server.failNextLists(2, 503);
+
+		GoogleChanges changes = googleSchedule.retrieveChanges(null, null);
+
+		assertEquals(2, changes.getUpdatedTasks().size());
+		assertEquals(4, server.getNumberOfRequests("GET", EVENTS_PATH)
+				+ server.getNumberOfRequests("GET", "/tasks/v1/lists/" + GoogleStandInServer.TASK_LIST_ID + "/tasks"));
+	}
+
+	@Test
+	public void FailedLookUpsAreThrownWithoutAddingAnotherCalendar() throws IOException {
+		server.failNextLookUps(1, 503);
+		try {
+			server.createGoogleSchedule();
+			fail("The failed look up was not thrown");
+		} catch (IOException expected) {
+			;
+		}
+		assertEquals(0, server.getNumberOfRequests("POST", "/calendar/v3/calendars"));
+
+		GoogleSchedule retriedSchedule = server.createGoogleSchedule();
+		assertEquals(GoogleStandInServer.CALENDAR_ID, retriedSchedule.getCalendarId());
+		assertEquals(GoogleStandInServer.TASK_LIST_ID, retriedSchedule.getTaskListId());
+	}
+
+	@Test
+	public void GivenIdsAreNotLookedUpUnlessGoogleNoLongerHasThem() throws IOException {
+		server.putEvent(createEvent("event"));
+		server.resetNumberOfRequests();
+
+		GoogleSchedule cachedSchedule = server.createGoogleSchedule(GoogleStandInServer.CALENDAR_ID,
+				GoogleStandInServer.TASK_LIST_ID);
+		assertEquals(1, cachedSchedule.retrieveChanges(null, null).getUpdatedTasks().size());
+		assertEquals(0, server.getNumberOfRequests("GET", "/calendar/v3/users/me/calendarList"));
+		assertEquals(0, server.getNumberOfRequests("GET", "/tasks/v1/users/@me/lists"));
+
+		GoogleSchedule staleSchedule = server.createGoogleSchedule("deleted-calendar", "deleted-tasklist");
+		GoogleChanges changes = staleSchedule.retrieveChanges("old token", "2014-11-03T00:00:00.000Z");
+		assertTrue(changes.isFullSync());
+		assertEquals(1, changes.getUpdatedTasks().size());
+		assertEquals(GoogleStandInServer.CALENDAR_ID, staleSchedule.getCalendarId());
+		assertEquals(GoogleStandInServer.TASK_LIST_ID, staleSchedule.getTaskListId());
+	}
+
+	private static Event createEvent(String title) {
+		com.google.api.client.util.DateTime start = com.google.api.client.util.DateTime.parseRfc3339(
+				"2013-11-01T10:00:00.000+08:00");
+		com.google.api.client.util.DateTime end = com.google.api.client.util.DateTime.parseRfc3339(
+				"2013-11-01T12:00:00.000+08:00");
+		return new Event().setSummary(title)
+				.setStart(new EventDateTime().setDateTime(start))
+				.setEnd(new EventDateTime().setDateTime(end));
+	}
+
+	private static com.google.api.services.tasks.model.Task createGoogleTask(String title) {
+		return new com.google.api.services.tasks.model.Task().setTitle(title);
+	}
+}
@@ -0,0 +1,766 @@
+package typetodo.sync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.CalendarList;
+import com.google.api.services.calendar.model.CalendarListEntry;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.Events;
+import com.google.api.services.tasks.model.TaskList;
+import com.google.api.services.tasks.model.TaskLists;
+import com.google.api.services.tasks.model.Tasks;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The GoogleStandInServer is a local HTTP server that behaves like the parts of Google Calendar and
+ * Google Tasks used by TypeToDo, so that syncing can be tested without a network or a Google account.
+ * It keeps a single TypeToDo calendar and a single task list in memory, hands out sync tokens,
+ * pages its results, applies field masks, answers batch requests and counts the requests it receives.
+ * @author A0091024U
+ *
+ */
+public class GoogleStandInServer {
+	public static final String CALENDAR_ID = "typetodo-calendar";
+	public static final String TASK_LIST_ID = "typetodo-tasklist";
+
+	private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+	private static final String CALENDAR_PATH = "/calendar/v3/";
+	private static final String TASKS_PATH = "/tasks/v1/";
+	private static final String EVENTS_PATH = CALENDAR_PATH + "calendars/" + CALENDAR_ID + "/events";
+	private static final String TASKS_OF_LIST_PATH = TASKS_PATH + "lists/" + TASK_LIST_ID + "/tasks";
+	private static final String SYNC_TOKEN_PREFIX = "sync-";
+	private static final String STATUS_CANCELLED = "cancelled";
+	private static final String BATCH_PATH = "/batch";
+	private static final String CONTENT_TYPE_JSON = "application/json; charset=UTF-8";
+	private static final String CHARSET_OF_PARTS = "ISO-8859-1";
+	private static final String CRLF = "\r\n";
+	private static final String HEADER_METHOD_OVERRIDE = "x-http-method-override";
+	private static final Response NO_CONTENT = new Response(204, CONTENT_TYPE_JSON, null);
+
+	private final HttpServer server;
+	private final LinkedHashMap<String, Event> events;
+	private final LinkedHashMap<String, Long> changeNumberOfEvents;
+	private final LinkedHashMap<String, com.google.api.services.tasks.model.Task> tasks;
+	private final HashMap<String, AtomicInteger> numberOfRequests;
+	private final HashMap<String, HashMap<String, String>> lastParameters;
+	// Updated times follow the clock, but never repeat, so that changes can be ordered
+	private long lastUpdateTime;
+	private long numberOfChanges;
+	private long oldestValidChange;
+	private int pageSize;
+	private int numberOfBatchedRequests;
+	private final HashMap<String, AtomicInteger> numberOfBatchedRequestsByMethod;
+	private int numberOfFailingWrites;
+	private int numberOfFailingLists;
+	private int numberOfFailingLookUps;
+	private int failureStatusCode;
+	private long latencyMillis;
+
+	public GoogleStandInServer() throws IOException {
+		events = new LinkedHashMap<String, Event>();
+		changeNumberOfEvents = new LinkedHashMap<String, Long>();
+		tasks = new LinkedHashMap<String, com.google.api.services.tasks.model.Task>();
+		numberOfRequests = new HashMap<String, AtomicInteger>();
+		numberOfBatchedRequestsByMethod = new HashMap<String, AtomicInteger>();
+		lastParameters = new HashMap<String, HashMap<String, String>>();
+		pageSize = 100;
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					GoogleStandInServer.this.handle(exchange);
+				} catch (RuntimeException e) {
+					exchange.sendResponseHeaders(500, -1);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	/**
+	 * @return root url to be given to the Calendar and Tasks builders
+	 */
+	public String getRootUrl() {
+		return "http://localhost:" + server.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * @return a GoogleSchedule connected to this server
+	 */
+	public GoogleSchedule createGoogleSchedule() throws IOException {
+		return this.createGoogleSchedule(null, null);
+	}
+
+	/**
+	 * @param calendarId id of the TypeToDo calendar given to the GoogleSchedule, or null to look it up
+	 * @param taskListId id of the task list given to the GoogleSchedule, or null to look it up
+	 * @return a GoogleSchedule connected to this server
+	 * @throws IOException if the calendar or the task list had to be looked up, and could not be
+	 */
+	public GoogleSchedule createGoogleSchedule(String calendarId, String taskListId) throws IOException {
+		NetHttpTransport transport = new NetHttpTransport();
+		MeteredRequestInitializer requestInitializer = new MeteredRequestInitializer(null);
+		com.google.api.services.calendar.Calendar calendarClient =
+				new com.google.api.services.calendar.Calendar.Builder(transport, JSON_FACTORY, requestInitializer)
+				.setRootUrl(getRootUrl()).setApplicationName("TypeToDo").build();
+		com.google.api.services.tasks.Tasks tasksClient =
+				new com.google.api.services.tasks.Tasks.Builder(transport, JSON_FACTORY, requestInitializer)
+				.setRootUrl(getRootUrl()).setApplicationName("TypeToDo").build();
+
+		return new GoogleSchedule(calendarClient, tasksClient, calendarId, taskListId);
+	}
+
+	/**
+	 * @param pageSize maximum number of items returned by a list request
+	 */
+	public synchronized void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Makes every sync token given out so far invalid, as Google does after a while.
+	 */
+	public synchronized void expireSyncTokens() {
+		oldestValidChange = numberOfChanges;
+	}
+
+	/**
+	 * @param method HTTP method, such as GET
+	 * @param path path of the request, such as /calendar/v3/calendars/typetodo-calendar/events
+	 * @return number of requests received with the method and path
+	 */
+	public synchronized int getNumberOfRequests(String method, String path) {
+		AtomicInteger count = numberOfRequests.get(method + " " + path);
+		return (count == null) ? 0 : count.get();
+	}
+
+	/**
+	 * @param method HTTP method, such as GET
+	 * @return number of requests received with the method for a single event or Google Task
+	 */
+	public synchronized int getNumberOfSingleItemRequests(String method) {
+		int count = 0;
+		for (String request : numberOfRequests.keySet()) {
+			if (request.startsWith(method + " " + EVENTS_PATH + "/") 
+					|| request.startsWith(method + " " + TASKS_OF_LIST_PATH + "/")) {
+				count += numberOfRequests.get(request).get();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param method HTTP method, such as GET
+	 * @param path path of the request, such as /calendar/v3/calendars/typetodo-calendar/events
+	 * @param name name of a query parameter, such as maxResults
+	 * @return value of the parameter in the last request with the method and path, or null
+	 */
+	public synchronized String getLastParameter(String method, String path, String name) {
+		HashMap<String, String> parameters = lastParameters.get(method + " " + path);
+		return (parameters == null) ? null : parameters.get(name);
+	}
+
+	/**
+	 * Makes the next writes to events or Google Tasks fail, whether or not they are sent in a batch.
+	 * @param numberOfFailingWrites number of writes to fail
+	 * @param statusCode status code of the failures, such as 503
+	 */
+	public synchronized void failNextWrites(int numberOfFailingWrites, int statusCode) {
+		this.numberOfFailingWrites = numberOfFailingWrites;
+		this.failureStatusCode = statusCode;
+	}
+
+	/**
+	 * @return number of requests received as parts of batch requests, which are not counted as requests
+	 * of their own
+	 */
+	public synchronized int getNumberOfBatchedRequests() {
+		return numberOfBatchedRequests;
+	}
+
+	/**
+	 * @return number of requests of the given method, such as "PATCH", received as parts of batch requests
+	 */
+	public synchronized int getNumberOfBatchedRequests(String method) {
+		AtomicInteger count = numberOfBatchedRequestsByMethod.get(method);
+		return (count == null) ? 0 : count.get();
+	}
+
+	/**
+	 * Makes the next list requests of events or Google Tasks fail.
+	 * @param numberOfFailingLists number of list requests to fail
+	 * @param statusCode status code of the failures, such as 503
+	 */
+	public synchronized void failNextLists(int numberOfFailingLists, int statusCode) {
+		this.numberOfFailingLists = numberOfFailingLists;
+		this.failureStatusCode = statusCode;
+	}
+
+	/**
+	 * Makes the next requests for the calendar list or the task lists fail.
+	 * @param numberOfFailingLookUps number of requests to fail
+	 * @param statusCode status code of the failures, such as 503
+	 */
+	public synchronized void failNextLookUps(int numberOfFailingLookUps, int statusCode) {
+		this.numberOfFailingLookUps = numberOfFailingLookUps;
+		this.failureStatusCode = statusCode;
+	}
+
+	/**
+	 * @param latencyMillis time every request waits before it is answered
+	 */
+	public synchronized void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	public synchronized void resetNumberOfRequests() {
+		numberOfRequests.clear();
+		numberOfBatchedRequests = 0;
+		numberOfBatchedRequestsByMethod.clear();
+	}
+
+	/**
+	 * @param summary summary of the events counted
+	 * @return number of events with the summary that have not been cancelled
+	 */
+	public synchronized int getNumberOfEvents(String summary) {
+		int numberOfEvents = 0;
+		for (Event event : events.values()) {
+			if (summary.equals(event.getSummary()) && !STATUS_CANCELLED.equals(event.getStatus())) {
+				numberOfEvents++;
+			}
+		}
+		return numberOfEvents;
+	}
+
+	/**
+	 * Syncs the local schedule with this server on the current thread, such as for a test outside this
+	 * package.
+	 * @return writes made to both schedules
+	 */
+	public SyncPlan syncLocalSchedule() throws Exception {
+		return new SyncController(null, this.createGoogleSchedule()).sync(null);
+	}
+
+	public synchronized Event getEvent(String eventId) {
+		return events.get(eventId);
+	}
+
+	public synchronized com.google.api.services.tasks.model.Task getTask(String taskId) {
+		return tasks.get(taskId);
+	}
+
+	public synchronized Event putEvent(Event event) {
+		if (event.getId() == null) {
+			event.setId("event" + (numberOfChanges + 1));
+		}
+		event.setUpdated(nextUpdateTime());
+		events.put(event.getId(), event);
+		changeNumberOfEvents.put(event.getId(), numberOfChanges);
+		return event;
+	}
+
+	public synchronized boolean cancelEvent(String eventId) {
+		Event event = events.get(eventId);
+		if (event == null || STATUS_CANCELLED.equals(event.getStatus())) {
+			return false;
+		}
+		event.setStatus(STATUS_CANCELLED);
+		putEvent(event);
+		return true;
+	}
+
+	public synchronized com.google.api.services.tasks.model.Task putTask(com.google.api.services.tasks.model.Task task) {
+		if (task.getId() == null) {
+			task.setId("task" + (numberOfChanges + 1));
+		}
+		task.setUpdated(nextUpdateTime());
+		tasks.remove(task.getId()); //keeps the tasks in the order they were updated
+		tasks.put(task.getId(), task);
+		return task;
+	}
+
+	public synchronized boolean deleteTask(String taskId) {
+		com.google.api.services.tasks.model.Task task = tasks.get(taskId);
+		if (task == null || Boolean.TRUE.equals(task.getDeleted())) {
+			return false;
+		}
+		task.setDeleted(true);
+		putTask(task);
+		return true;
+	}
+
+	private DateTime nextUpdateTime() {
+		numberOfChanges++;
+		lastUpdateTime = Math.max(System.currentTimeMillis(), lastUpdateTime + 1);
+		return new DateTime(lastUpdateTime, 0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		InputStream body = exchange.getRequestBody();
+		if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+			body = new GZIPInputStream(body);
+		}
+		Request request = new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+				exchange.getRequestURI().getRawQuery(), readAll(body));
+
+		long latency;
+		synchronized (this) {
+			countRequest(request.method, request.path);
+			latency = latencyMillis;
+		}
+		if (latency > 0) {
+			try {
+				Thread.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		Response response;
+		if (request.path.equals(BATCH_PATH) && request.method.equals("POST")) {
+			response = handleBatch(request, exchange.getRequestHeaders().getFirst("Content-Type"));
+		} else {
+			response = handle(request);
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", response.contentType);
+		if (response.content == null) {
+			exchange.sendResponseHeaders(response.statusCode, -1);
+		} else {
+			exchange.sendResponseHeaders(response.statusCode, response.content.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(response.content);
+			out.close();
+		}
+	}
+
+	private synchronized Response handle(Request request) throws IOException {
+		String method = request.method;
+		String path = request.path;
+		HashMap<String, String> parameters = parseQuery(request.query);
+		lastParameters.put(method + " " + path, parameters);
+
+		if (isWrite(method, path) && numberOfFailingWrites > 0) {
+			numberOfFailingWrites--;
+			return error(failureStatusCode, "Injected failure");
+		}
+		if (isList(method, path) && numberOfFailingLists > 0) {
+			numberOfFailingLists--;
+			return error(failureStatusCode, "Injected failure");
+		}
+		if (isLookUp(method, path) && numberOfFailingLookUps > 0) {
+			numberOfFailingLookUps--;
+			return error(failureStatusCode, "Injected failure");
+		}
+
+		if (path.equals(CALENDAR_PATH + "users/me/calendarList")) {
+			CalendarListEntry entry = new CalendarListEntry().setId(CALENDAR_ID).setSummary("TypeToDo");
+			List<CalendarListEntry> entries = new ArrayList<CalendarListEntry>();
+			entries.add(entry);
+			return ok(new CalendarList().setItems(entries));
+		} else if (path.equals(TASKS_PATH + "users/@me/lists")) {
+			List<TaskList> taskLists = new ArrayList<TaskList>();
+			taskLists.add(new TaskList().setId(TASK_LIST_ID).setTitle("TypeToDo"));
+			return ok(new TaskLists().setItems(taskLists));
+		} else if (path.equals(EVENTS_PATH) && method.equals("GET")) {
+			return listEvents(parameters);
+		} else if (path.equals(EVENTS_PATH) && method.equals("POST")) {
+			return ok(putEvent(parse(request, Event.class).setId(null)));
+		} else if (path.startsWith(EVENTS_PATH + "/")) {
+			return handleEvent(request, path.substring(EVENTS_PATH.length() + 1));
+		} else if (path.equals(TASKS_OF_LIST_PATH) && method.equals("GET")) {
+			return listTasks(parameters);
+		} else if (path.equals(TASKS_OF_LIST_PATH) && method.equals("POST")) {
+			return ok(putTask(parse(request, com.google.api.services.tasks.model.Task.class).setId(null)));
+		} else if (path.startsWith(TASKS_OF_LIST_PATH + "/")) {
+			return handleTask(request, path.substring(TASKS_OF_LIST_PATH.length() + 1));
+		} else {
+			return error(404, "Not Found");
+		}
+	}
+
+	/**
+	 * Handles every part of a multipart/mixed batch request as a request of its own, and answers with 
+	 * a multipart/mixed response in the same order.
+	 */
+	private Response handleBatch(Request request, String contentType) throws IOException {
+		String boundary = "--" + contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+		String content = new String(request.body, CHARSET_OF_PARTS);
+
+		StringBuilder responseContent = new StringBuilder();
+		int contentId = 1;
+		for (String part : content.split(Pattern.quote(boundary))) {
+			int startOfRequest = part.indexOf(CRLF + CRLF);
+			if (part.startsWith("--") || startOfRequest < 0) { //preamble or end of the batch
+				continue;
+			}
+			Response response;
+			try {
+				Request partRequest = parsePart(part.substring(startOfRequest + 2 * CRLF.length()));
+				synchronized (this) {
+					numberOfBatchedRequests++;
+					if (!numberOfBatchedRequestsByMethod.containsKey(partRequest.method)) {
+						numberOfBatchedRequestsByMethod.put(partRequest.method, new AtomicInteger());
+					}
+					numberOfBatchedRequestsByMethod.get(partRequest.method).incrementAndGet();
+				}
+				response = handle(partRequest);
+			} catch (RuntimeException e) {
+				response = error(500, e.toString());
+			}
+
+			responseContent.append(boundary).append(CRLF)
+					.append("Content-Type: application/http").append(CRLF)
+					.append("Content-ID: response-").append(contentId++).append(CRLF).append(CRLF)
+					.append("HTTP/1.1 ").append(response.statusCode).append(" ")
+					.append(getReasonPhrase(response.statusCode)).append(CRLF)
+					.append("Content-Type: ").append(response.contentType).append(CRLF).append(CRLF);
+			if (response.content != null) {
+				responseContent.append(new String(response.content, "UTF-8"));
+			}
+			responseContent.append(CRLF);
+		}
+		responseContent.append(boundary).append("--").append(CRLF);
+
+		return new Response(200, "multipart/mixed; boundary=" + boundary.substring(2), 
+				responseContent.toString().getBytes("UTF-8"));
+	}
+
+	/**
+	 * @param part request of a batch part, which is a request line such as "POST http://host/path?query",
+	 * headers, a blank line and the body. A PATCH is sent as a POST with a method override header, since
+	 * the HTTP transport of the client does not support PATCH.
+	 */
+	private static Request parsePart(String part) throws UnsupportedEncodingException {
+		int endOfHeaders = part.indexOf(CRLF + CRLF);
+		String[] requestLine = part.substring(0, part.indexOf(CRLF)).split(" ");
+		String body = (endOfHeaders < 0) ? "" : part.substring(endOfHeaders + 2 * CRLF.length());
+		if (body.endsWith(CRLF)) {
+			body = body.substring(0, body.length() - CRLF.length());
+		}
+
+		String method = requestLine[0];
+		String headers = (endOfHeaders < 0) ? part : part.substring(0, endOfHeaders);
+		for (String header : headers.split(CRLF)) {
+			if (header.toLowerCase().startsWith(HEADER_METHOD_OVERRIDE + ":")) {
+				method = header.substring(HEADER_METHOD_OVERRIDE.length() + 1).trim();
+			}
+		}
+
+		URI uri = URI.create(requestLine[1]);
+		return new Request(method, uri.getPath(), uri.getRawQuery(), body.getBytes(CHARSET_OF_PARTS));
+	}
+
+	private Response handleEvent(Request request, String eventId) throws IOException {
+		String method = request.method;
+		Event event = events.get(eventId);
+		if (event == null || (STATUS_CANCELLED.equals(event.getStatus()) && !method.equals("GET"))) {
+			return error((event == null) ? 404 : 410, "Not Found");
+		} else if (method.equals("GET")) {
+			return ok(event);
+		} else if (method.equals("PUT")) {
+			return ok(putEvent(parse(request, Event.class).setId(eventId)));
+		} else if (method.equals("PATCH")) {
+			return ok(putEvent(patch(event.clone(), parse(request, Event.class))));
+		} else if (method.equals("DELETE")) {
+			cancelEvent(eventId);
+			return NO_CONTENT;
+		} else {
+			return error(405, "Method Not Allowed");
+		}
+	}
+
+	private Response handleTask(Request request, String taskId) throws IOException {
+		String method = request.method;
+		com.google.api.services.tasks.model.Task task = tasks.get(taskId);
+		if (task == null || (Boolean.TRUE.equals(task.getDeleted()) && !method.equals("GET"))) {
+			return error(404, "Not Found");
+		} else if (method.equals("GET")) {
+			return ok(task);
+		} else if (method.equals("PUT")) {
+			return ok(putTask(parse(request, com.google.api.services.tasks.model.Task.class).setId(taskId)));
+		} else if (method.equals("PATCH")) {
+			return ok(putTask(patch(task.clone(), parse(request, com.google.api.services.tasks.model.Task.class))));
+		} else if (method.equals("DELETE")) {
+			deleteTask(taskId);
+			return NO_CONTENT;
+		} else {
+			return error(405, "Method Not Allowed");
+		}
+	}
+
+	/**
+	 * Writes every field given in the patch over the item, leaving the other fields as they are.
+	 */
+	private static <T extends GenericJson> T patch(T item, T patch) {
+		for (Map.Entry<String, Object> field : patch.entrySet()) {
+			item.set(field.getKey(), field.getValue());
+		}
+		return item;
+	}
+
+	private Response listEvents(HashMap<String, String> parameters) throws IOException {
+		String syncToken = parameters.get("syncToken");
+		long changesAfter = -1;
+		if (syncToken != null) {
+			changesAfter = Long.parseLong(syncToken.substring(SYNC_TOKEN_PREFIX.length()));
+			if (changesAfter < oldestValidChange) {
+				return error(410, "Sync token is no longer valid, a full sync is required.");
+			}
+		}
+
+		List<Event> matchingEvents = new ArrayList<Event>();
+		for (Event event : events.values()) {
+			boolean isCancelled = STATUS_CANCELLED.equals(event.getStatus());
+			if (syncToken == null && !isCancelled) {
+				matchingEvents.add(event);
+			} else if (syncToken != null && changeNumberOfEvents.get(event.getId()) > changesAfter) {
+				matchingEvents.add(event);
+			}
+		}
+
+		int start = getStartOfPage(parameters);
+		int end = getEndOfPage(parameters, start, matchingEvents.size());
+		Events page = new Events().setItems(new ArrayList<Event>(matchingEvents.subList(start, end)));
+		if (end < matchingEvents.size()) {
+			page.setNextPageToken(String.valueOf(end));
+		} else {
+			page.set("nextSyncToken", SYNC_TOKEN_PREFIX + numberOfChanges);
+		}
+		return ok(applyFieldMask(page, page.getItems(), parameters.get("fields")));
+	}
+
+	private Response listTasks(HashMap<String, String> parameters) throws IOException {
+		String updatedMin = parameters.get("updatedMin");
+		boolean isShowingDeleted = "true".equals(parameters.get("showDeleted"));
+
+		List<com.google.api.services.tasks.model.Task> matchingTasks =
+				new ArrayList<com.google.api.services.tasks.model.Task>();
+		for (com.google.api.services.tasks.model.Task task : tasks.values()) {
+			if (Boolean.TRUE.equals(task.getDeleted()) && !isShowingDeleted) {
+				continue;
+			}
+			if (updatedMin != null && task.getUpdated().getValue() < DateTime.parseRfc3339(updatedMin).getValue()) {
+				continue;
+			}
+			matchingTasks.add(task);
+		}
+
+		int start = getStartOfPage(parameters);
+		int end = getEndOfPage(parameters, start, matchingTasks.size());
+		Tasks page = new Tasks().setItems(
+				new ArrayList<com.google.api.services.tasks.model.Task>(matchingTasks.subList(start, end)));
+		if (end < matchingTasks.size()) {
+			page.setNextPageToken(String.valueOf(end));
+		}
+		return ok(applyFieldMask(page, page.getItems(), parameters.get("fields")));
+	}
+
+	/**
+	 * Keeps only the fields of a page named by a field mask such as "items(id,summary),nextPageToken".
+	 * @return the page itself if there is no field mask
+	 */
+	private static GenericJson applyFieldMask(GenericJson page, List<? extends GenericJson> items, String fields) {
+		if (fields == null) {
+			return page;
+		}
+
+		GenericJson maskedPage = new GenericJson();
+		for (String field : splitFieldMask(fields)) {
+			int indexOfParenthesis = field.indexOf('(');
+			if (indexOfParenthesis < 0) {
+				if (page.get(field) != null) {
+					maskedPage.put(field, page.get(field));
+				}
+				continue;
+			}
+
+			List<String> itemFields = splitFieldMask(field.substring(indexOfParenthesis + 1, field.length() - 1));
+			List<GenericJson> maskedItems = new ArrayList<GenericJson>();
+			for (GenericJson item : items) {
+				GenericJson maskedItem = new GenericJson();
+				for (String itemField : itemFields) {
+					if (item.get(itemField) != null) {
+						maskedItem.put(itemField, item.get(itemField));
+					}
+				}
+				maskedItems.add(maskedItem);
+			}
+			maskedPage.put(field.substring(0, indexOfParenthesis), maskedItems);
+		}
+		return maskedPage;
+	}
+
+	/**
+	 * @return fields separated by commas that are not within parentheses
+	 */
+	private static List<String> splitFieldMask(String fields) {
+		List<String> splitFields = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < fields.length(); i++) {
+			char character = fields.charAt(i);
+			if (character == '(') {
+				depth++;
+			} else if (character == ')') {
+				depth--;
+			} else if (character == ',' && depth == 0) {
+				splitFields.add(fields.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		splitFields.add(fields.substring(start).trim());
+		return splitFields;
+	}
+
+	private void countRequest(String method, String path) {
+		AtomicInteger count = numberOfRequests.get(method + " " + path);
+		if (count == null) {
+			count = new AtomicInteger();
+			numberOfRequests.put(method + " " + path, count);
+		}
+		count.incrementAndGet();
+	}
+
+	private static boolean isList(String method, String path) {
+		return method.equals("GET") && (path.equals(EVENTS_PATH) || path.equals(TASKS_OF_LIST_PATH));
+	}
+
+	private static boolean isLookUp(String method, String path) {
+		return method.equals("GET") 
+				&& (path.equals(CALENDAR_PATH + "users/me/calendarList") || path.equals(TASKS_PATH + "users/@me/lists"));
+	}
+
+	private static boolean isWrite(String method, String path) {
+		return !method.equals("GET") && (path.startsWith(EVENTS_PATH) || path.startsWith(TASKS_OF_LIST_PATH));
+	}
+
+	private int getStartOfPage(HashMap<String, String> parameters) {
+		String pageToken = parameters.get("pageToken");
+		return (pageToken == null) ? 0 : Integer.parseInt(pageToken);
+	}
+
+	private int getEndOfPage(HashMap<String, String> parameters, int start, int numberOfItems) {
+		int maxResults = pageSize;
+		if (parameters.get("maxResults") != null) {
+			maxResults = Math.min(maxResults, Integer.parseInt(parameters.get("maxResults")));
+		}
+		return Math.min(numberOfItems, start + maxResults);
+	}
+
+	private static HashMap<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		HashMap<String, String> parameters = new HashMap<String, String>();
+		if (query == null) {
+			return parameters;
+		}
+
+		for (String parameter : query.split("&")) {
+			int indexOfEquals = parameter.indexOf('=');
+			if (indexOfEquals > 0) {
+				parameters.put(URLDecoder.decode(parameter.substring(0, indexOfEquals), "UTF-8"),
+						URLDecoder.decode(parameter.substring(indexOfEquals + 1), "UTF-8"));
+			}
+		}
+		return parameters;
+	}
+
+	private static <T> T parse(Request request, Class<T> type) throws IOException {
+		return JSON_FACTORY.fromInputStream(new ByteArrayInputStream(request.body), type);
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			out.write(buffer, 0, length);
+		}
+		return out.toByteArray();
+	}
+
+	private static Response ok(Object content) throws IOException {
+		return new Response(200, CONTENT_TYPE_JSON, JSON_FACTORY.toString(content).getBytes("UTF-8"));
+	}
+
+	private static Response error(int statusCode, String message) throws IOException {
+		GenericJson details = new GenericJson();
+		details.put("code", statusCode);
+		details.put("message", message);
+		GenericJson error = new GenericJson();
+		error.put("error", details);
+		return new Response(statusCode, CONTENT_TYPE_JSON, JSON_FACTORY.toString(error).getBytes("UTF-8"));
+	}
+
+	private static String getReasonPhrase(int statusCode) {
+		switch (statusCode) {
+			case 200 :
+				return "OK";
+			case 204 :
+				return "No Content";
+			case 404 :
+				return "Not Found";
+			case 410 :
+				return "Gone";
+			default :
+				return "Error";
+		}
+	}
+
+	private static class Request {
+		private final String method;
+		private final String path;
+		private final String query;
+		private final byte[] body;
+
+		private Request(String method, String path, String query, byte[] body) {
+			this.method = method;
+			this.path = path;
+			this.query = query;
+			this.body = body;
+		}
+	}
+
+	private static class Response {
+		private final int statusCode;
+		private final String contentType;
+		private final byte[] content;
+
+		private Response(int statusCode, String contentType, byte[] content) {
+			this.statusCode = statusCode;
+			this.contentType = contentType;
+			this.content = content;
+		}
+	}
+}
@@ -0,0 +1,375 @@
+package typetodo.sync;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import typetodo.model.DeadlineTask;
+import typetodo.model.FieldName;
+import typetodo.model.FloatingTask;
+import typetodo.model.SyncMetrics;
+import typetodo.model.Task;
+import typetodo.model.TimedTask;
+import typetodo.model.TypeOfOperation;
+
+import com.google.api.services.calendar.model.Event;
+
+/**
+ * The InMemorySchedule is a RemoteSchedule kept in memory, so that syncs can be tested and benchmarked
+ * without a network. Tasks are stored as Google events and Google Tasks, converted by SyncHelper as the
+ * GoogleSchedule does, and an EDIT of some fields only writes those fields. Every page retrieved and every
+ * batch sent counts as one request, recorded in the SyncMetrics without its size, which waits for the configured latency and may be made to fail. Failed
+ * requests are sent again up to MAX_ATTEMPTS times, without waiting, like the retries of the GoogleSchedule.
+ * The markers returned are change numbers of the InMemorySchedule, which are opaque to the SyncController.
+ * @author A0091024U
+ *
+ */
+public class InMemorySchedule implements RemoteSchedule {
+	private static final int MAX_ATTEMPTS = 5;
+	private static final int DEFAULT_PAGE_SIZE = 250;
+	private static final String ID_PREFIX = "item";
+	private static final String MESSAGE_INJECTED_FAILURE = "503 Service Unavailable (injected)";
+	private static final String MESSAGE_NOT_FOUND = "404 Not Found";
+	private static final String ENDPOINT_EVENTS = "GET events";
+	private static final String ENDPOINT_TASKS = "GET tasks";
+	private static final String ENDPOINT_BATCH = "POST batch";
+
+	// Items in the order they were last changed, including deleted items
+	private final LinkedHashMap<String, Item> items;
+	private long numberOfChanges;
+	private int pageSize;
+	private int maxResults;
+	private long latencyMillis;
+	private int numberOfFailingRequests;
+	private double failureRate;
+	private final Random random;
+	private int numberOfRequests;
+	private volatile SyncMetrics metrics;
+
+	/**
+	 * An event or Google Task, with the change number of its last change.
+	 */
+	private static class Item {
+		private final Event event;
+		private final com.google.api.services.tasks.model.Task googleTask;
+		private final long changeNumber;
+		private final boolean isDeleted;
+
+		private Item(Event event, com.google.api.services.tasks.model.Task googleTask, long changeNumber,
+				boolean isDeleted) {
+			this.event = event;
+			this.googleTask = googleTask;
+			this.changeNumber = changeNumber;
+			this.isDeleted = isDeleted;
+		}
+
+		private Task toTask() {
+			return (event != null) ? SyncHelper.googleEventToTask(event) : SyncHelper.googleTaskToFloatingTask(googleTask);
+		}
+	}
+
+	public InMemorySchedule() {
+		this.items = new LinkedHashMap<String, Item>();
+		this.pageSize = DEFAULT_PAGE_SIZE;
+		this.maxResults = Integer.MAX_VALUE;
+		this.random = new Random(0);
+	}
+
+	/**
+	 * @param latencyMillis time every request waits before it is answered
+	 */
+	public synchronized void setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * @param pageSize maximum number of items in a page, whatever the maxResults asked for
+	 */
+	public synchronized void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Makes the next requests fail, after which requests succeed again.
+	 */
+	public synchronized void failNextRequests(int numberOfFailingRequests) {
+		this.numberOfFailingRequests = numberOfFailingRequests;
+	}
+
+	/**
+	 * @param failureRate chance, between 0 and 1, that any request fails
+	 */
+	public synchronized void setFailureRate(double failureRate) {
+		this.failureRate = failureRate;
+	}
+
+	/**
+	 * @return number of pages retrieved and batches sent, including failed requests
+	 */
+	public synchronized int getNumberOfRequests() {
+		return numberOfRequests;
+	}
+
+	public synchronized void resetNumberOfRequests() {
+		numberOfRequests = 0;
+	}
+
+	/**
+	 * Adds or updates a task as if it was changed in the Google Schedule.
+	 * @return googleId of the task
+	 */
+	public synchronized String putTask(Task task) {
+		String googleId = (task.getGoogleId() != null) ? task.getGoogleId() : ID_PREFIX + (numberOfChanges + 1);
+		numberOfChanges++;
+
+		Event event = null;
+		com.google.api.services.tasks.model.Task googleTask = null;
+		com.google.api.client.util.DateTime updated = new com.google.api.client.util.DateTime(System.currentTimeMillis());
+		if (task instanceof TimedTask) {
+			event = SyncHelper.timedTaskToGoogleEvent((TimedTask) task).setId(googleId).setUpdated(updated);
+		} else if (task instanceof DeadlineTask) {
+			event = SyncHelper.deadlineTaskToGoogleEvent((DeadlineTask) task).setId(googleId).setUpdated(updated);
+		} else {
+			googleTask = SyncHelper.floatingTaskToGoogleTask((FloatingTask) task).setId(googleId).setUpdated(updated);
+		}
+
+		items.remove(googleId); //keeps the items in the order they were changed
+		items.put(googleId, new Item(event, googleTask, numberOfChanges, false));
+		return googleId;
+	}
+
+	/**
+	 * Deletes a task as if it was deleted from the Google Schedule.
+	 * @return false if there is no such task
+	 */
+	public synchronized boolean deleteTask(String googleId) {
+		Item item = items.get(googleId);
+		if (item == null || item.isDeleted) {
+			return false;
+		}
+
+		numberOfChanges++;
+		items.remove(googleId);
+		items.put(googleId, new Item(item.event, item.googleTask, numberOfChanges, true));
+		return true;
+	}
+
+	/**
+	 * @return the task with the given googleId, or null if there is no such task
+	 */
+	public synchronized Task getTask(String googleId) {
+		Item item = items.get(googleId);
+		return (item == null || item.isDeleted) ? null : item.toTask();
+	}
+
+	/**
+	 * @return number of tasks that are not deleted
+	 */
+	public synchronized int size() {
+		int size = 0;
+		for (Item item : items.values()) {
+			if (!item.isDeleted) {
+				size++;
+			}
+		}
+		return size;
+	}
+
+	@Override
+	public synchronized void setMaxResults(int maxResults) {
+		this.maxResults = maxResults;
+	}
+
+	@Override
+	public void setMetrics(SyncMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Retrieves the events and then the floating tasks that changed since the given markers, a page at a
+	 * time. Markers that were not returned by this InMemorySchedule are ignored and every task is retrieved.
+	 */
+	@Override
+	public GoogleChanges retrieveChanges(String calendarSyncToken, String tasksUpdatedMin, GoogleItemConsumer consumer)
+			throws IOException {
+		long eventsChangeNumber = parseMarker(calendarSyncToken);
+		long tasksChangeNumber = parseMarker(tasksUpdatedMin);
+		boolean isFullSync = eventsChangeNumber < 0 || tasksChangeNumber < 0;
+
+		List<Item> changedEvents = new ArrayList<Item>();
+		List<Item> changedTasks = new ArrayList<Item>();
+		long lastChangeNumber;
+		int sizeOfPages;
+		synchronized (this) {
+			for (Item item : items.values()) {
+				boolean isChanged = isFullSync ? !item.isDeleted
+						: item.changeNumber > ((item.event != null) ? eventsChangeNumber : tasksChangeNumber);
+				if (isChanged) {
+					((item.event != null) ? changedEvents : changedTasks).add(item);
+				}
+			}
+			lastChangeNumber = numberOfChanges;
+			sizeOfPages = Math.max(1, Math.min(pageSize, maxResults));
+		}
+
+		this.retrievePages(changedEvents, sizeOfPages, consumer, ENDPOINT_EVENTS);
+		this.retrievePages(changedTasks, sizeOfPages, consumer, ENDPOINT_TASKS);
+
+		GoogleChanges markers = new GoogleChanges();
+		markers.setCalendarSyncToken(String.valueOf(lastChangeNumber));
+		markers.setTasksUpdatedMin(String.valueOf(lastChangeNumber));
+		markers.setFullSync(isFullSync);
+		return markers;
+	}
+
+	private void retrievePages(List<Item> changedItems, int sizeOfPages, GoogleItemConsumer consumer,
+			String endpoint) throws IOException {
+		int start = 0;
+		do {
+			this.requestWithRetries(endpoint);
+			for (Item item : changedItems.subList(start, Math.min(start + sizeOfPages, changedItems.size()))) {
+				String googleId = (item.event != null) ? item.event.getId() : item.googleTask.getId();
+				if (item.isDeleted) {
+					consumer.consumeDeletedGoogleId(googleId);
+				} else {
+					consumer.consumeUpdatedTask(item.toTask());
+				}
+			}
+			start += sizeOfPages;
+		} while (start < changedItems.size());
+	}
+
+	/**
+	 * @return marker as a change number, or -1 if it was not returned by this InMemorySchedule
+	 */
+	private static long parseMarker(String marker) {
+		if (marker == null) {
+			return -1;
+		}
+
+		try {
+			return Long.parseLong(marker);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public void execute(SyncPlan plan, int batchSize, ProgressListener listener) throws IOException {
+		List<SyncOperation> pendingOperations = plan.getFailedOperations();
+		int numberOfOperations = plan.size();
+		int numberOfOperationsDone = numberOfOperations - pendingOperations.size();
+
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS && !pendingOperations.isEmpty(); attempt++) {
+			List<SyncOperation> retryableOperations = new ArrayList<SyncOperation>();
+			for (int start = 0; start < pendingOperations.size(); start += batchSize) {
+				List<SyncOperation> operations =
+						pendingOperations.subList(start, Math.min(start + batchSize, pendingOperations.size()));
+				if (attempt > 1) {
+					this.recordRetry();
+				}
+				if (!this.request(ENDPOINT_BATCH)) {
+					for (SyncOperation operation : operations) {
+						operation.setFailure(MESSAGE_INJECTED_FAILURE);
+					}
+					retryableOperations.addAll(operations);
+					continue;
+				}
+
+				for (SyncOperation operation : operations) {
+					this.apply(operation);
+					if (operation.isDone()) {
+						numberOfOperationsDone++;
+					}
+				}
+				if (listener != null) {
+					listener.onProgress(numberOfOperationsDone, numberOfOperations);
+				}
+			}
+			pendingOperations = retryableOperations;
+		}
+	}
+
+	private synchronized void apply(SyncOperation operation) {
+		if (operation.getType() == TypeOfOperation.DELETE) {
+			this.deleteTask(operation.getGoogleId());
+			operation.setDone(null); //a task that is already deleted counts as deleted
+		} else if (operation.getType() == TypeOfOperation.ADD) {
+			Task task = operation.getTask();
+			task.setGoogleId(null);
+			operation.setDone(this.putTask(task));
+		} else if (this.getTask(operation.getGoogleId()) == null) {
+			operation.setRejected(MESSAGE_NOT_FOUND);
+		} else if (operation.getChangedFields() != null
+				&& this.getTask(operation.getGoogleId()).getClass() == operation.getTask().getClass()) {
+			Task storedTask = this.getTask(operation.getGoogleId());
+			for (FieldName field : operation.getChangedFields()) {
+				ThreeWayMerge.copyField(operation.getTask(), storedTask, field);
+			}
+			this.putTask(storedTask);
+			operation.setDone(null);
+		} else {
+			this.putTask(operation.getTask());
+			operation.setDone(null);
+		}
+	}
+
+	/**
+	 * Sends a request, and sends it again while it fails, up to MAX_ATTEMPTS times.
+	 * @throws IOException if every attempt failed, or if interrupted
+	 */
+	private void requestWithRetries(String endpoint) throws IOException {
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+			if (attempt > 1) {
+				this.recordRetry();
+			}
+			if (this.request(endpoint)) {
+				return;
+			}
+		}
+		throw new IOException(MESSAGE_INJECTED_FAILURE);
+	}
+
+	/**
+	 * Waits for the latency of a request.
+	 * @return false if the request fails
+	 * @throws IOException if interrupted
+	 */
+	private boolean request(String endpoint) throws IOException {
+		SyncMetrics currentMetrics = metrics;
+		if (currentMetrics != null) {
+			currentMetrics.recordRequest(endpoint, 0, 0);
+		}
+
+		long latency;
+		boolean isFailing;
+		synchronized (this) {
+			numberOfRequests++;
+			latency = latencyMillis;
+			isFailing = numberOfFailingRequests > 0 || random.nextDouble() < failureRate;
+			if (numberOfFailingRequests > 0) {
+				numberOfFailingRequests--;
+			}
+		}
+
+		if (latency > 0) {
+			try {
+				Thread.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the response");
+			}
+		}
+		return !isFailing;
+	}
+
+	private void recordRetry() {
+		SyncMetrics currentMetrics = metrics;
+		if (currentMetrics != null) {
+			currentMetrics.recordRetry();
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package typetodo.sync;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import typetodo.model.SyncMetrics;
+
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+
+/**
+ * The MeteredRequestInitializer initializes the requests of the Google clients with the given initializer,
+ * such as the credential, and records every response in the SyncMetrics of the sync that is running. A batch
+ * is recorded as one call to the batch endpoint, through the initializer given for batches since the clients
+ * build batches without their initializer, and bytes in are only counted when the response gives its
+ * length. Nothing is recorded while there are no metrics.
+ * @author A0091024U
+ *
+ */
+public class MeteredRequestInitializer implements HttpRequestInitializer {
+	private static final String ENDPOINT_SEPARATOR = "/";
+	// Collections named in the endpoints, so that requests for one item are counted with their collection
+	private static final Set<String> COLLECTIONS = new HashSet<String>(Arrays.asList(
+			"calendarList", "calendars", "events", "lists", "tasks"));
+
+	private final HttpRequestInitializer initializer;
+	private volatile SyncMetrics metrics;
+
+	/**
+	 * @param initializer initializer of the requests, or null
+	 */
+	public MeteredRequestInitializer(HttpRequestInitializer initializer) {
+		this.initializer = initializer;
+	}
+
+	/**
+	 * @param metrics metrics of the sync that is running, or null to stop recording
+	 */
+	public void setMetrics(SyncMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return initializer that only records the responses, for batch requests, whose parts are initialized
+	 * by the clients
+	 */
+	public HttpRequestInitializer getBatchInitializer() {
+		return new HttpRequestInitializer() {
+			@Override
+			public void initialize(HttpRequest request) {
+				meter(request);
+			}
+		};
+	}
+
+	@Override
+	public void initialize(HttpRequest request) throws IOException {
+		if (initializer != null) {
+			initializer.initialize(request);
+		}
+		this.meter(request);
+	}
+
+	private void meter(HttpRequest request) {
+		final HttpResponseInterceptor responseInterceptor = request.getResponseInterceptor();
+		request.setResponseInterceptor(new HttpResponseInterceptor() {
+			@Override
+			public void interceptResponse(HttpResponse response) throws IOException {
+				if (responseInterceptor != null) {
+					responseInterceptor.interceptResponse(response);
+				}
+				record(response);
+			}
+		});
+	}
+
+	private void record(HttpResponse response) throws IOException {
+		SyncMetrics currentMetrics = metrics;
+		if (currentMetrics == null) {
+			return;
+		}
+
+		HttpRequest request = response.getRequest();
+		HttpContent content = request.getContent();
+		long bytesOut = (content == null) ? 0 : content.getLength();
+		Long bytesIn = response.getHeaders().getContentLength();
+		currentMetrics.recordRequest(getEndpoint(request.getRequestMethod(), request.getUrl().getPathParts()),
+				bytesOut, (bytesIn == null) ? 0 : bytesIn);
+	}
+
+	/**
+	 * @param pathParts parts of a path such as "/calendar/v3/calendars/{calendarId}/events/{eventId}"
+	 * @return method, API and collection of the request, such as "GET calendar/events", or "POST batch"
+	 */
+	static String getEndpoint(String method, List<String> pathParts) {
+		String api = null;
+		String collection = null;
+		if (pathParts != null) {
+			for (String part : pathParts) {
+				if (part.isEmpty()) {
+					continue;
+				}
+				if (api == null) {
+					api = part;
+				} else if (COLLECTIONS.contains(part)) {
+					collection = part;
+				}
+			}
+		}
+
+		if (api == null) {
+			return method;
+		} else if (collection == null) {
+			return method + " " + api;
+		}
+		return method + " " + api + ENDPOINT_SEPARATOR + collection;
+	}
+}
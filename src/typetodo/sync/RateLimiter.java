@@ -0,0 +1,88 @@
+package typetodo.sync;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RateLimiter is a token bucket that keeps the requests sent to Google within the API quota.
+ * The bucket is refilled at a fixed rate up to its capacity, so that short bursts are sent at once
+ * while a long sync is spread out at the refill rate.
+ * @author A0091024U
+ *
+ */
+public class RateLimiter {
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+	private static final Ticker SYSTEM_TICKER = new Ticker() {
+		@Override
+		public long read() {
+			return System.nanoTime();
+		}
+	};
+
+	/**
+	 * Gives the time in nanoseconds from which the refill of the bucket is measured.
+	 */
+	interface Ticker {
+		public long read();
+	}
+
+	private final Ticker ticker;
+	private final double permitsPerSecond;
+	private final double capacity;
+	private double availablePermits;
+	private long lastRefillTime;
+
+	/**
+	 * @param permitsPerSecond rate at which the bucket is refilled
+	 * @param capacity maximum number of permits that can be taken at once without waiting
+	 */
+	public RateLimiter(double permitsPerSecond, double capacity) {
+		this(permitsPerSecond, capacity, SYSTEM_TICKER);
+	}
+
+	RateLimiter(double permitsPerSecond, double capacity, Ticker ticker) {
+		this.ticker = ticker;
+		this.permitsPerSecond = permitsPerSecond;
+		this.capacity = capacity;
+		this.availablePermits = capacity;
+		this.lastRefillTime = ticker.read();
+	}
+
+	/**
+	 * Takes the given number of permits, waiting until the bucket has refilled enough. A request for more
+	 * permits than the capacity is allowed, it borrows from the permits of the following requests.
+	 * @param permits number of requests about to be sent
+	 * @throws IOException if interrupted while waiting
+	 */
+	public void acquire(int permits) throws IOException {
+		long waitNanos = this.reserve(permits);
+		if (waitNanos <= 0) {
+			return;
+		}
+
+		try {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+		}
+	}
+
+	/**
+	 * Takes the given number of permits without waiting for them.
+	 * @return nanoseconds to wait before the permits may be used
+	 */
+	synchronized long reserve(int permits) {
+		long now = ticker.read();
+		availablePermits = Math.min(capacity,
+				availablePermits + (now - lastRefillTime) * permitsPerSecond / NANOS_PER_SECOND);
+		lastRefillTime = now;
+
+		availablePermits -= permits;
+		if (availablePermits >= 0) {
+			return 0;
+		}
+		return (long) (-availablePermits * NANOS_PER_SECOND / permitsPerSecond);
+	}
+}
@@ -0,0 +1,72 @@
+package typetodo.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the refill of the RateLimiter against a ticker that is moved by hand, and that acquire waits once the
+ * burst is used up.
+ * @author A0091024U
+ *
+ */
+public class RateLimiterATD {
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private static class ManualTicker implements RateLimiter.Ticker {
+		private long nanos;
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+	}
+
+	@Test
+	public void BurstIsTakenWithoutWaiting() {
+		RateLimiter rateLimiter = new RateLimiter(10, 5, new ManualTicker());
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, rateLimiter.reserve(1));
+		}
+	}
+
+	@Test
+	public void RequestsWaitForTheRefillOnceTheBurstIsUsedUp() {
+		RateLimiter rateLimiter = new RateLimiter(10, 5, new ManualTicker());
+		assertEquals(0, rateLimiter.reserve(5));
+
+		assertEquals(NANOS_PER_SECOND / 10, rateLimiter.reserve(1));
+		// The permit reserved above is borrowed from the refill, so the next one waits for two tenths of a second
+		assertEquals(2 * NANOS_PER_SECOND / 10, rateLimiter.reserve(1));
+	}
+
+	@Test
+	public void PermitsAreRefilledOverTimeUpToTheCapacity() {
+		ManualTicker ticker = new ManualTicker();
+		RateLimiter rateLimiter = new RateLimiter(10, 5, ticker);
+		assertEquals(0, rateLimiter.reserve(5));
+
+		ticker.nanos += 3 * NANOS_PER_SECOND / 10;
+		assertEquals(0, rateLimiter.reserve(3));
+		assertTrue(rateLimiter.reserve(1) > 0);
+
+		ticker.nanos += 60 * NANOS_PER_SECOND;
+		assertEquals(0, rateLimiter.reserve(5));
+		assertEquals(NANOS_PER_SECOND / 10, rateLimiter.reserve(1));
+	}
+
+	@Test
+	public void AcquireWaitsOnceTheBurstIsUsedUp() throws IOException {
+		RateLimiter rateLimiter = new RateLimiter(20, 1);
+		rateLimiter.acquire(1);
+
+		long startNanos = System.nanoTime();
+		rateLimiter.acquire(1);
+		assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(40));
+	}
+}
@@ -0,0 +1,54 @@
+package typetodo.sync;
+
+import java.io.IOException;
+
+import typetodo.model.SyncMetrics;
+
+/**
+ * A RemoteSchedule is the schedule that the local schedule is synced with. The SyncController only needs
+ * to retrieve the changes of the remote schedule and to send it the writes of a SyncPlan, so that it can 
+ * sync with the Google Schedule or with an in-memory stand-in for testing and benchmarking offline.
+ * @author A0091024U
+ *
+ */
+public interface RemoteSchedule {
+	/**
+	 * Receives the progress of the operations sent to the remote schedule.
+	 */
+	public interface ProgressListener {
+		void onProgress(int numberOfOperationsDone, int numberOfOperations);
+	}
+
+	/**
+	 * @param maxResults maximum number of items in a page of retrieved changes
+	 */
+	void setMaxResults(int maxResults);
+
+	/**
+	 * @param metrics receives the requests and retries of the sync that is running, or null to stop recording
+	 */
+	void setMetrics(SyncMetrics metrics);
+
+	/**
+	 * Retrieves the changes of the remote schedule since the sync that returned the given markers, page by 
+	 * page. Every task is retrieved instead if there are no markers yet or if they are no longer accepted.
+	 * @param calendarSyncToken marker of the events returned by the previous sync, or null
+	 * @param tasksUpdatedMin marker of the floating tasks returned by the previous sync, or null
+	 * @param consumer receives the changes of each page
+	 * @return markers for the next sync, without the changes
+	 * @throws IOException
+	 */
+	GoogleChanges retrieveChanges(String calendarSyncToken, String tasksUpdatedMin, GoogleItemConsumer consumer) 
+			throws IOException;
+
+	/**
+	 * Sends the operations of the plan in batches. The googleIds given to added tasks are set on the local 
+	 * tasks, and operations that are still not done afterwards are returned by plan.getFailedOperations(). 
+	 * Operations that are refused with an error that sending them again would not fix are marked as rejected.
+	 * @param plan operations to be sent
+	 * @param batchSize maximum number of operations in a batch request
+	 * @param listener receives the number of operations done after every batch request, or null
+	 * @throws IOException if interrupted
+	 */
+	void execute(SyncPlan plan, int batchSize, ProgressListener listener) throws IOException;
+}
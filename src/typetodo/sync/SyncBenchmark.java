@@ -0,0 +1,186 @@
+package typetodo.sync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.joda.time.DateTime;
+
+import typetodo.db.DbController;
+import typetodo.logic.Schedule;
+import typetodo.model.DeadlineTask;
+import typetodo.model.FieldName;
+import typetodo.model.FloatingTask;
+import typetodo.model.PendingChange;
+import typetodo.model.SyncMetrics;
+import typetodo.model.Task;
+import typetodo.model.TimedTask;
+
+/**
+ * Measures the wall time and the number of requests of a sync against an InMemorySchedule: the first sync
+ * of a remote schedule of many tasks, a sync without changes, and a sync after 1% of the tasks changed on
+ * each side. The time spent waiting for the remote schedule is shown apart from the total.
+ * It uses the saved files of the working directory, so run it from an empty directory with:
+ * java typetodo.sync.SyncBenchmark [number of tasks] [latency in ms] [page size]
+ * @author A0091024U
+ *
+ */
+public class SyncBenchmark {
+	private static final int DEFAULT_NUMBER_OF_TASKS = 10000;
+	private static final long DEFAULT_LATENCY_MILLIS = 50;
+	private static final int DEFAULT_PAGE_SIZE = 250;
+	private static final int PERCENTAGE_OF_CHANGED_TASKS = 1;
+	private static final String[] PROPERTY_NAMES = { "lastSyncDate", "calendarSyncToken", "tasksUpdatedMin" };
+
+	public static void main(String[] args) throws Exception {
+		int numberOfTasks = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_TASKS;
+		long latencyMillis = (args.length > 1) ? Long.parseLong(args[1]) : DEFAULT_LATENCY_MILLIS;
+		int pageSize = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_PAGE_SIZE;
+
+		DbController dataBase = DbController.getInstance();
+		if (!dataBase.retrieveAll().isEmpty() || !dataBase.retrievePendingChanges().isEmpty()) {
+			System.out.println("The saved files already hold tasks, run the benchmark from an empty directory");
+			return;
+		}
+
+		InMemorySchedule remoteSchedule = new InMemorySchedule();
+		remoteSchedule.setPageSize(pageSize);
+		ArrayList<String> googleIds = new ArrayList<String>();
+		for (Task task : createTasks(numberOfTasks)) {
+			googleIds.add(remoteSchedule.putTask(task));
+		}
+		remoteSchedule.setLatencyMillis(latencyMillis);
+		System.out.println(String.format("%,d tasks, %d ms latency, %d items a page",
+				numberOfTasks, latencyMillis, pageSize));
+
+		try {
+			report("first sync", remoteSchedule, dataBase);
+			report("no changes", remoteSchedule, dataBase);
+
+			Schedule schedule = new Schedule();
+			ArrayList<Task> localTasks = dataBase.retrieveAll();
+			int numberOfChangedTasks = Math.max(1, numberOfTasks * PERCENTAGE_OF_CHANGED_TASKS / 100);
+			for (int i = 0; i < numberOfChangedTasks; i++) {
+				Task remoteTask = remoteSchedule.getTask(googleIds.get(2 * i));
+				remoteTask.setTitle(remoteTask.getTitle() + " changed remotely");
+				remoteSchedule.putTask(remoteTask);
+				Task localTask = localTasks.get(localTasks.size() - 1 - 2 * i);
+				schedule.updateTask(localTask.getTaskId(), FieldName.TITLE, localTask.getTitle() + " changed locally");
+			}
+			report(PERCENTAGE_OF_CHANGED_TASKS + "% changed", remoteSchedule, dataBase);
+		} finally {
+			clearDataBase(dataBase);
+		}
+	}
+
+	private static void report(String name, InMemorySchedule remoteSchedule, DbController dataBase)
+			throws Exception {
+		TimedRemoteSchedule timedSchedule = new TimedRemoteSchedule(remoteSchedule);
+		remoteSchedule.resetNumberOfRequests();
+		long timeBefore = System.nanoTime();
+
+		new SyncController(null, timedSchedule).sync(null);
+
+		long millis = (System.nanoTime() - timeBefore) / 1000000;
+		System.out.println(String.format("%-11s %,8d ms wall, %,8d ms remote, %,6d requests, %,6d tasks", name,
+				millis, timedSchedule.nanosInRemoteSchedule / 1000000, remoteSchedule.getNumberOfRequests(),
+				dataBase.retrieveAll().size()));
+	}
+
+	private static void clearDataBase(DbController dataBase) {
+		ArrayList<Integer> taskIds = new ArrayList<Integer>();
+		for (Task task : dataBase.retrieveAll()) {
+			taskIds.add(task.getTaskId());
+		}
+		dataBase.deleteTasks(taskIds);
+		for (String propertyName : PROPERTY_NAMES) {
+			dataBase.setProperty(propertyName, null);
+		}
+		ArrayList<Long> sequenceNumbers = new ArrayList<Long>();
+		for (PendingChange pendingChange : dataBase.retrievePendingChanges()) {
+			sequenceNumbers.add(pendingChange.getSequenceNumber());
+		}
+		dataBase.acknowledgePendingChanges(sequenceNumbers);
+	}
+
+	private static ArrayList<Task> createTasks(int numberOfTasks) {
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		DateTime start = new DateTime().withTimeAtStartOfDay().plusDays(1);
+
+		for (int id = 1; id <= numberOfTasks; id++) {
+			switch (id % 3) {
+				case 0 :
+					tasks.add(new FloatingTask("Floating task " + id, "Description of task " + id));
+					break;
+				case 1 :
+					tasks.add(new DeadlineTask("Deadline task " + id, "Description of task " + id,
+							start.plusMinutes(id * 37)));
+					break;
+				default :
+					tasks.add(new TimedTask("Timed task " + id, "", start.plusMinutes(id * 37),
+							start.plusMinutes(id * 37 + 90)));
+					break;
+			}
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Adds up the time spent in the remote schedule, apart from the time spent by the consumer.
+	 */
+	private static class TimedRemoteSchedule implements RemoteSchedule {
+		private final RemoteSchedule remoteSchedule;
+		private long nanosInRemoteSchedule;
+		private long nanosInConsumer;
+
+		private TimedRemoteSchedule(RemoteSchedule remoteSchedule) {
+			this.remoteSchedule = remoteSchedule;
+		}
+
+		@Override
+		public void setMaxResults(int maxResults) {
+			remoteSchedule.setMaxResults(maxResults);
+		}
+
+		@Override
+		public void setMetrics(SyncMetrics metrics) {
+			remoteSchedule.setMetrics(metrics);
+		}
+
+		@Override
+		public GoogleChanges retrieveChanges(String calendarSyncToken, String tasksUpdatedMin,
+				final GoogleItemConsumer consumer) throws IOException {
+			long timeBefore = System.nanoTime();
+			nanosInConsumer = 0;
+			try {
+				return remoteSchedule.retrieveChanges(calendarSyncToken, tasksUpdatedMin, new GoogleItemConsumer() {
+					@Override
+					public void consumeUpdatedTask(Task task) {
+						long consumeBefore = System.nanoTime();
+						consumer.consumeUpdatedTask(task);
+						nanosInConsumer += System.nanoTime() - consumeBefore;
+					}
+
+					@Override
+					public void consumeDeletedGoogleId(String googleId) {
+						long consumeBefore = System.nanoTime();
+						consumer.consumeDeletedGoogleId(googleId);
+						nanosInConsumer += System.nanoTime() - consumeBefore;
+					}
+				});
+			} finally {
+				nanosInRemoteSchedule += System.nanoTime() - timeBefore - nanosInConsumer;
+			}
+		}
+
+		@Override
+		public void execute(SyncPlan plan, int batchSize, ProgressListener listener) throws IOException {
+			long timeBefore = System.nanoTime();
+			try {
+				remoteSchedule.execute(plan, batchSize, listener);
+			} finally {
+				nanosInRemoteSchedule += System.nanoTime() - timeBefore;
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package typetodo.sync;
+
+import java.util.EnumSet;
+
+import typetodo.model.FieldName;
+import typetodo.model.Task;
+
+/**
+ * A SyncConflict is a task whose fields were changed differently in both the local and the Google Schedule 
+ * since the last sync. The conflicting fields of the version that was changed last are kept, while the 
+ * other changes of both versions are merged.
+ * @author A0091024U
+ *
+ */
+public class SyncConflict {
+	private final Task localTask;
+	private final Task googleTask;
+	private final EnumSet<FieldName> conflictingFields;
+	private final boolean isLocalTaskKept;
+
+	/**
+	 * @param conflictingFields fields changed differently in both versions
+	 * @param isLocalTaskKept true if the conflicting fields of the local version are kept
+	 */
+	public SyncConflict(Task localTask, Task googleTask, EnumSet<FieldName> conflictingFields, boolean isLocalTaskKept) {
+		this.localTask = localTask;
+		this.googleTask = googleTask;
+		this.conflictingFields = conflictingFields;
+		this.isLocalTaskKept = isLocalTaskKept;
+	}
+
+	public Task getLocalTask() {
+		return localTask;
+	}
+
+	public Task getGoogleTask() {
+		return googleTask;
+	}
+
+	public EnumSet<FieldName> getConflictingFields() {
+		return conflictingFields;
+	}
+
+	/**
+	 * @return true if the conflicting fields of the local version are sent to the Google Schedule, false if 
+	 * those of the Google version are written to the local one
+	 */
+	public boolean isLocalTaskKept() {
+		return isLocalTaskKept;
+	}
+
+	@Override
+	public String toString() {
+		return "\"" + localTask.getTitle() + "\" keeps the " + (isLocalTaskKept ? "local" : "google") + " " 
+				+ conflictingFields.toString().toLowerCase();
+	}
+}
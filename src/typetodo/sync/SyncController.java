@@ -2,156 +2,686 @@ package typetodo.sync;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.swing.SwingWorker;
 
 import org.joda.time.DateTime;
 
 import typetodo.db.DbController;
+import typetodo.model.PendingChange;
+import typetodo.model.SyncMetrics;
 import typetodo.model.Task;
+import typetodo.model.TaskType;
+import typetodo.model.TypeOfOperation;
 import typetodo.ui.View;
 
 /**
  * The SyncController class handles the two way sync between TypeToDo's and Google's schedule.
+ * Local changes are taken from the outbox of pending changes kept by the Schedule, so that only the
+ * tasks that changed are sent. Each synced task keeps its synced version as of the last sync, and a
+ * task changed in both schedules is merged field by field against it, so that only the changed fields
+ * are written to either schedule.
+ * Only one sync runs at a time, and the local schedule may be changed while it runs in the background. The 
+ * sync compares copies of the local tasks taken while the local schedule is locked, and gives up without 
+ * writing them if any of the tasks it is about to write was changed in the meantime.
+ * The wall time, requests, retries and items touched of each phase of a sync are kept in the sync history.
  * @author A0091024U
  *
  */
 public class SyncController {
 	private static final String MESSAGE_SYNC = "Sync as of %s. Please type 'view all' to refresh";
-	private static final String MESSAGE_SYNC_FROM_LOCAL = "Syncing additional tasks from local schedule..";
-	private static final String MESSAGE_SYNC_EXISTING = "Syncing tasks that exist in both schedules..";
-	private static final String MESSAGE_SYNC_FROM_GOOGLE = "Syncing additional tasks from google schedule..";
+	private static final String MESSAGE_CONNECT_TO_GOOGLE = "Connecting to google schedule..";
+	private static final String MESSAGE_RETRIEVE_FROM_GOOGLE = "Retrieving changes from google schedule..";
+	private static final String MESSAGE_SYNC_FROM_LOCAL = "Syncing changes from local schedule..";
+	private static final String MESSAGE_SYNC_FROM_GOOGLE = "Syncing changes from google schedule..";
+	private static final String MESSAGE_SEND_TO_GOOGLE = "Sending changes to google schedule..";
+	private static final String MESSAGE_SYNC_PLAN = "Sync plan: %s";
+	private static final String MESSAGE_SYNC_CONFLICT = "Conflict: %s";
+	private static final String MESSAGE_SEND_PROGRESS = "Sent %d of %d changes to google schedule..";
+	private static final String MESSAGE_FAILED_OPERATIONS = "Failed to send %d changes to google schedule";
+	private static final String MESSAGE_SYNC_UNSUCCESSFUL = "Sync is unsuccessful, please try again";
+	private static final String MESSAGE_SYNC_UNSUCCESSFUL_WITH_REASON = "Sync is unsuccessful (%s), please try again";
+	private static final String MESSAGE_SYNC_ALREADY_RUNNING = "another sync is running";
+	private static final String MESSAGE_CHANGED_DURING_SYNC = "tasks were changed during the sync";
+	private static final String MESSAGE_STATUS_NEVER_RUN = "No sync has run since TypeToDo started";
+	private static final String MESSAGE_STATUS_LAST_RUN = "Last sync at %s took %.1f s and %s";
+	private static final String MESSAGE_STATUS_RUNNING = "A sync is running. %s";
+	private static final String STATUS_SUCCEEDED = "succeeded (%s)";
+	private static final String STATUS_FAILED = "failed (%s)";
+	private static final String STATUS_REJECTED = ", %d changes rejected by google were kept in the outbox";
 	private static final String DATE_FORMAT_FOR_LAST_SYNC = "EEE, dd MMM yyyy HH:mm";
 	private static final String PROPERTY_NAME_LAST_SYNC = "lastSyncDate";
+	private static final String PROPERTY_NAME_CALENDAR_SYNC_TOKEN = "calendarSyncToken";
+	private static final String PROPERTY_NAME_TASKS_UPDATED_MIN = "tasksUpdatedMin";
+	private static final String PROPERTY_NAME_BATCH_SIZE = "syncBatchSize";
+	private static final String PROPERTY_NAME_MAX_RESULTS = "syncMaxResults";
+	private static final String PROPERTY_NAME_CALENDAR_ID = "googleCalendarId";
+	private static final String PROPERTY_NAME_TASK_LIST_ID = "googleTaskListId";
+	private static final int DEFAULT_BATCH_SIZE = 50;
+	private static final String PHASE_RETRIEVE = "retrieve";
+	private static final String PHASE_PLAN = "plan";
+	private static final String PHASE_APPLY = "apply";
+	private static final String PHASE_SEND = "send";
 	
 	public DateTime lastSyncDate;
+	// Changes retrieved during the current sync, whose markers are saved once the sync succeeds. The 
+	// retrieved tasks are consumed into the maps page by page.
+	private GoogleChanges googleChanges;
+	private HashMap<String, Task> googleTasksByGoogleId;
+	private HashSet<String> deletedGoogleIds;
+	// Writes to the google schedule, which are sent together once both schedules have been compared
+	private SyncPlan syncPlan;
+	private ArrayList<PendingChange> pendingChanges;
+	private HashMap<Long, SyncOperation> operationsOfPendingChanges;
+	private HashMap<Integer, SyncOperation> operationsByTaskId;
+	private HashSet<String> locallyDeletedGoogleIds;
+	// Local tasks whose content is the same in both schedules but whose synced version is not recorded yet
+	private ArrayList<Task> tasksToMarkSynced;
+	private HashSet<String> mergedGoogleIds;
+	// Copies of the local tasks as they were when the sync was planned, and the last pending change then
+	private LinkedHashMap<Integer, Task> localTasksById;
+	private long lastPlannedSequenceNumber;
+	
+	private final ReentrantLock syncLock;
+	private volatile String lastRunStatus;
+	// Metrics of the sync that is running, or null while planning a preview
+	private SyncMetrics metrics;
 
-	private GoogleSchedule googleSchedule;
+	private volatile RemoteSchedule googleSchedule;
 	private final DbController dataBase;
 	private final View view;
 
 	public SyncController(View view) throws IOException {
+		this(view, null);
+	}
+	
+	/**
+	 * Creates a SyncController that syncs with the given remote schedule, such as a Google schedule connected 
+	 * to a stand-in server, or an InMemorySchedule for testing and benchmarking offline.
+	 */
+	SyncController(View view, RemoteSchedule googleSchedule) throws IOException {
 		dataBase = DbController.getInstance();
 		this.view = view;
 		this.initializeLastSyncDate();
-		this.googleSchedule = null;
+		this.googleSchedule = googleSchedule;
+		this.syncLock = new ReentrantLock();
 	}
 
 	/**
-	 * Syncs the local schedule with the Google schedule
+	 * Syncs the local schedule with the Google schedule on a separate thread, connecting to it first if 
+	 * this is the first sync.
 	 * @throws Exception
 	 */
 	public void twoWaySync() throws Exception {
-		while (googleSchedule == null) {
-			this.connectToGoogleSchedule();
+		(new SyncWorker(this, view, false)).execute(); //executes the sync on a separate thread
+	}
+	
+	/**
+	 * Shows what the next sync would change in both schedules, without changing either of them.
+	 * @throws Exception
+	 */
+	public void previewSync() throws Exception {
+		(new SyncWorker(this, view, true)).execute();
+	}
+	
+	/**
+	 * Syncs on the current thread without showing the progress or disabling input, such as for the 
+	 * SyncScheduler. The outcome is kept for the sync status, including a failure to connect.
+	 * @return writes made to both schedules, or null if the sync failed or another sync is running
+	 */
+	public SyncPlan syncInBackground() {
+		if (syncLock.isLocked()) {
+			return null;
 		}
 		
-		(new SyncWorker(this, view)).execute(); //executes the sync on a separate thread
+		try {
+			return this.sync(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return whether a sync is running, and the time taken and outcome of the last sync
+	 */
+	public String getStatus() {
+		String status = (lastRunStatus == null) ? MESSAGE_STATUS_NEVER_RUN : lastRunStatus;
+		return syncLock.isLocked() ? String.format(MESSAGE_STATUS_RUNNING, status) : status;
 	}
 
-	private void connectToGoogleSchedule() {
-		googleSchedule = new GoogleSchedule();
+	/**
+	 * Connects to the Google schedule the first time it is needed, on the thread of the sync. The ids of the 
+	 * TypeToDo calendar and task list saved by an earlier sync are used, so that they are not looked up.
+	 * @throws IOException if the Google schedule could not be reached, or the calendar or task list could not be 
+	 *           looked up, in which case no GoogleSchedule is kept so that the next sync tries again
+	 */
+	private synchronized void connectToGoogleSchedule() throws IOException {
+		if (googleSchedule == null) {
+			GoogleSchedule connectedSchedule = new GoogleSchedule(dataBase.getProperty(PROPERTY_NAME_CALENDAR_ID), 
+					dataBase.getProperty(PROPERTY_NAME_TASK_LIST_ID));
+			googleSchedule = connectedSchedule;
+			this.saveGoogleIds();
+		}
 	}
 	
-	private void syncAdditionalTasksFromLocalSchedule() throws Exception {
-		ArrayList<Task> localTasks = dataBase.retrieveAll();
-		for (int index = 0; index < localTasks.size(); ++index) {
-			Task localTask = localTasks.get(index);
-			Task googleTask = googleSchedule.retrieveTask(localTask);
-
-			if (googleTask == null) { // if task is not in google calendar
-				// Case 1a: task had not be sync before
-				if (localTask.getDateModified().isAfter(lastSyncDate)) {
-					try {
-						googleSchedule.addTask(localTask);
-					} catch (IOException e) {
-						throw new Exception("Failed to add task into google schedule");
-					}
-
-				dataBase.updateTask(localTask);
-
-				//task was added but later deleted. delete from local Schedule
-				} else if (localTask.getDateModified().isBefore(lastSyncDate)) { 
-					dataBase.deleteTask(localTask.getTaskId());
+	/**
+	 * Saves the ids of the TypeToDo calendar and task list, which change if the saved ones were not found.
+	 */
+	private void saveGoogleIds() {
+		if (!(googleSchedule instanceof GoogleSchedule)) {
+			return;
+		}
+		
+		String calendarId = ((GoogleSchedule) googleSchedule).getCalendarId();
+		String taskListId = ((GoogleSchedule) googleSchedule).getTaskListId();
+		if (calendarId != null && !calendarId.equals(dataBase.getProperty(PROPERTY_NAME_CALENDAR_ID))) {
+			dataBase.setProperty(PROPERTY_NAME_CALENDAR_ID, calendarId);
+		}
+		if (taskListId != null && !taskListId.equals(dataBase.getProperty(PROPERTY_NAME_TASK_LIST_ID))) {
+			dataBase.setProperty(PROPERTY_NAME_TASK_LIST_ID, taskListId);
+		}
+	}
+	
+	/**
+	 * Runs every step of the sync on the current thread, unless another sync is running, connecting to the 
+	 * Google schedule first if this is the first sync. A failure to connect is recorded like any other failure.
+	 * @param worker receives the progress of the sync, or null
+	 * @return writes made to both schedules
+	 * @throws Exception
+	 */
+	SyncPlan sync(SyncWorker worker) throws Exception {
+		if (!syncLock.tryLock()) {
+			throw new Exception(MESSAGE_SYNC_ALREADY_RUNNING);
+		}
+		
+		DateTime timeStarted = new DateTime();
+		long nanosBefore = System.nanoTime();
+		metrics = new SyncMetrics();
+		try {
+			if (googleSchedule == null) {
+				publishProgress(worker, MESSAGE_CONNECT_TO_GOOGLE);
+				this.connectToGoogleSchedule();
+			}
+			googleSchedule.setMetrics(metrics);
+			this.plan(worker);
+			SyncPlan executedSync = syncPlan;
+			publishProgress(worker, String.format(MESSAGE_SYNC_PLAN, syncPlan.getSummary()));
+			
+			publishProgress(worker, MESSAGE_SYNC_FROM_GOOGLE);
+			this.startPhase(PHASE_APPLY);
+			this.applyGoogleChanges();
+			this.addItemsTouched(syncPlan.getLocalTasksToAdd().size() + syncPlan.getLocalTasksToUpdate().size() 
+					+ syncPlan.getLocalTasksToDelete().size() + tasksToMarkSynced.size());
+			
+			publishProgress(worker, MESSAGE_SEND_TO_GOOGLE);
+			this.startPhase(PHASE_SEND);
+			this.addItemsTouched(syncPlan.size());
+			this.sendChangesToGoogleSchedule(worker);
+			
+			this.updateLastSyncDate();
+			String outcome = String.format(STATUS_SUCCEEDED, executedSync.getSummary());
+			int numberOfRejectedOperations = executedSync.getRejectedOperations().size();
+			if (numberOfRejectedOperations > 0) {
+				outcome += String.format(STATUS_REJECTED, numberOfRejectedOperations);
+			}
+			this.recordRun(timeStarted, nanosBefore, outcome);
+			return executedSync;
+		} catch (Exception e) {
+			this.clearSyncState();
+			this.recordRun(timeStarted, nanosBefore, String.format(STATUS_FAILED, getReasonOfFailure(e)));
+			throw e;
+		} finally {
+			syncLock.unlock();
+		}
+	}
+	
+	/**
+	 * Keeps the outcome for the sync status, and the metrics of the sync in the sync history.
+	 */
+	private void recordRun(DateTime timeStarted, long nanosBefore, String outcome) {
+		double secondsTaken = (System.nanoTime() - nanosBefore) / 1e9;
+		lastRunStatus = String.format(MESSAGE_STATUS_LAST_RUN, timeStarted.toString(DATE_FORMAT_FOR_LAST_SYNC), 
+				secondsTaken, outcome);
+		
+		if (googleSchedule != null) { //null if the sync failed to connect
+			googleSchedule.setMetrics(null);
+		}
+		metrics.finish(outcome);
+		dataBase.addSyncMetrics(metrics);
+		metrics = null;
+	}
+	
+	private void startPhase(String phase) {
+		if (metrics != null) {
+			metrics.startPhase(phase);
+		}
+	}
+	
+	private void addItemsTouched(int itemsTouched) {
+		if (metrics != null) {
+			metrics.addItemsTouched(itemsTouched);
+		}
+	}
+	
+	/**
+	 * @return first line of the message of the exception, which is the status line of a response from google, 
+	 * or null if there is no message
+	 */
+	private static String getReasonOfFailure(Exception e) {
+		if (e.getMessage() == null || e.getMessage().trim().isEmpty()) {
+			return null;
+		}
+		return e.getMessage().trim().split("\n")[0];
+	}
+	
+	/**
+	 * Retrieves the changes of the google schedule and plans the sync without carrying it out. Neither 
+	 * schedule is changed, and the next sync starts from the same markers.
+	 * @param worker receives the progress of the sync, or null
+	 * @return writes that the sync would make to both schedules, and the conflicts it would resolve
+	 * @throws Exception
+	 */
+	SyncPlan planSync(SyncWorker worker) throws Exception {
+		if (!syncLock.tryLock()) {
+			throw new Exception(MESSAGE_SYNC_ALREADY_RUNNING);
+		}
+		
+		try {
+			this.plan(worker);
+			return syncPlan;
+		} finally {
+			this.clearSyncState();
+			syncLock.unlock();
+		}
+	}
+	
+	private void plan(SyncWorker worker) throws Exception {
+		publishProgress(worker, MESSAGE_RETRIEVE_FROM_GOOGLE);
+		this.startPhase(PHASE_RETRIEVE);
+		this.retrieveGoogleChanges();
+		this.addItemsTouched(googleTasksByGoogleId.size() + deletedGoogleIds.size());
+		syncPlan = new SyncPlan();
+		
+		publishProgress(worker, MESSAGE_SYNC_FROM_LOCAL);
+		this.startPhase(PHASE_PLAN);
+		synchronized (dataBase) { //the local schedule is not changed while it is compared
+			localTasksById = new LinkedHashMap<Integer, Task>();
+			for (Task localTask : dataBase.retrieveAll()) {
+				localTasksById.put(localTask.getTaskId(), ThreeWayMerge.copyOf(localTask));
+			}
+			this.planPendingChanges();
+			this.planGoogleChanges();
+		}
+		this.addItemsTouched(localTasksById.size());
+	}
+	
+	private static void publishProgress(SyncWorker worker, String progress) {
+		if (worker != null) {
+			worker.publishProgress(progress);
+		}
+	}
+	
+	/**
+	 * Retrieves the changes of the Google schedule once, page by page, so that local tasks can be matched 
+	 * against them in memory. Only the tasks that changed since the last sync are retrieved. Every task is
+	 * retrieved on the first sync, or when Google no longer accepts the sync token.
+	 * @throws IOException
+	 */
+	private void retrieveGoogleChanges() throws IOException {
+		googleTasksByGoogleId = new LinkedHashMap<String, Task>();
+		deletedGoogleIds = new HashSet<String>();
+		
+		int maxResults = this.getIntegerProperty(PROPERTY_NAME_MAX_RESULTS, 0);
+		if (maxResults > 0) {
+			googleSchedule.setMaxResults(maxResults);
+		}
+		googleChanges = googleSchedule.retrieveChanges(dataBase.getProperty(PROPERTY_NAME_CALENDAR_SYNC_TOKEN), 
+				dataBase.getProperty(PROPERTY_NAME_TASKS_UPDATED_MIN), new GoogleItemConsumer() {
+			@Override
+			public void consumeUpdatedTask(Task googleTask) {
+				googleTasksByGoogleId.put(googleTask.getGoogleId(), googleTask);
+			}
+			
+			@Override
+			public void consumeDeletedGoogleId(String googleId) {
+				deletedGoogleIds.add(googleId);
+			}
+		});
+	}
+	
+	/**
+	 * Sends the planned writes to the google schedule in batches. The googleIds of the tasks added to the 
+	 * google schedule and the content sent are saved in the local tasks, even if they were changed since the 
+	 * sync was planned, and the pending changes that were sent are removed from the outbox. The pending 
+	 * changes that google rejected are parked in the outbox, so that they do not hold back the markers.
+	 * @param worker receives the number of writes sent after every batch, or null
+	 * @throws Exception if some of the writes could not be sent after every attempt, so that the next sync 
+	 * starts from the same markers
+	 */
+	private void sendChangesToGoogleSchedule(final SyncWorker worker) throws Exception {
+		if (syncPlan.isEmpty()) {
+			this.acknowledgePendingChanges();
+			return;
+		}
+		
+		googleSchedule.execute(syncPlan, this.getBatchSize(), new RemoteSchedule.ProgressListener() {
+			@Override
+			public void onProgress(int numberOfOperationsDone, int numberOfOperations) {
+				publishProgress(worker, String.format(MESSAGE_SEND_PROGRESS, numberOfOperationsDone, numberOfOperations));
+			}
+		});
+		
+		synchronized (dataBase) {
+			ArrayList<Task> sentTasks = new ArrayList<Task>();
+			for (SyncOperation operation : syncPlan.getOperations()) {
+				Task localTask = (operation.getTask() == null) ? null : dataBase.getTask(operation.getTask().getTaskId());
+				if (operation.isDone() && localTask != null) { //records the googleId and the content sent
+					localTask.setGoogleId(operation.getTask().getGoogleId());
+					localTask.setSyncedVersion(SyncHelper.syncedVersionOf(operation.getTask()));
+					sentTasks.add(localTask);
 				}
 			}
+			dataBase.updateTasks(sentTasks);
+			this.acknowledgePendingChanges();
+			this.parkRejectedChanges();
+		}
+		
+		int numberOfFailedOperations = syncPlan.getFailedOperations().size() 
+				- syncPlan.getRejectedOperations().size();
+		if (numberOfFailedOperations > 0) {
+			throw new Exception(String.format(MESSAGE_FAILED_OPERATIONS, numberOfFailedOperations));
 		}
 	}
-
-	private void syncTasksThatExistInBothSchedule() {
-		ArrayList<Task> localTasks = dataBase.retrieveAll();
-
-		for (int index = 0; index < localTasks.size(); ++index) {
-			Task localTask = localTasks.get(index);
-			Task googleTask = googleSchedule.retrieveTask(localTask);
+	
+	private int getBatchSize() {
+		return Math.max(1, this.getIntegerProperty(PROPERTY_NAME_BATCH_SIZE, DEFAULT_BATCH_SIZE));
+	}
+	
+	/**
+	 * @return value of the property, or the default value if the property is missing or not a number
+	 */
+	private int getIntegerProperty(String propertyName, int defaultValue) {
+		String value = dataBase.getProperty(propertyName);
+		if (value == null) {
+			return defaultValue;
+		}
+		
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+	
+	/**
+	 * @return true if the task with the given googleId is not in the google schedule
+	 */
+	private boolean isMissingFromGoogleSchedule(String googleId) {
+		if (googleId == null) {
+			return true;
+		}
+		
+		if (googleChanges.isFullSync()) {
+			return !googleTasksByGoogleId.containsKey(googleId);
+		} else { //tasks that did not change since the last sync are not retrieved
+			return deletedGoogleIds.contains(googleId);
+		}
+	}
+	
+	/**
+	 * Plans the changes made to the local schedule since the last sync, in the order they were made. 
+	 * The latest state of a task is sent once, however many times it was changed.
+	 */
+	private void planPendingChanges() {
+		pendingChanges = dataBase.retrievePendingChanges();
+		lastPlannedSequenceNumber = pendingChanges.isEmpty() ? 0 
+				: pendingChanges.get(pendingChanges.size() - 1).getSequenceNumber();
+		operationsOfPendingChanges = new HashMap<Long, SyncOperation>();
+		operationsByTaskId = new HashMap<Integer, SyncOperation>();
+		locallyDeletedGoogleIds = new HashSet<String>();
+		tasksToMarkSynced = new ArrayList<Task>();
+		mergedGoogleIds = new HashSet<String>();
+		
+		for (PendingChange pendingChange : pendingChanges) {
+			if (pendingChange.getFailure() != null) { //rejected by google, and not changed since
+				operationsByTaskId.put(pendingChange.getTaskId(), null);
+				continue;
+			}
+			operationsOfPendingChanges.put(pendingChange.getSequenceNumber(), this.planPendingChange(pendingChange));
+		}
+		
+		//tasks that were never synced and were not changed since the outbox was kept
+		for (Task localTask : localTasksById.values()) {
+			if (localTask.getGoogleId() == null && !operationsByTaskId.containsKey(localTask.getTaskId())) {
+				operationsByTaskId.put(localTask.getTaskId(), syncPlan.addTask(localTask));
+			}
+		}
+	}
+	
+	/**
+	 * Compares the local task with its synced version, and merges it with the google task if that changed 
+	 * since the last sync.
+	 * @return operation that sends the change, or null if there is nothing to send
+	 */
+	private SyncOperation planPendingChange(PendingChange pendingChange) {
+		if (pendingChange.getType() == TypeOfOperation.DELETE) {
+			String googleId = pendingChange.getGoogleId();
+			if (googleId == null || deletedGoogleIds.contains(googleId) 
+					|| !locallyDeletedGoogleIds.add(googleId)) { //never synced, or already deleted
+				return null;
+			}
 			
-			//Task already exists in google schedule
-			if (googleTask != null) { 
-				//check for differences and take the one the latest modified date
-				this.syncTask(localTask, googleTask);
+			if (pendingChange.getTaskType() == TaskType.FLOATING_TASK) {
+				return syncPlan.deleteGoogleTask(googleId);
+			}
+			return syncPlan.deleteEvent(googleId);
+		}
+		
+		Task localTask = localTasksById.get(pendingChange.getTaskId());
+		if (localTask == null) { //deleted afterwards
+			return null;
+		}
+		if (operationsByTaskId.containsKey(localTask.getTaskId())) {
+			return operationsByTaskId.get(localTask.getTaskId());
+		}
+		
+		SyncOperation operation;
+		String googleId = localTask.getGoogleId();
+		Task syncedVersion = localTask.getSyncedVersion();
+		if (this.isMissingFromGoogleSchedule(googleId) || locallyDeletedGoogleIds.contains(googleId)) {
+			//never synced, or deleted from the google schedule while it was being changed locally
+			operation = syncPlan.addTask(localTask);
+		} else if (googleTasksByGoogleId.containsKey(googleId)) {
+			operation = this.planMerge(localTask, googleTasksByGoogleId.get(googleId));
+		} else if (SyncHelper.contentHashOf(localTask).equals(SyncHelper.contentHashOf(syncedVersion))) {
+			operation = null; //changed back to what it was at the last sync
+		} else { //not changed in the google schedule since the last sync
+			operation = syncPlan.updateTask(localTask, ThreeWayMerge.getChangedFields(syncedVersion, localTask));
+		}
+		
+		operationsByTaskId.put(localTask.getTaskId(), operation);
+		return operation;
+	}
+	
+	/**
+	 * Merges a local task with the version retrieved from the google schedule. The fields changed locally 
+	 * are sent, and the fields changed in the google schedule are written to the local task.
+	 * @return operation that sends the fields changed locally, or null if there are none
+	 */
+	private SyncOperation planMerge(Task localTask, Task googleTask) {
+		mergedGoogleIds.add(googleTask.getGoogleId());
+		String googleHash = SyncHelper.contentHashOf(googleTask);
+		if (googleHash.equals(SyncHelper.contentHashOf(localTask))) {
+			if (!googleHash.equals(SyncHelper.contentHashOf(localTask.getSyncedVersion()))) {
+				tasksToMarkSynced.add(localTask);
 			}
+			return null;
 		}
+		
+		ThreeWayMerge merge = new ThreeWayMerge(localTask.getSyncedVersion(), localTask, googleTask);
+		if (!merge.getConflictingFields().isEmpty()) {
+			syncPlan.addConflict(new SyncConflict(localTask, googleTask, merge.getConflictingFields(), 
+					!merge.isGoogleTaskLater()));
+		}
+		
+		Task mergedTask = merge.getMergedTask();
+		if (!merge.getFieldsToApply().isEmpty()) {
+			//both schedules hold the google version until the fields changed locally are sent
+			mergedTask.setSyncedVersion(SyncHelper.syncedVersionOf(googleTask));
+			syncPlan.updateLocalTask(mergedTask);
+		}
+		if (merge.getFieldsToSend().isEmpty()) {
+			return null;
+		}
+		return syncPlan.updateTask(mergedTask, merge.getFieldsToSend());
 	}
-
-	private void syncAdditionalTasksFromGoogleSchedule() throws Exception {
-		ArrayList<Task> googleTasks = googleSchedule.retrieveAllTasks();
-		for (Task googleTask : googleTasks) {
-
-			if (!this.hasTask(googleTask)) {
-				if (googleTask.getDateModified().isAfter(lastSyncDate)) {
-					googleTask.updateDateModified();
-					try {
-						dataBase.addTask(googleTask);
-					} catch (Exception e) {
-						throw new Exception("Failed to add task into local schedule");
-					}
+	
+	/**
+	 * Plans the changes retrieved from the google schedule for local tasks that were not merged with them 
+	 * yet. A google task whose fields are the same as the synced version of the local task is not applied, 
+	 * since only its date modified changed.
+	 */
+	private void planGoogleChanges() {
+		HashMap<String, Task> localTasksByGoogleId = this.getLocalTasksByGoogleId();
+		
+		for (Task googleTask : googleTasksByGoogleId.values()) {
+			Task localTask = localTasksByGoogleId.get(googleTask.getGoogleId());
+			if (localTask == null) {
+				if (!locallyDeletedGoogleIds.contains(googleTask.getGoogleId())) {
+					syncPlan.addLocalTask(googleTask);
 				}
-				//task was added but later deleted. Delete from gcal.
-				else if (googleTask.getDateModified().isBefore(lastSyncDate)) {
-					googleSchedule.deleteTask(googleTask);
+			} else if (!mergedGoogleIds.contains(googleTask.getGoogleId()) 
+					&& operationsByTaskId.get(localTask.getTaskId()) == null) {
+				SyncOperation operation = this.planMerge(localTask, googleTask);
+				if (operation != null) {
+					operationsByTaskId.put(localTask.getTaskId(), operation);
 				}
 			}
 		}
+		
+		for (Task localTask : localTasksByGoogleId.values()) {
+			if (this.isMissingFromGoogleSchedule(localTask.getGoogleId()) 
+					&& !operationsByTaskId.containsKey(localTask.getTaskId())) {
+				syncPlan.deleteLocalTask(localTask);
+			}
+		}
 	}
-
-	private void syncTask(Task localTask, Task googleTask) {
-		if (googleTask.getDateModified().isAfter(localTask.getDateModified())) {
-			googleTask.setTaskId(localTask.getTaskId());
-			googleTask.setGoogleId(localTask.getGoogleId());
-			googleTask.setDateCreated(localTask.getDateCreated());
-			googleTask.setDateModified(localTask.getDateModified());
-			try {
-				dataBase.updateTask(googleTask);
-			} catch (Exception e) {
-				e.printStackTrace();
+	
+	/**
+	 * Applies the planned changes from the google schedule to the local schedule, recording the synced 
+	 * version of every task written. The tasks are written together, so that the local schedule is saved 
+	 * once for each kind of change rather than once for every task.
+	 * @throws Exception if a local task to be written was changed since the sync was planned
+	 */
+	private void applyGoogleChanges() throws Exception {
+		synchronized (dataBase) {
+			this.checkForChangesSincePlanned();
+			this.writeGoogleChanges();
+		}
+	}
+	
+	private void checkForChangesSincePlanned() throws Exception {
+		HashSet<Integer> taskIdsToWrite = new HashSet<Integer>();
+		for (Task localTask : syncPlan.getLocalTasksToUpdate()) {
+			taskIdsToWrite.add(localTask.getTaskId());
+		}
+		for (Task localTask : syncPlan.getLocalTasksToDelete()) {
+			taskIdsToWrite.add(localTask.getTaskId());
+		}
+		
+		for (PendingChange pendingChange : dataBase.retrievePendingChanges()) {
+			if (pendingChange.getSequenceNumber() > lastPlannedSequenceNumber 
+					&& taskIdsToWrite.contains(pendingChange.getTaskId())) {
+				throw new Exception(MESSAGE_CHANGED_DURING_SYNC);
 			}
-		} else if (googleTask.getDateModified().isBefore(
-				localTask.getDateModified())) {
-			googleSchedule.updateTask(localTask);
 		}
 	}
-
-	private boolean hasTask(Task googleTask) {
-		ArrayList<Task> allTasksInDb = dataBase.retrieveAll();
-
-		if (allTasksInDb == null) {
-			return false;
+	
+	private void writeGoogleChanges() throws Exception {
+		for (Task googleTask : syncPlan.getLocalTasksToAdd()) {
+			googleTask.updateDateModified();
+			googleTask.setSyncedVersion(SyncHelper.syncedVersionOf(googleTask));
+		}
+		try {
+			dataBase.addTasks(syncPlan.getLocalTasksToAdd());
+		} catch (Exception e) {
+			throw new Exception("Failed to add task into local schedule");
+		}
+		
+		ArrayList<Task> tasksToUpdate = new ArrayList<Task>(syncPlan.getLocalTasksToUpdate());
+		for (Task syncedTask : tasksToMarkSynced) {
+			Task localTask = dataBase.getTask(syncedTask.getTaskId());
+			if (localTask != null) {
+				localTask.setSyncedVersion(SyncHelper.syncedVersionOf(syncedTask));
+				tasksToUpdate.add(localTask);
+			}
+		}
+		dataBase.updateTasks(tasksToUpdate);
+		
+		ArrayList<Integer> taskIdsToDelete = new ArrayList<Integer>();
+		for (Task localTask : syncPlan.getLocalTasksToDelete()) {
+			taskIdsToDelete.add(localTask.getTaskId());
 		}
+		dataBase.deleteTasks(taskIdsToDelete);
+	}
 
-		for (Task task : allTasksInDb) {
-			if (task.getGoogleId() == null) {
+	private HashMap<String, Task> getLocalTasksByGoogleId() {
+		HashMap<String, Task> localTasksByGoogleId = new HashMap<String, Task>();
+		for (Task task : localTasksById.values()) {
+			if (task.getGoogleId() != null) {
+				localTasksByGoogleId.put(task.getGoogleId(), task);
+			}
+		}
+		
+		return localTasksByGoogleId;
+	}
 
-			} else {
-				if (task.getGoogleId().equals(googleTask.getGoogleId())) {
-					return true;
-				}
+	/**
+	 * Removes the pending changes that were sent, or that had nothing to send, from the outbox.
+	 */
+	private void acknowledgePendingChanges() {
+		ArrayList<Long> sentChanges = new ArrayList<Long>();
+		for (PendingChange pendingChange : pendingChanges) {
+			SyncOperation operation = operationsOfPendingChanges.get(pendingChange.getSequenceNumber());
+			if (pendingChange.getFailure() == null && (operation == null || operation.isDone())) {
+				sentChanges.add(pendingChange.getSequenceNumber());
 			}
 		}
+		dataBase.acknowledgePendingChanges(sentChanges);
+	}
 
-		return false;
+	/**
+	 * Parks the pending changes whose writes google rejected in the outbox, with the reason. The first write 
+	 * of a task that was never synced and had no pending change is parked as an ADD.
+	 */
+	private void parkRejectedChanges() {
+		ArrayList<PendingChange> rejectedChanges = new ArrayList<PendingChange>();
+		for (PendingChange pendingChange : pendingChanges) {
+			SyncOperation operation = operationsOfPendingChanges.get(pendingChange.getSequenceNumber());
+			if (operation != null && operation.isRejected()) {
+				PendingChange rejectedChange = new PendingChange(pendingChange.getType(), pendingChange);
+				rejectedChange.setSequenceNumber(pendingChange.getSequenceNumber());
+				rejectedChange.setFailure(operation.getFailure());
+				rejectedChanges.add(rejectedChange);
+			}
+		}
+		
+		HashSet<SyncOperation> operationsOfOutbox = new HashSet<SyncOperation>(operationsOfPendingChanges.values());
+		for (SyncOperation operation : syncPlan.getRejectedOperations()) {
+			if (!operationsOfOutbox.contains(operation) && operation.getTask() != null) {
+				PendingChange rejectedChange = new PendingChange(TypeOfOperation.ADD, operation.getTask());
+				rejectedChange.setFailure(operation.getFailure());
+				rejectedChanges.add(rejectedChange);
+			}
+		}
+		dataBase.parkPendingChanges(rejectedChanges);
 	}
-	
+
 	private void initializeLastSyncDate() {
 		if (dataBase.getProperty(PROPERTY_NAME_LAST_SYNC) != null) {
 			lastSyncDate = new DateTime(dataBase.getProperty(PROPERTY_NAME_LAST_SYNC));
@@ -163,39 +693,77 @@ public class SyncController {
 	private void updateLastSyncDate() {
 		lastSyncDate = new DateTime();
 		dataBase.setProperty(PROPERTY_NAME_LAST_SYNC, lastSyncDate.toString());
+		
+		if (googleChanges.getCalendarSyncToken() != null) {
+			dataBase.setProperty(PROPERTY_NAME_CALENDAR_SYNC_TOKEN, googleChanges.getCalendarSyncToken());
+		}
+		dataBase.setProperty(PROPERTY_NAME_TASKS_UPDATED_MIN, googleChanges.getTasksUpdatedMin());
+		this.saveGoogleIds();
+		this.clearSyncState();
+	}
+	
+	private void clearSyncState() {
+		googleChanges = null;
+		googleTasksByGoogleId = null;
+		deletedGoogleIds = null;
+		syncPlan = null;
+		pendingChanges = null;
+		operationsOfPendingChanges = null;
+		operationsByTaskId = null;
+		locallyDeletedGoogleIds = null;
+		tasksToMarkSynced = null;
+		mergedGoogleIds = null;
+		localTasksById = null;
 	}
 	
 	private class SyncWorker extends SwingWorker<Void, String>{
 		private View view;
 		private SyncController syncController;
+		private boolean isPreview;
 		
-		public SyncWorker(SyncController syncController, View view) throws IOException {
+		/**
+		 * @param isPreview true to only show the plan of the sync
+		 */
+		public SyncWorker(SyncController syncController, View view, boolean isPreview) throws IOException {
 			this.syncController = syncController;
 			this.view = view;
+			this.isPreview = isPreview;
 		}
 		
 		@Override
 		protected Void doInBackground() throws Exception {
 			view.disableInput();
 			try {
-			publish(MESSAGE_SYNC_FROM_LOCAL);
-			syncController.syncAdditionalTasksFromLocalSchedule();
-			
-			publish(MESSAGE_SYNC_EXISTING);
-			syncController.syncTasksThatExistInBothSchedule();
-			
-			publish(MESSAGE_SYNC_FROM_GOOGLE);
-			syncController.syncAdditionalTasksFromGoogleSchedule();
-			
-			syncController.updateLastSyncDate();
-			publish(String.format(MESSAGE_SYNC, new DateTime().toString(DATE_FORMAT_FOR_LAST_SYNC)));
+				if (isPreview) {
+					if (syncController.googleSchedule == null) {
+						publish(MESSAGE_CONNECT_TO_GOOGLE);
+						syncController.connectToGoogleSchedule();
+					}
+					this.publishPlan(syncController.planSync(this));
+				} else {
+					syncController.sync(this);
+					publish(String.format(MESSAGE_SYNC, new DateTime().toString(DATE_FORMAT_FOR_LAST_SYNC)));
+				}
 			} catch (Exception e) {
-				publish("Sync is unsuccessful, please try again");
+				String reason = getReasonOfFailure(e);
+				publish((reason == null) ? MESSAGE_SYNC_UNSUCCESSFUL 
+						: String.format(MESSAGE_SYNC_UNSUCCESSFUL_WITH_REASON, reason));
 			}
 			view.enableInput();
 			return null;
 		}
 		
+		private void publishPlan(SyncPlan plannedSync) {
+			publish(String.format(MESSAGE_SYNC_PLAN, plannedSync.getSummary()));
+			for (SyncConflict conflict : plannedSync.getConflicts()) {
+				publish(String.format(MESSAGE_SYNC_CONFLICT, conflict));
+			}
+		}
+		
+		private void publishProgress(String progress) {
+			publish(progress);
+		}
+		
 		@Override
 		protected void process(final List<String> chunks) {
 			// Updates the messages text area
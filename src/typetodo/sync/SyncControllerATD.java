@@ -0,0 +1,422 @@
+package typetodo.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import typetodo.db.DbController;
+import typetodo.logic.Schedule;
+import typetodo.model.DeadlineTask;
+import typetodo.model.FieldName;
+import typetodo.model.FloatingTask;
+import typetodo.model.PendingChange;
+import typetodo.model.SyncMetrics;
+import typetodo.model.Task;
+import typetodo.model.TypeOfOperation;
+
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+
+/**
+ * Tests the two way sync, and its batched writes, against a GoogleStandInServer. Every local task is removed before and after
+ * each test.
+ * @author A0091024U
+ *
+ */
+public class SyncControllerATD {
+	private static final String[] PROPERTY_NAMES = { "lastSyncDate", "calendarSyncToken", "tasksUpdatedMin",
+		"syncBatchSize" };
+	private static final String EVENTS_PATH = "/calendar/v3/calendars/" + GoogleStandInServer.CALENDAR_ID + "/events";
+	private static final String TASKS_PATH = "/tasks/v1/lists/" + GoogleStandInServer.TASK_LIST_ID + "/tasks";
+
+	private GoogleStandInServer server;
+	private DbController dataBase;
+	private Schedule schedule;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new GoogleStandInServer();
+		server.setPageSize(2);
+		dataBase = DbController.getInstance();
+		schedule = new Schedule();
+		clearDataBase();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+		clearDataBase();
+	}
+
+	private void clearDataBase() {
+		for (Task task : dataBase.retrieveAll()) {
+			dataBase.deleteTask(task.getTaskId());
+		}
+		for (String propertyName : PROPERTY_NAMES) {
+			dataBase.setProperty(propertyName, null);
+		}
+		ArrayList<Long> sequenceNumbers = new ArrayList<Long>();
+		for (PendingChange pendingChange : dataBase.retrievePendingChanges()) {
+			sequenceNumbers.add(pendingChange.getSequenceNumber());
+		}
+		dataBase.acknowledgePendingChanges(sequenceNumbers);
+	}
+
+	@Test
+	public void SyncJoinsTasksWithoutRetrievingThemOneByOne() throws Exception {
+		Event remoteEvent = server.putEvent(createEvent("remote event"));
+		server.putEvent(createEvent("another remote event"));
+		server.putTask(new com.google.api.services.tasks.model.Task().setTitle("remote floating"));
+		schedule.addTask(new DeadlineTask("local deadline", "", new DateTime().plusDays(1)));
+		FloatingTask localFloating = new FloatingTask("local floating", "");
+		schedule.addTask(localFloating);
+
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+
+		assertEquals(5, dataBase.retrieveAll().size());
+		assertEquals(0, server.getNumberOfSingleItemRequests("GET"));
+		assertEquals(0, server.getNumberOfRequests("POST", EVENTS_PATH) + server.getNumberOfRequests("POST", TASKS_PATH));
+		assertEquals(2, server.getNumberOfBatchedRequests());
+		assertNotNull(server.getTask(localFloating.getGoogleId()));
+
+		// Second sync only retrieves the changes
+		server.resetNumberOfRequests();
+		server.putEvent(remoteEvent.setSummary("remote event updated"));
+		schedule.updateTask(localFloating.getTaskId(), FieldName.TITLE, "local floating updated");
+
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+
+		assertEquals(0, server.getNumberOfSingleItemRequests("GET"));
+		assertEquals(0, server.getNumberOfSingleItemRequests("PUT"));
+		assertEquals("local floating updated", server.getTask(localFloating.getGoogleId()).getTitle());
+		ArrayList<String> titles = new ArrayList<String>();
+		for (Task task : dataBase.retrieveAll()) {
+			titles.add(task.getTitle());
+		}
+		assertEquals(5, titles.size());
+		assertEquals(true, titles.contains("remote event updated"));
+		assertEquals(true, titles.contains("local floating updated"));
+		assertEquals(0, dataBase.retrievePendingChanges().size());
+	}
+
+	@Test
+	public void OutboxKeepsOneChangeOfEachTask() throws Exception {
+		FloatingTask localFloating = new FloatingTask("local floating", "");
+		schedule.addTask(localFloating);
+		schedule.updateTask(localFloating.getTaskId(), FieldName.TITLE, "updated once");
+		schedule.updateTask(localFloating.getTaskId(), FieldName.TITLE, "updated twice");
+		FloatingTask deletedBeforeSync = new FloatingTask("deleted before sync", "");
+		schedule.addTask(deletedBeforeSync);
+		schedule.deleteTaskById(deletedBeforeSync.getTaskId());
+
+		ArrayList<PendingChange> pendingChanges = dataBase.retrievePendingChanges();
+		assertEquals(1, pendingChanges.size());
+		assertEquals(TypeOfOperation.ADD, pendingChanges.get(0).getType());
+		assertEquals(localFloating.getTaskId(), pendingChanges.get(0).getTaskId());
+		long lastSequenceNumber = pendingChanges.get(0).getSequenceNumber();
+
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+		assertEquals(1, server.getNumberOfRequests("POST", TASKS_PATH) + server.getNumberOfBatchedRequests());
+		String googleId = dataBase.getTask(localFloating.getTaskId()).getGoogleId();
+
+		schedule.updateTask(localFloating.getTaskId(), FieldName.TITLE, "updated after sync");
+		schedule.deleteTaskById(localFloating.getTaskId());
+
+		pendingChanges = dataBase.retrievePendingChanges();
+		assertEquals(1, pendingChanges.size());
+		assertEquals(TypeOfOperation.DELETE, pendingChanges.get(0).getType());
+		assertEquals(googleId, pendingChanges.get(0).getGoogleId());
+		assertTrue(pendingChanges.get(0).getSequenceNumber() > lastSequenceNumber);
+	}
+
+	@Test
+	public void SyncSendsOnlyPendingChanges() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			schedule.addTask(new DeadlineTask("local deadline " + i, "", new DateTime().plusDays(1)));
+		}
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+		Task deletedTask = dataBase.retrieveAll().get(0);
+		Task updatedTask = dataBase.retrieveAll().get(1);
+
+		server.resetNumberOfRequests();
+		schedule.deleteTaskById(deletedTask.getTaskId());
+		schedule.updateTask(updatedTask.getTaskId(), FieldName.TITLE, "updated once");
+		schedule.updateTask(updatedTask.getTaskId(), FieldName.TITLE, "updated twice");
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+
+		// the two updates of the same task are sent as one
+		assertEquals(2, server.getNumberOfBatchedRequests());
+		assertEquals("cancelled", server.getEvent(deletedTask.getGoogleId()).getStatus());
+		assertEquals("updated twice", server.getEvent(updatedTask.getGoogleId()).getSummary());
+		assertEquals(2, dataBase.retrieveAll().size());
+		assertEquals(0, dataBase.retrievePendingChanges().size());
+	}
+
+	@Test
+	public void SyncSkipsTasksWhoseContentDidNotChange() throws Exception {
+		DeadlineTask localDeadline = new DeadlineTask("local deadline", "", new DateTime().plusDays(1));
+		schedule.addTask(localDeadline);
+		FloatingTask localFloating = new FloatingTask("local floating", "");
+		schedule.addTask(localFloating);
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+
+		// only the date modified changes in both schedules
+		server.resetNumberOfRequests();
+		server.putEvent(server.getEvent(localDeadline.getGoogleId()));
+		schedule.updateTask(localFloating.getTaskId(), FieldName.TITLE, "local floating");
+		DateTime dateModified = dataBase.getTask(localDeadline.getTaskId()).getDateModified();
+
+		SyncPlan plan = new SyncController(null, server.createGoogleSchedule()).planSync(null);
+		assertEquals("google: 0 adds, 0 updates, 0 deletes; local: 0 adds, 0 updates, 0 deletes; 0 conflicts", 
+				plan.getSummary());
+		assertEquals(1, dataBase.retrievePendingChanges().size());
+
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+		assertEquals(0, server.getNumberOfBatchedRequests());
+		assertEquals(dateModified, dataBase.getTask(localDeadline.getTaskId()).getDateModified());
+		assertEquals(0, dataBase.retrievePendingChanges().size());
+	}
+
+	@Test
+	public void SyncPlanKeepsTheLaterChangeOfAConflict() throws Exception {
+		DeadlineTask localDeadline = new DeadlineTask("local deadline", "", new DateTime().plusDays(1));
+		schedule.addTask(localDeadline);
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+
+		server.putEvent(server.getEvent(localDeadline.getGoogleId()).setSummary("changed in google"));
+		schedule.updateTask(localDeadline.getTaskId(), FieldName.TITLE, "changed locally");
+
+		SyncPlan plan = new SyncController(null, server.createGoogleSchedule()).planSync(null);
+		assertEquals(1, plan.getConflicts().size());
+		assertEquals(true, plan.getConflicts().get(0).isLocalTaskKept());
+		assertEquals(1, plan.getOperations(TypeOfOperation.EDIT).size());
+		assertEquals("changed in google", server.getEvent(localDeadline.getGoogleId()).getSummary());
+
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+		assertEquals("changed locally", server.getEvent(localDeadline.getGoogleId()).getSummary());
+		assertEquals("changed locally", dataBase.getTask(localDeadline.getTaskId()).getTitle());
+	}
+
+	@Test
+	public void SyncMergesFieldsChangedInBothSchedules() throws Exception {
+		DeadlineTask localDeadline = new DeadlineTask("local deadline", "", new DateTime().plusDays(1));
+		schedule.addTask(localDeadline);
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+
+		server.putEvent(server.getEvent(localDeadline.getGoogleId()).setDescription("changed in google"));
+		schedule.updateTask(localDeadline.getTaskId(), FieldName.TITLE, "changed locally");
+
+		SyncPlan plan = new SyncController(null, server.createGoogleSchedule()).planSync(null);
+		assertEquals(0, plan.getConflicts().size());
+		assertEquals(1, plan.getLocalTasksToUpdate().size());
+		assertEquals(EnumSet.of(FieldName.TITLE), plan.getOperations(TypeOfOperation.EDIT).get(0).getChangedFields());
+
+		server.resetNumberOfRequests();
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+
+		// only the title is sent, without overwriting the description changed in google
+		assertEquals(1, server.getNumberOfBatchedRequests("PATCH"));
+		assertEquals(0, server.getNumberOfBatchedRequests("PUT"));
+		Event event = server.getEvent(localDeadline.getGoogleId());
+		assertEquals("changed locally", event.getSummary());
+		assertEquals("changed in google", event.getDescription());
+		Task mergedTask = dataBase.getTask(localDeadline.getTaskId());
+		assertEquals("changed locally", mergedTask.getTitle());
+		assertEquals("changed in google", mergedTask.getDescription());
+		assertEquals(0, dataBase.retrievePendingChanges().size());
+
+		// both schedules now hold the merged task, so the next sync has nothing to write
+		server.resetNumberOfRequests();
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+		assertEquals(0, server.getNumberOfBatchedRequests());
+	}
+
+	@Test
+	public void SyncRunsAgainstAnInMemorySchedule() throws Exception {
+		InMemorySchedule remoteSchedule = new InMemorySchedule();
+		remoteSchedule.setPageSize(2);
+		String remoteId = remoteSchedule.putTask(new FloatingTask("remote floating", ""));
+		for (int i = 0; i < 3; i++) {
+			remoteSchedule.putTask(new DeadlineTask("remote deadline " + i, "", new DateTime().plusDays(1)));
+		}
+		schedule.addTask(new DeadlineTask("local deadline", "", new DateTime().plusDays(1)));
+
+		remoteSchedule.failNextRequests(2);
+		new SyncController(null, remoteSchedule).sync(null);
+
+		assertEquals(5, dataBase.retrieveAll().size());
+		assertEquals(5, remoteSchedule.size());
+		// two pages of events, sent again after the failures, one page of floating tasks and one batch
+		assertEquals(6, remoteSchedule.getNumberOfRequests());
+
+		remoteSchedule.resetNumberOfRequests();
+		remoteSchedule.deleteTask(remoteId);
+		new SyncController(null, remoteSchedule).sync(null);
+
+		assertEquals(4, dataBase.retrieveAll().size());
+		assertEquals(2, remoteSchedule.getNumberOfRequests());
+	}
+
+	@Test
+	public void LocalChangesMadeWhileSyncingAreKeptAndSentNextTime() throws Exception {
+		final InMemorySchedule remoteSchedule = new InMemorySchedule();
+		String googleId = remoteSchedule.putTask(new FloatingTask("shared", ""));
+		new SyncController(null, remoteSchedule).sync(null);
+		final int taskId = dataBase.retrieveAll().get(0).getTaskId();
+
+		Task remoteTask = remoteSchedule.getTask(googleId);
+		remoteTask.setTitle("renamed remotely");
+		remoteSchedule.putTask(remoteTask);
+		schedule.addTask(new FloatingTask("local", ""));
+		// edits the task while the sync is sending the new local task
+		RemoteSchedule editingSchedule = new RemoteSchedule() {
+			@Override
+			public void setMaxResults(int maxResults) {
+			}
+
+			@Override
+			public void setMetrics(SyncMetrics metrics) {
+				remoteSchedule.setMetrics(metrics);
+			}
+
+			@Override
+			public GoogleChanges retrieveChanges(String calendarSyncToken, String tasksUpdatedMin,
+					GoogleItemConsumer consumer) throws IOException {
+				return remoteSchedule.retrieveChanges(calendarSyncToken, tasksUpdatedMin, consumer);
+			}
+
+			@Override
+			public void execute(SyncPlan plan, int batchSize, ProgressListener listener) throws IOException {
+				try {
+					schedule.updateTask(taskId, FieldName.DESCRIPTION, "edited while syncing");
+				} catch (Exception e) {
+					fail(e.getMessage());
+				}
+				remoteSchedule.execute(plan, batchSize, listener);
+			}
+		};
+		new SyncController(null, editingSchedule).sync(null);
+
+		Task localTask = dataBase.getTask(taskId);
+		assertEquals("renamed remotely", localTask.getTitle());
+		assertEquals("edited while syncing", localTask.getDescription());
+		assertEquals(1, dataBase.retrievePendingChanges().size());
+
+		new SyncController(null, remoteSchedule).sync(null);
+
+		assertEquals("renamed remotely", remoteSchedule.getTask(googleId).getTitle());
+		assertEquals("edited while syncing", remoteSchedule.getTask(googleId).getDescription());
+		assertEquals(0, dataBase.retrievePendingChanges().size());
+	}
+
+	@Test
+	public void SyncSendsWritesInBatchesAndRetriesFailedWrites() throws Exception {
+		dataBase.setProperty("syncBatchSize", "2");
+		for (int i = 0; i < 5; i++) {
+			dataBase.addTask(new DeadlineTask("local deadline " + i, "", new DateTime().plusDays(1)));
+		}
+		server.failNextWrites(2, 503);
+
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+
+		for (Task task : dataBase.retrieveAll()) {
+			assertNotNull(task.getGoogleId());
+			assertEquals(task.getTitle(), server.getEvent(task.getGoogleId()).getSummary());
+		}
+		// 3 batches of at most 2 writes, then 1 batch with the 2 failed writes
+		assertEquals(4, server.getNumberOfRequests("POST", "/batch"));
+		assertEquals(7, server.getNumberOfBatchedRequests());
+		assertEquals(0, server.getNumberOfRequests("POST", EVENTS_PATH));
+	}
+
+	@Test
+	public void SyncHistoryRecordsTheRequestsAndRetriesOfEachPhase() throws Exception {
+		server.putEvent(createEvent("remote event"));
+		for (int i = 0; i < 2; i++) {
+			schedule.addTask(new DeadlineTask("local deadline " + i, "", new DateTime().plusDays(1)));
+		}
+		server.failNextWrites(1, 503);
+
+		new SyncController(null, server.createGoogleSchedule()).sync(null);
+
+		ArrayList<SyncMetrics> history = dataBase.retrieveSyncHistory();
+		SyncMetrics metrics = history.get(history.size() - 1);
+		ArrayList<String> phaseNames = new ArrayList<String>();
+		for (SyncMetrics.Phase phase : metrics.getPhases()) {
+			phaseNames.add(phase.getName());
+		}
+		assertEquals(Arrays.asList("retrieve", "plan", "apply", "send"), phaseNames);
+
+		SyncMetrics.Phase retrieve = metrics.getPhases().get(0);
+		assertEquals(1, retrieve.getItemsTouched());
+		SyncMetrics.Endpoint events = retrieve.getEndpoints().get("GET calendar/events");
+		assertEquals(server.getNumberOfRequests("GET", EVENTS_PATH), events.getCalls());
+		assertTrue(events.getBytesIn() > 0);
+		assertNotNull(retrieve.getEndpoints().get("GET tasks/tasks"));
+
+		SyncMetrics.Phase send = metrics.getPhases().get(3);
+		assertEquals(2, send.getItemsTouched());
+		assertEquals(1, send.getRetries());
+		SyncMetrics.Endpoint batches = send.getEndpoints().get("POST batch");
+		assertEquals(server.getNumberOfRequests("POST", "/batch"), batches.getCalls());
+		assertTrue(batches.getBytesOut() > 0);
+	}
+
+	@Test
+	public void RejectedWritesAreParkedWithoutHoldingBackTheSync() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			schedule.addTask(new DeadlineTask("local deadline " + i, "", new DateTime().plusDays(1)));
+		}
+		server.failNextWrites(1, 400);
+		SyncController syncController = new SyncController(null, server.createGoogleSchedule());
+
+		syncController.sync(null);
+
+		Task rejectedTask = null;
+		for (Task task : dataBase.retrieveAll()) {
+			if (task.getGoogleId() == null) {
+				assertNull(rejectedTask);
+				rejectedTask = task;
+			}
+		}
+		assertNotNull(rejectedTask);
+		ArrayList<PendingChange> pendingChanges = dataBase.retrievePendingChanges();
+		assertEquals(1, pendingChanges.size());
+		assertEquals(rejectedTask.getTaskId(), pendingChanges.get(0).getTaskId());
+		assertTrue(pendingChanges.get(0).getFailure().startsWith("400"));
+		assertNotNull(dataBase.getProperty("lastSyncDate"));
+		assertNotNull(dataBase.getProperty("tasksUpdatedMin"));
+		assertTrue(syncController.getStatus().contains("1 changes rejected"));
+
+		// The rejected write is not sent again until its task is changed
+		syncController.sync(null);
+		assertEquals(1, server.getNumberOfRequests("POST", "/batch"));
+		assertEquals(1, dataBase.retrievePendingChanges().size());
+
+		rejectedTask.setDescription("fixed");
+		schedule.updateTask(rejectedTask);
+		syncController.sync(null);
+		assertEquals(2, server.getNumberOfRequests("POST", "/batch"));
+		assertNotNull(dataBase.getTask(rejectedTask.getTaskId()).getGoogleId());
+		assertEquals(0, dataBase.retrievePendingChanges().size());
+	}
+
+	private static Event createEvent(String title) {
+		DateTime start = new DateTime().plusDays(2);
+		return new Event().setSummary(title)
+				.setStart(new EventDateTime().setDateTime(SyncHelper.toGoogleDateTime(start)))
+				.setEnd(new EventDateTime().setDateTime(SyncHelper.toGoogleDateTime(start.plusHours(1))));
+	}
+}
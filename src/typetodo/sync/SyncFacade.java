@@ -0,0 +1,109 @@
+package typetodo.sync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import typetodo.db.DbController;
+import typetodo.model.SyncMetrics;
+import typetodo.ui.View;
+
+/**
+ * The SyncFacade is how the rest of TypeToDo reaches the sync. The SyncController and SyncScheduler, and through
+ * them the Google client stack, are only created and loaded when a sync command is first given, or at startup if
+ * automatic sync is on, so that a session that never syncs does not pay for them.
+ * @author A0091024U
+ *
+ */
+public class SyncFacade {
+	private static final String MESSAGE_NO_HISTORY = "No sync has been recorded yet";
+	private static final String SEPARATOR_OF_SYNCS = "\n";
+
+	private final View view;
+	private SyncController syncController;
+	private SyncScheduler syncScheduler;
+
+	/**
+	 * The tasks changed by a background sync are published by the local schedule, see Schedule.subscribe.
+	 */
+	public SyncFacade(View view) {
+		this.view = view;
+	}
+
+	/**
+	 * Starts automatic sync if it was turned on in an earlier session, without loading the sync otherwise.
+	 * @throws IOException
+	 */
+	public void startAutomaticSync() throws IOException {
+		if (DbController.getInstance().getProperty(SyncScheduler.PROPERTY_NAME_INTERVAL) != null) {
+			this.getSyncScheduler().start();
+		}
+	}
+
+	/**
+	 * Syncs the local schedule with the Google schedule on a separate thread.
+	 * @throws Exception
+	 */
+	public void twoWaySync() throws Exception {
+		this.getSyncController().twoWaySync();
+	}
+
+	/**
+	 * Shows what the next sync would change in both schedules, without changing either of them.
+	 * @throws Exception
+	 */
+	public void previewSync() throws Exception {
+		this.getSyncController().previewSync();
+	}
+
+	/**
+	 * @return whether automatic sync is on, and the status of the last sync
+	 * @throws IOException
+	 */
+	public String getStatus() throws IOException {
+		return this.getSyncScheduler().getStatus();
+	}
+
+	/**
+	 * Describes the latest syncs from the sync history, which is read without loading the sync.
+	 * @param numberOfSyncs maximum number of syncs described
+	 * @return the wall time, requests, retries and items touched of each phase of the latest syncs, latest first
+	 * @throws IOException
+	 */
+	public String getHistory(int numberOfSyncs) throws IOException {
+		ArrayList<SyncMetrics> history = DbController.getInstance().retrieveSyncHistory();
+		if (history.isEmpty()) {
+			return MESSAGE_NO_HISTORY;
+		}
+
+		StringBuilder description = new StringBuilder();
+		for (int index = history.size() - 1; index >= Math.max(0, history.size() - numberOfSyncs); index--) {
+			if (description.length() > 0) {
+				description.append(SEPARATOR_OF_SYNCS);
+			}
+			description.append(history.get(index));
+		}
+		return description.toString();
+	}
+
+	/**
+	 * @param intervalMinutes minutes between automatic syncs, or 0 to turn automatic sync off
+	 * @throws IOException
+	 */
+	public void setAutomaticSyncInterval(long intervalMinutes) throws IOException {
+		this.getSyncScheduler().setIntervalMinutes(intervalMinutes);
+	}
+
+	private synchronized SyncController getSyncController() throws IOException {
+		if (syncController == null) {
+			syncController = new SyncController(view);
+		}
+		return syncController;
+	}
+
+	private synchronized SyncScheduler getSyncScheduler() throws IOException {
+		if (syncScheduler == null) {
+			syncScheduler = new SyncScheduler(this.getSyncController());
+		}
+		return syncScheduler;
+	}
+}
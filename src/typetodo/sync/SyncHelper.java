@@ -1,9 +1,15 @@
 package typetodo.sync;
 
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
 
 import typetodo.model.DeadlineTask;
+import typetodo.model.FieldName;
 import typetodo.model.FloatingTask;
 import typetodo.model.Task;
 import typetodo.model.TimedTask;
@@ -20,31 +26,150 @@ import com.google.api.services.calendar.model.EventDateTime;
  *
  */
 public class SyncHelper {
-	private static final String DATE_FORMAT_RFC3339 = "yyyy-MM-dd'T'H:mm:ss.SSSZZ";
-	
-	private static final DateTimeFormatter fmt = DateTimeFormat.forPattern(DATE_FORMAT_RFC3339);
+	private static final int MILLIS_PER_MINUTE = 60 * 1000;
+	private static final String HASH_ALGORITHM = "SHA-1";
+	private static final String HASH_CHARSET = "UTF-8";
+	private static final char HASH_SEPARATOR = '\n';
 	
 	/**
-	 * Converts Google's DateTime format into Joda's DateTime format.
+	 * Converts Google's DateTime format into Joda's DateTime format, from the milliseconds since the epoch 
+	 * rather than through an RFC3339 string. 
 	 * @param googleDateTime Google's DateTime format
-	 * @return returns the equivalent Joda's DateTime format
+	 * @return returns the same instant in the local time zone, or the start of the day in the local time zone 
+	 * if only a date is given
 	 */
 	public static org.joda.time.DateTime toJodaDateTime(DateTime googleDateTime) {
-		org.joda.time.DateTime jodaDateTime = fmt.parseDateTime(googleDateTime.toStringRfc3339());
-		return jodaDateTime;
+		if (googleDateTime.isDateOnly()) {
+			//Google keeps a date as midnight UTC of that day
+			return new LocalDate(googleDateTime.getValue(), DateTimeZone.UTC).toDateTimeAtStartOfDay();
+		}
+		return new org.joda.time.DateTime(googleDateTime.getValue());
 	}
 	
 	/**
-	 * Converts Joda's DateTime format into Google's DateTime format.
+	 * Converts Joda's DateTime format into Google's DateTime format, from the milliseconds since the epoch 
+	 * and the offset of the time zone at that instant rather than through an RFC3339 string.
 	 * @param jodaDateTime Joda's DateTime format
-	 * @return returns the equivalent Google's DateTime format
+	 * @return returns the same instant, shown in the time zone of the given DateTime
 	 */
 	public static DateTime toGoogleDateTime(org.joda.time.DateTime jodaDateTime) {
-		//System.out.println(jodaDateTime.toString());
-		DateTime googleDateTime = DateTime.parseRfc3339(jodaDateTime.toString());
-		return googleDateTime;
+		long millis = jodaDateTime.getMillis();
+		return new DateTime(millis, jodaDateTime.getZone().getOffset(millis) / MILLIS_PER_MINUTE);
 	}
 
+	/**
+	 * Returns a hash of the fields of a task that are synced with the Google Schedule: its type, title, 
+	 * description and times. Times are hashed to the second, since Google does not keep milliseconds, and 
+	 * the status is left out since it is not synced.
+	 * @param task local task, or a task converted from the Google Schedule, or null
+	 * @return hex string of the hash, or null if there is no task
+	 */
+	public static String contentHashOf(Task task) {
+		if (task == null) {
+			return null;
+		}
+		
+		StringBuilder content = new StringBuilder();
+		content.append(task.getClass().getSimpleName()).append(HASH_SEPARATOR);
+		content.append((task.getTitle() == null) ? "" : task.getTitle()).append(HASH_SEPARATOR);
+		content.append((task.getDescription() == null) ? "" : task.getDescription()).append(HASH_SEPARATOR);
+		if (task instanceof TimedTask) {
+			content.append(toSeconds(((TimedTask) task).getStart())).append(HASH_SEPARATOR);
+			content.append(toSeconds(((TimedTask) task).getEnd()));
+		} else if (task instanceof DeadlineTask) {
+			content.append(toSeconds(((DeadlineTask) task).getDeadline()));
+		}
+		
+		try {
+			byte[] hash = MessageDigest.getInstance(HASH_ALGORITHM).digest(content.toString().getBytes(HASH_CHARSET));
+			StringBuilder hexOfHash = new StringBuilder(hash.length * 2);
+			for (byte hashByte : hash) {
+				hexOfHash.append(Character.forDigit((hashByte >> 4) & 0xF, 16));
+				hexOfHash.append(Character.forDigit(hashByte & 0xF, 16));
+			}
+			return hexOfHash.toString();
+		} catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			throw new IllegalStateException(e); //every Java platform supports SHA-1 and UTF-8
+		}
+	}
+	
+	private static long toSeconds(org.joda.time.DateTime dateTime) {
+		return (dateTime == null) ? 0 : dateTime.getMillis() / 1000;
+	}
+
+	/**
+	 * Returns a copy of the fields of a task that are synced with the Google Schedule, to be kept as the 
+	 * base of the next three-way merge of the task.
+	 * @param task local task, or a task converted from the Google Schedule
+	 * @return task of the same type holding only the title, description and times of the given task
+	 */
+	public static Task syncedVersionOf(Task task) {
+		Task syncedVersion;
+		if (task instanceof TimedTask) {
+			syncedVersion = new TimedTask(task.getTitle(), task.getDescription(), 
+					((TimedTask) task).getStart(), ((TimedTask) task).getEnd());
+		} else if (task instanceof DeadlineTask) {
+			syncedVersion = new DeadlineTask(task.getTitle(), task.getDescription(), ((DeadlineTask) task).getDeadline());
+		} else {
+			syncedVersion = new FloatingTask(task.getTitle(), task.getDescription());
+		}
+		syncedVersion.setDateCreated(null);
+		syncedVersion.setDateModified(null);
+		syncedVersion.setStatus(null);
+		
+		return syncedVersion;
+	}
+	
+	/**
+	 * Converts the given fields of a DeadlineTask or TimedTask into a Google event that patches only 
+	 * those fields.
+	 * @param task DeadlineTask or TimedTask
+	 * @param fields fields to be written
+	 * @return returns a Google event with only the given fields set
+	 */
+	public static Event toGoogleEventPatch(Task task, Set<FieldName> fields) {
+		Event patch = new Event();
+		if (fields.contains(FieldName.TITLE)) {
+			patch.setSummary(task.getTitle());
+		}
+		if (fields.contains(FieldName.DESCRIPTION)) {
+			patch.setDescription(task.getDescription());
+		}
+		
+		if (task instanceof DeadlineTask && fields.contains(FieldName.DEADLINE)) {
+			DateTime deadline = toGoogleDateTime(((DeadlineTask) task).getDeadline());
+			patch.setStart(new EventDateTime().setDateTime(deadline));
+			patch.setEnd(new EventDateTime().setDateTime(deadline));
+		} else if (task instanceof TimedTask) {
+			if (fields.contains(FieldName.START)) {
+				patch.setStart(new EventDateTime().setDateTime(toGoogleDateTime(((TimedTask) task).getStart())));
+			}
+			if (fields.contains(FieldName.END)) {
+				patch.setEnd(new EventDateTime().setDateTime(toGoogleDateTime(((TimedTask) task).getEnd())));
+			}
+		}
+		
+		return patch;
+	}
+	
+	/**
+	 * Converts the given fields of a FloatingTask into a Google Task that patches only those fields.
+	 * @param task FloatingTask
+	 * @param fields fields to be written
+	 * @return returns a Google Task with only the given fields set
+	 */
+	public static com.google.api.services.tasks.model.Task toGoogleTaskPatch(FloatingTask task, Set<FieldName> fields) {
+		com.google.api.services.tasks.model.Task patch = new com.google.api.services.tasks.model.Task();
+		if (fields.contains(FieldName.TITLE)) {
+			patch.setTitle(task.getTitle());
+		}
+		if (fields.contains(FieldName.DESCRIPTION)) {
+			patch.setNotes(task.getDescription());
+		}
+		
+		return patch;
+	}
+	
 	/**
 	 * Converts the given local FloatingTask into a Google Task.
 	 * @param task FloatingTask
@@ -0,0 +1,98 @@
+package typetodo.sync;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.api.client.util.DateTime;
+
+/**
+ * Tests that the conversions of SyncHelper between Google and Joda DateTimes give the same results as the
+ * RFC3339 string round trips they replaced, for random instants, offsets and time zones.
+ * @author A0091024U
+ *
+ */
+public class SyncHelperATD {
+	private static final int NUMBER_OF_SAMPLES = 20000;
+	private static final long START_OF_1970 = 0;
+	private static final long START_OF_2100 = 4102444800000L;
+	private static final int MAX_OFFSET_IN_MINUTES = 14 * 60;
+	private static final String[] DEFAULT_ZONES = { "UTC", "Asia/Singapore", "America/New_York", "Asia/Kolkata" };
+	private static final DateTimeFormatter RFC3339 = DateTimeFormat.forPattern("yyyy-MM-dd'T'H:mm:ss.SSSZZ");
+
+	private Random random;
+	private DateTimeZone defaultZone;
+
+	@Before
+	public void setUp() {
+		random = new Random(0);
+		defaultZone = DateTimeZone.getDefault();
+	}
+
+	@After
+	public void tearDown() {
+		DateTimeZone.setDefault(defaultZone);
+	}
+
+	@Test
+	public void GoogleDateTimesAreConvertedAsByTheirRfc3339String() {
+		for (String zoneId : DEFAULT_ZONES) {
+			DateTimeZone.setDefault(DateTimeZone.forID(zoneId));
+			for (int i = 0; i < NUMBER_OF_SAMPLES; i++) {
+				int offsetInMinutes = (random.nextInt(2 * MAX_OFFSET_IN_MINUTES / 15 + 1) * 15) - MAX_OFFSET_IN_MINUTES;
+				DateTime googleDateTime = new DateTime(randomMillis(), offsetInMinutes);
+
+				org.joda.time.DateTime expected = RFC3339.parseDateTime(googleDateTime.toStringRfc3339());
+				org.joda.time.DateTime converted = SyncHelper.toJodaDateTime(googleDateTime);
+				assertEquals(googleDateTime.toStringRfc3339(), expected, converted);
+			}
+		}
+	}
+
+	@Test
+	public void JodaDateTimesAreConvertedAsByTheirIsoString() {
+		ArrayList<String> zoneIds = new ArrayList<String>(DateTimeZone.getAvailableIDs());
+		for (int i = 0; i < NUMBER_OF_SAMPLES; i++) {
+			DateTimeZone zone = DateTimeZone.forID(zoneIds.get(random.nextInt(zoneIds.size())));
+			org.joda.time.DateTime jodaDateTime = new org.joda.time.DateTime(randomMillis(), zone);
+
+			DateTime converted = SyncHelper.toGoogleDateTime(jodaDateTime);
+			assertEquals(jodaDateTime.getMillis(), converted.getValue());
+			// the string only gives whole minutes of offset, so it was a different instant otherwise
+			if (zone.getOffset(jodaDateTime.getMillis()) % (60 * 1000) == 0) {
+				assertEquals(jodaDateTime.toString(), DateTime.parseRfc3339(jodaDateTime.toString()), converted);
+			}
+		}
+	}
+
+	@Test
+	public void ConversionsBothWaysKeepTheInstant() {
+		for (int i = 0; i < NUMBER_OF_SAMPLES; i++) {
+			org.joda.time.DateTime jodaDateTime = new org.joda.time.DateTime(randomMillis());
+			assertEquals(jodaDateTime, SyncHelper.toJodaDateTime(SyncHelper.toGoogleDateTime(jodaDateTime)));
+		}
+	}
+
+	@Test
+	public void DatesAreTheStartOfTheDayInTheLocalTimeZone() {
+		DateTimeZone.setDefault(DateTimeZone.forID("Asia/Singapore"));
+		DateTime date = DateTime.parseRfc3339("2014-11-03");
+
+		assertEquals(new org.joda.time.DateTime(2014, 11, 3, 0, 0), SyncHelper.toJodaDateTime(date));
+	}
+
+	/**
+	 * @return random instant between 1970 and 2100, to the millisecond
+	 */
+	private long randomMillis() {
+		return START_OF_1970 + (long) (random.nextDouble() * (START_OF_2100 - START_OF_1970));
+	}
+}
@@ -0,0 +1,86 @@
+package typetodo.sync;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import typetodo.model.Task;
+import typetodo.model.TimedTask;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.calendar.model.Event;
+import com.google.api.services.calendar.model.EventDateTime;
+
+/**
+ * Measures the conversion of many events by SyncHelper, as done for every page retrieved and every write sent:
+ * Google events with three timestamps each into local tasks, and the local tasks back into Google events. The
+ * events are spread over several years and time zone offsets, and the median of several runs is shown after
+ * warming up. Run it with:
+ * java typetodo.sync.SyncHelperBenchmark [number of events]
+ * @author A0091024U
+ *
+ */
+public class SyncHelperBenchmark {
+	private static final int DEFAULT_NUMBER_OF_EVENTS = 100000;
+	private static final int NUMBER_OF_WARM_UP_RUNS = 5;
+	private static final int NUMBER_OF_RUNS = 7;
+	private static final long MILLIS_OF_YEAR = 365L * 24 * 60 * 60 * 1000;
+	private static final long START_OF_2010 = 1262304000000L;
+	private static final int[] OFFSETS_IN_MINUTES = { -480, -300, 0, 60, 330, 480, 600 };
+
+	public static void main(String[] args) {
+		int numberOfEvents = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUMBER_OF_EVENTS;
+		ArrayList<Event> events = createEvents(numberOfEvents);
+
+		long[] toTaskNanos = new long[NUMBER_OF_RUNS];
+		long[] toEventNanos = new long[NUMBER_OF_RUNS];
+		long checksum = 0;
+		for (int run = -NUMBER_OF_WARM_UP_RUNS; run < NUMBER_OF_RUNS; run++) {
+			ArrayList<Task> tasks = new ArrayList<Task>(numberOfEvents);
+			long timeBefore = System.nanoTime();
+			for (Event event : events) {
+				tasks.add(SyncHelper.googleEventToTask(event));
+			}
+			long timeBetween = System.nanoTime();
+			for (Task task : tasks) {
+				checksum += SyncHelper.timedTaskToGoogleEvent((TimedTask) task).getStart().getDateTime().getValue();
+			}
+			long timeAfter = System.nanoTime();
+
+			if (run >= 0) {
+				toTaskNanos[run] = timeBetween - timeBefore;
+				toEventNanos[run] = timeAfter - timeBetween;
+			}
+		}
+
+		System.out.println(String.format("%,d events, median of %d runs (checksum %d)", numberOfEvents, NUMBER_OF_RUNS,
+				checksum));
+		report("event to task", toTaskNanos, numberOfEvents);
+		report("task to event", toEventNanos, numberOfEvents);
+	}
+
+	private static void report(String name, long[] nanos, int numberOfEvents) {
+		Arrays.sort(nanos);
+		long medianNanos = nanos[nanos.length / 2];
+		System.out.println(String.format("%-14s %,8.1f ms, %,6d ns an event", name, medianNanos / 1e6,
+				medianNanos / numberOfEvents));
+	}
+
+	/**
+	 * @return timed events of one to three hours, with a time of update, at random times of ten years
+	 */
+	private static ArrayList<Event> createEvents(int numberOfEvents) {
+		Random random = new Random(0);
+		ArrayList<Event> events = new ArrayList<Event>(numberOfEvents);
+		for (int i = 0; i < numberOfEvents; i++) {
+			long start = START_OF_2010 + (long) (random.nextDouble() * 10 * MILLIS_OF_YEAR) / 1000 * 1000;
+			long end = start + (1 + random.nextInt(3)) * 60 * 60 * 1000L;
+			int offset = OFFSETS_IN_MINUTES[random.nextInt(OFFSETS_IN_MINUTES.length)];
+			events.add(new Event().setId("event" + i).setSummary("event " + i).setDescription("")
+					.setStart(new EventDateTime().setDateTime(new DateTime(start, offset)))
+					.setEnd(new EventDateTime().setDateTime(new DateTime(end, offset)))
+					.setUpdated(new DateTime(start - random.nextInt(1000000), 0)));
+		}
+		return events;
+	}
+}
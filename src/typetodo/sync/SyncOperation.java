@@ -0,0 +1,136 @@
+package typetodo.sync;
+
+import java.util.EnumSet;
+
+import typetodo.model.FieldName;
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.TypeOfOperation;
+
+/**
+ * A SyncOperation is a single write to the Google Schedule that is planned during a sync, together
+ * with its result once it has been sent.
+ * @author A0091024U
+ *
+ */
+public class SyncOperation {
+	private final TypeOfOperation type;
+	private final Task task;
+	private final boolean isEvent;
+	private final EnumSet<FieldName> changedFields;
+	private String googleId;
+	private boolean isDone;
+	private boolean isRejected;
+	private String failure;
+
+	/**
+	 * @param type ADD, EDIT or DELETE
+	 * @param task local task to be written to the Google Schedule
+	 */
+	public SyncOperation(TypeOfOperation type, Task task) {
+		this(type, task, null);
+	}
+
+	/**
+	 * Creates an operation that only writes the given fields of the task.
+	 * @param type ADD, EDIT or DELETE
+	 * @param task local task to be written to the Google Schedule
+	 * @param changedFields fields to be written, or null to write the whole task
+	 */
+	public SyncOperation(TypeOfOperation type, Task task, EnumSet<FieldName> changedFields) {
+		this.type = type;
+		this.task = task;
+		this.isEvent = !(task instanceof FloatingTask);
+		this.googleId = task.getGoogleId();
+		this.changedFields = changedFields;
+	}
+
+	/**
+	 * Creates an operation that deletes an event or Google Task of which only the googleId is known.
+	 */
+	public SyncOperation(String googleId, boolean isEvent) {
+		this.type = TypeOfOperation.DELETE;
+		this.task = null;
+		this.isEvent = isEvent;
+		this.googleId = googleId;
+		this.changedFields = null;
+	}
+
+	public TypeOfOperation getType() {
+		return type;
+	}
+
+	/**
+	 * @return the local task, or null if only the googleId is known
+	 */
+	public Task getTask() {
+		return task;
+	}
+
+	/**
+	 * @return fields that an EDIT writes, or null if it writes the whole task
+	 */
+	public EnumSet<FieldName> getChangedFields() {
+		return changedFields;
+	}
+
+	/**
+	 * @return true if the operation writes to Google Calendar, false if it writes to Google Tasks
+	 */
+	public boolean isEvent() {
+		return isEvent;
+	}
+
+	/**
+	 * @return googleId of the task, which is only known after an ADD succeeds
+	 */
+	public String getGoogleId() {
+		return googleId;
+	}
+
+	/**
+	 * Marks the operation as done. The googleId given by Google is copied onto the local task.
+	 */
+	public void setDone(String googleId) {
+		this.isDone = true;
+		this.isRejected = false;
+		this.failure = null;
+		if (googleId != null) {
+			this.googleId = googleId;
+			if (task != null) {
+				task.setGoogleId(googleId);
+			}
+		}
+	}
+
+	public boolean isDone() {
+		return isDone;
+	}
+
+	/**
+	 * @return reason of the last failure, or null if the operation has not failed
+	 */
+	public String getFailure() {
+		return failure;
+	}
+
+	public void setFailure(String failure) {
+		this.failure = failure;
+	}
+
+	/**
+	 * @return true if the Google Schedule refused the operation with an error that sending it again would not
+	 * fix, such as an invalid event
+	 */
+	public boolean isRejected() {
+		return isRejected;
+	}
+
+	/**
+	 * Marks the operation as refused for good, so that it is not sent again.
+	 */
+	public void setRejected(String failure) {
+		this.isRejected = true;
+		this.failure = failure;
+	}
+}
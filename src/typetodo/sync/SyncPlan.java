@@ -0,0 +1,185 @@
+package typetodo.sync;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+
+import typetodo.model.FieldName;
+import typetodo.model.Task;
+import typetodo.model.TypeOfOperation;
+
+/**
+ * The SyncPlan collects every write to the Google Schedule that a sync needs, so that the writes can be
+ * sent together in batches once the local and Google schedules have been compared. It also collects the
+ * writes to the local schedule and the conflicts found, so that the whole plan can be shown before it
+ * is carried out.
+ * @author A0091024U
+ *
+ */
+public class SyncPlan {
+	private final ArrayList<SyncOperation> operations;
+	private final ArrayList<Task> localTasksToAdd;
+	private final ArrayList<Task> localTasksToUpdate;
+	private final ArrayList<Task> localTasksToDelete;
+	private final ArrayList<SyncConflict> conflicts;
+
+	public SyncPlan() {
+		operations = new ArrayList<SyncOperation>();
+		localTasksToAdd = new ArrayList<Task>();
+		localTasksToUpdate = new ArrayList<Task>();
+		localTasksToDelete = new ArrayList<Task>();
+		conflicts = new ArrayList<SyncConflict>();
+	}
+
+	public SyncOperation addTask(Task task) {
+		return this.add(new SyncOperation(TypeOfOperation.ADD, task));
+	}
+
+	public SyncOperation updateTask(Task task) {
+		return this.add(new SyncOperation(TypeOfOperation.EDIT, task));
+	}
+
+	/**
+	 * @param changedFields fields to be written, or null to write the whole task
+	 */
+	public SyncOperation updateTask(Task task, EnumSet<FieldName> changedFields) {
+		return this.add(new SyncOperation(TypeOfOperation.EDIT, task, changedFields));
+	}
+
+	public SyncOperation deleteTask(Task task) {
+		return this.add(new SyncOperation(TypeOfOperation.DELETE, task));
+	}
+
+	public SyncOperation deleteEvent(String googleId) {
+		return this.add(new SyncOperation(googleId, true));
+	}
+
+	public SyncOperation deleteGoogleTask(String googleId) {
+		return this.add(new SyncOperation(googleId, false));
+	}
+
+	private SyncOperation add(SyncOperation operation) {
+		operations.add(operation);
+		return operation;
+	}
+
+	public ArrayList<SyncOperation> getOperations() {
+		return operations;
+	}
+
+	/**
+	 * @return operations of the given type
+	 */
+	public ArrayList<SyncOperation> getOperations(TypeOfOperation type) {
+		ArrayList<SyncOperation> operationsOfType = new ArrayList<SyncOperation>();
+		for (SyncOperation operation : operations) {
+			if (operation.getType() == type) {
+				operationsOfType.add(operation);
+			}
+		}
+		return operationsOfType;
+	}
+
+	/**
+	 * @return operations that are not done, after every attempt to send them
+	 */
+	public ArrayList<SyncOperation> getFailedOperations() {
+		ArrayList<SyncOperation> failedOperations = new ArrayList<SyncOperation>();
+		for (SyncOperation operation : operations) {
+			if (!operation.isDone()) {
+				failedOperations.add(operation);
+			}
+		}
+		return failedOperations;
+	}
+
+	/**
+	 * @return operations that the Google Schedule refused with an error that sending them again would not fix
+	 */
+	public ArrayList<SyncOperation> getRejectedOperations() {
+		ArrayList<SyncOperation> rejectedOperations = new ArrayList<SyncOperation>();
+		for (SyncOperation operation : operations) {
+			if (operation.isRejected()) {
+				rejectedOperations.add(operation);
+			}
+		}
+		return rejectedOperations;
+	}
+
+	/**
+	 * @param googleTask task converted from the Google Schedule that is new to the local schedule
+	 */
+	public void addLocalTask(Task googleTask) {
+		localTasksToAdd.add(googleTask);
+	}
+
+	/**
+	 * @param googleTask task converted from the Google Schedule that replaces the local task of the same taskId
+	 */
+	public void updateLocalTask(Task googleTask) {
+		localTasksToUpdate.add(googleTask);
+	}
+
+	/**
+	 * @param localTask local task that was deleted from the Google Schedule
+	 */
+	public void deleteLocalTask(Task localTask) {
+		localTasksToDelete.add(localTask);
+	}
+
+	public ArrayList<Task> getLocalTasksToAdd() {
+		return localTasksToAdd;
+	}
+
+	public ArrayList<Task> getLocalTasksToUpdate() {
+		return localTasksToUpdate;
+	}
+
+	public ArrayList<Task> getLocalTasksToDelete() {
+		return localTasksToDelete;
+	}
+
+	public void addConflict(SyncConflict conflict) {
+		conflicts.add(conflict);
+	}
+
+	public ArrayList<SyncConflict> getConflicts() {
+		return conflicts;
+	}
+
+	/**
+	 * @return true if there is nothing to write to the Google Schedule
+	 */
+	public boolean isEmpty() {
+		return operations.isEmpty();
+	}
+
+	/**
+	 * @return number of writes to the Google Schedule
+	 */
+	public int size() {
+		return operations.size();
+	}
+
+	/**
+	 * @return one line description of the plan, e.g. "google: 1 add, 0 updates, 2 deletes; local: ..."
+	 */
+	public String getSummary() {
+		return "google: " + describe(this.getOperations(TypeOfOperation.ADD).size(), 
+				this.getOperations(TypeOfOperation.EDIT).size(), this.getOperations(TypeOfOperation.DELETE).size()) 
+				+ "; local: " + describe(localTasksToAdd.size(), localTasksToUpdate.size(), localTasksToDelete.size())
+				+ "; " + count(conflicts.size(), "conflict");
+	}
+
+	private static String describe(int adds, int updates, int deletes) {
+		return count(adds, "add") + ", " + count(updates, "update") + ", " + count(deletes, "delete");
+	}
+
+	private static String count(int number, String noun) {
+		return number + " " + noun + ((number == 1) ? "" : "s");
+	}
+
+	@Override
+	public String toString() {
+		return this.getSummary();
+	}
+}
@@ -0,0 +1,160 @@
+package typetodo.sync;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import typetodo.db.DbController;
+import typetodo.model.PendingChange;
+
+/**
+ * The SyncScheduler runs incremental syncs in the background: every interval, and once no local change has
+ * been made for the debounce delay after a change, so that a burst of edits is sent by one sync. It is off
+ * until an interval is set, and the syncs it runs never disable input. A run is skipped while another sync
+ * is running, and its outcome is kept for the sync status.
+ * @author A0091024U
+ *
+ */
+public class SyncScheduler {
+	static final String PROPERTY_NAME_INTERVAL = "autoSyncIntervalMinutes";
+	private static final String PROPERTY_NAME_DEBOUNCE = "autoSyncDebounceSeconds";
+	private static final long DEFAULT_DEBOUNCE_SECONDS = 30;
+	private static final String THREAD_NAME = "TypeToDo background sync";
+	private static final String MESSAGE_STATUS_OFF = "Automatic sync is off. %s";
+	private static final String MESSAGE_STATUS_ON = "Automatic sync every %d min and %d s after changes. %s";
+
+	private final SyncController syncController;
+	private final DbController dataBase;
+	private ScheduledExecutorService executor;
+	private ScheduledFuture<?> debouncedSync;
+	private long intervalMillis;
+	private long debounceMillis;
+
+	public SyncScheduler(SyncController syncController) throws IOException {
+		this.syncController = syncController;
+		this.dataBase = DbController.getInstance();
+		dataBase.addPendingChangeListener(new DbController.PendingChangeListener() {
+			@Override
+			public void pendingChangeAdded(PendingChange pendingChange) {
+				onLocalChange();
+			}
+		});
+	}
+
+	/**
+	 * Starts the syncs at the interval saved in the properties, if there is one.
+	 */
+	public void start() {
+		long intervalMinutes = this.getLongProperty(PROPERTY_NAME_INTERVAL, 0);
+		long debounceSeconds = this.getLongProperty(PROPERTY_NAME_DEBOUNCE, DEFAULT_DEBOUNCE_SECONDS);
+		this.start(TimeUnit.MINUTES.toMillis(intervalMinutes), TimeUnit.SECONDS.toMillis(debounceSeconds));
+	}
+
+	/**
+	 * Saves the interval in the properties and starts the syncs again at that interval.
+	 * @param intervalMinutes minutes between syncs, or 0 to stop them
+	 */
+	public void setIntervalMinutes(long intervalMinutes) {
+		dataBase.setProperty(PROPERTY_NAME_INTERVAL, (intervalMinutes > 0) ? String.valueOf(intervalMinutes) : null);
+		this.start();
+	}
+
+	/**
+	 * Starts the syncs at the given interval and debounce delay, stopping the syncs started before.
+	 * @param intervalMillis time between syncs, or 0 to leave them off
+	 */
+	synchronized void start(long intervalMillis, long debounceMillis) {
+		this.stop();
+		if (intervalMillis <= 0) {
+			return;
+		}
+
+		this.intervalMillis = intervalMillis;
+		this.debounceMillis = debounceMillis;
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, THREAD_NAME);
+				thread.setDaemon(true); //does not keep TypeToDo open
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				runSync();
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the syncs, letting a sync that is running finish.
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			if (debouncedSync != null) {
+				debouncedSync.cancel(false);
+				debouncedSync = null;
+			}
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	public synchronized boolean isRunning() {
+		return executor != null;
+	}
+
+	/**
+	 * Schedules a sync after the debounce delay, replacing the sync scheduled by an earlier change.
+	 */
+	synchronized void onLocalChange() {
+		if (executor == null) {
+			return;
+		}
+
+		if (debouncedSync != null) {
+			debouncedSync.cancel(false);
+		}
+		debouncedSync = executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				runSync();
+			}
+		}, debounceMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return whether the syncs are on, and the status of the last sync
+	 */
+	public synchronized String getStatus() {
+		if (executor == null) {
+			return String.format(MESSAGE_STATUS_OFF, syncController.getStatus());
+		}
+		return String.format(MESSAGE_STATUS_ON, TimeUnit.MILLISECONDS.toMinutes(intervalMillis),
+				TimeUnit.MILLISECONDS.toSeconds(debounceMillis), syncController.getStatus());
+	}
+
+	private void runSync() {
+		syncController.syncInBackground();
+	}
+
+	/**
+	 * @return value of the property, or the default value if the property is missing or not a number
+	 */
+	private long getLongProperty(String propertyName, long defaultValue) {
+		String value = dataBase.getProperty(propertyName);
+		if (value == null) {
+			return defaultValue;
+		}
+
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package typetodo.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import typetodo.db.DbController;
+import typetodo.logic.Schedule;
+import typetodo.model.FloatingTask;
+import typetodo.model.PendingChange;
+import typetodo.model.Task;
+
+/**
+ * Tests the background syncs of the SyncScheduler against an InMemorySchedule. Every local task is removed before and
+ * after each test.
+ * @author A0091024U
+ *
+ */
+public class SyncSchedulerATD {
+	private static final String[] PROPERTY_NAMES = { "lastSyncDate", "calendarSyncToken", "tasksUpdatedMin" };
+	private static final long TIMEOUT_MILLIS = 5000;
+
+	private DbController dataBase;
+	private Schedule schedule;
+
+	@Before
+	public void setUp() throws Exception {
+		dataBase = DbController.getInstance();
+		schedule = new Schedule();
+		clearDataBase();
+	}
+
+	@After
+	public void tearDown() {
+		clearDataBase();
+	}
+
+	private void clearDataBase() {
+		for (Task task : dataBase.retrieveAll()) {
+			dataBase.deleteTask(task.getTaskId());
+		}
+		for (String propertyName : PROPERTY_NAMES) {
+			dataBase.setProperty(propertyName, null);
+		}
+		ArrayList<Long> sequenceNumbers = new ArrayList<Long>();
+		for (PendingChange pendingChange : dataBase.retrievePendingChanges()) {
+			sequenceNumbers.add(pendingChange.getSequenceNumber());
+		}
+		dataBase.acknowledgePendingChanges(sequenceNumbers);
+	}
+
+	@Test
+	public void ABurstOfLocalChangesIsSentByOneDebouncedSync() throws Exception {
+		InMemorySchedule remoteSchedule = new InMemorySchedule();
+		SyncController syncController = new SyncController(null, remoteSchedule);
+		SyncScheduler syncScheduler = new SyncScheduler(syncController);
+		syncScheduler.start(60 * 60 * 1000, 200);
+
+		try {
+			for (int i = 0; i < 3; i++) {
+				schedule.addTask(new FloatingTask("task " + i, ""));
+			}
+			long timeout = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			// the outcome of the sync is recorded after the pending changes are acknowledged
+			while ((remoteSchedule.size() < 3 || !dataBase.retrievePendingChanges().isEmpty()
+					|| !syncScheduler.getStatus().contains("succeeded")) && System.currentTimeMillis() < timeout) {
+				Thread.sleep(50);
+			}
+		} finally {
+			syncScheduler.stop();
+		}
+
+		assertEquals(3, remoteSchedule.size());
+		assertEquals(0, dataBase.retrievePendingChanges().size());
+		// one page of events, one page of floating tasks and one batch
+		assertEquals(3, remoteSchedule.getNumberOfRequests());
+		assertTrue(syncScheduler.getStatus(), syncScheduler.getStatus().contains("succeeded"));
+	}
+}
@@ -0,0 +1,262 @@
+package typetodo.sync;
+
+import java.util.EnumSet;
+
+import org.joda.time.DateTime;
+
+import typetodo.model.DeadlineTask;
+import typetodo.model.FieldName;
+import typetodo.model.FloatingTask;
+import typetodo.model.Task;
+import typetodo.model.TimedTask;
+
+/**
+ * The ThreeWayMerge merges the local and Google versions of a task field by field, against the synced
+ * version of the task as of the last sync. A field changed on one side only keeps that change, so that
+ * edits of different fields on both sides are all kept. A field changed differently on both sides, or any
+ * field that differs when there is no synced version, keeps the change of the version modified last.
+ * A task whose type changed on either side is merged as a whole.
+ * @author A0091024U
+ *
+ */
+public class ThreeWayMerge {
+	private final Task localTask;
+	private final Task googleTask;
+	private final Task mergedTask;
+	private final EnumSet<FieldName> fieldsToSend;
+	private final EnumSet<FieldName> fieldsToApply;
+	private final EnumSet<FieldName> conflictingFields;
+	private final boolean isGoogleTaskLater;
+
+	/**
+	 * @param syncedVersion synced version of the task as of the last sync, or null if there is none
+	 * @param localTask local version of the task
+	 * @param googleTask version of the task retrieved from the Google Schedule
+	 */
+	public ThreeWayMerge(Task syncedVersion, Task localTask, Task googleTask) {
+		this.localTask = localTask;
+		this.googleTask = googleTask;
+		this.fieldsToSend = EnumSet.noneOf(FieldName.class);
+		this.fieldsToApply = EnumSet.noneOf(FieldName.class);
+		this.conflictingFields = EnumSet.noneOf(FieldName.class);
+		this.isGoogleTaskLater = googleTask.getDateModified().isAfter(localTask.getDateModified());
+
+		if (localTask.getClass() != googleTask.getClass()) {
+			this.mergedTask = this.mergeWhole(syncedVersion);
+			return;
+		}
+		if (syncedVersion != null && syncedVersion.getClass() != localTask.getClass()) {
+			syncedVersion = null;
+		}
+
+		this.mergedTask = copyOf(localTask);
+		for (FieldName field : fieldsOf(localTask)) {
+			if (isSameValue(localTask, googleTask, field)) {
+				continue;
+			}
+
+			boolean isChangedLocally = syncedVersion == null || !isSameValue(syncedVersion, localTask, field);
+			boolean isChangedInGoogle = syncedVersion == null || !isSameValue(syncedVersion, googleTask, field);
+			if (isChangedLocally && isChangedInGoogle) {
+				conflictingFields.add(field);
+				this.takeField(field, isGoogleTaskLater);
+			} else {
+				this.takeField(field, isChangedInGoogle);
+			}
+		}
+
+		if (mergedTask instanceof TimedTask
+				&& ((TimedTask) mergedTask).getStart().isAfter(((TimedTask) mergedTask).getEnd())) {
+			//the start and end taken from different versions do not fit, so both are taken from the later one
+			this.takeField(FieldName.START, isGoogleTaskLater);
+			this.takeField(FieldName.END, isGoogleTaskLater);
+		}
+	}
+
+	/**
+	 * Takes the field from the Google version into the merged task, or keeps the field of the local version.
+	 */
+	private void takeField(FieldName field, boolean isTakenFromGoogle) {
+		fieldsToSend.remove(field);
+		fieldsToApply.remove(field);
+		if (isSameValue(localTask, googleTask, field)) {
+			return;
+		}
+
+		if (isTakenFromGoogle) {
+			copyField(googleTask, mergedTask, field);
+			fieldsToApply.add(field);
+		} else {
+			copyField(localTask, mergedTask, field);
+			fieldsToSend.add(field);
+		}
+	}
+
+	/**
+	 * @return the version whose type did not change since the last sync is replaced by the other one, or the
+	 * version modified last if both changed
+	 */
+	private Task mergeWhole(Task syncedVersion) {
+		boolean isTypeChangedLocally = syncedVersion == null || syncedVersion.getClass() != localTask.getClass();
+		boolean isTypeChangedInGoogle = syncedVersion == null || syncedVersion.getClass() != googleTask.getClass();
+		boolean isGoogleTaskTaken = (isTypeChangedLocally && isTypeChangedInGoogle) ? isGoogleTaskLater
+				: isTypeChangedInGoogle;
+		if (isTypeChangedLocally && isTypeChangedInGoogle) {
+			conflictingFields.addAll(fieldsOf(localTask));
+		}
+
+		if (isGoogleTaskTaken) {
+			fieldsToApply.addAll(fieldsOf(googleTask));
+			Task merged = copyOf(googleTask);
+			merged.setTaskId(localTask.getTaskId());
+			merged.setGoogleId(localTask.getGoogleId());
+			merged.setStatus(localTask.getStatus());
+			merged.setDateCreated(localTask.getDateCreated());
+			merged.setDateModified(localTask.getDateModified());
+			merged.setSyncedVersion(localTask.getSyncedVersion());
+			return merged;
+		} else {
+			fieldsToSend.addAll(fieldsOf(localTask));
+			return localTask;
+		}
+	}
+
+	/**
+	 * @return the local task with the merged fields, which is a copy if any field was taken from the Google
+	 * version
+	 */
+	public Task getMergedTask() {
+		return fieldsToApply.isEmpty() ? localTask : mergedTask;
+	}
+
+	/**
+	 * @return fields of the merged task that differ from the Google version, and are to be sent to it
+	 */
+	public EnumSet<FieldName> getFieldsToSend() {
+		return fieldsToSend;
+	}
+
+	/**
+	 * @return fields of the merged task that differ from the local version, and are to be written to it
+	 */
+	public EnumSet<FieldName> getFieldsToApply() {
+		return fieldsToApply;
+	}
+
+	/**
+	 * @return fields that were changed differently in both versions
+	 */
+	public EnumSet<FieldName> getConflictingFields() {
+		return conflictingFields;
+	}
+
+	/**
+	 * @return true if the Google version was modified after the local version, and wins the conflicts
+	 */
+	public boolean isGoogleTaskLater() {
+		return isGoogleTaskLater;
+	}
+
+	/**
+	 * @return fields of the synced version that differ from the given task, or null if the task has a
+	 * different type or there is no synced version, so that every field has to be written
+	 */
+	public static EnumSet<FieldName> getChangedFields(Task syncedVersion, Task task) {
+		if (syncedVersion == null || syncedVersion.getClass() != task.getClass()) {
+			return null;
+		}
+
+		EnumSet<FieldName> changedFields = EnumSet.noneOf(FieldName.class);
+		for (FieldName field : fieldsOf(task)) {
+			if (!isSameValue(syncedVersion, task, field)) {
+				changedFields.add(field);
+			}
+		}
+		return changedFields;
+	}
+
+	/**
+	 * @return fields synced with the Google Schedule for the type of the task
+	 */
+	public static EnumSet<FieldName> fieldsOf(Task task) {
+		if (task instanceof TimedTask) {
+			return EnumSet.of(FieldName.TITLE, FieldName.DESCRIPTION, FieldName.START, FieldName.END);
+		} else if (task instanceof DeadlineTask) {
+			return EnumSet.of(FieldName.TITLE, FieldName.DESCRIPTION, FieldName.DEADLINE);
+		} else {
+			return EnumSet.of(FieldName.TITLE, FieldName.DESCRIPTION);
+		}
+	}
+
+	/**
+	 * Copies a field between two tasks of the same type.
+	 */
+	public static void copyField(Task from, Task to, FieldName field) {
+		switch (field) {
+			case TITLE :
+				to.setTitle(from.getTitle());
+				break;
+			case DESCRIPTION :
+				to.setDescription(from.getDescription());
+				break;
+			case DEADLINE :
+				((DeadlineTask) to).setDeadline(((DeadlineTask) from).getDeadline());
+				break;
+			case START :
+				((TimedTask) to).setStart(((TimedTask) from).getStart());
+				break;
+			case END :
+				((TimedTask) to).setEnd(((TimedTask) from).getEnd());
+				break;
+		}
+	}
+
+	/**
+	 * Compares a field of two tasks of the same type as Google keeps it, that is a missing description is
+	 * empty and times are compared to the second.
+	 */
+	private static boolean isSameValue(Task task, Task otherTask, FieldName field) {
+		switch (field) {
+			case TITLE :
+				return toText(task.getTitle()).equals(toText(otherTask.getTitle()));
+			case DESCRIPTION :
+				return toText(task.getDescription()).equals(toText(otherTask.getDescription()));
+			case DEADLINE :
+				return toSeconds(((DeadlineTask) task).getDeadline()) == toSeconds(((DeadlineTask) otherTask).getDeadline());
+			case START :
+				return toSeconds(((TimedTask) task).getStart()) == toSeconds(((TimedTask) otherTask).getStart());
+			default :
+				return toSeconds(((TimedTask) task).getEnd()) == toSeconds(((TimedTask) otherTask).getEnd());
+		}
+	}
+
+	private static String toText(String text) {
+		return (text == null) ? "" : text;
+	}
+
+	private static long toSeconds(DateTime dateTime) {
+		return (dateTime == null) ? 0 : dateTime.getMillis() / 1000;
+	}
+
+	/**
+	 * @return copy of the task with the same ids, status, dates and synced version
+	 */
+	public static Task copyOf(Task task) {
+		Task copy;
+		if (task instanceof TimedTask) {
+			copy = new TimedTask(task.getTitle(), task.getDescription(),
+					((TimedTask) task).getStart(), ((TimedTask) task).getEnd());
+		} else if (task instanceof DeadlineTask) {
+			copy = new DeadlineTask(task.getTitle(), task.getDescription(), ((DeadlineTask) task).getDeadline());
+		} else {
+			copy = new FloatingTask(task.getTitle(), task.getDescription());
+		}
+		copy.setTaskId(task.getTaskId());
+		copy.setGoogleId(task.getGoogleId());
+		copy.setStatus(task.getStatus());
+		copy.setDateCreated(task.getDateCreated());
+		copy.setDateModified(task.getDateModified());
+		copy.setSyncedVersion(task.getSyncedVersion());
+		return copy;
+	}
+}
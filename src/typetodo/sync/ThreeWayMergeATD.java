@@ -0,0 +1,59 @@
+package typetodo.sync;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumSet;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import typetodo.model.FieldName;
+import typetodo.model.TimedTask;
+
+/**
+ * Tests the field-level merge of a local and Google version of a task against their synced version.
+ * @author A0091024U
+ *
+ */
+public class ThreeWayMergeATD {
+	private static final DateTime START = new DateTime(2014, 11, 3, 9, 0);
+
+	@Test
+	public void FieldsChangedOnDifferentSidesAreAllKept() {
+		TimedTask syncedVersion = new TimedTask("meeting", "", START, START.plusHours(1));
+		TimedTask localTask = new TimedTask("meeting", "bring slides", START, START.plusHours(1));
+		TimedTask googleTask = new TimedTask("meeting", "", START.plusHours(2), START.plusHours(3));
+		localTask.setDateModified(START);
+		googleTask.setDateModified(START.plusMinutes(1));
+
+		ThreeWayMerge merge = new ThreeWayMerge(syncedVersion, localTask, googleTask);
+		TimedTask mergedTask = (TimedTask) merge.getMergedTask();
+
+		assertEquals("bring slides", mergedTask.getDescription());
+		assertEquals(START.plusHours(2), mergedTask.getStart());
+		assertEquals(START.plusHours(3), mergedTask.getEnd());
+		assertEquals(EnumSet.of(FieldName.DESCRIPTION), merge.getFieldsToSend());
+		assertEquals(EnumSet.of(FieldName.START, FieldName.END), merge.getFieldsToApply());
+		assertEquals(0, merge.getConflictingFields().size());
+	}
+
+	@Test
+	public void ConflictingFieldsKeepTheLaterVersion() {
+		TimedTask syncedVersion = new TimedTask("meeting", "", START, START.plusHours(1));
+		TimedTask localTask = new TimedTask("local meeting", "", START, START.plusHours(4));
+		TimedTask googleTask = new TimedTask("google meeting", "", START.plusHours(5), START.plusHours(6));
+		localTask.setDateModified(START.plusMinutes(1));
+		googleTask.setDateModified(START);
+
+		ThreeWayMerge merge = new ThreeWayMerge(syncedVersion, localTask, googleTask);
+		TimedTask mergedTask = (TimedTask) merge.getMergedTask();
+
+		assertEquals(EnumSet.of(FieldName.TITLE, FieldName.END), merge.getConflictingFields());
+		assertEquals("local meeting", mergedTask.getTitle());
+		// the start from google would be after the local end, so both times are taken from the later version
+		assertEquals(START, mergedTask.getStart());
+		assertEquals(START.plusHours(4), mergedTask.getEnd());
+		assertEquals(EnumSet.of(FieldName.TITLE, FieldName.START, FieldName.END), merge.getFieldsToSend());
+		assertEquals(0, merge.getFieldsToApply().size());
+	}
+}
@@ -13,27 +13,35 @@ import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.awt.geom.RoundRectangle2D;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.JDialog;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
-import javax.swing.JTextPane;
 import javax.swing.KeyStroke;
-import javax.swing.text.BadLocationException;
+
+import typetodo.logic.TasksFormatter;
 
 public class FeedbackDialog extends JDialog {
 
 	private JPanel feedbackPanel;
 	private JPanel taskListPanel;
 	private JTextArea txtFeedback;
-	private JTextPane txtListOutput;
+	private JList<String> listOutput;
+	private TaskRowRenderer taskRowRenderer;
+	private TaskListModel taskListModel;
 	private JScrollPane scrollableDisplay;
 	public final static Color dialogColor = new Color(230, 230, 230);
 
+	private static final int MAXIMUM_LIST_HEIGHT = 250;
+	// Room left for the vertical scroll bar when wrapping the text of a row
+	private static final int SCROLL_BAR_ALLOWANCE = 30;
+
 	private static final String MESSAGE_NO_TASK = "Start using TypeToDo by typing "
 			+ "<font color=\"#FF0000\">\"add your task;\"</font> now!";
 
@@ -100,66 +108,45 @@ public class FeedbackDialog extends JDialog {
 		this.pack();
 	}
 
-	public void setTableOfTasks(String htmlText) {
-		String displayText;
-		if (htmlText.isEmpty()) {
-			displayText = MESSAGE_NO_TASK;
+	/**
+	 * Displays the given rows of formatted tasks. Only the rows that are visible are laid out, and the
+	 * list scrolls to the highlighted task if there is one.
+	 * 
+	 * @param taskRows
+	 *          Rows formatted by TasksFormatter
+	 */
+	public void setTableOfTasks(List<String> taskRows) {
+		List<String> rowsToDisplay;
+		if (taskRows.isEmpty()) {
+			rowsToDisplay = Arrays.asList(MESSAGE_NO_TASK);
 		} else {
-			displayText = htmlText;
-		}
-		this.txtListOutput.setText(displayText);
-
-		try {
-			String textWithoutHtmlTags = txtListOutput.getDocument().getText(0,
-					txtListOutput.getDocument().getLength());
-			int indexToScrollTo = getIndexToScrollTo(displayText, textWithoutHtmlTags);
-			txtListOutput.setCaretPosition(indexToScrollTo);
-		} catch (BadLocationException e) {
-			e.printStackTrace();
+			rowsToDisplay = taskRows;
 		}
+		taskRowRenderer.startRows(rowsToDisplay.size());
+		taskListModel.setRows(rowsToDisplay);
 
-		int textHeight = getTextHeight(displayText);
+		int listHeight = listOutput.getPreferredSize().height;
 		int windowWidth = getMinimumSize().width;
-		if (textHeight > 250) {
-			scrollableDisplay.setPreferredSize(new Dimension(windowWidth, 250));
+		if (listHeight > MAXIMUM_LIST_HEIGHT) {
+			scrollableDisplay.setPreferredSize(new Dimension(windowWidth,
+					MAXIMUM_LIST_HEIGHT));
 		} else {
 			scrollableDisplay
-					.setPreferredSize(new Dimension(windowWidth, textHeight));
+					.setPreferredSize(new Dimension(windowWidth, listHeight));
 		}
 		this.pack();
-	}
 
-	private int getTextHeight(String text) {
-		// A surrogate JTextPane is used in place of the actual JTextPane due to the
-		// eccentric behavior with JTextPane
-		JTextPane surrogate = new JTextPane();
-		surrogate.setContentType("text/html");
-		surrogate.setMinimumSize(new Dimension(txtListOutput.getWidth(), 0));
-		surrogate.setMaximumSize(new Dimension(txtListOutput.getWidth(), 20));
-		JPanel surrogatePanel = new JPanel(new BorderLayout());
-		surrogatePanel.add(surrogate, BorderLayout.NORTH);
-		surrogate.setText(text);
-		surrogatePanel.revalidate();
-		return surrogatePanel.getPreferredSize().height;
+		listOutput.ensureIndexIsVisible(getIndexToScrollTo(rowsToDisplay));
 	}
 
-	public int getIndexToScrollTo(String htmlText, String textWithOutHtmlTags) {
-		int indexOfMarker = htmlText.indexOf("<marker>");
-
-		if (indexOfMarker != -1) {
-			String startOfTask = htmlText.substring(htmlText.indexOf("<marker>"),
-					htmlText.length());
-			String idOfTask = "";
-			idOfTask = startOfTask.substring(startOfTask.indexOf("["),
-					startOfTask.length());
-
-			Scanner sc = new Scanner(idOfTask);
-			sc.useDelimiter("]");
-			idOfTask = sc.next() + "]";
-			System.out.println(idOfTask);
-			sc.close();
-
-			return textWithOutHtmlTags.indexOf(idOfTask);
+	/**
+	 * @return index of the first highlighted row, or 0 if no row is highlighted
+	 */
+	private int getIndexToScrollTo(List<String> rows) {
+		for (int index = 0; index < rows.size(); index++) {
+			if (rows.get(index).contains(TasksFormatter.ROW_MARKER)) {
+				return index;
+			}
 		}
 
 		return 0;
@@ -202,16 +189,17 @@ public class FeedbackDialog extends JDialog {
 		feedbackPanel.add(txtFeedback);
 
 		taskListPanel = new JPanel(new BorderLayout());
-		txtListOutput = new JTextPane();
-		txtListOutput.setContentType("text/html");
-		txtListOutput.setBackground(dialogColor);
-		txtListOutput.setEditable(false);
-		txtListOutput.setSize(this.getMinimumSize());
-		txtListOutput.setMinimumSize(new Dimension(txtListOutput.getWidth(), 0));
-		txtListOutput.setMaximumSize(new Dimension(txtListOutput.getWidth(), 20));
+		taskListModel = new TaskListModel();
+		listOutput = new JList<String>(taskListModel);
+		taskRowRenderer = new TaskRowRenderer(getMinimumSize().width
+				- SCROLL_BAR_ALLOWANCE);
+		listOutput.setCellRenderer(taskRowRenderer);
+		listOutput.setBackground(dialogColor);
+		// Focus stays with the scroll pane so that the navigation keys keep working
+		listOutput.setFocusable(false);
 		taskListPanel.setBackground(dialogColor);
 
-		scrollableDisplay = new JScrollPane(txtListOutput);
+		scrollableDisplay = new JScrollPane(listOutput);
 		scrollableDisplay.setBorder(null);
 		scrollableDisplay
 				.setVerticalScrollBarPolicy(javax.swing.ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED);
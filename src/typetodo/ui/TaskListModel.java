@@ -0,0 +1,62 @@
+// @author A0097968Y
+package typetodo.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * The TaskListModel holds the formatted rows displayed in the list of tasks. The rows are not copied,
+ * and only the range of rows that differs from the previous list is reported as changed.
+ */
+@SuppressWarnings("serial")
+public class TaskListModel extends AbstractListModel<String> {
+	private List<String> rows;
+
+	public TaskListModel() {
+		rows = new ArrayList<String>();
+	}
+
+	@Override
+	public int getSize() {
+		return rows.size();
+	}
+
+	@Override
+	public String getElementAt(int index) {
+		return rows.get(index);
+	}
+
+	/**
+	 * @param newRows
+	 *          The rows to be displayed. The list must not be modified afterwards.
+	 */
+	public void setRows(List<String> newRows) {
+		List<String> oldRows = rows;
+		rows = newRows;
+
+		int oldSize = oldRows.size();
+		int newSize = newRows.size();
+		if (newSize > oldSize) {
+			fireIntervalAdded(this, oldSize, newSize - 1);
+		} else if (newSize < oldSize) {
+			fireIntervalRemoved(this, newSize, oldSize - 1);
+		}
+
+		int firstChangedIndex = -1;
+		int lastChangedIndex = -1;
+		for (int i = 0; i < Math.min(oldSize, newSize); i++) {
+			// Unchanged rows are usually the very same cached String
+			if (!oldRows.get(i).equals(newRows.get(i))) {
+				if (firstChangedIndex == -1) {
+					firstChangedIndex = i;
+				}
+				lastChangedIndex = i;
+			}
+		}
+		if (firstChangedIndex != -1) {
+			fireContentsChanged(this, firstChangedIndex, lastChangedIndex);
+		}
+	}
+}
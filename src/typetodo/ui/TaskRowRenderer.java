@@ -0,0 +1,94 @@
+// @author A0097968Y
+package typetodo.ui;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.util.HashMap;
+
+import javax.swing.BorderFactory;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+
+/**
+ * Renders a single formatted row of the list of tasks. Parsing html is expensive, thus the html of a
+ * row is only parsed when the row is painted or when its size is not known yet. The size of every row
+ * of the list displayed is remembered, however long the list, so re-displaying it only parses the rows
+ * that have changed and the visible rows. Sizes of rows that are no longer displayed are dropped when the
+ * next list is displayed.
+ */
+@SuppressWarnings("serial")
+public class TaskRowRenderer extends DefaultListCellRenderer {
+	private static final String HTML_ROW = "<html><body width=\"%d\">%s</body></html>";
+
+	private final int rowWidth;
+	private HashMap<String, Dimension> sizeOfRows;
+	private HashMap<String, Dimension> previousSizeOfRows;
+	private String row = "";
+	private boolean isRowParsed;
+
+	/**
+	 * @param rowWidth
+	 *          Width in pixels after which the text of a row wraps
+	 */
+	public TaskRowRenderer(int rowWidth) {
+		super();
+		this.rowWidth = rowWidth;
+		this.sizeOfRows = new HashMap<String, Dimension>();
+		this.previousSizeOfRows = new HashMap<String, Dimension>();
+		this.setBorder(BorderFactory.createEmptyBorder(0, 2, 0, 2));
+	}
+
+	/**
+	 * Marks the start of the display of a new list of rows. Sizes measured for the previous list remain
+	 * available until the next list is displayed, and are dropped then unless the rows are still displayed.
+	 * 
+	 * @param numberOfRows
+	 *          number of rows of the new list
+	 */
+	public void startRows(int numberOfRows) {
+		previousSizeOfRows = sizeOfRows;
+		sizeOfRows = new HashMap<String, Dimension>(Math.max(16, numberOfRows * 4 / 3 + 1));
+	}
+
+	@Override
+	public Component getListCellRendererComponent(JList<?> list, Object value,
+			int index, boolean isSelected, boolean cellHasFocus) {
+		// Rows are never shown as selected, the list is only used for display
+		setBackground(list.getBackground());
+		setForeground(list.getForeground());
+		setFont(list.getFont());
+		setEnabled(list.isEnabled());
+
+		row = (value == null) ? "" : value.toString();
+		isRowParsed = false;
+		return this;
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		Dimension size = sizeOfRows.get(row);
+		if (size == null) {
+			size = previousSizeOfRows.get(row);
+			if (size == null) {
+				parseRow();
+				size = super.getPreferredSize();
+			}
+			sizeOfRows.put(row, size);
+		}
+		return new Dimension(size);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		parseRow();
+		super.paintComponent(g);
+	}
+
+	private void parseRow() {
+		if (!isRowParsed) {
+			setText(String.format(HTML_ROW, rowWidth, row));
+			isRowParsed = true;
+		}
+	}
+}
@@ -17,7 +17,10 @@ import java.io.RandomAccessFile;
 import java.net.URL;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.AbstractAction;
 import javax.swing.JFrame;
@@ -33,6 +36,9 @@ import org.jnativehook.NativeHookException;
 import org.jnativehook.keyboard.NativeKeyEvent;
 import org.jnativehook.keyboard.NativeKeyListener;
 
+import typetodo.logic.ApiServer;
+import typetodo.logic.CommandExecutor;
+import typetodo.logic.CommandServer;
 import typetodo.logic.MainController;
 import typetodo.logic.Schedule;
 
@@ -42,6 +48,8 @@ public class TypeToDoGui extends JFrame implements View, NativeKeyListener,
 	public static final String IMAGE_DIRECTORY = "images/";
 	public static final String FILENAME_LOGO = "logo.png";
 	private static final String MESSAGE_ERROR_INITIALIZING = "There is an error initializing the scheduler. Please make sure to download the latest version.";
+	private static final String MESSAGE_ERROR_COMMAND_SERVER = "Commands from other launches cannot be received: %s";
+	private static final String MESSAGE_ERROR_API_SERVER = "The API server could not be started: %s";
 	private static final String MESSAGE_ERROR_NATIVE_HOOK = "There was a problem registering the global hotkey.\n"
 			+ "For mavericks OSX users:\n"
 			+ "Please go to Preferences>Security & Privacy>Privacy>Acessibility to allow Jar Launcher.";
@@ -53,12 +61,18 @@ public class TypeToDoGui extends JFrame implements View, NativeKeyListener,
 	private Image imgLogo;
 	private LinkedList<String> inputHistory;
 	private int historyIndex;
+	// Holds the latest list of tasks or help that is waiting to be displayed on the EDT
+	private final AtomicReference<List<String>> pendingTasksToDisplay;
 
 	private static MainController sc;
+	private static CommandExecutor commandExecutor;
+	private static CommandServer commandServer;
+	private static ApiServer apiServer;
 
 	private TypeToDoGui() {
 
 		inputHistory = new LinkedList<String>();
+		pendingTasksToDisplay = new AtomicReference<List<String>>();
 
 		this.setUndecorated(true);
 		this.setLayout(new BorderLayout());
@@ -107,7 +121,7 @@ public class TypeToDoGui extends JFrame implements View, NativeKeyListener,
 			public void actionPerformed(ActionEvent e) {
 				String input = txtCmd.getText();
 				if (!input.isEmpty()) {
-					sc.parseAndExecute(input);
+					commandExecutor.submit(input);
 					if (historyIndex != 0) {
 						// The user had navigated into the history, thus we need to clear
 						// history.
@@ -165,7 +179,7 @@ public class TypeToDoGui extends JFrame implements View, NativeKeyListener,
 		txtCmd.getActionMap().put("undo", new AbstractAction() {
 			public void actionPerformed(ActionEvent e) {
 				// Hotkey represents user typing undo
-				sc.parseAndExecute("undo");
+				commandExecutor.submit("undo");
 			}
 		});
 		txtCmd.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0),
@@ -278,37 +292,81 @@ public class TypeToDoGui extends JFrame implements View, NativeKeyListener,
 		inputHistory.push(input);
 	}
 
+	/**
+	 * The View methods may be called from the command executor or the sync worker, thus every update
+	 * to a Swing component is handed over to the EDT.
+	 */
+	private void runOnEventDispatchThread(Runnable runnable) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			runnable.run();
+		} else {
+			SwingUtilities.invokeLater(runnable);
+		}
+	}
+
 	@Override
 	public boolean disableInput() {
-		txtCmd.setEnabled(false);
-		return !txtCmd.isEnabled();
+		runOnEventDispatchThread(new Runnable() {
+			public void run() {
+				txtCmd.setEnabled(false);
+			}
+		});
+		return true;
 	}
 
 	@Override
 	public boolean enableInput() {
-		txtCmd.setEnabled(true);
-		return txtCmd.isEnabled();
+		runOnEventDispatchThread(new Runnable() {
+			public void run() {
+				txtCmd.setEnabled(true);
+			}
+		});
+		return true;
 	}
 
 	@Override
-	public void displayFeedBack(String feedBack) {
-		feedbackDialog.setFeedbackText(feedBack);
+	public void displayFeedBack(final String feedBack) {
+		runOnEventDispatchThread(new Runnable() {
+			public void run() {
+				feedbackDialog.setFeedbackText(feedBack);
+			}
+		});
 	}
 
 	@Override
-	public void displayErrorMessage(String errorMessage) {
-		feedbackDialog.setFeedbackText(errorMessage);
+	public void displayErrorMessage(final String errorMessage) {
+		runOnEventDispatchThread(new Runnable() {
+			public void run() {
+				feedbackDialog.setFeedbackText(errorMessage);
+			}
+		});
 	}
 
+	/**
+	 * Only the latest list of tasks is displayed. If several lists arrive before the EDT gets to
+	 * display them, the older lists are dropped.
+	 */
 	@Override
-	public void displayTasks(String tasks) {
-		feedbackDialog.setTableOfTasks(tasks.trim());
+	public void displayTasks(List<String> taskRows) {
+		if (pendingTasksToDisplay.getAndSet(taskRows) != null) {
+			// A display is already scheduled and will pick up the latest list
+			return;
+		}
+		runOnEventDispatchThread(new Runnable() {
+			public void run() {
+				List<String> latestTaskRows = pendingTasksToDisplay.getAndSet(null);
+				feedbackDialog.setTableOfTasks(latestTaskRows);
+			}
+		});
 	}
 
+	/**
+	 * The help takes the place of the list of tasks, so it goes through the same pending list as
+	 * displayTasks. Otherwise the help could overwrite a newer list that is still waiting for the EDT.
+	 */
 	@Override
 	public void displayHelp(String helpMessage) {
-		System.out.println(helpMessage);
-		feedbackDialog.setTableOfTasks(helpMessage);
+		this.displayTasks(Arrays.asList(helpMessage));
 	}
 
 	private static File f;
@@ -316,10 +374,21 @@ public class TypeToDoGui extends JFrame implements View, NativeKeyListener,
 	private static FileLock lock;
 
 	/**
+	 * Kept for the launchers that start this class, see TypeToDoLauncher.
 	 * @param args
-	 * @throws IOException
+	 *          command line to execute, which is sent to the TypeToDo that is
+	 *          already running if there is one
 	 */
 	public static void main(String[] args) {
+		TypeToDoLauncher.main(args);
+	}
+
+	/**
+	 * Starts the window, the schedule and the local servers.
+	 * @param userInputOfArgs
+	 *          command line to execute once started, or an empty string
+	 */
+	static void launch(final String userInputOfArgs) {
 		try {
 			f = new File("RingOnRequest.lock");
 			// Check if the lock exist
@@ -343,14 +412,42 @@ public class TypeToDoGui extends JFrame implements View, NativeKeyListener,
 			SwingUtilities.invokeLater(new Runnable() {
 				public void run() {
 					TypeToDoGui cmdFrame = new TypeToDoGui();
+					Schedule schedule = null;
 					try {
-						sc = new MainController(cmdFrame, new Schedule());
+						schedule = new Schedule();
+						sc = new MainController(cmdFrame, schedule);
+						commandExecutor = new CommandExecutor(sc);
+						commandExecutor.refreshOnChanges(schedule);
+						if (!userInputOfArgs.isEmpty()) {
+							commandExecutor.submit(userInputOfArgs);
+						}
 					} catch (IOException e) {
 						cmdFrame.setAlwaysOnTop(false);
 						JOptionPane.showMessageDialog(null, MESSAGE_ERROR_INITIALIZING);
 						e.printStackTrace();
 						System.exit(0);
 					}
+
+					commandServer = new CommandServer(commandExecutor);
+					try {
+						commandServer.start();
+					} catch (IOException e) {
+						// Commands can still be typed in the window
+						cmdFrame.displayErrorMessage(String.format(MESSAGE_ERROR_COMMAND_SERVER, e.getMessage()));
+						e.printStackTrace();
+					}
+
+					try {
+						if (ApiServer.isEnabled()) {
+							// The changes made through the ApiServer are displayed by refreshOnChanges
+							apiServer = new ApiServer(schedule);
+							apiServer.start();
+						}
+					} catch (IOException e) {
+						apiServer = null;
+						cmdFrame.displayErrorMessage(String.format(MESSAGE_ERROR_API_SERVER, e.getMessage()));
+						e.printStackTrace();
+					}
 				}
 			});
 			try {
@@ -380,6 +477,12 @@ public class TypeToDoGui extends JFrame implements View, NativeKeyListener,
 	static class ShutdownHook extends Thread {
 
 		public void run() {
+			if (commandServer != null) {
+				commandServer.stop();
+			}
+			if (apiServer != null) {
+				apiServer.stop();
+			}
 			unlockFile();
 		}
 	}
@@ -0,0 +1,57 @@
+package typetodo.ui;
+
+import java.io.IOException;
+
+import typetodo.logic.CommandClient;
+
+/**
+ * The TypeToDoLauncher is the entry point of TypeToDo. A command line given as arguments is sent to the
+ * TypeToDo that is already running, if there is one, through the CommandClient, so that a second launch
+ * exits once the command is executed without loading the window. The window is only started, and the
+ * command executed by it, if the command could not be sent at all; a reply that is lost after it was sent
+ * is reported as a failure instead.
+ * @author A0091024U
+ *
+ */
+public class TypeToDoLauncher {
+	private static final int EXIT_STATUS_FAILED = 1;
+
+	private TypeToDoLauncher() {
+	}
+
+	/**
+	 * @param args
+	 *          command line to execute, which is sent to the TypeToDo that is
+	 *          already running if there is one
+	 */
+	public static void main(String[] args) {
+		String userInputOfArgs = joinArgs(args);
+		if (!userInputOfArgs.isEmpty()) {
+			try {
+				CommandClient.Reply reply = CommandClient.send(userInputOfArgs);
+				System.out.println(reply.getFeedback());
+				System.exit(reply.isSuccessful() ? 0 : EXIT_STATUS_FAILED);
+			} catch (IOException e) {
+				if (!CommandClient.isNotRunning(e)) {
+					// The command may have been executed, such as exit, so it is not executed again
+					System.err.println(e.getMessage());
+					System.exit(EXIT_STATUS_FAILED);
+				}
+				// No TypeToDo is running, so this one starts and executes the command
+			}
+		}
+
+		TypeToDoGui.launch(userInputOfArgs);
+	}
+
+	private static String joinArgs(String[] args) {
+		StringBuilder userInput = new StringBuilder();
+		for (String arg : args) {
+			if (userInput.length() > 0) {
+				userInput.append(' ');
+			}
+			userInput.append(arg);
+		}
+		return userInput.toString();
+	}
+}
@@ -1,5 +1,7 @@
 package typetodo.ui;
 
+import java.util.List;
+
 public interface View {
 
 	public boolean disableInput();
@@ -10,7 +12,7 @@ public interface View {
 
 	public void displayErrorMessage(String errorMessage);
 
-	public void displayTasks(String tasks);
+	public void displayTasks(List<String> taskRows);
 
 	public void displayHelp(String helpMessage);
 }